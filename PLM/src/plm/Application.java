@@ -8,6 +8,9 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+import plm.dao.embedded.EmbeddedStore;
 
 /**
  * Main entry point for the PLM application.
@@ -25,12 +28,14 @@ public class Application {
     }
 
     /**
-     * Creates and configures the DataSource bean used to establish database connections.
+     * Creates and configures the DataSource bean used to establish database connections,
+     * unless the embedded store replaces the database.
      *
      * @return the DataSource bean (not relevant here)
      */
     @Autowired
     @Bean("dataSource")
+    @Profile("!" + EmbeddedStore.PROFILE)
     public DataSource getDataSource() {
         //
         // Implementation and returned value are not relevant for this exercise
@@ -40,13 +45,15 @@ public class Application {
 
     /**
      * Creates and configures the SessionFactory bean used by Hibernate
-     * to create sessions for database interactions.
+     * to create sessions for database interactions, unless the embedded store replaces
+     * the database.
      *
      * @param dataSource The DataSource to be used by the SessionFactory.
      * @return the SessionFactory bean.
      */
     @Autowired
     @Bean("sessionFactory")
+    @Profile("!" + EmbeddedStore.PROFILE)
     public SessionFactory getSessionFactory(DataSource dataSource) {
         //
         // Implementation and returned value are not relevant for this exercise
@@ -0,0 +1,89 @@
+package plm.cache;
+
+/**
+ * Settings of the cache of one type of entity.
+ *
+ * The cache is split into two regions: the current (latest) iterations, which are
+ * modified and therefore invalidated often, and the historical iterations, which are
+ * immutable once a newer iteration exists. Each region has its own capacity, so the
+ * churn of current iterations never evicts historical ones, which stay pinned as long
+ * as their region has room.
+ */
+public class EntityCachePolicy {
+
+    private int currentCapacity = 1024;
+
+    private int historicalCapacity = 8192;
+
+    private boolean cacheCurrent = true;
+
+    // Getters
+
+    /**
+     * Gets the maximum number of cached current iterations.
+     *
+     * @return The capacity of the region of current iterations.
+     */
+    public int getCurrentCapacity() {
+        return currentCapacity;
+    }
+
+    /**
+     * Gets the maximum number of cached historical iterations.
+     *
+     * @return The capacity of the region of historical iterations.
+     */
+    public int getHistoricalCapacity() {
+        return historicalCapacity;
+    }
+
+    /**
+     * Checks if current iterations are cached, or only historical ones.
+     *
+     * @return true if current iterations are cached.
+     */
+    public boolean isCacheCurrent() {
+        return cacheCurrent;
+    }
+
+    // Setters
+
+    /**
+     * Sets the maximum number of cached current iterations.
+     *
+     * @param currentCapacity The capacity, at least 1.
+     * @return The current EntityCachePolicy instance (for chaining).
+     */
+    public EntityCachePolicy setCurrentCapacity(int currentCapacity) {
+        if (currentCapacity < 1) {
+            throw new IllegalArgumentException("currentCapacity must be a positive integer");
+        }
+        this.currentCapacity = currentCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of cached historical iterations.
+     *
+     * @param historicalCapacity The capacity, at least 1.
+     * @return The current EntityCachePolicy instance (for chaining).
+     */
+    public EntityCachePolicy setHistoricalCapacity(int historicalCapacity) {
+        if (historicalCapacity < 1) {
+            throw new IllegalArgumentException("historicalCapacity must be a positive integer");
+        }
+        this.historicalCapacity = historicalCapacity;
+        return this;
+    }
+
+    /**
+     * Sets whether current iterations are cached, or only historical ones.
+     *
+     * @param cacheCurrent true to cache current iterations.
+     * @return The current EntityCachePolicy instance (for chaining).
+     */
+    public EntityCachePolicy setCacheCurrent(boolean cacheCurrent) {
+        this.cacheCurrent = cacheCurrent;
+        return this;
+    }
+}
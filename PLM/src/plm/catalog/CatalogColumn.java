@@ -0,0 +1,72 @@
+package plm.catalog;
+
+import java.util.function.Function;
+
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * Columns of a {@link CatalogSnapshot}, one per attribute of the entities read by the
+ * reporting and search consumers.
+ *
+ * Strings are dictionary-encoded: the column holds one int code per row, an index in
+ * the sorted dictionary of the distinct values of the column (-1 for null). Integers are
+ * stored as such and flags as bitsets.
+ */
+public enum CatalogColumn {
+
+    REFERENCE(Kind.STRING, Part::getReference),
+    VERSION(Kind.STRING, Part::getVersion),
+    ITERATION(Kind.INT, Part::getIteration),
+    VERSION_ORDINAL(Kind.INT, Part::getVersionOrdinal),
+    LIFE_CYCLE_STATE(Kind.STRING, Part::getLifeCycleState),
+    RESERVED(Kind.FLAG, Part::isReserved),
+    RESERVED_BY(Kind.STRING, Part::getReservedBy),
+    PART_ATTRIBUTE_1(Kind.STRING, Part::getPartAttribute1),
+    PART_ATTRIBUTE_2(Kind.STRING, Part::getPartAttribute2),
+    DOCUMENT_ATTRIBUTE_1(Kind.STRING, entity -> ((Document) entity).getDocumentAttribute1()),
+    DOCUMENT_ATTRIBUTE_2(Kind.STRING, entity -> ((Document) entity).getDocumentAttribute2()),
+    /**
+     * Set on the latest iteration of the latest version of each reference.
+     */
+    LATEST(Kind.FLAG, null);
+
+    /**
+     * Storage of a column.
+     */
+    public enum Kind {
+        STRING, INT, FLAG
+    }
+
+    private final Kind kind;
+    // Value of the column for an entity, null for the columns computed by the writer
+    private final Function<Part, ?> value;
+
+    CatalogColumn(Kind kind, Function<Part, ?> value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    /**
+     * Gets the storage of the column.
+     *
+     * @return The kind of the column.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Checks if the column is stored for an entity type.
+     *
+     * @param type The type of the entities.
+     * @return true if the entities of the type have this column.
+     */
+    public boolean appliesTo(Class<? extends Part> type) {
+        return (this != DOCUMENT_ATTRIBUTE_1 && this != DOCUMENT_ATTRIBUTE_2) || Document.class.isAssignableFrom(type);
+    }
+
+    Object valueOf(Part entity) {
+        return value.apply(entity);
+    }
+}
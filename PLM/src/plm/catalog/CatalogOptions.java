@@ -0,0 +1,66 @@
+package plm.catalog;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Settings of the catalog snapshots: where their files are written and how often they
+ * are rebuilt, see {@link CatalogSnapshotBuilder}.
+ */
+public class CatalogOptions {
+
+    private Path directory = Paths.get("catalog");
+
+    private long refreshIntervalSeconds = 3600;
+
+    // Getters
+
+    /**
+     * Gets the directory holding the snapshot files.
+     *
+     * @return The directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the time between two builds of the snapshots.
+     *
+     * @return The interval, in seconds, 0 if the snapshots are only built on demand.
+     */
+    public long getRefreshIntervalSeconds() {
+        return refreshIntervalSeconds;
+    }
+
+    // Setters
+
+    /**
+     * Sets the directory holding the snapshot files.
+     *
+     * @param directory The directory, created if it does not exist.
+     * @return The current CatalogOptions instance (for chaining).
+     */
+    public CatalogOptions setDirectory(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Sets the time between two builds of the snapshots. Queries read the previous
+     * snapshot until the next one is built, so this is the staleness the consumers accept.
+     *
+     * @param refreshIntervalSeconds The interval, in seconds, 0 to only build on demand.
+     * @return The current CatalogOptions instance (for chaining).
+     */
+    public CatalogOptions setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+        if (refreshIntervalSeconds < 0) {
+            throw new IllegalArgumentException("refreshIntervalSeconds cannot be negative");
+        }
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+        return this;
+    }
+}
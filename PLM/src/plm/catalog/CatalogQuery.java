@@ -0,0 +1,309 @@
+package plm.catalog;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Query over a {@link CatalogSnapshot}: filters combined with "and", then an aggregate
+ * or the matching rows.
+ *
+ * Filters are resolved against the dictionaries once, when they are added: a string
+ * equality becomes a code, a prefix a range of codes. Rows are then scanned in place,
+ * comparing ints, so a query allocates nothing per row. A filter on a value missing
+ * from the dictionary matches no row without any scan.
+ *
+ * A query is not thread-safe, but any number of queries can run on the same snapshot.
+ */
+public final class CatalogQuery {
+
+    private final CatalogSnapshot snapshot;
+
+    private final List<Filter> filters = new ArrayList<>();
+
+    // Set once a filter cannot match any row
+    private boolean empty;
+
+    CatalogQuery(CatalogSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Keeps the rows where a string column is equal to a value.
+     *
+     * @param column The string column.
+     * @param value  The value, null for the rows without value.
+     * @return The current CatalogQuery instance (for chaining).
+     */
+    public CatalogQuery where(CatalogColumn column, String value) {
+        CatalogSnapshot.Column values = snapshot.column(column, CatalogColumn.Kind.STRING);
+        int code = values.dictionary.codeOf(value);
+        if (code == -2) {
+            empty = true;
+        } else {
+            filters.add(new CodeRange(values.ints, code, code + 1));
+        }
+        return this;
+    }
+
+    /**
+     * Keeps the rows where a string column starts with a prefix.
+     *
+     * @param column The string column.
+     * @param prefix The prefix.
+     * @return The current CatalogQuery instance (for chaining).
+     */
+    public CatalogQuery whereStartsWith(CatalogColumn column, String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix cannot be null");
+        }
+        CatalogSnapshot.Column values = snapshot.column(column, CatalogColumn.Kind.STRING);
+        int[] range = values.dictionary.rangeOf(prefix);
+        if (range[0] == range[1]) {
+            empty = true;
+        } else {
+            filters.add(new CodeRange(values.ints, range[0], range[1]));
+        }
+        return this;
+    }
+
+    /**
+     * Keeps the rows where an int column is within bounds.
+     *
+     * @param column The int column.
+     * @param min    The lowest value, inclusive.
+     * @param max    The highest value, inclusive.
+     * @return The current CatalogQuery instance (for chaining).
+     */
+    public CatalogQuery whereBetween(CatalogColumn column, int min, int max) {
+        CatalogSnapshot.Column values = snapshot.column(column, CatalogColumn.Kind.INT);
+        if (min > max) {
+            empty = true;
+        } else {
+            filters.add(new IntRange(values.ints, min, max));
+        }
+        return this;
+    }
+
+    /**
+     * Keeps the rows where a flag column has a value.
+     *
+     * @param column The flag column.
+     * @param value  The value of the flag.
+     * @return The current CatalogQuery instance (for chaining).
+     */
+    public CatalogQuery where(CatalogColumn column, boolean value) {
+        filters.add(new Flag(snapshot.column(column, CatalogColumn.Kind.FLAG).bits, value));
+        return this;
+    }
+
+    /**
+     * Keeps the latest iteration of the latest version of each reference.
+     *
+     * @return The current CatalogQuery instance (for chaining).
+     */
+    public CatalogQuery latestOnly() {
+        return where(CatalogColumn.LATEST, true);
+    }
+
+    /**
+     * Counts the matching rows.
+     *
+     * @return The number of rows.
+     */
+    public long count() {
+        if (empty) {
+            return 0;
+        }
+        Filter[] all = filters.toArray(new Filter[0]);
+        long count = 0;
+        for (int row = 0, rows = snapshot.getRows(); row < rows; row++) {
+            if (matches(all, row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the matching rows by value of a string column, e.g. the parts by lifecycle
+     * state.
+     *
+     * @param column The string column.
+     * @return The number of rows of each value present, in the order of the values, null
+     * (for the rows without value) first.
+     */
+    public Map<String, Long> countBy(CatalogColumn column) {
+        CatalogSnapshot.Column values = snapshot.column(column, CatalogColumn.Kind.STRING);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (empty) {
+            return counts;
+        }
+        Filter[] all = filters.toArray(new Filter[0]);
+        // Count of each code, shifted by one for null
+        long[] byCode = new long[values.dictionary.size + 1];
+        IntBuffer codes = values.ints;
+        for (int row = 0, rows = snapshot.getRows(); row < rows; row++) {
+            if (matches(all, row)) {
+                byCode[codes.get(row) + 1]++;
+            }
+        }
+        for (int code = -1; code < values.dictionary.size; code++) {
+            if (byCode[code + 1] > 0) {
+                counts.put(values.dictionary.valueOf(code), byCode[code + 1]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the lowest and highest values of an int column over the matching rows.
+     *
+     * @param column The int column.
+     * @return The lowest and the highest values, null if no row matches.
+     */
+    public int[] range(CatalogColumn column) {
+        IntBuffer values = snapshot.column(column, CatalogColumn.Kind.INT).ints;
+        if (empty) {
+            return null;
+        }
+        Filter[] all = filters.toArray(new Filter[0]);
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        boolean found = false;
+        for (int row = 0, rows = snapshot.getRows(); row < rows; row++) {
+            if (matches(all, row)) {
+                int value = values.get(row);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                found = true;
+            }
+        }
+        return found ? new int[] {min, max} : null;
+    }
+
+    /**
+     * Calls a consumer with every matching row, in order, e.g. to read some of their
+     * columns from the snapshot.
+     *
+     * @param consumer The consumer of the rows.
+     */
+    public void forEach(IntConsumer consumer) {
+        if (empty) {
+            return;
+        }
+        Filter[] all = filters.toArray(new Filter[0]);
+        for (int row = 0, rows = snapshot.getRows(); row < rows; row++) {
+            if (matches(all, row)) {
+                consumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Gets the first matching rows.
+     *
+     * @param limit The maximum number of rows.
+     * @return The rows, in order.
+     */
+    public int[] select(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit cannot be negative");
+        }
+        int[] selected = new int[Math.min(limit, 1024)];
+        int count = 0;
+        if (!empty) {
+            Filter[] all = filters.toArray(new Filter[0]);
+            for (int row = 0, rows = snapshot.getRows(); row < rows && count < limit; row++) {
+                if (matches(all, row)) {
+                    if (count == selected.length) {
+                        selected = Arrays.copyOf(selected, (int) Math.min(limit, 2L * count));
+                    }
+                    selected[count++] = row;
+                }
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private static boolean matches(Filter[] filters, int row) {
+        for (Filter filter : filters) {
+            if (!filter.test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filter of the rows, reading one column in place.
+     */
+    private abstract static class Filter {
+        abstract boolean test(int row);
+    }
+
+    /**
+     * Codes of a string column within [low, high).
+     */
+    private static final class CodeRange extends Filter {
+        final IntBuffer codes;
+        final int low;
+        final int high;
+
+        CodeRange(IntBuffer codes, int low, int high) {
+            this.codes = codes;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        boolean test(int row) {
+            int code = codes.get(row);
+            return code >= low && code < high;
+        }
+    }
+
+    /**
+     * Values of an int column within [min, max].
+     */
+    private static final class IntRange extends Filter {
+        final IntBuffer values;
+        final int min;
+        final int max;
+
+        IntRange(IntBuffer values, int min, int max) {
+            this.values = values;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        boolean test(int row) {
+            int value = values.get(row);
+            return value >= min && value <= max;
+        }
+    }
+
+    /**
+     * Value of a flag column.
+     */
+    private static final class Flag extends Filter {
+        final LongBuffer bits;
+        final boolean value;
+
+        Flag(LongBuffer bits, boolean value) {
+            this.bits = bits;
+            this.value = value;
+        }
+
+        @Override
+        boolean test(int row) {
+            return ((bits.get(row >>> 6) & 1L << row) != 0) == value;
+        }
+    }
+}
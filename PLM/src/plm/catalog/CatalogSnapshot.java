@@ -0,0 +1,369 @@
+package plm.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * Immutable columnar snapshot of all the rows of an entity type, memory-mapped from a
+ * file written by the {@link CatalogSnapshotWriter}, for the consumers scanning large
+ * catalogs (reporting, search) without loading entities.
+ *
+ * Columns are read in place from the mapped file: filtering and aggregating through
+ * {@link #query()} allocates nothing per row, strings are only decoded for the values
+ * returned. The pages are shared with the file cache of the system and are not part of
+ * the heap.
+ *
+ * Reads are thread-safe. The mapping is released once the snapshot is garbage
+ * collected; the file can be deleted while it is still mapped on most systems.
+ */
+public final class CatalogSnapshot {
+
+    private final Path file;
+
+    private final Class<? extends Part> type;
+
+    private final long buildTime;
+
+    private final int rows;
+
+    private final Map<CatalogColumn, Column> columns = new EnumMap<>(CatalogColumn.class);
+
+    private CatalogSnapshot(Path file, Class<? extends Part> type, long buildTime, int rows) {
+        this.file = file;
+        this.type = type;
+        this.buildTime = buildTime;
+        this.rows = rows;
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file The file written by a {@link CatalogSnapshotWriter}.
+     * @return The snapshot.
+     * @throws IOException If the file cannot be read or is not a snapshot.
+     */
+    public static CatalogSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 4096))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() < 8 || header.getInt() != CatalogSnapshotWriter.MAGIC) {
+                throw new IOException("Not a catalog snapshot: " + file);
+            }
+            int format = header.getInt();
+            if (format != CatalogSnapshotWriter.FORMAT) {
+                throw new IOException("Unsupported format " + format + " of catalog snapshot " + file);
+            }
+            byte[] typeName = new byte[header.getInt()];
+            header.get(typeName);
+            Class<? extends Part> type = typeOf(new String(typeName, StandardCharsets.UTF_8));
+            CatalogSnapshot snapshot = new CatalogSnapshot(file, type, header.getLong(), header.getInt());
+
+            int columnCount = header.getInt();
+            CatalogColumn[] all = CatalogColumn.values();
+            for (int i = 0; i < columnCount; i++) {
+                CatalogColumn column = all[header.getInt()];
+                int dictionarySize = header.getInt();
+                ByteBuffer data = map(channel, header.getLong(), header.getLong());
+                long dictionaryOffset = header.getLong();
+                long dictionaryLength = header.getLong();
+                Dictionary dictionary = dictionarySize < 0 ? null
+                        : new Dictionary(map(channel, dictionaryOffset, dictionaryLength));
+                snapshot.columns.put(column, new Column(column.getKind(), data, dictionary));
+            }
+            return snapshot;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt catalog snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Gets the file of the snapshot.
+     *
+     * @return The file.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the type of the entities.
+     *
+     * @return The type, Part or Document.
+     */
+    public Class<? extends Part> getType() {
+        return type;
+    }
+
+    /**
+     * Gets the time the snapshot was built.
+     *
+     * @return The time, in milliseconds since the epoch.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Gets the number of rows, one per iteration.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the columns of the snapshot.
+     *
+     * @return The columns, not modifiable.
+     */
+    public Set<CatalogColumn> getColumns() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    /**
+     * Starts a query over all the rows.
+     *
+     * @return The query, to be refined.
+     */
+    public CatalogQuery query() {
+        return new CatalogQuery(this);
+    }
+
+    /**
+     * Gets the value of a string column.
+     *
+     * @param column The column.
+     * @param row    The row.
+     * @return The value, may be null.
+     */
+    public String getString(CatalogColumn column, int row) {
+        Column values = column(column, CatalogColumn.Kind.STRING);
+        return values.dictionary.valueOf(values.ints.get(checkRow(row)));
+    }
+
+    /**
+     * Gets the value of an int column.
+     *
+     * @param column The column.
+     * @param row    The row.
+     * @return The value.
+     */
+    public int getInt(CatalogColumn column, int row) {
+        return column(column, CatalogColumn.Kind.INT).ints.get(checkRow(row));
+    }
+
+    /**
+     * Gets the value of a flag column.
+     *
+     * @param column The column.
+     * @param row    The row.
+     * @return The value.
+     */
+    public boolean getFlag(CatalogColumn column, int row) {
+        return column(column, CatalogColumn.Kind.FLAG).isSet(checkRow(row));
+    }
+
+    /**
+     * Gets the primary key of a row.
+     *
+     * @param row The row.
+     * @return The key of the entity.
+     */
+    public Part.PartPK getKey(int row) {
+        String reference = getString(CatalogColumn.REFERENCE, row);
+        String version = getString(CatalogColumn.VERSION, row);
+        int iteration = getInt(CatalogColumn.ITERATION, row);
+        return type == Document.class ? new Document.DocumentPK(reference, version, iteration)
+                : new Part.PartPK(reference, version, iteration);
+    }
+
+    /**
+     * Gets a column, checking its kind.
+     *
+     * @param column The column.
+     * @param kind   The expected kind.
+     * @return The column.
+     * @throws IllegalArgumentException If the snapshot has no such column.
+     */
+    Column column(CatalogColumn column, CatalogColumn.Kind kind) {
+        Column values = columns.get(column);
+        if (values == null || column.getKind() != kind) {
+            throw new IllegalArgumentException("No " + kind + " column " + column + " in the snapshot of "
+                    + type.getSimpleName());
+        }
+        return values;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + rows);
+        }
+        return row;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static Class<? extends Part> typeOf(String name) throws IOException {
+        if (name.equals(Part.class.getName())) {
+            return Part.class;
+        }
+        if (name.equals(Document.class.getName())) {
+            return Document.class;
+        }
+        throw new IOException("Unknown entity type " + name);
+    }
+
+    /**
+     * Values of a column, read in place.
+     */
+    static final class Column {
+        final CatalogColumn.Kind kind;
+        // Codes of a string column, values of an int column
+        final IntBuffer ints;
+        // Bits of a flag column
+        final LongBuffer bits;
+        final Dictionary dictionary;
+
+        Column(CatalogColumn.Kind kind, ByteBuffer data, Dictionary dictionary) {
+            this.kind = kind;
+            this.ints = kind == CatalogColumn.Kind.FLAG ? null : data.asIntBuffer();
+            this.bits = kind == CatalogColumn.Kind.FLAG ? data.asLongBuffer() : null;
+            this.dictionary = dictionary;
+        }
+
+        boolean isSet(int row) {
+            return (bits.get(row >>> 6) & 1L << row) != 0;
+        }
+    }
+
+    /**
+     * Sorted distinct values of a string column: codes are indexes in this order, so
+     * values are found by binary search on their UTF-8 bytes, without decoding.
+     */
+    static final class Dictionary {
+        final int size;
+        // size + 1 offsets in the bytes
+        final IntBuffer offsets;
+        final ByteBuffer bytes;
+
+        Dictionary(ByteBuffer data) {
+            this.size = data.getInt(0);
+            this.offsets = region(data, 4, 4 * (size + 2)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            this.bytes = region(data, 4 * (size + 2), data.limit());
+        }
+
+        /**
+         * Gets the code of a value.
+         *
+         * @param value The value, may be null.
+         * @return The code, -1 for null, or -2 if the value is not in the column.
+         */
+        int codeOf(String value) {
+            if (value == null) {
+                return -1;
+            }
+            byte[] key = value.getBytes(StandardCharsets.UTF_8);
+            int code = lowerBound(key, false);
+            return code < size && compare(code, key, false) == 0 ? code : -2;
+        }
+
+        /**
+         * Gets the codes of the values starting with a prefix.
+         *
+         * @param prefix The prefix.
+         * @return The first code and the code after the last one.
+         */
+        int[] rangeOf(String prefix) {
+            byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+            return new int[] {lowerBound(key, true), upperBound(key)};
+        }
+
+        String valueOf(int code) {
+            if (code < 0) {
+                return null;
+            }
+            int start = offsets.get(code);
+            byte[] value = new byte[offsets.get(code + 1) - start];
+            ByteBuffer source = bytes.duplicate();
+            source.position(start);
+            source.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        // Bytes between two positions of a buffer, as a buffer of their own
+        private static ByteBuffer region(ByteBuffer data, int start, int end) {
+            ByteBuffer region = data.duplicate();
+            region.position(start);
+            region.limit(end);
+            return region.slice();
+        }
+
+        // First code whose value is not below the key
+        private int lowerBound(byte[] key, boolean prefix) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(middle, key, prefix) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // First code whose value is above the key and does not start with it
+        private int upperBound(byte[] key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(middle, key, true) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Compares a value with a key, by unsigned bytes.
+         *
+         * @param prefix true if the values starting with the key are equal to it.
+         */
+        private int compare(int code, byte[] key, boolean prefix) {
+            int start = offsets.get(code);
+            int length = offsets.get(code + 1) - start;
+            int common = Math.min(length, key.length);
+            for (int i = 0; i < common; i++) {
+                int difference = (bytes.get(start + i) & 0xff) - (key[i] & 0xff);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            if (prefix && length >= key.length) {
+                return 0;
+            }
+            return length - key.length;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package plm.catalog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import plm.dao.HistoryExporter;
+import plm.dao.embedded.EmbeddedStore;
+import plm.metrics.MetricsRegistry;
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * Builds the {@link CatalogSnapshot} of the parts and of the documents from the database,
+ * periodically (see {@link CatalogOptions#setRefreshIntervalSeconds(long)}) or on demand,
+ * and hands the latest one to the readers.
+ *
+ * The rows are streamed by the {@link HistoryExporter} into a {@link CatalogSnapshotWriter}:
+ * only their columns are kept while the file is built. The file is written aside then
+ * moved in place, and the new snapshot replaces the previous one for the next queries;
+ * queries running on the previous snapshot complete on it. At startup, the latest files
+ * are mapped again so that queries do not wait for a build.
+ *
+ * The build time and the rows of every type are exported as the
+ * {@code plm_catalog_build_seconds} histograms and the {@code plm_catalog_rows} gauges.
+ */
+@Component
+@Profile("!" + EmbeddedStore.PROFILE)
+public class CatalogSnapshotBuilder implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotBuilder.class);
+
+    private static final String SUFFIX = ".cat";
+
+    // Types with a snapshot
+    private static final List<Class<? extends Part>> TYPES = Arrays.asList(Part.class, Document.class);
+
+    private HistoryExporter historyExporter;
+
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    private CatalogOptions options = new CatalogOptions();
+
+    private final Map<Class<? extends Part>, CatalogSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Sets the exporter streaming the rows of the database.
+     *
+     * @param historyExporter The HistoryExporter to set.
+     */
+    @Autowired
+    public void setHistoryExporter(HistoryExporter historyExporter) {
+        this.historyExporter = historyExporter;
+    }
+
+    /**
+     * Sets the registry of the metrics of the builds.
+     *
+     * @param metricsRegistry The MetricsRegistry to set.
+     */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Gets the options of the snapshots.
+     *
+     * @return The options.
+     */
+    public CatalogOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Configures the snapshots, before the builder is started.
+     *
+     * @param options The options of the snapshots.
+     */
+    public void setOptions(CatalogOptions options) {
+        if (scheduler != null) {
+            throw new IllegalStateException("The catalog snapshots are already scheduled");
+        }
+        this.options = options;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Maps the latest snapshot files and schedules the builds.
+     */
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        Files.createDirectories(options.getDirectory());
+        for (Class<? extends Part> type : TYPES) {
+            metricsRegistry.gauge("plm_catalog_rows", () -> {
+                CatalogSnapshot snapshot = snapshots.get(type);
+                return snapshot == null ? 0 : snapshot.getRows();
+            }, "type", type.getSimpleName());
+            Map.Entry<Long, Path> latest = files(type).lastEntry();
+            if (latest != null) {
+                try {
+                    snapshots.put(type, CatalogSnapshot.open(latest.getValue()));
+                } catch (IOException e) {
+                    logger.warn("Ignoring catalog snapshot {}: {}", latest.getValue(), e.toString());
+                }
+            }
+        }
+        long interval = options.getRefreshIntervalSeconds();
+        if (interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "plm-catalog-builder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // build at once if nothing was mapped
+            long delay = snapshots.size() == TYPES.size() ? interval : 0;
+            scheduler.scheduleWithFixedDelay(this::refreshQuietly, delay, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the latest snapshot of an entity type.
+     *
+     * @param type The type of the entities, Part or Document.
+     * @return The snapshot, null if none was built yet.
+     */
+    public CatalogSnapshot getSnapshot(Class<? extends Part> type) {
+        return snapshots.get(type);
+    }
+
+    /**
+     * Builds the snapshots of all the types now.
+     *
+     * @throws IOException If a snapshot cannot be written.
+     */
+    public synchronized void refresh() throws IOException {
+        for (Class<? extends Part> type : TYPES) {
+            build(type);
+        }
+    }
+
+    /**
+     * Builds the snapshot of an entity type, then deletes the files of the previous ones.
+     *
+     * @param type The type of the entities.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    private void build(Class<? extends Part> type) throws IOException {
+        long start = System.nanoTime();
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter(type);
+        historyExporter.scan(type, writer::add);
+
+        Path directory = options.getDirectory();
+        long now = System.currentTimeMillis();
+        Path file = directory.resolve(type.getSimpleName().toLowerCase() + "-" + now + SUFFIX);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        writer.writeTo(temporary);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+        snapshots.put(type, snapshot);
+        metricsRegistry.histogram("plm_catalog_build_seconds", "type", type.getSimpleName()).recordSince(start);
+        logger.info("Catalog snapshot of {} built in {} ms: {} rows", type.getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), snapshot.getRows());
+
+        for (Path older : files(type).headMap(now).values()) {
+            try {
+                Files.delete(older);
+            } catch (IOException e) {
+                // still mapped on some systems: deleted after the next build
+                logger.debug("Cannot delete catalog snapshot {} yet: {}", older, e.toString());
+            }
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Cannot build the catalog snapshots", e);
+        }
+    }
+
+    /**
+     * Lists the snapshot files of a type by build time.
+     */
+    private TreeMap<Long, Path> files(Class<? extends Part> type) throws IOException {
+        String prefix = type.getSimpleName().toLowerCase() + "-";
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> listed = Files.list(options.getDirectory())) {
+            listed.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length())),
+                            file);
+                }
+            });
+        }
+        return files;
+    }
+}
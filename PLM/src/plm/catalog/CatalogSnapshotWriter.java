@@ -0,0 +1,311 @@
+package plm.catalog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import plm.model.Part;
+
+/**
+ * Builds the file of a {@link CatalogSnapshot} from the rows of an entity type.
+ *
+ * Rows are added one at a time and only their columns are kept: an int per row for the
+ * string and int columns, a bit for the flags, and the distinct strings of each column.
+ * The dictionaries are sorted when the file is written, so that the codes of a column
+ * follow the order of its values (by UTF-8 bytes): a prefix is a range of codes.
+ *
+ * Layout of the file, little-endian, every area aligned on 8 bytes:
+ * <ul>
+ * <li>header: magic, format, entity class, build time, rows, then for each column its
+ * ordinal, the size of its dictionary (-1 if none) and the offsets and lengths of its
+ * data and dictionary areas;</li>
+ * <li>data of a string or int column: one int per row;</li>
+ * <li>data of a flag column: a bitset of longs;</li>
+ * <li>dictionary: the offsets of the values (one more than the values) then their
+ * UTF-8 bytes.</li>
+ * </ul>
+ */
+public class CatalogSnapshotWriter {
+
+    static final int MAGIC = 0x504c4d43;
+
+    static final int FORMAT = 1;
+
+    // Ordinal, dictionary size, data offset and length, dictionary offset and length
+    static final int COLUMN_HEADER_BYTES = 4 + 4 + 4 * 8;
+
+    private final Class<? extends Part> type;
+
+    private final Map<CatalogColumn, Column> columns = new EnumMap<>(CatalogColumn.class);
+
+    private int rows;
+
+    // Last row added, to set the LATEST flag once the next reference starts
+    private String lastReference;
+    private int lastVersionOrdinal;
+    private int lastIteration;
+
+    /**
+     * Creates a writer for the rows of an entity type.
+     *
+     * @param type The type of the entities, Part or Document.
+     */
+    public CatalogSnapshotWriter(Class<? extends Part> type) {
+        this.type = type;
+        for (CatalogColumn column : CatalogColumn.values()) {
+            if (column.appliesTo(type)) {
+                columns.put(column, new Column(column.getKind()));
+            }
+        }
+    }
+
+    /**
+     * Adds a row. Rows must be grouped by reference and ordered by version and iteration,
+     * like the rows of {@link plm.dao.HistoryExporter#scan(Class, java.util.function.Consumer)}.
+     *
+     * @param entity The row.
+     * @throws IllegalArgumentException If the row is of another type, or out of order.
+     */
+    public void add(Part entity) {
+        if (entity.getClass() != type) {
+            throw new IllegalArgumentException("Expected a " + type.getSimpleName() + ": " + entity.getClass().getName());
+        }
+        boolean sameReference = entity.getReference().equals(lastReference);
+        if (sameReference && (entity.getVersionOrdinal() < lastVersionOrdinal
+                || entity.getVersionOrdinal() == lastVersionOrdinal && entity.getIteration() <= lastIteration)) {
+            throw new IllegalArgumentException("Rows of " + entity.getReference() + " out of order at "
+                    + entity.getVersion() + "." + entity.getIteration());
+        }
+        if (rows > 0 && !sameReference) {
+            columns.get(CatalogColumn.LATEST).set(rows - 1);
+        }
+        for (Map.Entry<CatalogColumn, Column> entry : columns.entrySet()) {
+            CatalogColumn column = entry.getKey();
+            if (column != CatalogColumn.LATEST) {
+                entry.getValue().add(rows, column.valueOf(entity));
+            }
+        }
+        lastReference = entity.getReference();
+        lastVersionOrdinal = entity.getVersionOrdinal();
+        lastIteration = entity.getIteration();
+        rows++;
+    }
+
+    /**
+     * Gets the number of rows added so far.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Writes the snapshot to a file, replaced if it exists.
+     *
+     * @param file The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeTo(Path file) throws IOException {
+        if (rows > 0) {
+            columns.get(CatalogColumn.LATEST).set(rows - 1);
+        }
+        byte[] typeName = type.getName().getBytes(StandardCharsets.UTF_8);
+        int headerBytes = align(4 + 4 + 4 + typeName.length + 8 + 4 + 4 + columns.size() * COLUMN_HEADER_BYTES);
+
+        // Areas, in the order of the columns
+        List<byte[][]> dictionaries = new ArrayList<>();
+        List<int[]> codes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT).putInt(typeName.length).put(typeName)
+                .putLong(System.currentTimeMillis()).putInt(rows).putInt(columns.size());
+        long offset = headerBytes;
+        for (Map.Entry<CatalogColumn, Column> entry : columns.entrySet()) {
+            Column column = entry.getValue();
+            long dataBytes = column.kind == CatalogColumn.Kind.FLAG ? 8L * ((rows + 63) / 64) : 4L * rows;
+            header.putInt(entry.getKey().ordinal());
+            if (column.kind == CatalogColumn.Kind.STRING) {
+                byte[][] dictionary = new byte[column.dictionary.size()][];
+                int[] sortedCodes = column.sortDictionary(dictionary);
+                dictionaries.add(dictionary);
+                codes.add(sortedCodes);
+                long dictionaryBytes = 4L * (dictionary.length + 2);
+                for (byte[] value : dictionary) {
+                    dictionaryBytes += value.length;
+                }
+                header.putInt(dictionary.length).putLong(offset).putLong(dataBytes)
+                        .putLong(offset + align(dataBytes)).putLong(dictionaryBytes);
+                offset += align(dataBytes) + align(dictionaryBytes);
+            } else {
+                header.putInt(-1).putLong(offset).putLong(dataBytes).putLong(0).putLong(0);
+                offset += align(dataBytes);
+            }
+        }
+        header.position(0);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output output = new Output(channel);
+            output.buffer.put(header);
+            int string = 0;
+            for (Column column : columns.values()) {
+                if (column.kind == CatalogColumn.Kind.FLAG) {
+                    for (int i = 0; i < (rows + 63) / 64; i++) {
+                        output.ensure(8).putLong(i < column.bits.length ? column.bits[i] : 0);
+                    }
+                } else if (column.kind == CatalogColumn.Kind.INT) {
+                    for (int i = 0; i < rows; i++) {
+                        output.ensure(4).putInt(column.values[i]);
+                    }
+                } else {
+                    int[] sortedCodes = codes.get(string);
+                    for (int i = 0; i < rows; i++) {
+                        int code = column.values[i];
+                        output.ensure(4).putInt(code < 0 ? code : sortedCodes[code]);
+                    }
+                    output.pad();
+                    byte[][] dictionary = dictionaries.get(string++);
+                    output.ensure(4).putInt(dictionary.length);
+                    int valueOffset = 0;
+                    for (byte[] value : dictionary) {
+                        output.ensure(4).putInt(valueOffset);
+                        valueOffset += value.length;
+                    }
+                    output.ensure(4).putInt(valueOffset);
+                    for (byte[] value : dictionary) {
+                        output.write(value);
+                    }
+                }
+                output.pad();
+            }
+            output.flush();
+            channel.force(true);
+        }
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * Values of a column: the codes of the strings in the order they were first seen,
+     * the ints, or the bits of the flags.
+     */
+    private static final class Column {
+        final CatalogColumn.Kind kind;
+        int[] values = new int[1024];
+        long[] bits = new long[16];
+        final Map<String, Integer> dictionary;
+
+        Column(CatalogColumn.Kind kind) {
+            this.kind = kind;
+            this.dictionary = kind == CatalogColumn.Kind.STRING ? new HashMap<>() : null;
+        }
+
+        void add(int row, Object value) {
+            if (kind == CatalogColumn.Kind.FLAG) {
+                if ((Boolean) value) {
+                    set(row);
+                }
+                return;
+            }
+            if (row == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            if (kind == CatalogColumn.Kind.INT) {
+                values[row] = (Integer) value;
+            } else {
+                values[row] = value == null ? -1 : dictionary.computeIfAbsent((String) value, v -> dictionary.size());
+            }
+        }
+
+        void set(int row) {
+            if (row >> 6 >= bits.length) {
+                bits = Arrays.copyOf(bits, Math.max(bits.length * 2, (row >> 6) + 1));
+            }
+            bits[row >> 6] |= 1L << row;
+        }
+
+        /**
+         * Sorts the dictionary by UTF-8 bytes.
+         *
+         * @param sorted The array receiving the sorted values.
+         * @return The sorted code of each code in the order of first appearance.
+         */
+        int[] sortDictionary(byte[][] sorted) {
+            byte[][] values = new byte[dictionary.size()][];
+            for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+                values[entry.getValue()] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            }
+            Integer[] order = new Integer[values.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(values[a], values[b]));
+            int[] sortedCodes = new int[values.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = values[order[i]];
+                sortedCodes[order[i]] = i;
+            }
+            return sortedCodes;
+        }
+    }
+
+    /**
+     * Buffered output to the file, keeping track of the alignment.
+     */
+    private static final class Output {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(ensure(1).remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void pad() throws IOException {
+            long position = written + buffer.position();
+            for (long i = position; i < align(position); i++) {
+                ensure(1).put((byte) 0);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -1,20 +1,109 @@
 package plm.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import plm.dao.EntityConflictException;
+import plm.dao.HistoryExporter;
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+import plm.importer.ImportFormat;
+import plm.model.Part;
+import plm.services.BatchExecutor;
+import plm.services.BatchFailureMode;
+import plm.services.BatchOperation;
+import plm.services.BatchResult;
+import plm.services.OperationExecutor;
+import plm.services.OverloadedException;
+import plm.services.RejectedOperationException;
+import plm.services.RejectionCode;
 import plm.services.Service;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Abstract class providing common functionality for managing entities
  * in the Product Lifecycle Management (PLM) system.
+ *
+ * Rejected operations are answered with the HTTP status of their {@link RejectionCode}
+ * (404, 409 or 423), the code in the {@link #ERROR_CODE_HEADER} header and the message,
+ * in the language of the request, as body. Invalid arguments are answered with 400.
+ *
+ * The asynchronous variants of the operations ({@code /async/...}) free the request
+ * thread at once and run on the pool of their operation on the entity type (see
+ * {@link OperationExecutor}); when the pool is saturated they are refused with 503 and a
+ * Retry-After header.
  */
 public abstract class AbstractController implements Controller {
 
-    @Autowired
+    /**
+     * Header of the responses giving the {@link RejectionCode} of a rejected operation.
+     */
+    public static final String ERROR_CODE_HEADER = "X-PLM-Error";
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    // Set by the concrete controllers, decorated with the retry of conflicting operations
     protected Service service;
 
+    // Set by the concrete controllers, the same service without retries, for the batches
+    protected Service transactionalService;
+
+    private HistoryExporter historyExporter;
+
+    private BatchExecutor batchExecutor;
+
+    private OperationExecutor operationExecutor;
+
+    /**
+     * Sets the exporter of the history of the entities, missing when the embedded store
+     * replaces the database.
+     *
+     * @param historyExporter The HistoryExporter to set.
+     */
+    @Autowired(required = false)
+    public void setHistoryExporter(HistoryExporter historyExporter) {
+        this.historyExporter = historyExporter;
+    }
+
+    /**
+     * Sets the executor of the batches of operations.
+     *
+     * @param batchExecutor The BatchExecutor to set.
+     */
+    @Autowired
+    public void setBatchExecutor(BatchExecutor batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * Sets the executor of the asynchronous operations.
+     *
+     * @param operationExecutor The OperationExecutor to set.
+     */
+    @Autowired
+    public void setOperationExecutor(OperationExecutor operationExecutor) {
+        this.operationExecutor = operationExecutor;
+    }
+
+    /**
+     * Gets the type of the entities managed by the controller.
+     *
+     * @return The class of the entities.
+     */
+    protected abstract Class<? extends Part> getEntityClass();
+
     /**
      * {@inheritDoc}
      */
@@ -77,4 +166,222 @@ public abstract class AbstractController implements Controller {
                        @RequestParam("iteration") int iteration) {
         service.revise(userId, reference, version, iteration);
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @GetMapping(value = "/async/reserve")
+    public CompletableFuture<Void> reserveAsync(@RequestHeader("userId") String userId,
+                                                @RequestParam("reference") String reference,
+                                                @RequestParam("version") String version,
+                                                @RequestParam("iteration") int iteration) {
+        return operationExecutor.run(getEntityClass(), "reserve",
+                () -> service.reserve(userId, reference, version, iteration));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @GetMapping(value = "/async/update")
+    public CompletableFuture<Void> updateAsync(@RequestHeader("userId") String userId,
+                                               @RequestParam("reference") String reference,
+                                               @RequestParam("version") String version,
+                                               @RequestParam("iteration") int iteration,
+                                               @RequestParam("attribute1") String attribute1,
+                                               @RequestParam("attribute2") String attribute2) {
+        return operationExecutor.run(getEntityClass(), "update",
+                () -> service.update(userId, reference, version, iteration, attribute1, attribute2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @GetMapping(value = "/async/free")
+    public CompletableFuture<Void> freeAsync(@RequestHeader("userId") String userId,
+                                             @RequestParam("reference") String reference,
+                                             @RequestParam("version") String version,
+                                             @RequestParam("iteration") int iteration) {
+        return operationExecutor.run(getEntityClass(), "free",
+                () -> service.free(userId, reference, version, iteration));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @GetMapping(value = "/async/setState")
+    public CompletableFuture<Void> setStateAsync(@RequestHeader("userId") String userId,
+                                                 @RequestParam("reference") String reference,
+                                                 @RequestParam("version") String version,
+                                                 @RequestParam("iteration") int iteration,
+                                                 @RequestParam("state") String state) {
+        return operationExecutor.run(getEntityClass(), "setState",
+                () -> service.setState(userId, reference, version, iteration, state));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @GetMapping(value = "/async/revise")
+    public CompletableFuture<Void> reviseAsync(@RequestHeader("userId") String userId,
+                                               @RequestParam("reference") String reference,
+                                               @RequestParam("version") String version,
+                                               @RequestParam("iteration") int iteration) {
+        return operationExecutor.run(getEntityClass(), "revise",
+                () -> service.revise(userId, reference, version, iteration));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The rows are written to the response as they are read, in chunks. Without database
+     * (embedded store), the history is not exported (501).
+     */
+    @Override
+    @GetMapping(value = "/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam("reference") String reference) {
+        if (historyExporter == null) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
+        }
+        StreamingResponseBody body = output -> historyExporter.export(getEntityClass(), reference, output);
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(body);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Operations are committed in chunks of {@link BatchExecutor#DEFAULT_CHUNK_SIZE} unless
+     * a chunk size is given. Malformed lines reject the whole batch (400) before any
+     * operation is run; failed operations are reported in their result, with the code and
+     * message of their rejection.
+     */
+    @Override
+    @PostMapping(value = "/batch")
+    public ResponseEntity<String> batch(@RequestHeader("userId") String userId,
+                                        @RequestParam(value = "mode", defaultValue = "STOP") BatchFailureMode mode,
+                                        @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+                                        @RequestBody String body) {
+        List<BatchOperation> operations = parseBatch(body);
+        List<BatchResult> results = batchExecutor.execute(transactionalService, userId, operations, mode,
+                chunkSize != null ? chunkSize : BatchExecutor.DEFAULT_CHUNK_SIZE);
+        StringBuilder response = new StringBuilder(results.size() * 32);
+        for (BatchResult result : results) {
+            response.append(result.toJson()).append('\n');
+        }
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(response.toString());
+    }
+
+    /**
+     * Answers an operation rejected by a business rule.
+     *
+     * @param e The rejection.
+     * @return The response with the status of the code of the rejection.
+     */
+    @ExceptionHandler(RejectedOperationException.class)
+    public ResponseEntity<String> handleRejection(RejectedOperationException e) {
+        return error(statusOf(e.getCode()), e.getCode(), e.getMessage());
+    }
+
+    /**
+     * Answers an operation which gave up after conflicting with concurrent writes.
+     *
+     * @param e The conflict.
+     * @return The 409 (Conflict) response.
+     */
+    @ExceptionHandler(EntityConflictException.class)
+    public ResponseEntity<String> handleConflict(EntityConflictException e) {
+        return error(HttpStatus.CONFLICT, RejectionCode.CONFLICT, e.getMessage());
+    }
+
+    /**
+     * Answers an asynchronous operation refused because its pool is saturated.
+     *
+     * @param e The refusal.
+     * @return The 503 (Service Unavailable) response, telling when to try again.
+     */
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<String> handleOverload(OverloadedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(ERROR_CODE_HEADER, RejectionCode.OVERLOADED.name())
+                .header(HttpHeaders.RETRY_AFTER, Integer.toString(e.getRetryAfter()))
+                .body(e.getMessage());
+    }
+
+    /**
+     * Answers an operation with an invalid argument.
+     *
+     * @param e The rejection of the argument.
+     * @return The 400 (Bad Request) response.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidArgument(IllegalArgumentException e) {
+        return error(HttpStatus.BAD_REQUEST, null, e.getMessage());
+    }
+
+    /**
+     * Parses the operations of a batch, one flat JSON object per non-blank line.
+     *
+     * @param body The body of the request.
+     * @return The operations.
+     * @throws IllegalArgumentException If a line is not a valid operation.
+     */
+    private static List<BatchOperation> parseBatch(String body) {
+        List<BatchOperation> operations = new ArrayList<>();
+        String[] lines = body == null ? new String[0] : body.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().isEmpty()) {
+                continue;
+            }
+            try {
+                operations.add(BatchOperation.of(ImportFormat.NDJSON.parse(lines[i], null)));
+            } catch (IllegalArgumentException e) {
+                Object cause = e instanceof LocalizedArgumentException
+                        ? ((LocalizedArgumentException) e).getMessageSource() : e.getMessage();
+                throw new LocalizedArgumentException(Message.of("error.invalidBatchLine", i + 1, cause));
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Gets the HTTP status of a rejection.
+     *
+     * @param code The code of the rejection.
+     * @return 404 if the entity does not exist, 423 if it is reserved, 409 otherwise.
+     */
+    private static HttpStatus statusOf(RejectionCode code) {
+        switch (code) {
+            case NOT_FOUND:
+                return HttpStatus.NOT_FOUND;
+            case RESERVED:
+                return HttpStatus.LOCKED;
+            default:
+                return HttpStatus.CONFLICT;
+        }
+    }
+
+    /**
+     * Builds an error response.
+     *
+     * @param status  The HTTP status.
+     * @param code    The code of the rejection, null if there is none.
+     * @param message The message of the error.
+     * @return The response, with the message as plain text body.
+     */
+    private static ResponseEntity<String> error(HttpStatus status, RejectionCode code, String message) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).contentType(MediaType.TEXT_PLAIN);
+        if (code != null) {
+            response.header(ERROR_CODE_HEADER, code.name());
+        }
+        return response.body(message);
+    }
+}
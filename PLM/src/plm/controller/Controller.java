@@ -1,5 +1,11 @@
 package plm.controller;
 
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import plm.services.BatchFailureMode;
+
 /**
  * Interface defining common operations for managing entities in the
  * Product Lifecycle Management (PLM) system.
@@ -59,4 +65,86 @@ public interface Controller {
      * @param iteration The iteration of the entity.
      */
     void revise(String userId, String reference, String version, int iteration);
+
+    /**
+     * Reserves an entity asynchronously, off the request thread.
+     *
+     * @param userId    The user ID making the request.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @return The future completed when the entity is reserved.
+     */
+    CompletableFuture<Void> reserveAsync(String userId, String reference, String version, int iteration);
+
+    /**
+     * Updates an entity asynchronously, off the request thread.
+     *
+     * @param userId     The user ID making the request.
+     * @param reference  The reference of the entity.
+     * @param version    The version of the entity.
+     * @param iteration  The iteration of the entity.
+     * @param attribute1 The first attribute to update.
+     * @param attribute2 The second attribute to update.
+     * @return The future completed when the entity is updated.
+     */
+    CompletableFuture<Void> updateAsync(String userId, String reference, String version, int iteration,
+                                        String attribute1, String attribute2);
+
+    /**
+     * Frees a reserved entity asynchronously, off the request thread.
+     *
+     * @param userId    The user ID making the request.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @return The future completed when the entity is freed.
+     */
+    CompletableFuture<Void> freeAsync(String userId, String reference, String version, int iteration);
+
+    /**
+     * Sets the state of an entity asynchronously, off the request thread.
+     *
+     * @param userId    The user ID making the request.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @param state     The new state of the entity.
+     * @return The future completed when the state is set.
+     */
+    CompletableFuture<Void> setStateAsync(String userId, String reference, String version, int iteration,
+                                          String state);
+
+    /**
+     * Revises an entity asynchronously, off the request thread.
+     *
+     * @param userId    The user ID making the request.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @return The future completed when the entity is revised.
+     */
+    CompletableFuture<Void> reviseAsync(String userId, String reference, String version, int iteration);
+
+    /**
+     * Exports the history (every version and iteration) of an entity as NDJSON.
+     *
+     * @param reference The reference of the entity.
+     * @return The response, whose body is streamed as it is read from the database, or
+     * 501 without database.
+     */
+    ResponseEntity<StreamingResponseBody> export(String reference);
+
+    /**
+     * Runs a batch of operations on entities, in order, in chunks committed one by one.
+     *
+     * @param userId    The user ID making the request.
+     * @param mode      What to do when an operation fails.
+     * @param chunkSize The number of operations committed together, a default if null.
+     * @param body      The operations, one flat JSON object per line, with the parameters
+     *                  of the single operations and the name of the operation
+     *                  ({@code {"operation":"reserve","reference":"R","version":"A","iteration":1}}).
+     * @return The outcome of each operation as NDJSON, in the order of the operations.
+     */
+    ResponseEntity<String> batch(String userId, BatchFailureMode mode, Integer chunkSize, String body);
 }
\ No newline at end of file
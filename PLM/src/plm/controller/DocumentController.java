@@ -2,7 +2,12 @@ package plm.controller;
 
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import plm.model.Document;
 import plm.services.DocumentService;
+import plm.metrics.MetricsRegistry;
+import plm.services.MeteredService;
+import plm.services.RetryPolicy;
+import plm.services.RetryingService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -14,12 +19,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class DocumentController extends AbstractController {
 
     /**
-     * Sets the DocumentService for this controller.
+     * Sets the DocumentService for this controller, retrying its operations
+     * on optimistic locking conflicts and measuring them.
      *
      * @param documentService The DocumentService to set.
+     * @param retryPolicy     The retry policy of the operations.
+     * @param metricsRegistry The registry of the metrics of the operations.
      */
     @Autowired
-    public void setService(DocumentService documentService) {
-        this.service = documentService;
+    public void setService(DocumentService documentService, RetryPolicy retryPolicy, MetricsRegistry metricsRegistry) {
+        this.service = new MeteredService(new RetryingService(documentService, retryPolicy), metricsRegistry, Document.class);
+        this.transactionalService = new MeteredService(documentService, metricsRegistry, Document.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Class<Document> getEntityClass() {
+        return Document.class;
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package plm.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import plm.dao.EntityCache;
+import plm.dao.ReferenceCache;
+import plm.metrics.MetricsRegistry;
+import plm.model.Document;
+import plm.model.Part;
+import plm.services.OperationExecutor;
+import plm.services.RetryPolicy;
+
+/**
+ * Controller exposing the metrics of the application in the Prometheus text format:
+ * the latencies of the services, DAOs and cascades recorded in the {@link MetricsRegistry},
+ * and the statistics already kept by the caches, the retry policy and the pools of the
+ * asynchronous operations, registered as gauges.
+ */
+@RestController
+public class MetricsController {
+
+    private static final MediaType PROMETHEUS_TEXT = MediaType.parseMediaType("text/plain; version=0.0.4");
+
+    // Entities and operations with an asynchronous variant, see AbstractController
+    private static final Class<?>[] ASYNC_TYPES = {Part.class, Document.class};
+
+    private static final String[] ASYNC_OPERATIONS = {"reserve", "update", "free", "setState", "revise"};
+
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * Sets the registry of the metrics and registers the statistics of the components.
+     *
+     * @param metricsRegistry   The MetricsRegistry to expose.
+     * @param entityCache       The cache of the entities.
+     * @param retryPolicy       The retry policy of the conflicting operations.
+     * @param operationExecutor The executor of the asynchronous operations.
+     */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry, EntityCache entityCache,
+                                   RetryPolicy retryPolicy, OperationExecutor operationExecutor) {
+        this.metricsRegistry = metricsRegistry;
+        metricsRegistry.gauge("plm_entity_cache_hits_total", entityCache::getHits);
+        metricsRegistry.gauge("plm_entity_cache_misses_total", entityCache::getMisses);
+        metricsRegistry.gauge("plm_entity_cache_evictions_total", entityCache::getCurrentEvictions,
+                "region", "current");
+        metricsRegistry.gauge("plm_entity_cache_evictions_total", entityCache::getHistoricalEvictions,
+                "region", "historical");
+        metricsRegistry.gauge("plm_entity_cache_size", entityCache::getSize);
+        metricsRegistry.gauge("plm_retry_operations_total", retryPolicy::getOperations);
+        metricsRegistry.gauge("plm_retry_conflicts_total", retryPolicy::getConflicts);
+        metricsRegistry.gauge("plm_retry_retries_total", retryPolicy::getRetries);
+        metricsRegistry.gauge("plm_retry_exhausted_total", retryPolicy::getExhausted);
+        for (Class<?> type : ASYNC_TYPES) {
+            String name = type.getSimpleName();
+            for (String operation : ASYNC_OPERATIONS) {
+                metricsRegistry.gauge("plm_async_active", () -> operationExecutor.getActive(type, operation),
+                        "type", name, "operation", operation);
+                metricsRegistry.gauge("plm_async_queued", () -> operationExecutor.getQueued(type, operation),
+                        "type", name, "operation", operation);
+                metricsRegistry.gauge("plm_async_refused_total",
+                        () -> operationExecutor.getRefused(type, operation), "type", name, "operation", operation);
+            }
+        }
+    }
+
+    /**
+     * Registers the statistics of the cache of the references, missing when the embedded
+     * store replaces the database.
+     *
+     * @param metricsRegistry The MetricsRegistry to expose.
+     * @param referenceCache  The cache of the lifecycle templates and version schemas.
+     */
+    @Autowired(required = false)
+    public void setReferenceCache(MetricsRegistry metricsRegistry, ReferenceCache referenceCache) {
+        metricsRegistry.gauge("plm_reference_cache_hits_total", referenceCache::getHits);
+        metricsRegistry.gauge("plm_reference_cache_misses_total", referenceCache::getMisses);
+    }
+
+    /**
+     * Exports the metrics.
+     *
+     * @return The metrics, one sample per line.
+     */
+    @GetMapping(value = "/metrics")
+    public ResponseEntity<String> metrics() {
+        StringBuilder output = new StringBuilder(8192);
+        metricsRegistry.writeTo(output);
+        return ResponseEntity.ok()
+                .contentType(PROMETHEUS_TEXT)
+                .body(output.toString());
+    }
+}
@@ -2,7 +2,12 @@ package plm.controller;
 
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import plm.model.Part;
 import plm.services.PartService;
+import plm.metrics.MetricsRegistry;
+import plm.services.MeteredService;
+import plm.services.RetryPolicy;
+import plm.services.RetryingService;
 import org.springframework.beans.factory.annotation.Autowired;
 
 /**
@@ -14,12 +19,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 public class PartController extends AbstractController {
 
     /**
-     * Sets the PartService for this controller.
+     * Sets the PartService for this controller, retrying its operations
+     * on optimistic locking conflicts and measuring them.
      *
-     * @param partService The PartService to set.
+     * @param partService     The PartService to set.
+     * @param retryPolicy     The retry policy of the operations.
+     * @param metricsRegistry The registry of the metrics of the operations.
      */
     @Autowired
-    public void setService(PartService partService) {
-        this.service = partService;
+    public void setService(PartService partService, RetryPolicy retryPolicy, MetricsRegistry metricsRegistry) {
+        this.service = new MeteredService(new RetryingService(partService, retryPolicy), metricsRegistry, Part.class);
+        this.transactionalService = new MeteredService(partService, metricsRegistry, Part.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Class<Part> getEntityClass() {
+        return Part.class;
     }
 }
\ No newline at end of file
@@ -1,33 +1,184 @@
 package plm.dao;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.OptimisticLockException;
+
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StaleStateException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
+import plm.metrics.Histogram;
+import plm.metrics.MetricsRegistry;
+import plm.model.DeltaCodec;
+import plm.model.EntityHead;
+import plm.model.Part;
+import plm.model.VersionHead;
+
 /**
  * Abstract Data Access Object (DAO) class providing common CRUD operations.
+ *
+ * Single entity writes are not flushed explicitly: they are flushed together with
+ * the rest of the enclosing service transaction, either by a batched write
+ * ({@link #createAll(Collection)}, {@link #updateAll(Collection)}) or at commit.
+ *
+ * Gets go through the {@link EntityCache}, which writes invalidate.
+ *
+ * The latency of every call is recorded in the {@code plm_dao_seconds} histograms of the
+ * {@link MetricsRegistry}, by entity type and call, and the sizes of the batched writes in
+ * the {@code plm_dao_batch_size} histograms.
+ *
+ * Every write also advances the heads of the written references (see {@link EntityHeadDao})
+ * in the same transaction, so the latest iteration of a reference is a primary key lookup.
+ *
+ * Entities are versioned: writing a stale entity raises an {@link EntityConflictException}
+ * when it is flushed here, or an OptimisticLockingFailureException translated by Spring
+ * when it is flushed at commit.
+ *
+ * Iterations can optionally be stored as deltas (see {@link #setSnapshotInterval(int)}):
+ * every K iterations of a version are stored as a full row, the snapshot, and the others
+ * only hold the attributes which differ from the last snapshot. Gets rebuild the full
+ * entity, so callers do not see the difference. An entity stored as a delta is written
+ * through a copy of its row which is merged into the session: writing it twice in the
+ * same transaction is reported as a conflict, its lock version not being updated.
  */
 @Transactional
 public abstract class AbstractDao implements Dao {
 
+    /**
+     * Number of statements grouped into a single JDBC batch.
+     */
+    public static final int BATCH_SIZE = 50;
+
+    /**
+     * Default number of iterations between two full rows: every iteration is a full row.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1;
+
     @Autowired
     protected SessionFactory sessionFactory;
 
+    @Autowired
+    protected ReferenceCache referenceCache;
+
+    @Autowired
+    protected EntityHeadDao entityHeadDao;
+
+    @Autowired
+    protected EntityCache entityCache;
+
+    @Autowired
+    protected MetricsRegistry metricsRegistry;
+
+    // Metrics of the calls, registered on first use
+    private volatile DaoMetrics daoMetrics;
+
+    private volatile int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+
+    /**
+     * Gets the number of iterations of a version between two full rows.
+     *
+     * @return The snapshot interval, 1 if every iteration is stored as a full row.
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Sets the number of iterations of a version between two full rows. The iterations
+     * 1, 1 + K, 1 + 2K... of a version are then stored as full rows, and the iterations
+     * in between as deltas of the previous full row. Changing the interval only applies to
+     * the iterations created afterwards: existing rows are read as they were written.
+     *
+     * @param snapshotInterval The snapshot interval, 1 to store every iteration as a full row.
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+        this.snapshotInterval = snapshotInterval;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public abstract Object get(String reference, String version, int iteration);
 
+    /**
+     * {@inheritDoc}
+     *
+     * The latest iteration is found through the head of the reference.
+     */
+    @Override
+    public Object getLatest(String reference) {
+        long start = System.nanoTime();
+        try {
+            EntityHead head = entityHeadDao.getHead(getEntityClass(), reference);
+            return head == null ? null : get(reference, head.getLatestVersion(), head.getLatestIteration());
+        } finally {
+            metrics().getLatest.recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The latest iterations are found through the heads of the references, loaded at once.
+     */
+    @Override
+    public Map<String, ?> getLatest(Collection<String> references) {
+        return getCachedLatest(getEntityClass().asSubclass(Part.class), references);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The latest iteration is found through the head of the version.
+     */
+    @Override
+    public Object getLatest(String reference, String version) {
+        long start = System.nanoTime();
+        try {
+            VersionHead head = entityHeadDao.getHead(getEntityClass(), reference, version);
+            return head == null ? null : get(reference, version, head.getLatestIteration());
+        } finally {
+            metrics().getLatest.recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLatestVersion(String reference) {
+        long start = System.nanoTime();
+        try {
+            EntityHead head = entityHeadDao.getHead(getEntityClass(), reference);
+            return head == null ? null : head.getLatestVersion();
+        } finally {
+            metrics().getLatestVersion.recordSince(start);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void create(Object entity) {
-        Session currentSession = sessionFactory.getCurrentSession();
-        currentSession.save(entity);
-        currentSession.flush();
+        long start = System.nanoTime();
+        try {
+            sessionFactory.getCurrentSession().save(newRow((Part) entity));
+            invalidate(entity, true);
+            entityHeadDao.advance(Collections.singletonList(entity));
+        } finally {
+            metrics().create.recordSince(start);
+        }
     }
 
     /**
@@ -35,8 +186,285 @@ public abstract class AbstractDao implements Dao {
      */
     @Override
     public void update(Object entity) {
+        long start = System.nanoTime();
+        try {
+            write(sessionFactory.getCurrentSession(), (Part) entity);
+            invalidate(entity, false);
+            entityHeadDao.advance(Collections.singletonList(entity));
+        } finally {
+            metrics().update.recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createAll(Collection<?> entities) {
+        long start = System.nanoTime();
+        metrics().createAllSize.record(entities.size());
+        try {
+            Session currentSession = batchSession();
+            for (Object entity : entities) {
+                currentSession.save(newRow((Part) entity));
+                invalidate(entity, true);
+            }
+            entityHeadDao.advance(entities);
+            flush(currentSession);
+        } finally {
+            metrics().createAll.recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateAll(Collection<?> entities) {
+        long start = System.nanoTime();
+        metrics().updateAllSize.record(entities.size());
+        try {
+            Session currentSession = batchSession();
+            for (Object entity : entities) {
+                write(currentSession, (Part) entity);
+                invalidate(entity, false);
+            }
+            entityHeadDao.advance(entities);
+            flush(currentSession);
+        } finally {
+            metrics().updateAll.recordSince(start);
+        }
+    }
+
+    /**
+     * Gets the class of the entities managed by this DAO.
+     *
+     * @return The class of the entities.
+     */
+    protected abstract Class<?> getEntityClass();
+
+    /**
+     * Gets the primary key of an entity managed by this DAO.
+     *
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @return The primary key.
+     */
+    protected abstract Part.PartPK keyOf(String reference, String version, int iteration);
+
+    /**
+     * Gets an entity through the {@link EntityCache}, loading it from the current
+     * session on a miss.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @param <E>       The type of the entity.
+     * @return The entity, null if it does not exist.
+     */
+    protected <E extends Part> E getCached(Class<E> type, String reference, String version, int iteration) {
+        long start = System.nanoTime();
+        try {
+            Part.PartPK key = keyOf(reference, version, iteration);
+            return entityCache.get(type, key,
+                    () -> decode(type,
+                            referenceCache.resolve(sessionFactory.getCurrentSession().get(type, key))),
+                    this::isHistorical);
+        } finally {
+            metrics().get.recordSince(start);
+        }
+    }
+
+    /**
+     * Gets the latest iterations of references, finding them through their heads loaded
+     * at once, then through the {@link EntityCache}.
+     *
+     * @param type       The type of the entities.
+     * @param references The references of the entities.
+     * @param <E>        The type of the entities.
+     * @return The latest iterations by reference, without the references which do not exist.
+     */
+    protected <E extends Part> Map<String, E> getCachedLatest(Class<E> type, Collection<String> references) {
+        long start = System.nanoTime();
+        try {
+            Map<String, E> latest = new HashMap<>();
+            for (EntityHead head : entityHeadDao.getHeads(getEntityClass(), references).values()) {
+                E entity = getCached(type, head.getReference(), head.getLatestVersion(), head.getLatestIteration());
+                if (entity != null) {
+                    latest.put(head.getReference(), entity);
+                }
+            }
+            return latest;
+        } finally {
+            metrics().getLatest.recordSince(start);
+        }
+    }
+
+    /**
+     * Rebuilds an entity from its row: the row itself if it is a full row, else a copy
+     * with the attributes of its base iteration, read through the {@link EntityCache}.
+     * Rows loaded by other queries than the gets (e.g. the documents linked to parts,
+     * loaded in bulk) must be rebuilt here before they leave their DAO.
+     *
+     * @param type The type of the entity.
+     * @param row  The row, null if the entity does not exist.
+     * @param <E>  The type of the entity.
+     * @return The entity, null if it does not exist.
+     */
+    <E extends Part> E decode(Class<E> type, E row) {
+        if (row == null || row.getBaseIteration() == 0) {
+            return row;
+        }
+        E base = getCached(type, row.getReference(), row.getVersion(), row.getBaseIteration());
+        if (base == null) {
+            throw new IllegalStateException("Missing base iteration " + row.getBaseIteration() + " of "
+                    + type.getSimpleName() + " " + row.getReference() + " " + row.getVersion());
+        }
+        return DeltaCodec.decode(row, base);
+    }
+
+    /**
+     * Gets the row to save for a new entity: the entity itself if it is a snapshot, else
+     * its delta from the last snapshot of its version.
+     *
+     * @param entity The new entity.
+     * @return The row to save.
+     */
+    private Object newRow(Part entity) {
+        int interval = snapshotInterval;
+        int base = DeltaCodec.baseOf(entity.getIteration(), interval);
+        if (interval == 1 || base == entity.getIteration()) {
+            return entity;
+        }
+        Part row = encode(entity, base);
+        return row != null ? row : entity;
+    }
+
+    /**
+     * Writes an existing entity. An entity stored as a delta is encoded again from its
+     * base, or stored as a full row if it can no longer be encoded.
+     *
+     * @param currentSession The current session.
+     * @param entity         The entity.
+     */
+    private void write(Session currentSession, Part entity) {
+        if (entity.getBaseIteration() == 0) {
+            currentSession.update(entity);
+            return;
+        }
+        Part row = encode(entity, entity.getBaseIteration());
+        currentSession.merge(row != null ? row : DeltaCodec.fullRow(entity));
+    }
+
+    /**
+     * Encodes an entity as a delta of a base iteration of its version.
+     *
+     * @param entity The entity.
+     * @param base   The base iteration.
+     * @return The row to write, null if the entity must be stored as a full row.
+     */
+    private Part encode(Part entity, int base) {
+        Part baseEntity = getCached(getEntityClass().asSubclass(Part.class),
+                entity.getReference(), entity.getVersion(), base);
+        return baseEntity == null ? null : DeltaCodec.encode(entity, baseEntity);
+    }
+
+    /**
+     * Gets the metrics of the calls of this DAO, registering them on first use (in a
+     * registry of their own if none was injected, e.g. in benchmarks).
+     *
+     * @return The metrics.
+     */
+    private DaoMetrics metrics() {
+        DaoMetrics result = daoMetrics;
+        if (result == null) {
+            result = new DaoMetrics(metricsRegistry != null ? metricsRegistry : new MetricsRegistry(),
+                    getEntityClass().getSimpleName());
+            daoMetrics = result;
+        }
+        return result;
+    }
+
+    /**
+     * Checks if an entity is a historical iteration, i.e. a newer iteration of its
+     * version exists.
+     *
+     * @param entity The entity.
+     * @return true if the entity is a historical iteration.
+     */
+    private boolean isHistorical(Part entity) {
+        VersionHead head = entityHeadDao.getHead(getEntityClass(), entity.getReference(), entity.getVersion());
+        return head != null && entity.getIteration() < head.getLatestIteration();
+    }
+
+    /**
+     * Invalidates a written entity in the {@link EntityCache}. Creating an iteration also
+     * invalidates the previous one, which becomes historical.
+     *
+     * @param entity  The written entity.
+     * @param created true if the entity was created.
+     */
+    private void invalidate(Object entity, boolean created) {
+        Part part = (Part) entity;
+        entityCache.invalidate(getEntityClass(), keyOf(part.getReference(), part.getVersion(),
+                part.getIteration()));
+        if (created && part.getIteration() > 1) {
+            entityCache.invalidate(getEntityClass(), keyOf(part.getReference(), part.getVersion(),
+                    part.getIteration() - 1));
+        }
+    }
+
+    /**
+     * Flushes a session, reporting stale entities as conflicts.
+     *
+     * @param currentSession The session to flush.
+     */
+    private void flush(Session currentSession) {
+        try {
+            currentSession.flush();
+        } catch (OptimisticLockException | StaleStateException e) {
+            throw new EntityConflictException(getEntityClass(), e);
+        }
+    }
+
+    /**
+     * Gets the current session with JDBC batching enabled.
+     *
+     * @return The current session.
+     */
+    private Session batchSession() {
         Session currentSession = sessionFactory.getCurrentSession();
-        currentSession.update(entity);
-        currentSession.flush();
+        currentSession.setJdbcBatchSize(BATCH_SIZE);
+        return currentSession;
+    }
+
+    /**
+     * Histograms of the calls of a DAO.
+     */
+    private static final class DaoMetrics {
+        final Histogram get;
+        final Histogram getLatest;
+        final Histogram getLatestVersion;
+        final Histogram create;
+        final Histogram update;
+        final Histogram createAll;
+        final Histogram updateAll;
+        final Histogram createAllSize;
+        final Histogram updateAllSize;
+
+        DaoMetrics(MetricsRegistry registry, String type) {
+            get = registry.histogram("plm_dao_seconds", "type", type, "call", "get");
+            getLatest = registry.histogram("plm_dao_seconds", "type", type, "call", "getLatest");
+            getLatestVersion = registry.histogram("plm_dao_seconds", "type", type,
+                    "call", "getLatestVersion");
+            create = registry.histogram("plm_dao_seconds", "type", type, "call", "create");
+            update = registry.histogram("plm_dao_seconds", "type", type, "call", "update");
+            createAll = registry.histogram("plm_dao_seconds", "type", type, "call", "createAll");
+            updateAll = registry.histogram("plm_dao_seconds", "type", type, "call", "updateAll");
+            createAllSize = registry.histogram("plm_dao_batch_size", "type", type, "call", "createAll");
+            updateAllSize = registry.histogram("plm_dao_batch_size", "type", type, "call", "updateAll");
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package plm.dao;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Interface defining the operations for managing entities in the PLM system.
  */
@@ -15,6 +18,42 @@ public interface Dao {
      */
     Object get(String reference, String version, int iteration);
 
+    /**
+     * Retrieves the latest iteration of the latest version of a reference,
+     * versions being ordered by their ordinal in the version schema.
+     *
+     * @param reference The reference of the entity.
+     * @return The entity, null if the reference does not exist.
+     */
+    Object getLatest(String reference);
+
+    /**
+     * Retrieves the latest iterations of the latest versions of references at once,
+     * e.g. the parts of a level of a structure.
+     *
+     * @param references The references of the entities.
+     * @return The entities by reference, without the references which do not exist.
+     */
+    Map<String, ?> getLatest(Collection<String> references);
+
+    /**
+     * Retrieves the latest iteration of a version of a reference.
+     *
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @return The entity, null if the version does not exist.
+     */
+    Object getLatest(String reference, String version);
+
+    /**
+     * Gets the label of the latest version of a reference, ordering versions
+     * by their ordinal in the version schema.
+     *
+     * @param reference The reference of the entity.
+     * @return The label of the latest version, null if the reference does not exist.
+     */
+    String getLatestVersion(String reference);
+
     /**
      * Creates a new entity in the database.
      *
@@ -28,4 +67,21 @@ public interface Dao {
      * @param entity The entity to update.
      */
     void update(Object entity);
+
+    /**
+     * Creates all the given entities in the database as a single batch.
+     * Inserts are grouped into JDBC batches and flushed once, so a cascade
+     * costs a handful of round trips instead of one per entity.
+     *
+     * @param entities The entities to create.
+     */
+    void createAll(Collection<?> entities);
+
+    /**
+     * Updates all the given entities in the database as a single batch.
+     * Updates are grouped into JDBC batches and flushed once.
+     *
+     * @param entities The entities to update.
+     */
+    void updateAll(Collection<?> entities);
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package plm.dao;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import plm.dao.embedded.EmbeddedStore;
 import plm.model.Document;
 
 /**
@@ -8,6 +10,7 @@ import plm.model.Document;
  * in the Product Lifecycle Management (PLM) system.
  */
 @Repository
+@Profile("!" + EmbeddedStore.PROFILE)
 public class DocumentDao extends AbstractDao {
 
 	/**
@@ -15,7 +18,22 @@ public class DocumentDao extends AbstractDao {
 	 */
 	@Override
 	public Document get(String reference, String version, int iteration) {
-		// Implementation and returned value are not relevant for this exercise
-		return null;
+		return getCached(Document.class, reference, version, iteration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Document.DocumentPK keyOf(String reference, String version, int iteration) {
+		return new Document.DocumentPK(reference, version, iteration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Class<Document> getEntityClass() {
+		return Document.class;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package plm.dao;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * Interface defining the operations for managing the links between Part and Document
+ * entities in the PLM system.
+ */
+public interface DocumentLinkDao {
+
+    /**
+     * Gets the documents linked to each of the given parts.
+     *
+     * @param parts The keys of the parts.
+     * @return The linked documents of each part, with an empty set for the parts
+     * without any document.
+     */
+    Map<Part.PartPK, Set<Document>> getLinkedDocuments(Collection<? extends Part.PartPK> parts);
+
+    /**
+     * Links a document to a part.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    void link(String partReference, String documentReference);
+
+    /**
+     * Unlinks a document from a part.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    void unlink(String partReference, String documentReference);
+}
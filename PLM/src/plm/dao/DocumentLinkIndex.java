@@ -0,0 +1,106 @@
+package plm.dao;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory adjacency index from part references to the references of their linked
+ * documents.
+ *
+ * Entries are loaded on first use by the {@link DocumentLinkDao} (parts without any
+ * document are indexed too, with an empty set) and are kept up to date when links are
+ * added or removed, so repeated cascades resolve their documents without querying
+ * the links again. Indexed sets are immutable and replaced as a whole.
+ *
+ * Every change of the links advances the generation of the index. Loaded entries are
+ * only indexed if no change happened since their load began, and never replace an
+ * existing entry: a load reading the links before a change was committed cannot
+ * overwrite the entry the change has just updated.
+ */
+@Component
+public class DocumentLinkIndex {
+
+    private final ConcurrentMap<String, Set<String>> documentReferences = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Gets the references of the documents linked to a part.
+     *
+     * @param partReference The reference of the part.
+     * @return The references of the linked documents, null if the part is not indexed yet.
+     */
+    public Set<String> get(String partReference) {
+        return documentReferences.get(partReference);
+    }
+
+    /**
+     * Gets the generation of the index, to be read before loading links from the database.
+     *
+     * @return The generation, advanced by every change of the links.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Indexes the references of the documents linked to a part, loaded from the database,
+     * unless the part is already indexed or a link changed since the load began.
+     *
+     * @param partReference      The reference of the part.
+     * @param documentReferences The references of the linked documents.
+     * @param loadGeneration     The generation read before the load.
+     * @return true if the references were indexed.
+     */
+    public boolean putIfUnchanged(String partReference, Set<String> documentReferences, long loadGeneration) {
+        Set<String> loaded = Collections.unmodifiableSet(new HashSet<>(documentReferences));
+        // changes advance the generation before updating the entry, which waits for this one
+        return this.documentReferences.compute(partReference, (reference, indexed) ->
+                indexed != null || generation.get() != loadGeneration ? indexed : loaded) == loaded;
+    }
+
+    /**
+     * Adds a link to an indexed part. Parts which are not indexed yet are left alone,
+     * they will be loaded with the new link.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    public void add(String partReference, String documentReference) {
+        generation.incrementAndGet();
+        documentReferences.computeIfPresent(partReference, (reference, references) -> {
+            Set<String> updated = new HashSet<>(references);
+            updated.add(documentReference);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+
+    /**
+     * Removes a link from an indexed part.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    public void remove(String partReference, String documentReference) {
+        generation.incrementAndGet();
+        documentReferences.computeIfPresent(partReference, (reference, references) -> {
+            Set<String> updated = new HashSet<>(references);
+            updated.remove(documentReference);
+            return Collections.unmodifiableSet(updated);
+        });
+    }
+
+    /**
+     * Removes all the entries of the index, which is then reloaded on demand.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        documentReferences.clear();
+    }
+}
@@ -0,0 +1,290 @@
+package plm.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import plm.cache.EntityCachePolicy;
+import plm.cache.LruCache;
+import plm.model.Part;
+
+/**
+ * Read-through cache of the Part and Document entities, in front of the gets of the DAOs.
+ *
+ * Each type of entity has its own {@link EntityCachePolicy} and two regions, one for the
+ * current iterations and one for the historical (immutable) ones. The cache holds
+ * detached snapshots which are never handed out: a hit returns a copy, so callers may
+ * modify and write it like an entity they loaded. Within a transaction, every get of a
+ * key returns the same instance, as a session would.
+ *
+ * Writers invalidate the written keys, once when writing and again when the transaction
+ * completes, and an entity whose load overlapped an invalidation is not cached, so an
+ * entity read from the database before a commit is not kept.
+ * Hits, misses and evictions are exported as JMX attributes.
+ */
+@Component
+@ManagedResource(objectName = "plm:name=EntityCache")
+public class EntityCache {
+
+    private final Map<Class<?>, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the policy of a type of entity.
+     *
+     * @param type The type of the entity.
+     * @return The policy, the default one if the type was not configured.
+     */
+    public EntityCachePolicy getPolicy(Class<?> type) {
+        return region(type).policy;
+    }
+
+    /**
+     * Configures the cache of a type of entity, dropping its cached entities.
+     *
+     * @param type   The type of the entity.
+     * @param policy The policy of the type.
+     */
+    public void setPolicy(Class<?> type, EntityCachePolicy policy) {
+        regions.put(type, new Region(policy));
+    }
+
+    /**
+     * Gets an entity, loading it on a miss.
+     *
+     * @param type       The type of the entity.
+     * @param key        The primary key of the entity.
+     * @param loader     Loads the entity from the database, returning null if it does not exist.
+     * @param historical Checks if a loaded entity is a historical iteration.
+     * @param <E>        The type of the entity.
+     * @return The entity, null if it does not exist.
+     */
+    public <E extends Part> E get(Class<E> type, Part.PartPK key, Supplier<E> loader,
+                                  Predicate<? super E> historical) {
+        Map<Part.PartPK, Part> transactionEntities = transactionEntities();
+        if (transactionEntities != null && transactionEntities.containsKey(key)) {
+            return type.cast(transactionEntities.get(key));
+        }
+
+        Region region = region(type);
+        Part snapshot = region.historical.getIfPresent(key);
+        if (snapshot == null) {
+            snapshot = region.current.getIfPresent(key);
+        }
+        E entity;
+        if (snapshot != null) {
+            entity = type.cast(snapshot.copy());
+        } else {
+            long epoch = region.epoch;
+            entity = loader.get();
+            if (entity != null) {
+                if (historical.test(entity)) {
+                    region.put(region.historical, key.intern(), entity.copy(), epoch);
+                } else if (region.policy.isCacheCurrent()) {
+                    region.put(region.current, key.intern(), entity.copy(), epoch);
+                }
+            }
+        }
+        if (transactionEntities != null) {
+            transactionEntities.put(key, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Invalidates a written entity, now and when the current transaction completes.
+     *
+     * @param type The type of the entity.
+     * @param key  The primary key of the entity.
+     */
+    public void invalidate(Class<?> type, Part.PartPK key) {
+        Region region = region(type);
+        region.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    region.invalidate(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes all the cached entities.
+     */
+    @ManagedOperation
+    public void invalidateAll() {
+        for (Region region : regions.values()) {
+            region.invalidateAll();
+        }
+    }
+
+    /**
+     * Gets the number of gets served from the cache.
+     *
+     * @return The number of hits.
+     */
+    @ManagedAttribute
+    public long getHits() {
+        long hits = 0;
+        for (Region region : regions.values()) {
+            // a miss of the historical region is looked up in the current one
+            hits += region.historical.getHits() + region.current.getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * Gets the number of gets which went to the database.
+     *
+     * @return The number of misses.
+     */
+    @ManagedAttribute
+    public long getMisses() {
+        long misses = 0;
+        for (Region region : regions.values()) {
+            misses += region.current.getMisses();
+        }
+        return misses;
+    }
+
+    /**
+     * Gets the share of the gets served from the cache.
+     *
+     * @return The hit rate, between 0 and 1.
+     */
+    @ManagedAttribute
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Gets the number of current iterations evicted to respect the capacities.
+     *
+     * @return The number of evictions.
+     */
+    @ManagedAttribute
+    public long getCurrentEvictions() {
+        long evictions = 0;
+        for (Region region : regions.values()) {
+            evictions += region.current.getEvictions();
+        }
+        return evictions;
+    }
+
+    /**
+     * Gets the number of historical iterations evicted to respect the capacities.
+     *
+     * @return The number of evictions.
+     */
+    @ManagedAttribute
+    public long getHistoricalEvictions() {
+        long evictions = 0;
+        for (Region region : regions.values()) {
+            evictions += region.historical.getEvictions();
+        }
+        return evictions;
+    }
+
+    /**
+     * Gets the number of cached entities.
+     *
+     * @return The number of cached current and historical iterations.
+     */
+    @ManagedAttribute
+    public int getSize() {
+        int size = 0;
+        for (Region region : regions.values()) {
+            size += region.current.size() + region.historical.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the region of a type of entity, created with the default policy on first use.
+     *
+     * @param type The type of the entity.
+     * @return The region.
+     */
+    private Region region(Class<?> type) {
+        return regions.computeIfAbsent(type, key -> new Region(new EntityCachePolicy()));
+    }
+
+    /**
+     * Gets the entities already got in the current transaction.
+     *
+     * @return The entities by primary key, null outside of a transaction.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Part.PartPK, Part> transactionEntities() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<Part.PartPK, Part> entities =
+                (Map<Part.PartPK, Part>) TransactionSynchronizationManager.getResource(this);
+        if (entities == null) {
+            Map<Part.PartPK, Part> newEntities = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, newEntities);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(EntityCache.this);
+                }
+            });
+            entities = newEntities;
+        }
+        return entities;
+    }
+
+    /**
+     * Cached entities of one type.
+     */
+    private static class Region {
+        final EntityCachePolicy policy;
+        final LruCache<Part.PartPK, Part> current;
+        final LruCache<Part.PartPK, Part> historical;
+
+        Region(EntityCachePolicy policy) {
+            this.policy = policy;
+            this.current = new LruCache<>(policy.getCurrentCapacity());
+            this.historical = new LruCache<>(policy.getHistoricalCapacity());
+        }
+
+        // incremented by every invalidation
+        volatile long epoch;
+
+        /**
+         * Caches a loaded entity, unless an invalidation happened since the load started:
+         * the entity may have been read before the commit of the invalidating transaction.
+         */
+        synchronized void put(LruCache<Part.PartPK, Part> cache, Part.PartPK key, Part snapshot,
+                              long loadEpoch) {
+            if (epoch == loadEpoch) {
+                cache.put(key, snapshot);
+            }
+        }
+
+        synchronized void invalidateAll() {
+            epoch++;
+            current.invalidateAll();
+            historical.invalidateAll();
+        }
+
+        synchronized void invalidate(Part.PartPK key) {
+            epoch++;
+            current.invalidate(key);
+            historical.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package plm.dao;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Thrown when an entity cannot be written because it was modified concurrently
+ * since it was read (its optimistic lock version is stale).
+ *
+ * The operation may be retried: it must then read and validate the entity again.
+ */
+public class EntityConflictException extends OptimisticLockingFailureException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> entityType;
+
+    /**
+     * Constructor to initialize the conflicting entity type.
+     *
+     * @param entityType The type of the entity in conflict.
+     * @param cause      The exception raised by the persistence layer.
+     */
+    public EntityConflictException(Class<?> entityType, Throwable cause) {
+        super(entityType.getSimpleName() + " was modified concurrently", cause);
+        this.entityType = entityType;
+    }
+
+    /**
+     * Gets the type of the entity in conflict.
+     *
+     * @return The type of the entity.
+     */
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+}
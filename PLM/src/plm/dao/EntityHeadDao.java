@@ -0,0 +1,268 @@
+package plm.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import plm.dao.embedded.EmbeddedStore;
+import plm.model.EntityHead;
+import plm.model.Part;
+import plm.model.VersionHead;
+
+/**
+ * Data Access Object (DAO) class for managing the head records of the references
+ * ({@link EntityHead}) and of their versions ({@link VersionHead}).
+ *
+ * Heads are advanced in the same transaction (and session) as the writes of the
+ * entities, loading the heads of all the written references in one query per table.
+ * They are versioned, so concurrent writes of the same reference conflict.
+ */
+@Repository
+@Profile("!" + EmbeddedStore.PROFILE)
+@Transactional
+public class EntityHeadDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(EntityHeadDao.class);
+
+    /**
+     * Number of entities read between two commits when rebuilding the heads.
+     */
+    public static final int REBUILD_CHUNK_SIZE = 1000;
+
+    @Autowired
+    protected SessionFactory sessionFactory;
+
+    /**
+     * Gets the head of a reference.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @return The head, null if the reference does not exist.
+     */
+    public EntityHead getHead(Class<?> type, String reference) {
+        return sessionFactory.getCurrentSession().get(EntityHead.class,
+                new EntityHead.EntityHeadPK(type.getSimpleName(), reference));
+    }
+
+    /**
+     * Gets the heads of references, in one query per chunk of the IN list (see
+     * {@link InLists}).
+     *
+     * @param type       The type of the entities.
+     * @param references The references of the entities.
+     * @return The heads by reference, without the references which do not exist.
+     */
+    public Map<String, EntityHead> getHeads(Class<?> type, Collection<String> references) {
+        Map<String, EntityHead> heads = new HashMap<>();
+        Session currentSession = sessionFactory.getCurrentSession();
+        for (List<String> chunk : InLists.chunks(references, InLists.limitOf(sessionFactory))) {
+            for (EntityHead head : currentSession.createQuery("select h from EntityHead h where" +
+                            " h.entityType = :type and h.reference in (:references)", EntityHead.class)
+                    .setParameter("type", type.getSimpleName())
+                    .setParameterList("references", chunk)
+                    .getResultList()) {
+                heads.put(head.getReference(), head);
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * Gets the head of a version of a reference.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @return The head, null if the version does not exist.
+     */
+    public VersionHead getHead(Class<?> type, String reference, String version) {
+        return sessionFactory.getCurrentSession().get(VersionHead.class,
+                new VersionHead.VersionHeadPK(type.getSimpleName(), reference, version));
+    }
+
+    /**
+     * Advances the heads of written entities in the current session.
+     *
+     * @param entities The created or updated entities.
+     */
+    public void advance(Collection<?> entities) {
+        Session currentSession = sessionFactory.getCurrentSession();
+        // loaded heads are managed: their changes are flushed with the entities
+        advance(currentSession, entities, currentSession::save, head -> {
+        });
+    }
+
+    /**
+     * Advances the heads of written entities in a stateless session, within its
+     * current transaction.
+     *
+     * @param session  The stateless session which wrote the entities.
+     * @param entities The created or updated entities.
+     */
+    public void advance(StatelessSession session, Collection<?> entities) {
+        advance(session, entities, session::insert, session::update);
+    }
+
+    /**
+     * Rebuilds the heads of all the entities, e.g. for a database written before heads
+     * existed, while no entity is written. Entities are read through a forward-only cursor
+     * and their heads written by a second session, in transactions of
+     * {@link #REBUILD_CHUNK_SIZE} entities.
+     *
+     * @return The number of entities read.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long rebuild() {
+        long count = 0;
+        try (StatelessSession reader = sessionFactory.openStatelessSession();
+             StatelessSession writer = sessionFactory.openStatelessSession()) {
+            Transaction transaction = writer.beginTransaction();
+            writer.createQuery("delete from VersionHead").executeUpdate();
+            writer.createQuery("delete from EntityHead").executeUpdate();
+            transaction.commit();
+
+            List<Object> chunk = new ArrayList<>(REBUILD_CHUNK_SIZE);
+            Transaction readTransaction = reader.beginTransaction();
+            try (ScrollableResults results = reader.createQuery("select e from Part e" +
+                            " order by e.reference", Part.class)
+                    .setFetchSize(REBUILD_CHUNK_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    chunk.add(results.get(0));
+                    if (chunk.size() == REBUILD_CHUNK_SIZE) {
+                        count += advanceChunk(writer, chunk);
+                    }
+                }
+                count += advanceChunk(writer, chunk);
+            } finally {
+                readTransaction.rollback();
+            }
+        }
+        logger.info("Rebuilt the heads of {} entities", count);
+        return count;
+    }
+
+    /**
+     * Advances the heads of a chunk of entities in its own transaction, then clears the chunk.
+     *
+     * @param session The stateless session writing the heads.
+     * @param chunk   The entities.
+     * @return The number of entities of the chunk.
+     */
+    private static int advanceChunk(StatelessSession session, List<Object> chunk) {
+        int size = chunk.size();
+        Transaction transaction = session.beginTransaction();
+        try {
+            advance(session, chunk, session::insert, session::update);
+            transaction.commit();
+        } catch (RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        }
+        chunk.clear();
+        return size;
+    }
+
+    /**
+     * Advances the heads of written entities.
+     *
+     * @param session  The session which wrote the entities.
+     * @param entities The created or updated entities.
+     * @param insert   Persists a new head.
+     * @param update   Persists a changed head.
+     */
+    private static void advance(SharedSessionContract session, Collection<?> entities,
+                                Consumer<Object> insert, Consumer<Object> update) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> references = new HashMap<>();
+        Set<String> versions = new HashSet<>();
+        for (Object entity : entities) {
+            Part part = (Part) entity;
+            references.computeIfAbsent(typeOf(part), type -> new HashSet<>()).add(part.getReference());
+            versions.add(part.getVersion());
+        }
+
+        Map<EntityHead.EntityHeadPK, EntityHead> heads = new HashMap<>();
+        Map<VersionHead.VersionHeadPK, VersionHead> versionHeads = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+            for (EntityHead head : session.createQuery("select h from EntityHead h where" +
+                            " h.entityType = :type and h.reference in (:references)", EntityHead.class)
+                    .setParameter("type", entry.getKey())
+                    .setParameterList("references", entry.getValue())
+                    .getResultList()) {
+                heads.put(new EntityHead.EntityHeadPK(head.getEntityType(), head.getReference()), head);
+            }
+            for (VersionHead head : session.createQuery("select h from VersionHead h where" +
+                            " h.entityType = :type and h.reference in (:references)" +
+                            " and h.version in (:versions)", VersionHead.class)
+                    .setParameter("type", entry.getKey())
+                    .setParameterList("references", entry.getValue())
+                    .setParameterList("versions", versions)
+                    .getResultList()) {
+                versionHeads.put(new VersionHead.VersionHeadPK(head.getEntityType(), head.getReference(),
+                        head.getVersion()), head);
+            }
+        }
+
+        // heads to write, each once even if several iterations of its reference were written
+        Set<Object> created = new LinkedHashSet<>();
+        Set<Object> changed = new LinkedHashSet<>();
+        for (Object entity : entities) {
+            Part part = (Part) entity;
+            String type = typeOf(part);
+            EntityHead head = heads.computeIfAbsent(new EntityHead.EntityHeadPK(type, part.getReference()),
+                    key -> {
+                        EntityHead newHead = new EntityHead(type, part.getReference());
+                        created.add(newHead);
+                        return newHead;
+                    });
+            if (head.advance(part) && !created.contains(head)) {
+                changed.add(head);
+            }
+            VersionHead versionHead = versionHeads.computeIfAbsent(
+                    new VersionHead.VersionHeadPK(type, part.getReference(), part.getVersion()), key -> {
+                        VersionHead newHead = new VersionHead(type, part.getReference(), part.getVersion());
+                        created.add(newHead);
+                        return newHead;
+                    });
+            if (versionHead.advance(part) && !created.contains(versionHead)) {
+                changed.add(versionHead);
+            }
+        }
+        created.forEach(insert);
+        changed.forEach(update);
+    }
+
+    /**
+     * Gets the type of an entity as stored in the heads.
+     *
+     * @param entity The entity.
+     * @return The simple name of the class of the entity.
+     */
+    private static String typeOf(Part entity) {
+        return entity.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,207 @@
+package plm.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import plm.dao.embedded.EmbeddedStore;
+import plm.model.Document;
+import plm.model.Part;
+import plm.model.PartDocumentLink;
+
+/**
+ * DocumentLinkDao keeping the links between Part and Document entities in the database.
+ *
+ * The linked documents of any number of parts are resolved in bulk: the references of
+ * the linked documents come from the {@link DocumentLinkIndex} (the missing ones are
+ * loaded in one query), then the documents are loaded in one query, whatever the versions
+ * and iterations of the parts. IN lists are split into chunks the dialect accepts
+ * (see {@link InLists}), at the cost of one query per chunk. Documents stored as deltas
+ * are rebuilt by the {@link DocumentDao}, as its gets do.
+ */
+@Repository
+@Profile("!" + EmbeddedStore.PROFILE)
+@Transactional
+public class HibernateDocumentLinkDao implements DocumentLinkDao {
+
+    @Autowired
+    protected SessionFactory sessionFactory;
+
+    @Autowired
+    protected ReferenceCache referenceCache;
+
+    @Autowired
+    protected DocumentLinkIndex documentLinkIndex;
+
+    @Autowired
+    protected DocumentDao documentDao;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Part.PartPK, Set<Document>> getLinkedDocuments(Collection<? extends Part.PartPK> parts) {
+        Map<Part.PartPK, Set<Document>> linkedDocuments = new LinkedHashMap<>();
+        if (parts.isEmpty()) {
+            return linkedDocuments;
+        }
+
+        // Keys of the linked documents, at the version and iteration of their parts
+        Map<String, Set<String>> documentReferences = getDocumentReferences(parts);
+        Set<Part.PartPK> keys = new LinkedHashSet<>();
+        for (Part.PartPK part : parts) {
+            for (String reference : documentReferences.get(part.getReference())) {
+                keys.add(new Part.PartPK(reference, part.getVersion(), part.getIteration()));
+            }
+        }
+
+        // Documents indexed by reference, version and iteration
+        Map<Part.PartPK, Document> documents = new HashMap<>();
+        Session currentSession = sessionFactory.getCurrentSession();
+        for (List<Part.PartPK> chunk : InLists.chunks(keys, InLists.limitOf(sessionFactory))) {
+            for (Document document : getDocuments(currentSession, chunk)) {
+                // rows stored as deltas are rebuilt, callers write them back
+                documents.put(new Part.PartPK(document.getReference(), document.getVersion(),
+                        document.getIteration()),
+                        documentDao.decode(Document.class, referenceCache.resolve(document)));
+            }
+        }
+
+        for (Part.PartPK part : parts) {
+            Set<Document> linked = new LinkedHashSet<>();
+            for (String reference : documentReferences.get(part.getReference())) {
+                Document document = documents.get(new Part.PartPK(reference, part.getVersion(),
+                        part.getIteration()));
+                if (document != null) {
+                    linked.add(document);
+                }
+            }
+            linkedDocuments.put(part, linked);
+        }
+        return linkedDocuments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void link(String partReference, String documentReference) {
+        sessionFactory.getCurrentSession().save(new PartDocumentLink(partReference, documentReference));
+        // the index never sees links which are rolled back
+        TransactionCallbacks.afterCommit(() -> documentLinkIndex.add(partReference, documentReference));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unlink(String partReference, String documentReference) {
+        sessionFactory.getCurrentSession()
+                .createQuery("delete from PartDocumentLink l where l.partReference = :partReference" +
+                        " and l.documentReference = :documentReference")
+                .setParameter("partReference", partReference)
+                .setParameter("documentReference", documentReference)
+                .executeUpdate();
+        TransactionCallbacks.afterCommit(() -> documentLinkIndex.remove(partReference, documentReference));
+    }
+
+    /**
+     * Loads documents in one query: the keys are grouped by version and iteration, and
+     * the groups are ORed together, each with the IN list of its references.
+     *
+     * @param currentSession The session.
+     * @param keys           The keys of the documents, at most an IN list of them.
+     * @return The documents found.
+     */
+    private static List<Document> getDocuments(Session currentSession, Collection<Part.PartPK> keys) {
+        Map<String, Map<Integer, List<String>>> groups = new LinkedHashMap<>();
+        for (Part.PartPK key : keys) {
+            groups.computeIfAbsent(key.getVersion(), version -> new LinkedHashMap<>())
+                    .computeIfAbsent(key.getIteration(), iteration -> new ArrayList<>())
+                    .add(key.getReference());
+        }
+
+        int count = 0;
+        for (Map<Integer, List<String>> iterations : groups.values()) {
+            count += iterations.size();
+        }
+        StringBuilder hql = new StringBuilder("select d from Document d where ");
+        for (int group = 0; group < count; group++) {
+            hql.append(group == 0 ? "" : " or ").append("(d.version = :version").append(group)
+                    .append(" and d.iteration = :iteration").append(group)
+                    .append(" and d.reference in (:references").append(group).append("))");
+        }
+        Query<Document> query = currentSession.createQuery(hql.toString(), Document.class);
+        int group = 0;
+        for (Map.Entry<String, Map<Integer, List<String>>> version : groups.entrySet()) {
+            for (Map.Entry<Integer, List<String>> iteration : version.getValue().entrySet()) {
+                query.setParameter("version" + group, version.getKey())
+                        .setParameter("iteration" + group, iteration.getKey())
+                        .setParameterList("references" + group, iteration.getValue());
+                group++;
+            }
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Gets the references of the documents linked to each of the given parts,
+     * loading the parts missing from the index in one query.
+     *
+     * @param parts The keys of the parts.
+     * @return The references of the linked documents, by part reference.
+     */
+    private Map<String, Set<String>> getDocumentReferences(Collection<? extends Part.PartPK> parts) {
+        Map<String, Set<String>> documentReferences = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (Part.PartPK part : parts) {
+            Set<String> indexed = documentLinkIndex.get(part.getReference());
+            if (indexed != null) {
+                documentReferences.put(part.getReference(), indexed);
+            } else {
+                missing.add(part.getReference());
+            }
+        }
+        if (missing.isEmpty()) {
+            return documentReferences;
+        }
+
+        // read before the links, so that a change committed meanwhile is not overwritten
+        long generation = documentLinkIndex.getGeneration();
+        Map<String, Set<String>> loaded = new HashMap<>();
+        for (String reference : missing) {
+            loaded.put(reference, new HashSet<>());
+        }
+        Session currentSession = sessionFactory.getCurrentSession();
+        for (List<String> chunk : InLists.chunks(missing, InLists.limitOf(sessionFactory))) {
+            List<PartDocumentLink> links = currentSession
+                    .createQuery("select l from PartDocumentLink l where l.partReference in (:references)",
+                            PartDocumentLink.class)
+                    .setParameterList("references", chunk)
+                    .getResultList();
+            for (PartDocumentLink link : links) {
+                loaded.get(link.getPartReference()).add(link.getDocumentReference());
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : loaded.entrySet()) {
+            documentLinkIndex.putIfUnchanged(entry.getKey(), entry.getValue(), generation);
+            documentReferences.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+        return documentReferences;
+    }
+}
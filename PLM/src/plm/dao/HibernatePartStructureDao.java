@@ -0,0 +1,83 @@
+package plm.dao;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import plm.dao.embedded.EmbeddedStore;
+import plm.model.PartStructureLink;
+
+/**
+ * PartStructureDao keeping the structure links between parent and child Part entities in
+ * the database.
+ *
+ * The children of any number of parents are resolved in one query, so that a structure
+ * is loaded with one query per level.
+ */
+@Repository
+@Profile("!" + EmbeddedStore.PROFILE)
+@Transactional
+public class HibernatePartStructureDao implements PartStructureDao {
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+        Map<String, Set<String>> childReferences = new LinkedHashMap<>();
+        for (String parentReference : parentReferences) {
+            childReferences.put(parentReference, new LinkedHashSet<>());
+        }
+        if (parentReferences.isEmpty()) {
+            return childReferences;
+        }
+
+        List<PartStructureLink> links = sessionFactory.getCurrentSession()
+                .createQuery("select l from PartStructureLink l where l.parentReference in (:references)" +
+                        " order by l.childReference", PartStructureLink.class)
+                .setParameterList("references", childReferences.keySet())
+                .getResultList();
+        for (PartStructureLink link : links) {
+            childReferences.get(link.getParentReference()).add(link.getChildReference());
+        }
+        for (Map.Entry<String, Set<String>> entry : childReferences.entrySet()) {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+        return childReferences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void link(String parentReference, String childReference) {
+        PartStructureDao.checkLink(parentReference, childReference);
+        sessionFactory.getCurrentSession().save(new PartStructureLink(parentReference, childReference));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unlink(String parentReference, String childReference) {
+        sessionFactory.getCurrentSession()
+                .createQuery("delete from PartStructureLink l where l.parentReference = :parentReference" +
+                        " and l.childReference = :childReference")
+                .setParameter("parentReference", parentReference)
+                .setParameter("childReference", childReference)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,281 @@
+package plm.dao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import plm.dao.embedded.EmbeddedStore;
+import plm.model.DeltaCodec;
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * Exports the whole history (every version and iteration) of an entity as NDJSON,
+ * one JSON object per line, with the columns read by the bulk importer.
+ *
+ * Rows are streamed from a forward-only cursor of a stateless session straight to the
+ * output, which is flushed every {@link #FLUSH_ROWS} rows (chunks of an HTTP response):
+ * no row is kept once written, so the memory used does not depend on the size of
+ * the history. The history of a part includes the history of its linked documents.
+ *
+ * Iterations stored as deltas (see {@link AbstractDao#setSnapshotInterval(int)}) are
+ * exported with all their attributes: the last full row read is kept to rebuild the
+ * deltas which follow it, other bases are read by primary key.
+ *
+ * The whole table of an entity type can be streamed the same way, e.g. to build the
+ * snapshots of the catalog (see {@link #scan(Class, Consumer)}).
+ */
+@Repository
+@Profile("!" + EmbeddedStore.PROFILE)
+public class HistoryExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoryExporter.class);
+
+    /**
+     * Number of rows fetched from the database at once by the cursor.
+     */
+    public static final int FETCH_SIZE = 500;
+
+    /**
+     * Number of rows written between two flushes of the output.
+     */
+    public static final int FLUSH_ROWS = 1000;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    /**
+     * Exports the history of an entity to a file.
+     *
+     * @param type      The type of the entity (Part or Document).
+     * @param reference The reference of the entity.
+     * @param file      The file to write.
+     * @return The number of exported rows.
+     * @throws IOException If the file cannot be written.
+     */
+    public long export(Class<? extends Part> type, String reference, Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            return export(type, reference, output);
+        }
+    }
+
+    /**
+     * Exports the history of an entity to a stream, which is left open.
+     *
+     * @param type      The type of the entity (Part or Document).
+     * @param reference The reference of the entity.
+     * @param output    The stream to write.
+     * @return The number of exported rows.
+     * @throws IOException If the stream cannot be written.
+     */
+    public long export(Class<? extends Part> type, String reference, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        long rows = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            // some drivers only stream the rows of a cursor inside a transaction
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableResults results = createQuery(session, type, reference)
+                    .setFetchSize(FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                Part snapshot = null;
+                while (results.next()) {
+                    Part row = type.cast(results.get(0));
+                    if (row.getBaseIteration() == 0) {
+                        snapshot = row;
+                    } else {
+                        row = decode(session, row, snapshot);
+                    }
+                    write(writer, row);
+                    if (++rows % FLUSH_ROWS == 0) {
+                        writer.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+            transaction.commit();
+        }
+        writer.flush();
+        logger.debug("Exported {} rows of the history of {} {}", rows, type.getSimpleName(), reference);
+        return rows;
+    }
+
+    /**
+     * Streams every row of an entity type, iterations stored as deltas being rebuilt,
+     * ordered by reference, version and iteration. Rows are detached: they are not kept
+     * once handed to the consumer.
+     *
+     * @param type     The type of the entity (Part or Document), subtypes excluded.
+     * @param consumer The consumer of the rows.
+     * @return The number of rows.
+     */
+    public long scan(Class<? extends Part> type, Consumer<? super Part> consumer) {
+        long rows = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            Transaction transaction = session.beginTransaction();
+            try (ScrollableResults results = session.createQuery("select e from Part e where type(e) = :type" +
+                    " order by e.reference, e.versionOrdinal, e.iteration", Part.class)
+                    .setParameter("type", type)
+                    .setFetchSize(FETCH_SIZE)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+                Part snapshot = null;
+                while (results.next()) {
+                    Part row = type.cast(results.get(0));
+                    if (row.getBaseIteration() == 0) {
+                        snapshot = row;
+                    } else {
+                        row = decode(session, row, snapshot);
+                    }
+                    consumer.accept(row);
+                    rows++;
+                }
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                throw e;
+            }
+            transaction.commit();
+        }
+        logger.debug("Scanned {} rows of {}", rows, type.getSimpleName());
+        return rows;
+    }
+
+    /**
+     * Rebuilds an iteration stored as a delta.
+     *
+     * @param session  The stateless session.
+     * @param row      The row of the iteration.
+     * @param snapshot The last full row read, null if none.
+     * @return The iteration with all its attributes.
+     */
+    private static Part decode(StatelessSession session, Part row, Part snapshot) {
+        Part base = snapshot;
+        if (base == null || base.getClass() != row.getClass() || base.getIteration() != row.getBaseIteration()
+                || !base.getReference().equals(row.getReference()) || !base.getVersion().equals(row.getVersion())) {
+            base = row.getClass().cast(session.get(row.getClass(), row instanceof Document
+                    ? new Document.DocumentPK(row.getReference(), row.getVersion(), row.getBaseIteration())
+                    : new Part.PartPK(row.getReference(), row.getVersion(), row.getBaseIteration())));
+        }
+        if (base == null) {
+            throw new IllegalStateException("Missing base iteration " + row.getBaseIteration() + " of "
+                    + row.getReference() + " " + row.getVersion());
+        }
+        return DeltaCodec.decode(row, base);
+    }
+
+    /**
+     * Creates the query of the history of an entity, ordered by reference, version and iteration.
+     *
+     * @param session   The stateless session.
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @return The query.
+     */
+    private static org.hibernate.query.Query<?> createQuery(StatelessSession session,
+                                                           Class<? extends Part> type, String reference) {
+        if (Document.class.isAssignableFrom(type)) {
+            return session.createQuery("select e from Document e where e.reference = :reference" +
+                    " order by e.versionOrdinal, e.iteration", Document.class)
+                    .setParameter("reference", reference);
+        }
+        return session.createQuery("select e from Part e where (type(e) = :type and e.reference = :reference)" +
+                " or (type(e) = :documentType and e.reference in (select l.documentReference" +
+                " from PartDocumentLink l where l.partReference = :reference))" +
+                " order by e.reference, e.versionOrdinal, e.iteration", Part.class)
+                .setParameter("type", type)
+                .setParameter("documentType", Document.class)
+                .setParameter("reference", reference);
+    }
+
+    /**
+     * Writes an entity as one NDJSON line.
+     *
+     * @param writer The writer.
+     * @param entity The entity.
+     * @throws IOException If the writer fails.
+     */
+    private static void write(Writer writer, Part entity) throws IOException {
+        writer.write("{\"type\":");
+        writeString(writer, entity instanceof Document ? "Document" : "Part");
+        writeField(writer, "reference", entity.getReference());
+        writeField(writer, "version", entity.getVersion());
+        writer.write(",\"iteration\":");
+        writer.write(Integer.toString(entity.getIteration()));
+        writeField(writer, "lifeCycleState", entity.getLifeCycleState());
+        if (entity.getLifeCycleTemplate() != null) {
+            writer.write(",\"lifeCycleTemplate\":");
+            writer.write(Long.toString(ReferenceCache.idOf(entity.getLifeCycleTemplate())));
+        }
+        if (entity.getVersionSchema() != null) {
+            writer.write(",\"versionSchema\":");
+            writer.write(Long.toString(ReferenceCache.idOf(entity.getVersionSchema())));
+        }
+        writer.write(",\"reserved\":");
+        writer.write(Boolean.toString(entity.isReserved()));
+        writeField(writer, "reservedBy", entity.getReservedBy());
+        writeField(writer, "partAttribute1", entity.getPartAttribute1());
+        writeField(writer, "partAttribute2", entity.getPartAttribute2());
+        if (entity instanceof Document) {
+            Document document = (Document) entity;
+            writeField(writer, "documentAttribute1", document.getDocumentAttribute1());
+            writeField(writer, "documentAttribute2", document.getDocumentAttribute2());
+        }
+        writer.write("}\n");
+    }
+
+    private static void writeField(Writer writer, String name, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writer.write(",\"");
+        writer.write(name);
+        writer.write("\":");
+        writeString(writer, value);
+    }
+
+    /**
+     * Writes a JSON string, escaping quotes, backslashes and control characters.
+     *
+     * @param writer The writer.
+     * @param value  The string.
+     * @throws IOException If the writer fails.
+     */
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c == '\n') {
+                writer.write("\\n");
+            } else if (c == '\r') {
+                writer.write("\\r");
+            } else if (c == '\t') {
+                writer.write("\\t");
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+}
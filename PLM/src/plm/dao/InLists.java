@@ -0,0 +1,74 @@
+package plm.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+/**
+ * Helper splitting the values bound to an IN list into chunks the database accepts.
+ *
+ * The size of the chunks is the limit of the dialect on the number of values in an IN
+ * expression (e.g. 1000 for Oracle), or {@link #DEFAULT_LIMIT} if the dialect has none,
+ * to keep the statements and their plans of a bounded size.
+ */
+final class InLists {
+
+    /**
+     * Number of values in an IN list when the dialect has no limit.
+     */
+    static final int DEFAULT_LIMIT = 1000;
+
+    private InLists() {
+    }
+
+    /**
+     * Gets the maximum number of values in an IN list.
+     *
+     * @param sessionFactory The session factory, whose dialect sets the limit.
+     * @return The maximum number of values, {@link #DEFAULT_LIMIT} if the dialect has no
+     * lower limit or is not known.
+     */
+    static int limitOf(SessionFactory sessionFactory) {
+        if (sessionFactory instanceof SessionFactoryImplementor) {
+            int limit = ((SessionFactoryImplementor) sessionFactory).getJdbcServices().getDialect()
+                    .getInExpressionCountLimit();
+            if (limit > 0) {
+                return Math.min(limit, DEFAULT_LIMIT);
+            }
+        }
+        return DEFAULT_LIMIT;
+    }
+
+    /**
+     * Splits values into chunks of at most the given size.
+     *
+     * @param values The values.
+     * @param limit  The maximum number of values in a chunk.
+     * @param <T>    The type of the values.
+     * @return The chunks, in the iteration order of the values, none if there is no value.
+     */
+    static <T> List<List<T>> chunks(Collection<T> values, int limit) {
+        if (values.isEmpty()) {
+            return Collections.emptyList();
+        } else if (values.size() <= limit) {
+            return Collections.singletonList(new ArrayList<>(values));
+        }
+        List<List<T>> chunks = new ArrayList<>((values.size() + limit - 1) / limit);
+        List<T> chunk = new ArrayList<>(limit);
+        for (T value : values) {
+            chunk.add(value);
+            if (chunk.size() == limit) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(limit);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
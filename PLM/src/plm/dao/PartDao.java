@@ -1,6 +1,11 @@
 package plm.dao;
 
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import plm.dao.embedded.EmbeddedStore;
 import plm.model.Part;
 
 /**
@@ -8,6 +13,7 @@ import plm.model.Part;
  * in the Product Lifecycle Management (PLM) system.
  */
 @Repository
+@Profile("!" + EmbeddedStore.PROFILE)
 public class PartDao extends AbstractDao {
 
 	/**
@@ -15,7 +21,30 @@ public class PartDao extends AbstractDao {
 	 */
 	@Override
 	public Part get(String reference, String version, int iteration) {
-		// Implementation and returned value are not relevant for this exercise
-		return null;
+		return getCached(Part.class, reference, version, iteration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, Part> getLatest(Collection<String> references) {
+		return getCachedLatest(Part.class, references);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Part.PartPK keyOf(String reference, String version, int iteration) {
+		return new Part.PartPK(reference, version, iteration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Class<Part> getEntityClass() {
+		return Part.class;
 	}
 }
\ No newline at end of file
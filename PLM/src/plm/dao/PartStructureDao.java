@@ -0,0 +1,52 @@
+package plm.dao;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interface defining the operations for managing the structure links between parent and
+ * child Part entities in the PLM system.
+ */
+public interface PartStructureDao {
+
+    /**
+     * Gets the references of the child parts of each of the given parents.
+     *
+     * @param parentReferences The references of the parent parts.
+     * @return The references of the children of each parent, with an empty set for the
+     * parents without any child.
+     */
+    Map<String, Set<String>> getChildReferences(Collection<String> parentReferences);
+
+    /**
+     * Links a child part to a parent part.
+     *
+     * @param parentReference The reference of the parent part.
+     * @param childReference  The reference of the child part.
+     * @throws IllegalArgumentException If the parent and the child are the same part.
+     */
+    void link(String parentReference, String childReference);
+
+    /**
+     * Unlinks a child part from a parent part.
+     *
+     * @param parentReference The reference of the parent part.
+     * @param childReference  The reference of the child part.
+     */
+    void unlink(String parentReference, String childReference);
+
+    /**
+     * Checks a structure link. Longer cycles are only detected when a structure is
+     * traversed, see {@link plm.services.StructureTraversal}.
+     *
+     * @param parentReference The reference of the parent part.
+     * @param childReference  The reference of the child part.
+     * @throws IllegalArgumentException If the parent and the child are the same part.
+     */
+    static void checkLink(String parentReference, String childReference) {
+        if (parentReference.equals(childReference)) {
+            throw new IllegalArgumentException("A part cannot be a child of itself: " + parentReference);
+        }
+    }
+}
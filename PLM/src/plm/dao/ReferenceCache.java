@@ -0,0 +1,147 @@
+package plm.dao;
+
+import java.io.Serializable;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import plm.cache.LruCache;
+import plm.dao.embedded.EmbeddedStore;
+import plm.model.AbstractEntity;
+import plm.model.LifeCycleTemplate;
+import plm.model.VersionSchema;
+
+/**
+ * Read-through cache of the LifeCycleTemplate and VersionSchema reference entities,
+ * shared by every DAO.
+ *
+ * A few dozen templates and schemas are shared by millions of entities and almost
+ * never change, so entities only load their foreign keys (lazy references) and the
+ * DAOs resolve them from this cache instead of joining or reselecting them.
+ * Whoever modifies a template or a schema must invalidate it.
+ */
+@Component
+@Profile("!" + EmbeddedStore.PROFILE)
+public class ReferenceCache {
+
+    /**
+     * Maximum number of cached instances of each reference entity.
+     */
+    public static final int CAPACITY = 256;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    private final LruCache<Long, LifeCycleTemplate> lifeCycleTemplates = new LruCache<>(CAPACITY);
+
+    private final LruCache<Long, VersionSchema> versionSchemas = new LruCache<>(CAPACITY);
+
+    /**
+     * Gets a lifecycle template, loading it from the database on a cache miss.
+     *
+     * @param id The identifier of the lifecycle template.
+     * @return The lifecycle template, null if it does not exist.
+     */
+    public LifeCycleTemplate getLifeCycleTemplate(long id) {
+        return lifeCycleTemplates.get(id,
+                key -> sessionFactory.getCurrentSession().get(LifeCycleTemplate.class, key));
+    }
+
+    /**
+     * Gets a version schema, loading it from the database on a cache miss.
+     *
+     * @param id The identifier of the version schema.
+     * @return The version schema, null if it does not exist.
+     */
+    public VersionSchema getVersionSchema(long id) {
+        return versionSchemas.get(id,
+                key -> sessionFactory.getCurrentSession().get(VersionSchema.class, key));
+    }
+
+    /**
+     * Replaces the lifecycle template and version schema references of a freshly
+     * loaded entity with the cached instances.
+     *
+     * @param entity The loaded entity, may be null.
+     * @param <E>    The type of the entity.
+     * @return The given entity.
+     */
+    public <E extends AbstractEntity> E resolve(E entity) {
+        if (entity == null) {
+            return null;
+        }
+        // not through the setters, which would recompute the state derived from them
+        entity.shareReferences(
+                entity.getLifeCycleTemplate() != null
+                        ? getLifeCycleTemplate(idOf(entity.getLifeCycleTemplate())) : null,
+                entity.getVersionSchema() != null
+                        ? getVersionSchema(idOf(entity.getVersionSchema())) : null);
+        return entity;
+    }
+
+    /**
+     * Removes a lifecycle template from the cache, to be called when it is modified.
+     *
+     * @param id The identifier of the lifecycle template.
+     */
+    public void invalidateLifeCycleTemplate(long id) {
+        lifeCycleTemplates.invalidate(id);
+    }
+
+    /**
+     * Removes a version schema from the cache, to be called when it is modified.
+     *
+     * @param id The identifier of the version schema.
+     */
+    public void invalidateVersionSchema(long id) {
+        versionSchemas.invalidate(id);
+    }
+
+    /**
+     * Removes all lifecycle templates and version schemas from the cache.
+     */
+    public void invalidateAll() {
+        lifeCycleTemplates.invalidateAll();
+        versionSchemas.invalidateAll();
+    }
+
+    /**
+     * Gets the number of reference lookups served from the cache,
+     * i.e. the number of database selects saved.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return lifeCycleTemplates.getHits() + versionSchemas.getHits();
+    }
+
+    /**
+     * Gets the number of reference lookups which went to the database.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return lifeCycleTemplates.getMisses() + versionSchemas.getMisses();
+    }
+
+    /**
+     * Gets the identifier of a reference entity without initializing it
+     * when it is a lazy proxy.
+     *
+     * @param reference The lifecycle template or version schema.
+     * @return The identifier.
+     */
+    static long idOf(Object reference) {
+        if (reference instanceof HibernateProxy) {
+            Serializable id = ((HibernateProxy) reference).getHibernateLazyInitializer().getIdentifier();
+            return (Long) id;
+        }
+        if (reference instanceof LifeCycleTemplate) {
+            return ((LifeCycleTemplate) reference).getId();
+        }
+        return ((VersionSchema) reference).getId();
+    }
+}
@@ -0,0 +1,114 @@
+package plm.dao.embedded;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import plm.dao.Dao;
+import plm.model.Document;
+
+/**
+ * Dao reading and writing the documents of the {@link EmbeddedStore}, selected instead of
+ * the DocumentDao by the {@value EmbeddedStore#PROFILE} profile. Writes are committed with
+ * the enclosing transaction, or immediately outside of any.
+ */
+@Repository("documentDao")
+@Profile(EmbeddedStore.PROFILE)
+public class EmbeddedDocumentDao implements Dao {
+
+    private EmbeddedStore store;
+
+    /**
+     * Sets the store of the documents.
+     *
+     * @param store The EmbeddedStore to set.
+     */
+    @Autowired
+    public void setStore(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Document get(String reference, String version, int iteration) {
+        return store.get(Document.class, reference, version, iteration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Document getLatest(String reference) {
+        return store.getLatest(Document.class, reference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Document> getLatest(Collection<String> references) {
+        Map<String, Document> latest = new HashMap<>();
+        for (String reference : references) {
+            Document document = store.getLatest(Document.class, reference);
+            if (document != null) {
+                latest.put(reference, document);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Document getLatest(String reference, String version) {
+        return store.getLatest(Document.class, reference, version);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLatestVersion(String reference) {
+        return store.getLatestVersion(Document.class, reference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void create(Object entity) {
+        store.create(Collections.singletonList((Document) entity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(Object entity) {
+        store.update(Collections.singletonList((Document) entity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createAll(Collection<?> entities) {
+        store.create(entities);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateAll(Collection<?> entities) {
+        store.update(entities);
+    }
+}
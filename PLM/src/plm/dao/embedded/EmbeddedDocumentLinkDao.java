@@ -0,0 +1,72 @@
+package plm.dao.embedded;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import plm.dao.DocumentLinkDao;
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * DocumentLinkDao keeping the links of the {@link EmbeddedStore}, selected instead of the
+ * HibernateDocumentLinkDao by the {@value EmbeddedStore#PROFILE} profile. The store holds the links by part reference,
+ * so the DocumentLinkIndex is not used.
+ */
+@Repository
+@Profile(EmbeddedStore.PROFILE)
+public class EmbeddedDocumentLinkDao implements DocumentLinkDao {
+
+    private EmbeddedStore store;
+
+    /**
+     * Sets the store of the links.
+     *
+     * @param store The EmbeddedStore to set.
+     */
+    @Autowired
+    public void setStore(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Part.PartPK, Set<Document>> getLinkedDocuments(Collection<? extends Part.PartPK> parts) {
+        Map<Part.PartPK, Set<Document>> linkedDocuments = new LinkedHashMap<>();
+        for (Part.PartPK part : parts) {
+            Set<Document> linked = new LinkedHashSet<>();
+            for (String reference : store.getLinkedReferences(part.getReference())) {
+                Document document = store.get(Document.class, reference, part.getVersion(), part.getIteration());
+                if (document != null) {
+                    linked.add(document);
+                }
+            }
+            linkedDocuments.put(part, linked);
+        }
+        return linkedDocuments;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void link(String partReference, String documentReference) {
+        store.link(partReference, documentReference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unlink(String partReference, String documentReference) {
+        store.unlink(partReference, documentReference);
+    }
+}
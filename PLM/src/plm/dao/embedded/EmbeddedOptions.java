@@ -0,0 +1,116 @@
+package plm.dao.embedded;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Settings of the embedded store: where it keeps its files, how its write-ahead log is
+ * committed and how often it is compacted into a snapshot, see {@link EmbeddedStore}.
+ */
+public class EmbeddedOptions {
+
+    private Path directory = Paths.get("embedded-store");
+
+    private boolean sync = true;
+
+    private long groupCommitDelayMicros = 0;
+
+    private long snapshotLogBytes = 64L << 20;
+
+    // Getters
+
+    /**
+     * Gets the directory holding the segments of the log and the snapshots.
+     *
+     * @return The directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Checks if every group of commits is forced to the disk before the commits return.
+     *
+     * @return true if the commits are durable once they return.
+     */
+    public boolean isSync() {
+        return sync;
+    }
+
+    /**
+     * Gets the time the log waits for more commits before writing a group.
+     *
+     * @return The delay, in microseconds, 0 to only group the commits arriving while the
+     * previous group is written.
+     */
+    public long getGroupCommitDelayMicros() {
+        return groupCommitDelayMicros;
+    }
+
+    /**
+     * Gets the size of the log beyond which a snapshot is taken and the log truncated.
+     *
+     * @return The size, in bytes.
+     */
+    public long getSnapshotLogBytes() {
+        return snapshotLogBytes;
+    }
+
+    // Setters
+
+    /**
+     * Sets the directory holding the segments of the log and the snapshots.
+     *
+     * @param directory The directory, created if it does not exist.
+     * @return The current EmbeddedOptions instance (for chaining).
+     */
+    public EmbeddedOptions setDirectory(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Sets if every group of commits is forced to the disk before the commits return.
+     * Without it, commits survive a crash of the application but not of the system,
+     * which is enough for test environments.
+     *
+     * @param sync true to force the groups to the disk.
+     * @return The current EmbeddedOptions instance (for chaining).
+     */
+    public EmbeddedOptions setSync(boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    /**
+     * Sets the time the log waits for more commits before writing a group, trading the
+     * latency of the commits for fewer writes.
+     *
+     * @param groupCommitDelayMicros The delay, in microseconds, 0 not to wait.
+     * @return The current EmbeddedOptions instance (for chaining).
+     */
+    public EmbeddedOptions setGroupCommitDelayMicros(long groupCommitDelayMicros) {
+        if (groupCommitDelayMicros < 0) {
+            throw new IllegalArgumentException("groupCommitDelayMicros cannot be negative");
+        }
+        this.groupCommitDelayMicros = groupCommitDelayMicros;
+        return this;
+    }
+
+    /**
+     * Sets the size of the log beyond which a snapshot is taken and the log truncated.
+     *
+     * @param snapshotLogBytes The size, in bytes, at least 1.
+     * @return The current EmbeddedOptions instance (for chaining).
+     */
+    public EmbeddedOptions setSnapshotLogBytes(long snapshotLogBytes) {
+        if (snapshotLogBytes < 1) {
+            throw new IllegalArgumentException("snapshotLogBytes must be a positive integer");
+        }
+        this.snapshotLogBytes = snapshotLogBytes;
+        return this;
+    }
+}
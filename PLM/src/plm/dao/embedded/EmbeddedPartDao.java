@@ -0,0 +1,114 @@
+package plm.dao.embedded;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import plm.dao.Dao;
+import plm.model.Part;
+
+/**
+ * Dao reading and writing the parts of the {@link EmbeddedStore}, selected instead of the
+ * PartDao by the {@value EmbeddedStore#PROFILE} profile. Writes are committed with the
+ * enclosing transaction, or immediately outside of any.
+ */
+@Repository("partDao")
+@Profile(EmbeddedStore.PROFILE)
+public class EmbeddedPartDao implements Dao {
+
+    private EmbeddedStore store;
+
+    /**
+     * Sets the store of the parts.
+     *
+     * @param store The EmbeddedStore to set.
+     */
+    @Autowired
+    public void setStore(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Part get(String reference, String version, int iteration) {
+        return store.get(Part.class, reference, version, iteration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Part getLatest(String reference) {
+        return store.getLatest(Part.class, reference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Part> getLatest(Collection<String> references) {
+        Map<String, Part> latest = new HashMap<>();
+        for (String reference : references) {
+            Part part = store.getLatest(Part.class, reference);
+            if (part != null) {
+                latest.put(reference, part);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Part getLatest(String reference, String version) {
+        return store.getLatest(Part.class, reference, version);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLatestVersion(String reference) {
+        return store.getLatestVersion(Part.class, reference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void create(Object entity) {
+        store.create(Collections.singletonList((Part) entity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(Object entity) {
+        store.update(Collections.singletonList((Part) entity));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createAll(Collection<?> entities) {
+        store.create(entities);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateAll(Collection<?> entities) {
+        store.update(entities);
+    }
+}
@@ -0,0 +1,62 @@
+package plm.dao.embedded;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import plm.dao.PartStructureDao;
+
+/**
+ * PartStructureDao keeping the structure links in the {@link EmbeddedStore}, selected
+ * instead of the HibernatePartStructureDao by the {@value EmbeddedStore#PROFILE} profile.
+ */
+@Repository
+@Profile(EmbeddedStore.PROFILE)
+public class EmbeddedPartStructureDao implements PartStructureDao {
+
+    private EmbeddedStore store;
+
+    /**
+     * Sets the store of the links.
+     *
+     * @param store The EmbeddedStore to set.
+     */
+    @Autowired
+    public void setStore(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+        Map<String, Set<String>> childReferences = new LinkedHashMap<>();
+        for (String parentReference : parentReferences) {
+            childReferences.put(parentReference, store.getChildReferences(parentReference));
+        }
+        return childReferences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void link(String parentReference, String childReference) {
+        PartStructureDao.checkLink(parentReference, childReference);
+        store.linkChild(parentReference, childReference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unlink(String parentReference, String childReference) {
+        store.unlinkChild(parentReference, childReference);
+    }
+}
@@ -0,0 +1,1130 @@
+package plm.dao.embedded;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import plm.dao.EntityConflictException;
+import plm.metrics.Histogram;
+import plm.metrics.MetricsRegistry;
+import plm.model.Document;
+import plm.model.EntityCloner;
+import plm.model.EntityCodec;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionSchema;
+
+/**
+ * Embedded persistence engine of the parts, documents, document links and part structure
+ * links, replacing the database
+ * when the {@value #PROFILE} Spring profile is active, e.g. on edge sites or in test
+ * environments. It backs the {@link EmbeddedPartDao}, {@link EmbeddedDocumentDao},
+ * {@link EmbeddedDocumentLinkDao} and {@link EmbeddedPartStructureDao}, its transactions
+ * being managed by the {@link EmbeddedTransactionManager}. No SessionFactory nor DataSource
+ * is created under this profile: the components which need the database (the Hibernate
+ * DAOs and caches, the bulk importer, the history export and the catalog snapshots) are
+ * left out.
+ *
+ * Entities are kept in concurrent maps by primary key, as rows which are never modified:
+ * reads hand out copies and commits replace the rows. The heads of the references and of
+ * their versions are maintained along, so the latest iteration is two map lookups.
+ *
+ * The writes of a transaction are kept aside until it commits. A commit checks the lock
+ * versions of the written entities (reporting an {@link EntityConflictException}), appends
+ * one record to the {@link WriteAheadLog}, waits until its record is durable, the records
+ * of concurrent commits being forced to the disk together, then applies the writes. Until
+ * then, they are only seen by the lock version checks of the later commits: other
+ * transactions never read writes which a crash could lose. Commits are applied in the
+ * order of the log, each durable commit applying the ones before it.
+ *
+ * Once the log outgrows {@link EmbeddedOptions#getSnapshotLogBytes()}, a snapshot of the
+ * maps is written in the background and the segments of the log it covers are deleted.
+ * At startup, the store loads the latest snapshot and replays the log which follows it.
+ * A snapshot is also taken at shutdown, so that a clean restart replays nothing.
+ *
+ * Rows are always kept whole: the snapshot interval of the DAOs does not apply.
+ */
+@Component
+@Profile(EmbeddedStore.PROFILE)
+public class EmbeddedStore implements InitializingBean, DisposableBean {
+
+    /**
+     * Spring profile selecting the embedded store instead of the database.
+     */
+    public static final String PROFILE = "embedded";
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStore.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x504c4d53;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    // Entity types, by their index in the records
+    private static final List<Class<? extends Part>> TYPES = Arrays.asList(Part.class, Document.class);
+
+    private static final Relation[] RELATIONS = Relation.values();
+
+    // Operations of the records and snapshots
+    private static final byte TEMPLATE = 1;
+    private static final byte SCHEMA = 2;
+    private static final byte PUT = 3;
+    private static final byte LINK = 4;
+    private static final byte UNLINK = 5;
+
+    private EmbeddedOptions options = new EmbeddedOptions();
+
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    private final Table[] tables = new Table[TYPES.size()];
+
+    // Immutable sets of linked references, by relation then by part reference
+    private final Map<Relation, ConcurrentMap<String, Set<String>>> links = new EnumMap<>(Relation.class);
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    // Guarded by commitLock: shared entities by identifier (from 1), and their identifiers
+    private final List<Object> references = new ArrayList<>(Collections.singletonList(null));
+    private final Map<Object, Integer> referenceIds = new IdentityHashMap<>();
+
+    // Written under commitLock
+    private volatile long lastLsn;
+
+    // Guarded by commitLock: commits logged but not durable yet, in the order of the log
+    private final ArrayDeque<LoggedCommit> loggedCommits = new ArrayDeque<>();
+
+    private long snapshotLsn;
+
+    private volatile WriteAheadLog log;
+
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    private ExecutorService snapshotExecutor;
+
+    private Histogram commitSeconds;
+
+    /**
+     * Creates an empty store, to be opened.
+     */
+    public EmbeddedStore() {
+        for (int i = 0; i < tables.length; i++) {
+            tables[i] = new Table();
+        }
+        for (Relation relation : Relation.values()) {
+            links.put(relation, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Gets the options of the store.
+     *
+     * @return The options.
+     */
+    public EmbeddedOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Configures the store, before it is opened.
+     *
+     * @param options The options of the store.
+     */
+    public void setOptions(EmbeddedOptions options) {
+        if (log != null) {
+            throw new IllegalStateException("The embedded store is already open");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Sets the registry of the metrics of the commits.
+     *
+     * @param metricsRegistry The MetricsRegistry to set.
+     */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        open();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() throws IOException {
+        close();
+    }
+
+    /**
+     * Opens the store: loads the latest snapshot, replays the log which follows it, then
+     * starts a new segment of the log.
+     *
+     * @throws IOException           If the files of the store cannot be read or written.
+     * @throws IllegalStateException If the files were written in another format or with
+     *                               other entity classes,
+     *                               or are corrupt.
+     */
+    public void open() throws IOException {
+        if (log != null) {
+            throw new IllegalStateException("The embedded store is already open");
+        }
+        long start = System.nanoTime();
+        Path directory = options.getDirectory();
+        Files.createDirectories(directory);
+        byte[] header = header();
+        snapshotLsn = loadSnapshot(directory, header);
+        lastLsn = WriteAheadLog.replay(directory, header, snapshotLsn, (lsn, in) -> replay(in));
+
+        commitSeconds = metricsRegistry.histogram("plm_embedded_commit_seconds");
+        log = new WriteAheadLog(directory, lastLsn + 1, header, options,
+                metricsRegistry.histogram("plm_embedded_group_size"));
+        snapshotExecutor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "plm-embedded-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Embedded store opened in {} ms from {}: {} parts, {} documents, {} records replayed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), directory,
+                tables[0].rows.size(), tables[1].rows.size(), lastLsn - snapshotLsn);
+    }
+
+    /**
+     * Closes the store, taking a snapshot first.
+     *
+     * @throws IOException If the snapshot or the log cannot be written.
+     */
+    public void close() throws IOException {
+        WriteAheadLog currentLog = log;
+        if (currentLog == null) {
+            return;
+        }
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            snapshot();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            currentLog.close();
+            log = null;
+        }
+    }
+
+    /**
+     * Gets an entity, as written by the current transaction if it wrote it.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param iteration The iteration of the entity.
+     * @param <E>       The type of the entity.
+     * @return A copy of the entity, null if it does not exist.
+     */
+    public <E extends Part> E get(Class<E> type, String reference, String version, int iteration) {
+        Part.PartPK key = keyOf(type, reference, version, iteration);
+        EmbeddedTransaction transaction = currentTransaction();
+        EmbeddedTransaction.Write write = transaction == null ? null : transaction.get(key);
+        Part row = write != null ? write.entity : table(type).rows.get(key);
+        return row == null ? null : type.cast(EntityCloner.copy(row));
+    }
+
+    /**
+     * Gets the latest iteration of the latest version of a reference.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @param <E>       The type of the entity.
+     * @return A copy of the entity, null if the reference does not exist.
+     */
+    public <E extends Part> E getLatest(Class<E> type, String reference) {
+        String version = getLatestVersion(type, reference);
+        return version == null ? null : getLatest(type, reference, version);
+    }
+
+    /**
+     * Gets the latest iteration of a version of a reference.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @param version   The version of the entity.
+     * @param <E>       The type of the entity.
+     * @return A copy of the entity, null if the version does not exist.
+     */
+    public <E extends Part> E getLatest(Class<E> type, String reference, String version) {
+        Integer committed = table(type).iterations.get(keyOf(type, reference, version, 0));
+        int latest = committed == null ? 0 : committed;
+        EmbeddedTransaction transaction = currentTransaction();
+        if (transaction != null) {
+            for (EmbeddedTransaction.Write write : transaction.getWrites()) {
+                Part entity = write.entity;
+                if (entity.getClass() == type && entity.getReference().equals(reference)
+                        && entity.getVersion().equals(version)) {
+                    latest = Math.max(latest, entity.getIteration());
+                }
+            }
+        }
+        return latest == 0 ? null : get(type, reference, version, latest);
+    }
+
+    /**
+     * Gets the label of the latest version of a reference, ordering versions by their
+     * ordinal in the version schema.
+     *
+     * @param type      The type of the entity.
+     * @param reference The reference of the entity.
+     * @return The label of the latest version, null if the reference does not exist.
+     */
+    public String getLatestVersion(Class<? extends Part> type, String reference) {
+        Head head = table(type).heads.get(reference);
+        String version = head == null ? null : head.version;
+        int ordinal = head == null ? 0 : head.ordinal;
+        EmbeddedTransaction transaction = currentTransaction();
+        if (transaction != null) {
+            for (EmbeddedTransaction.Write write : transaction.getWrites()) {
+                Part entity = write.entity;
+                if (entity.getClass() == type && entity.getReference().equals(reference)
+                        && (version == null || entity.getVersionOrdinal() > ordinal)) {
+                    version = entity.getVersion();
+                    ordinal = entity.getVersionOrdinal();
+                }
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Creates entities, in the current transaction or in a transaction of their own.
+     *
+     * @param entities The entities, parts or documents.
+     * @throws EntityConflictException If an entity already exists.
+     */
+    public void create(Collection<?> entities) {
+        write(entities, true);
+    }
+
+    /**
+     * Updates entities, in the current transaction or in a transaction of their own.
+     *
+     * @param entities The entities, parts or documents.
+     * @throws EntityConflictException If an entity was modified since it was read.
+     */
+    public void update(Collection<?> entities) {
+        write(entities, false);
+    }
+
+    /**
+     * Gets the references of the documents linked to a part.
+     *
+     * @param partReference The reference of the part.
+     * @return The references of the linked documents, not modifiable.
+     */
+    public Set<String> getLinkedReferences(String partReference) {
+        return getLinked(Relation.DOCUMENT, partReference);
+    }
+
+    /**
+     * Links a document to a part, in the current transaction or in a transaction of its own.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    public void link(String partReference, String documentReference) {
+        changeLink(Relation.DOCUMENT, true, partReference, documentReference);
+    }
+
+    /**
+     * Unlinks a document from a part, in the current transaction or in a transaction of
+     * its own.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    public void unlink(String partReference, String documentReference) {
+        changeLink(Relation.DOCUMENT, false, partReference, documentReference);
+    }
+
+    /**
+     * Gets the references of the child parts of a part.
+     *
+     * @param parentReference The reference of the parent part.
+     * @return The references of the child parts, not modifiable.
+     */
+    public Set<String> getChildReferences(String parentReference) {
+        return getLinked(Relation.STRUCTURE, parentReference);
+    }
+
+    /**
+     * Links a child part to a parent part, in the current transaction or in a transaction
+     * of its own.
+     *
+     * @param parentReference The reference of the parent part.
+     * @param childReference  The reference of the child part.
+     */
+    public void linkChild(String parentReference, String childReference) {
+        changeLink(Relation.STRUCTURE, true, parentReference, childReference);
+    }
+
+    /**
+     * Unlinks a child part from a parent part, in the current transaction or in a
+     * transaction of its own.
+     *
+     * @param parentReference The reference of the parent part.
+     * @param childReference  The reference of the child part.
+     */
+    public void unlinkChild(String parentReference, String childReference) {
+        changeLink(Relation.STRUCTURE, false, parentReference, childReference);
+    }
+
+    /**
+     * Gets the number of entities of a type.
+     *
+     * @param type The type of the entities.
+     * @return The number of committed entities.
+     */
+    public int getSize(Class<? extends Part> type) {
+        return table(type).rows.size();
+    }
+
+    /**
+     * Gets the sequence number of the last commit.
+     *
+     * @return The sequence number, 0 if nothing was ever committed.
+     */
+    public long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Writes a snapshot of the committed entities and links, then deletes the segments of
+     * the log and the snapshots it replaces. Does nothing if nothing was committed since
+     * the last snapshot.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public synchronized void snapshot() throws IOException {
+        long start = System.nanoTime();
+        WriteAheadLog currentLog;
+        long lsn;
+        List<Object> sharedEntities;
+        Map<Relation, Map<String, Set<String>>> linkedReferences = new EnumMap<>(Relation.class);
+        List<List<Part>> rows = new ArrayList<>(tables.length);
+        commitLock.lock();
+        try {
+            currentLog = requireOpen();
+            lsn = lastLsn;
+            if (lsn == snapshotLsn) {
+                return;
+            }
+            sharedEntities = new ArrayList<>(references);
+            for (Relation relation : Relation.values()) {
+                linkedReferences.put(relation, new HashMap<>(links.get(relation)));
+            }
+            for (Table table : tables) {
+                if (table.logged.isEmpty()) {
+                    rows.add(new ArrayList<>(table.rows.values()));
+                } else {
+                    Map<Part.PartPK, Part> tableRows = new HashMap<>(table.rows);
+                    tableRows.putAll(table.logged);
+                    rows.add(new ArrayList<>(tableRows.values()));
+                }
+            }
+            // the snapshot holds the commits not durable yet, it is only kept once they are
+            for (LoggedCommit commit : loggedCommits) {
+                for (EmbeddedTransaction.LinkChange change : commit.linkChanges) {
+                    changeLink(linkedReferences.get(change.relation), change.link, change.fromReference,
+                            change.toReference);
+                }
+            }
+            currentLog.roll(lsn + 1);
+        } finally {
+            commitLock.unlock();
+        }
+
+        Path directory = options.getDirectory();
+        Path snapshot = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            byte[] header = header();
+            out.writeInt(header.length);
+            out.write(header);
+            out.writeLong(lsn);
+
+            out.writeInt(sharedEntities.size() - 1);
+            Map<Object, Integer> ids = new IdentityHashMap<>();
+            for (int id = 1; id < sharedEntities.size(); id++) {
+                writeDefinition(out, id, sharedEntities.get(id));
+                ids.put(sharedEntities.get(id), id);
+            }
+            for (Map<String, Set<String>> relation : linkedReferences.values()) {
+                out.writeInt(relation.size());
+                for (Map.Entry<String, Set<String>> entry : relation.entrySet()) {
+                    EntityCodec.writeString(out, entry.getKey());
+                    out.writeInt(entry.getValue().size());
+                    for (String toReference : entry.getValue()) {
+                        EntityCodec.writeString(out, toReference);
+                    }
+                }
+            }
+            EntityCodec.References byIdentity = new EntityCodec.References() {
+                @Override
+                public int idOf(Object reference) {
+                    return ids.get(reference);
+                }
+
+                @Override
+                public Object get(int id) {
+                    return sharedEntities.get(id);
+                }
+            };
+            for (List<Part> typeRows : rows) {
+                out.writeInt(typeRows.size());
+                for (Part row : typeRows) {
+                    EntityCodec.write(out, row, byIdentity);
+                }
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        // The snapshot must not hold commits which could be lost
+        currentLog.awaitDurable(lsn);
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        snapshotLsn = lsn;
+
+        currentLog.awaitRoll(lsn + 1);
+        WriteAheadLog.deleteSegmentsBefore(directory, lsn + 1);
+        for (Path older : snapshots(directory).headMap(lsn).values()) {
+            Files.delete(older);
+        }
+        logger.info("Embedded store snapshot {} written in {} ms", snapshot.getFileName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Commits a transaction: checks the lock versions of its writes, logs them, waits
+     * until they are durable and applies them.
+     *
+     * @param transaction The transaction.
+     * @throws EntityConflictException If an entity was written concurrently.
+     * @throws IllegalStateException   If the log failed: the store must be restarted.
+     */
+    void commit(EmbeddedTransaction transaction) {
+        if (transaction.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        WriteAheadLog currentLog;
+        long lsn;
+        commitLock.lock();
+        try {
+            currentLog = requireOpen();
+            List<Part> rows = new ArrayList<>(transaction.getWrites().size());
+            for (EmbeddedTransaction.Write write : transaction.getWrites()) {
+                Part entity = write.entity;
+                Table table = table(entity.getClass());
+                Part.PartPK key = keyOf(entity);
+                // the rows of the commits not durable yet are the latest ones
+                Part stored = table.logged.getOrDefault(key, table.rows.get(key));
+                if (write.created ? stored != null
+                        : stored == null || stored.getLockVersion() != write.expectedVersion) {
+                    throw new EntityConflictException(entity.getClass(), null);
+                }
+                rows.add(EntityCloner.copy(entity, write.created ? 0 : write.expectedVersion + 1));
+            }
+
+            RecordWriter record = new RecordWriter();
+            byte[] payload = record.encode(rows, transaction.getLinkChanges());
+            lsn = lastLsn + 1;
+            currentLog.append(lsn, payload);
+            lastLsn = lsn;
+            record.register();
+            for (Part row : rows) {
+                table(row.getClass()).logged.put(keyOf(row), row);
+            }
+            loggedCommits.add(new LoggedCommit(lsn, rows, transaction.getLinkChanges()));
+        } finally {
+            commitLock.unlock();
+        }
+        // if the log fails, the writes are never applied
+        currentLog.awaitDurable(lsn);
+        applyDurable(lsn);
+        commitSeconds.recordSince(start);
+
+        if (currentLog.getBytesSinceRoll() >= options.getSnapshotLogBytes()
+                && snapshotting.compareAndSet(false, true)) {
+            snapshotExecutor.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Cannot write a snapshot of the embedded store", e);
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes entities in the current transaction, or in a transaction of their own.
+     */
+    private void write(Collection<?> entities, boolean created) {
+        EmbeddedTransaction transaction = currentTransaction();
+        boolean autoCommit = transaction == null;
+        if (autoCommit) {
+            transaction = new EmbeddedTransaction();
+        }
+        for (Object entity : entities) {
+            Part part = (Part) entity;
+            Part.PartPK key = keyOf(part);
+            if (created) {
+                transaction.create(key, EntityCloner.copy(part));
+            } else {
+                transaction.update(key, EntityCloner.copy(part));
+            }
+        }
+        if (autoCommit) {
+            commit(transaction);
+        }
+    }
+
+    /**
+     * Gets the references linked to a part, overlaid with the changes of the current
+     * transaction.
+     */
+    private Set<String> getLinked(Relation relation, String fromReference) {
+        Set<String> linked = links.get(relation).getOrDefault(fromReference, Collections.emptySet());
+        EmbeddedTransaction transaction = currentTransaction();
+        if (transaction == null) {
+            return linked;
+        }
+        Set<String> changed = null;
+        for (EmbeddedTransaction.LinkChange change : transaction.getLinkChanges()) {
+            if (change.relation == relation && change.fromReference.equals(fromReference)) {
+                if (changed == null) {
+                    changed = new HashSet<>(linked);
+                }
+                if (change.link) {
+                    changed.add(change.toReference);
+                } else {
+                    changed.remove(change.toReference);
+                }
+            }
+        }
+        return changed == null ? linked : Collections.unmodifiableSet(changed);
+    }
+
+    /**
+     * Links or unlinks in the current transaction, or in a transaction of its own.
+     */
+    private void changeLink(Relation relation, boolean link, String fromReference, String toReference) {
+        EmbeddedTransaction transaction = currentTransaction();
+        if (transaction != null) {
+            transaction.changeLink(relation, link, fromReference, toReference);
+            return;
+        }
+        transaction = new EmbeddedTransaction();
+        transaction.changeLink(relation, link, fromReference, toReference);
+        commit(transaction);
+    }
+
+    /**
+     * Gets the transaction bound to the current thread by the {@link EmbeddedTransactionManager}.
+     *
+     * @return The transaction, null if none.
+     */
+    private EmbeddedTransaction currentTransaction() {
+        return (EmbeddedTransaction) TransactionSynchronizationManager.getResource(this);
+    }
+
+    private WriteAheadLog requireOpen() {
+        WriteAheadLog currentLog = log;
+        if (currentLog == null) {
+            throw new IllegalStateException("The embedded store is not open");
+        }
+        return currentLog;
+    }
+
+    /**
+     * Applies the logged commits up to a durable one, in the order of the log.
+     *
+     * @param lsn The sequence number of the durable commit.
+     */
+    private void applyDurable(long lsn) {
+        commitLock.lock();
+        try {
+            while (!loggedCommits.isEmpty() && loggedCommits.peekFirst().lsn <= lsn) {
+                LoggedCommit commit = loggedCommits.pollFirst();
+                for (Part row : commit.rows) {
+                    apply(row);
+                    table(row.getClass()).logged.remove(keyOf(row), row);
+                }
+                for (EmbeddedTransaction.LinkChange change : commit.linkChanges) {
+                    applyLink(change.relation, change.link, change.fromReference, change.toReference);
+                }
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a committed row, advancing the heads of its reference and version.
+     * Rows are only applied under the commit lock, or while the store is opened.
+     */
+    private void apply(Part row) {
+        Table table = table(row.getClass());
+        table.rows.put(keyOf(row), row);
+        table.iterations.merge(keyOf(row.getClass(), row.getReference(), row.getVersion(), 0),
+                row.getIteration(), Math::max);
+        Head head = table.heads.get(row.getReference());
+        if (head == null || row.getVersionOrdinal() > head.ordinal) {
+            table.heads.put(row.getReference(), new Head(row.getVersion(), row.getVersionOrdinal()));
+        }
+    }
+
+    private void applyLink(Relation relation, boolean link, String fromReference, String toReference) {
+        changeLink(links.get(relation), link, fromReference, toReference);
+    }
+
+    /**
+     * Links or unlinks two references in a relation, replacing the set of the linked
+     * references.
+     */
+    private static void changeLink(Map<String, Set<String>> relation, boolean link, String fromReference,
+                                   String toReference) {
+        relation.compute(fromReference, (key, linked) -> {
+            Set<String> changed = linked == null ? new HashSet<>() : new HashSet<>(linked);
+            if (link) {
+                changed.add(toReference);
+            } else {
+                changed.remove(toReference);
+            }
+            return changed.isEmpty() ? null : Collections.unmodifiableSet(changed);
+        });
+    }
+
+    /**
+     * Replays a record of the log: the definitions of the shared entities it introduced,
+     * then its writes.
+     */
+    private void replay(DataInputStream in) throws IOException {
+        int definitions = in.readInt();
+        for (int i = 0; i < definitions; i++) {
+            readDefinition(in);
+        }
+        EntityCodec.References registered = registeredReferences();
+        int operations = in.readInt();
+        for (int i = 0; i < operations; i++) {
+            byte operation = in.readByte();
+            switch (operation) {
+                case PUT:
+                    apply(EntityCodec.read(in, TYPES.get(in.readByte()), registered));
+                    break;
+                case LINK:
+                case UNLINK:
+                    applyLink(RELATIONS[in.readByte()], operation == LINK, EntityCodec.readString(in),
+                            EntityCodec.readString(in));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation + " in the log");
+            }
+        }
+    }
+
+    /**
+     * Loads the latest readable snapshot.
+     *
+     * @return The sequence number of the last commit of the snapshot, 0 if none.
+     */
+    private long loadSnapshot(Path directory, byte[] header) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.delete(file);
+                }
+            }
+        }
+        for (Path snapshot : snapshots(directory).descendingMap().values()) {
+            try (InputStream file = Files.newInputStream(snapshot)) {
+                CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16),
+                        new CRC32());
+                DataInputStream in = new DataInputStream(checked);
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a snapshot");
+                }
+                byte[] written = new byte[in.readInt()];
+                in.readFully(written);
+                if (!Arrays.equals(written, header)) {
+                    throw new IllegalStateException("Snapshot " + snapshot
+                            + " was written in another format or with other entity classes");
+                }
+                long lsn = in.readLong();
+                int definitions = in.readInt();
+                for (int i = 0; i < definitions; i++) {
+                    readDefinition(in);
+                }
+                for (Relation relation : RELATIONS) {
+                    int linkedParts = in.readInt();
+                    for (int i = 0; i < linkedParts; i++) {
+                        String fromReference = EntityCodec.readString(in);
+                        int linked = in.readInt();
+                        for (int j = 0; j < linked; j++) {
+                            applyLink(relation, true, fromReference, EntityCodec.readString(in));
+                        }
+                    }
+                }
+                EntityCodec.References registered = registeredReferences();
+                for (Class<? extends Part> type : TYPES) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        apply(EntityCodec.read(in, type, registered));
+                    }
+                }
+                long checksum = checked.getChecksum().getValue();
+                if (in.readLong() != checksum) {
+                    throw new IOException("Wrong checksum");
+                }
+                return lsn;
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable snapshot {}: {}", snapshot, e.toString());
+                clear();
+            }
+        }
+        return 0;
+    }
+
+    private void clear() {
+        for (Table table : tables) {
+            table.rows.clear();
+            table.heads.clear();
+            table.iterations.clear();
+        }
+        for (Map<String, Set<String>> relation : links.values()) {
+            relation.clear();
+        }
+        references.subList(1, references.size()).clear();
+        referenceIds.clear();
+    }
+
+    /**
+     * Writes the definition of a shared entity.
+     */
+    private static void writeDefinition(DataOutput out, int id, Object reference) throws IOException {
+        if (reference instanceof LifeCycleTemplate) {
+            LifeCycleTemplate template = (LifeCycleTemplate) reference;
+            out.writeByte(TEMPLATE);
+            out.writeInt(id);
+            EntityCodec.writeString(out, template.getInitialState());
+            writeStrings(out, template.getStates());
+            writeStrings(out, template.getFinalStates());
+            out.writeInt(template.getTransitions().size());
+            for (LifeCycleTemplate.Transition transition : template.getTransitions()) {
+                EntityCodec.writeString(out, transition.getFromState());
+                EntityCodec.writeString(out, transition.getToState());
+            }
+        } else if (reference instanceof VersionSchema) {
+            out.writeByte(SCHEMA);
+            out.writeInt(id);
+            EntityCodec.writeString(out, ((VersionSchema) reference).getLabelStyle().name());
+        } else {
+            throw new IllegalArgumentException("Unsupported reference " + reference.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads the definition of a shared entity and registers it.
+     */
+    private void readDefinition(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        int id = in.readInt();
+        Object reference;
+        if (kind == TEMPLATE) {
+            String initialState = EntityCodec.readString(in);
+            List<String> states = readStrings(in);
+            List<String> finalStates = readStrings(in);
+            LifeCycleTemplate template = new LifeCycleTemplate(initialState, states, finalStates);
+            int transitions = in.readInt();
+            for (int i = 0; i < transitions; i++) {
+                template.addTransition(EntityCodec.readString(in), EntityCodec.readString(in));
+            }
+            reference = template;
+        } else if (kind == SCHEMA) {
+            reference = new VersionSchema(VersionSchema.LabelStyle.valueOf(EntityCodec.readString(in)));
+        } else {
+            throw new IllegalStateException("Unknown reference kind " + kind);
+        }
+        if (id != references.size()) {
+            throw new IllegalStateException("Reference " + id + " defined out of order");
+        }
+        references.add(reference);
+        referenceIds.put(reference, id);
+    }
+
+    private static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            EntityCodec.writeString(out, value);
+        }
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(EntityCodec.readString(in));
+        }
+        return values;
+    }
+
+    /**
+     * Gets the shared entities registered so far, by identifier.
+     */
+    private EntityCodec.References registeredReferences() {
+        return new EntityCodec.References() {
+            @Override
+            public int idOf(Object reference) {
+                return referenceIds.get(reference);
+            }
+
+            @Override
+            public Object get(int id) {
+                return references.get(id);
+            }
+        };
+    }
+
+    /**
+     * Gets the header of the files of the store, describing the layout of the entities.
+     */
+    private static byte[] header() {
+        StringBuilder header = new StringBuilder("plm-embedded-store 2");
+        for (Class<? extends Part> type : TYPES) {
+            header.append('\n').append(EntityCodec.layoutOf(type));
+        }
+        return header.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lists the snapshots of a directory by the sequence number of their last commit.
+     */
+    private static TreeMap<Long, Path> snapshots(Path directory) throws IOException {
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.put(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                            name.length() - SNAPSHOT_SUFFIX.length())), file);
+                }
+            });
+        }
+        return snapshots;
+    }
+
+    private Table table(Class<?> type) {
+        int index = TYPES.indexOf(type);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unsupported entity type " + type.getName());
+        }
+        return tables[index];
+    }
+
+    private static Part.PartPK keyOf(Part entity) {
+        return keyOf(entity.getClass(), entity.getReference(), entity.getVersion(), entity.getIteration());
+    }
+
+    private static Part.PartPK keyOf(Class<?> type, String reference, String version, int iteration) {
+        return type == Document.class ? new Document.DocumentPK(reference, version, iteration)
+                : new Part.PartPK(reference, version, iteration);
+    }
+
+    /**
+     * Encodes the record of a commit: the definitions of the shared entities it
+     * introduces, then its operations. The new shared entities are only registered once
+     * the record is appended to the log.
+     */
+    private final class RecordWriter implements EntityCodec.References {
+        private final ByteArrayOutputStream definitionBytes = new ByteArrayOutputStream();
+        private final DataOutputStream definitions = new DataOutputStream(definitionBytes);
+        private final List<Object> introduced = new ArrayList<>();
+        private final Map<Object, Integer> introducedIds = new IdentityHashMap<>();
+
+        byte[] encode(List<Part> rows, List<EmbeddedTransaction.LinkChange> linkChanges) {
+            try {
+                ByteArrayOutputStream operationBytes = new ByteArrayOutputStream(256 * rows.size() + 64);
+                DataOutputStream operations = new DataOutputStream(operationBytes);
+                for (Part row : rows) {
+                    operations.writeByte(PUT);
+                    operations.writeByte(TYPES.indexOf(row.getClass()));
+                    EntityCodec.write(operations, row, this);
+                }
+                for (EmbeddedTransaction.LinkChange change : linkChanges) {
+                    operations.writeByte(change.link ? LINK : UNLINK);
+                    operations.writeByte(change.relation.ordinal());
+                    EntityCodec.writeString(operations, change.fromReference);
+                    EntityCodec.writeString(operations, change.toReference);
+                }
+
+                ByteArrayOutputStream payload = new ByteArrayOutputStream(
+                        definitionBytes.size() + operationBytes.size() + 8);
+                DataOutputStream out = new DataOutputStream(payload);
+                out.writeInt(introduced.size());
+                definitionBytes.writeTo(out);
+                out.writeInt(rows.size() + linkChanges.size());
+                operationBytes.writeTo(out);
+                return payload.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Registers the shared entities introduced by the record.
+         */
+        void register() {
+            for (Object reference : introduced) {
+                referenceIds.put(reference, references.size());
+                references.add(reference);
+            }
+        }
+
+        @Override
+        public int idOf(Object reference) {
+            Integer id = referenceIds.get(reference);
+            if (id == null) {
+                id = introducedIds.get(reference);
+            }
+            if (id == null) {
+                id = references.size() + introduced.size();
+                try {
+                    writeDefinition(definitions, id, reference);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                introduced.add(reference);
+                introducedIds.put(reference, id);
+            }
+            return id;
+        }
+
+        @Override
+        public Object get(int id) {
+            return id < references.size() ? references.get(id) : introduced.get(id - references.size());
+        }
+    }
+
+    /**
+     * Relations between references kept by the store, from a part.
+     */
+    enum Relation {
+        /**
+         * Documents linked to a part.
+         */
+        DOCUMENT,
+        /**
+         * Child parts of a part.
+         */
+        STRUCTURE
+    }
+
+    /**
+     * Committed entities of one type, and the heads of their references and versions.
+     */
+    private static final class Table {
+        final ConcurrentMap<Part.PartPK, Part> rows = new ConcurrentHashMap<>();
+        // Rows of the commits not durable yet, guarded by commitLock
+        final Map<Part.PartPK, Part> logged = new HashMap<>();
+        // Latest version of each reference
+        final ConcurrentMap<String, Head> heads = new ConcurrentHashMap<>();
+        // Latest iteration of each version, by key with iteration 0
+        final ConcurrentMap<Part.PartPK, Integer> iterations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Commit appended to the log, applied once it is durable.
+     */
+    private static final class LoggedCommit {
+        final long lsn;
+        final List<Part> rows;
+        final List<EmbeddedTransaction.LinkChange> linkChanges;
+
+        LoggedCommit(long lsn, List<Part> rows, List<EmbeddedTransaction.LinkChange> linkChanges) {
+            this.lsn = lsn;
+            this.rows = rows;
+            this.linkChanges = linkChanges;
+        }
+    }
+
+    /**
+     * Latest version of a reference.
+     */
+    private static final class Head {
+        final String version;
+        final int ordinal;
+
+        Head(String version, int ordinal) {
+            this.version = version;
+            this.ordinal = ordinal;
+        }
+    }
+}
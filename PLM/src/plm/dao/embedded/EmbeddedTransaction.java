@@ -0,0 +1,132 @@
+package plm.dao.embedded;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import plm.dao.EntityConflictException;
+import plm.model.Part;
+
+/**
+ * Writes of a transaction of the {@link EmbeddedStore}, kept aside until it commits.
+ *
+ * The transaction reads its own writes: an entity written twice keeps the state of its
+ * last write, with the lock version read by its first write, which the store checks at
+ * commit time.
+ */
+final class EmbeddedTransaction {
+
+    // Writes of the entities, by key, in the order of their first write
+    private final Map<Part.PartPK, Write> writes = new LinkedHashMap<>();
+
+    // Links and unlinks, in order
+    private final List<LinkChange> linkChanges = new ArrayList<>();
+
+    private boolean rollbackOnly;
+
+    /**
+     * Records the creation of an entity.
+     *
+     * @param key    The key of the entity.
+     * @param entity The entity.
+     * @throws EntityConflictException If the entity was already written by the transaction.
+     */
+    void create(Part.PartPK key, Part entity) {
+        if (writes.containsKey(key)) {
+            throw new EntityConflictException(entity.getClass(), null);
+        }
+        writes.put(key, new Write(entity, true, 0));
+    }
+
+    /**
+     * Records the update of an entity.
+     *
+     * @param key    The key of the entity.
+     * @param entity The entity.
+     */
+    void update(Part.PartPK key, Part entity) {
+        Write previous = writes.get(key);
+        if (previous == null) {
+            writes.put(key, new Write(entity, false, entity.getLockVersion()));
+        } else {
+            writes.put(key, new Write(entity, previous.created, previous.expectedVersion));
+        }
+    }
+
+    /**
+     * Records a link or an unlink between two references.
+     *
+     * @param relation      The relation of the references.
+     * @param link          true to link, false to unlink.
+     * @param fromReference The reference of the part.
+     * @param toReference   The reference of the linked document or child part.
+     */
+    void changeLink(EmbeddedStore.Relation relation, boolean link, String fromReference, String toReference) {
+        linkChanges.add(new LinkChange(relation, link, fromReference, toReference));
+    }
+
+    /**
+     * Gets the last write of an entity.
+     *
+     * @param key The key of the entity.
+     * @return The write, null if the transaction did not write the entity.
+     */
+    Write get(Part.PartPK key) {
+        return writes.get(key);
+    }
+
+    Collection<Write> getWrites() {
+        return writes.values();
+    }
+
+    List<LinkChange> getLinkChanges() {
+        return linkChanges;
+    }
+
+    boolean isEmpty() {
+        return writes.isEmpty() && linkChanges.isEmpty();
+    }
+
+    boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+
+    /**
+     * Last write of an entity.
+     */
+    static final class Write {
+        final Part entity;
+        final boolean created;
+        // Lock version of the stored entity, checked at commit time
+        final long expectedVersion;
+
+        Write(Part entity, boolean created, long expectedVersion) {
+            this.entity = entity;
+            this.created = created;
+            this.expectedVersion = expectedVersion;
+        }
+    }
+
+    /**
+     * Link or unlink between a part and a document or a child part.
+     */
+    static final class LinkChange {
+        final EmbeddedStore.Relation relation;
+        final boolean link;
+        final String fromReference;
+        final String toReference;
+
+        LinkChange(EmbeddedStore.Relation relation, boolean link, String fromReference, String toReference) {
+            this.relation = relation;
+            this.link = link;
+            this.fromReference = fromReference;
+            this.toReference = toReference;
+        }
+    }
+}
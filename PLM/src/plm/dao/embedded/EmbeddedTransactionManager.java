@@ -0,0 +1,141 @@
+package plm.dao.embedded;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.SmartTransactionObject;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction manager of the {@link EmbeddedStore}, replacing the one of the database
+ * under the {@value EmbeddedStore#PROFILE} profile, so that the {@code @Transactional}
+ * services and the BatchExecutor run unchanged.
+ *
+ * A transaction binds an {@link EmbeddedTransaction} to the thread, which collects the
+ * writes of the DAOs; committing it commits them to the store at once. The isolation
+ * level is read committed, whatever the definition asks: reads see the committed entities
+ * and the writes of the transaction.
+ */
+@Component("transactionManager")
+@Profile(EmbeddedStore.PROFILE)
+public class EmbeddedTransactionManager extends AbstractPlatformTransactionManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private EmbeddedStore store;
+
+    /**
+     * Sets the store committing the transactions.
+     *
+     * @param store The EmbeddedStore to set.
+     */
+    @Autowired
+    public void setStore(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object doGetTransaction() {
+        return new TransactionObject((EmbeddedTransaction) TransactionSynchronizationManager.getResource(store));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return ((TransactionObject) transaction).transaction != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        TransactionObject transactionObject = (TransactionObject) transaction;
+        transactionObject.transaction = new EmbeddedTransaction();
+        transactionObject.bound = true;
+        TransactionSynchronizationManager.bindResource(store, transactionObject.transaction);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object doSuspend(Object transaction) {
+        ((TransactionObject) transaction).transaction = null;
+        return TransactionSynchronizationManager.unbindResource(store);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        TransactionSynchronizationManager.bindResource(store, suspendedResources);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        store.commit(((TransactionObject) status.getTransaction()).transaction);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The writes are simply dropped: nothing reached the store.
+     */
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doSetRollbackOnly(DefaultTransactionStatus status) {
+        ((TransactionObject) status.getTransaction()).transaction.setRollbackOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        TransactionObject transactionObject = (TransactionObject) transaction;
+        if (transactionObject.bound) {
+            TransactionSynchronizationManager.unbindResource(store);
+        }
+    }
+
+    /**
+     * Transaction of the store bound to the thread, if any.
+     */
+    private static final class TransactionObject implements SmartTransactionObject {
+        EmbeddedTransaction transaction;
+        // true if this transaction object bound the transaction, and must unbind it
+        boolean bound;
+
+        TransactionObject(EmbeddedTransaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public boolean isRollbackOnly() {
+            return transaction.isRollbackOnly();
+        }
+
+        @Override
+        public void flush() {
+        }
+    }
+}
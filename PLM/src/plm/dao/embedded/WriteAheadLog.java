@@ -0,0 +1,510 @@
+package plm.dao.embedded;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import plm.metrics.Histogram;
+
+/**
+ * Append-only write-ahead log of the {@link EmbeddedStore}, split into segment files
+ * named after the sequence number of their first record.
+ *
+ * Commits are grouped: committing threads queue their records and wait, while a single
+ * writer thread writes everything queued so far in one gathering write and forces it to
+ * the disk once, so the cost of a force is shared by all the commits arriving during the
+ * previous one. Each record is framed with its length and CRC-32, so that a record torn
+ * by a crash is detected and dropped when the log is replayed.
+ *
+ * Every segment starts with a header describing the layout of the records (see
+ * {@link plm.model.EntityCodec#layoutOf(Class)}), checked when the segment is replayed.
+ */
+final class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int MAGIC = 0x504c4d57;
+
+    private static final String PREFIX = "wal-";
+
+    private static final String SUFFIX = ".log";
+
+    // Length and CRC-32 of a record, followed by its sequence number and its payload
+    private static final int FRAME_HEADER = 8;
+
+    private static final int MAX_RECORD = 1 << 30;
+
+    /**
+     * Replays the records of a log.
+     */
+    interface Replayer {
+
+        /**
+         * Replays one record.
+         *
+         * @param lsn     The sequence number of the record.
+         * @param payload The payload of the record.
+         * @throws IOException If the payload cannot be read.
+         */
+        void replay(long lsn, DataInputStream payload) throws IOException;
+    }
+
+    private final Path directory;
+
+    private final byte[] header;
+
+    private final boolean sync;
+
+    private final long groupCommitDelayNanos;
+
+    private final Histogram groupSizes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition queued = lock.newCondition();
+
+    private final Condition written = lock.newCondition();
+
+    // Guarded by lock
+    private List<Frame> queue = new ArrayList<>();
+    private long durableLsn;
+    private long segmentLsn;
+    private long bytesSinceRoll;
+    private Throwable failure;
+    private boolean closed;
+
+    // Used by the writer thread only
+    private FileChannel channel;
+
+    private final Thread writer;
+
+    /**
+     * Opens a new segment and starts the writer thread.
+     *
+     * @param directory  The directory of the segments.
+     * @param firstLsn   The sequence number of the next record.
+     * @param header     The header of the segments.
+     * @param options    The options of the store.
+     * @param groupSizes The histogram of the number of records per write.
+     * @throws IOException If the segment cannot be created.
+     */
+    WriteAheadLog(Path directory, long firstLsn, byte[] header, EmbeddedOptions options,
+                  Histogram groupSizes) throws IOException {
+        this.directory = directory;
+        this.header = header;
+        this.sync = options.isSync();
+        this.groupCommitDelayNanos = TimeUnit.MICROSECONDS.toNanos(options.getGroupCommitDelayMicros());
+        this.groupSizes = groupSizes;
+        this.durableLsn = firstLsn - 1;
+        this.channel = openSegment(firstLsn);
+        this.segmentLsn = firstLsn;
+        this.writer = new Thread(this::writeGroups, "plm-wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record. Records must be appended in the order of their sequence numbers.
+     *
+     * @param lsn     The sequence number of the record.
+     * @param payload The payload of the record.
+     * @throws IllegalStateException If the log failed or is closed.
+     */
+    void append(long lsn, byte[] payload) {
+        byte[] frame = new byte[FRAME_HEADER + 8 + payload.length];
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(8 + payload.length).putInt(0).putLong(lsn).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(frame, FRAME_HEADER, frame.length - FRAME_HEADER);
+        buffer.putInt(4, (int) crc.getValue());
+
+        lock.lock();
+        try {
+            checkUsable();
+            queue.add(new Frame(lsn, frame));
+            bytesSinceRoll += frame.length;
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment with the next records, once the queued ones are written.
+     *
+     * @param firstLsn The sequence number of the first record of the new segment.
+     */
+    void roll(long firstLsn) {
+        lock.lock();
+        try {
+            checkUsable();
+            queue.add(new Frame(firstLsn, null));
+            bytesSinceRoll = 0;
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a record is written (and forced to the disk if the log is synchronous).
+     *
+     * @param lsn The sequence number of the record.
+     * @throws IllegalStateException If the log failed before writing the record.
+     */
+    void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            while (durableLsn < lsn && failure == null) {
+                written.awaitUninterruptibly();
+            }
+            if (durableLsn < lsn) {
+                throw new IllegalStateException("The write-ahead log failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the log writes to a segment started by {@link #roll(long)}.
+     *
+     * @param firstLsn The sequence number of the first record of the segment.
+     * @throws IllegalStateException If the log failed before starting the segment.
+     */
+    void awaitRoll(long firstLsn) {
+        lock.lock();
+        try {
+            while (segmentLsn < firstLsn && failure == null) {
+                written.awaitUninterruptibly();
+            }
+            if (segmentLsn < firstLsn) {
+                throw new IllegalStateException("The write-ahead log failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of bytes appended since the last roll.
+     *
+     * @return The number of bytes.
+     */
+    long getBytesSinceRoll() {
+        lock.lock();
+        try {
+            return bytesSinceRoll;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the queued records, then stops the writer thread and closes the segment.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    /**
+     * Deletes the segments whose records all precede a sequence number.
+     *
+     * @param directory The directory of the segments.
+     * @param lsn       The sequence number of the first record of the segment to keep.
+     * @throws IOException If a segment cannot be deleted.
+     */
+    static void deleteSegmentsBefore(Path directory, long lsn) throws IOException {
+        for (Path segment : segments(directory).headMap(lsn).values()) {
+            Files.delete(segment);
+        }
+    }
+
+    /**
+     * Replays the records of the segments following a sequence number. A torn record at
+     * the end of the last segment, left by a crash, is dropped and truncated.
+     *
+     * @param directory The directory of the segments.
+     * @param header    The expected header of the segments.
+     * @param afterLsn  The sequence number of the last record already applied.
+     * @param replayer  Replays each record.
+     * @return The sequence number of the last record.
+     * @throws IOException           If a segment cannot be read.
+     * @throws IllegalStateException If a segment was written with other entity classes,
+     *                               or if records are missing.
+     */
+    static long replay(Path directory, byte[] header, long afterLsn, Replayer replayer) throws IOException {
+        TreeMap<Long, Path> segments = segments(directory);
+        long lastLsn = afterLsn;
+        while (!segments.isEmpty()) {
+            Path segment = segments.pollFirstEntry().getValue();
+            boolean last = segments.isEmpty();
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer expected = ByteBuffer.allocate(8 + header.length).putInt(MAGIC).putInt(header.length)
+                        .put(header);
+                ByteBuffer actual = ByteBuffer.allocate(expected.capacity());
+                if (!readFully(in, actual) || !actual.flip().equals(expected.flip())) {
+                    if (last && in.size() < expected.capacity()) {
+                        // Segment created by a crashed writer before its header was forced
+                        logger.warn("Ignoring incomplete segment {}", segment);
+                        continue;
+                    }
+                    throw new IllegalStateException("Segment " + segment
+                            + " was written with other entity classes or is corrupt");
+                }
+                long position = in.position();
+                ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER);
+                while (true) {
+                    frameHeader.clear();
+                    if (!readFully(in, frameHeader)) {
+                        if (frameHeader.position() == 0) {
+                            break;
+                        }
+                        truncate(segment, in, position, last);
+                        break;
+                    }
+                    int length = frameHeader.getInt(0);
+                    int crc = frameHeader.getInt(4);
+                    ByteBuffer body = length < 8 || length > MAX_RECORD ? null : ByteBuffer.allocate(length);
+                    if (body == null || !readFully(in, body) || crcOf(body.array()) != crc) {
+                        truncate(segment, in, position, last);
+                        break;
+                    }
+                    long lsn = body.getLong(0);
+                    if (lsn > lastLsn) {
+                        if (lsn != lastLsn + 1) {
+                            throw new IllegalStateException("Missing records " + (lastLsn + 1) + " to "
+                                    + (lsn - 1) + " before segment " + segment);
+                        }
+                        replayer.replay(lsn, new DataInputStream(
+                                new ByteArrayInputStream(body.array(), 8, length - 8)));
+                        lastLsn = lsn;
+                    }
+                    position = in.position();
+                }
+            }
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Writes the queued records as groups until the log is closed.
+     */
+    private void writeGroups() {
+        while (true) {
+            List<Frame> group;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    queued.awaitUninterruptibly();
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (groupCommitDelayNanos > 0) {
+                LockSupport.parkNanos(groupCommitDelayNanos);
+            }
+            lock.lock();
+            try {
+                group = queue;
+                queue = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                write(group);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Cannot write the write-ahead log, the store must be restarted", e);
+                lock.lock();
+                try {
+                    failure = e;
+                    written.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a group of records and forces them to the disk.
+     *
+     * @param group The records, and the starts of the segments.
+     * @throws IOException If the records cannot be written.
+     */
+    private void write(List<Frame> group) throws IOException {
+        List<ByteBuffer> buffers = new ArrayList<>(group.size());
+        long lastLsn = -1;
+        for (Frame frame : group) {
+            if (frame.bytes != null) {
+                buffers.add(ByteBuffer.wrap(frame.bytes));
+                lastLsn = frame.lsn;
+                continue;
+            }
+            flush(buffers, lastLsn);
+            buffers.clear();
+            channel.close();
+            channel = openSegment(frame.lsn);
+            lock.lock();
+            try {
+                segmentLsn = frame.lsn;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        flush(buffers, lastLsn);
+        groupSizes.record(group.size());
+    }
+
+    /**
+     * Writes records to the current segment, forces them and wakes up their committers.
+     */
+    private void flush(List<ByteBuffer> buffers, long lastLsn) throws IOException {
+        if (buffers.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : array) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(array);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+        lock.lock();
+        try {
+            durableLsn = lastLsn;
+            written.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates a segment and writes its header.
+     */
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", PREFIX, firstLsn, SUFFIX));
+        FileChannel out = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + header.length).putInt(MAGIC).putInt(header.length)
+                .put(header);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        out.force(true);
+        return out;
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new IllegalStateException("The write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("The write-ahead log is closed");
+        }
+    }
+
+    /**
+     * Lists the segments of a directory by the sequence number of their first record.
+     */
+    private static TreeMap<Long, Path> segments(Path directory) throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    segments.put(Long.parseLong(name.substring(PREFIX.length(),
+                            name.length() - SUFFIX.length())), file);
+                }
+            });
+        }
+        return segments;
+    }
+
+    /**
+     * Drops a torn record at the end of the last segment.
+     */
+    private static void truncate(Path segment, FileChannel in, long position, boolean last) throws IOException {
+        if (!last) {
+            throw new IllegalStateException("Segment " + segment + " is corrupt at " + position);
+        }
+        logger.warn("Dropping the torn record at {} of segment {}", position, segment);
+        in.truncate(position);
+        in.force(true);
+    }
+
+    /**
+     * Reads until the buffer is full.
+     *
+     * @return false if the end of the file was reached before.
+     */
+    private static boolean readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int crcOf(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * A queued record, or the start of a new segment if it has no bytes.
+     */
+    private static final class Frame {
+        final long lsn;
+        final byte[] bytes;
+
+        Frame(long lsn, byte[] bytes) {
+            this.lsn = lsn;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package plm.events;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Consumer of the {@link LifecycleEventRing}, started by
+ * {@link LifecycleEventRing#subscribe}: a thread reading the events in order from its
+ * own cursor, in batches, and handing them to its handler.
+ *
+ * A handler failing on an event is logged and the consumer goes on with the next event.
+ */
+public final class EventConsumer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventConsumer.class);
+
+    private final String name;
+
+    private final LifecycleEventRing ring;
+
+    private final LifecycleEventHandler handler;
+
+    private final EventConsumerOptions options;
+
+    private final Thread thread;
+
+    // Next sequence to read, updated once per batch
+    private final AtomicLong cursor;
+
+    private final AtomicLong lost = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    EventConsumer(String name, LifecycleEventRing ring, LifecycleEventHandler handler,
+                  EventConsumerOptions options, long start) {
+        this.name = name;
+        this.ring = ring;
+        this.handler = handler;
+        this.options = options;
+        this.cursor = new AtomicLong(start);
+        this.thread = new Thread(this::run, "plm-events-" + name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Gets the name of the consumer.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the sequence of the next event to read.
+     *
+     * @return The cursor.
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Gets the number of events published but not read yet.
+     *
+     * @return The lag.
+     */
+    public long getLag() {
+        return Math.max(0, ring.getPublished() - cursor.get());
+    }
+
+    /**
+     * Gets the number of events overwritten before they were read.
+     *
+     * @return The number of events.
+     */
+    public long getLost() {
+        return lost.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Stops the thread of the consumer, waiting a moment for the batch in progress.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ring.remove(this);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Reads the events until the consumer is closed. Every event is delivered once the
+     * next one is read, so that the last one of a batch is known when it is delivered.
+     */
+    private void run() {
+        LifecycleEvent pending = new LifecycleEvent();
+        LifecycleEvent next = new LifecycleEvent();
+        int capacity = ring.getCapacity();
+        long sequence = cursor.get();
+        int attempts = 0;
+        while (running) {
+            long published = ring.getPublished();
+            if (published - sequence > capacity) {
+                // a lap behind: the oldest events are overwritten
+                lost.addAndGet(published - capacity - sequence);
+                sequence = published - capacity;
+            }
+            long end = Math.min(published, sequence + options.getBatchSize());
+            long first = sequence;
+            boolean hasPending = false;
+            while (sequence < end) {
+                int read = ring.read(sequence, next);
+                if (read == LifecycleEventRing.NOT_PUBLISHED) {
+                    break;
+                }
+                sequence++;
+                if (read == LifecycleEventRing.OVERWRITTEN) {
+                    lost.incrementAndGet();
+                    continue;
+                }
+                if (hasPending) {
+                    deliver(pending, false);
+                }
+                LifecycleEvent delivered = pending;
+                pending = next;
+                next = delivered;
+                hasPending = true;
+            }
+            if (hasPending) {
+                deliver(pending, true);
+            }
+            cursor.lazySet(sequence);
+            if (sequence == first) {
+                options.getWaitStrategy().idle(attempts);
+                attempts = Math.min(attempts + 1, Integer.MAX_VALUE - 1);
+            } else {
+                attempts = 0;
+            }
+        }
+    }
+
+    private void deliver(LifecycleEvent event, boolean endOfBatch) {
+        try {
+            handler.onEvent(event, endOfBatch);
+        } catch (RuntimeException e) {
+            logger.warn("Consumer {} failed on {}", name, event, e);
+        }
+    }
+}
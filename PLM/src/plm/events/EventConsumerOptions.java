@@ -0,0 +1,63 @@
+package plm.events;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of a consumer of the {@link LifecycleEventRing}.
+ */
+public class EventConsumerOptions {
+
+    private int batchSize = 256;
+
+    private WaitStrategy waitStrategy = WaitStrategy.parking(TimeUnit.MILLISECONDS.toNanos(1));
+
+    // Getters
+
+    /**
+     * Gets the maximum number of events read before the handler is told the batch ended.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets how the consumer waits when it has read every event.
+     *
+     * @return The wait strategy.
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    // Setters
+
+    /**
+     * Sets the maximum number of events of a batch.
+     *
+     * @param batchSize The batch size, at least 1.
+     * @return The current EventConsumerOptions instance (for chaining).
+     */
+    public EventConsumerOptions setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be a positive integer");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets how the consumer waits for the next events.
+     *
+     * @param waitStrategy The wait strategy, see the factories of {@link WaitStrategy}.
+     * @return The current EventConsumerOptions instance (for chaining).
+     */
+    public EventConsumerOptions setWaitStrategy(WaitStrategy waitStrategy) {
+        if (waitStrategy == null) {
+            throw new IllegalArgumentException("waitStrategy cannot be null");
+        }
+        this.waitStrategy = waitStrategy;
+        return this;
+    }
+}
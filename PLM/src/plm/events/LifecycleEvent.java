@@ -0,0 +1,159 @@
+package plm.events;
+
+import plm.model.Part;
+
+/**
+ * Outcome of a lifecycle operation on a Part or a Document, published to the
+ * {@link LifecycleEventRing} once the operation is committed.
+ *
+ * Events are preallocated and reused: the ring holds one instance per slot, overwritten
+ * by every lap, and each consumer one instance that the events are copied into. A
+ * handler must copy what it keeps beyond the call which received the event.
+ */
+public final class LifecycleEvent {
+
+    /**
+     * Lifecycle operations publishing events.
+     */
+    public enum Operation {
+        RESERVE, FREE, SET_STATE, REVISE
+    }
+
+    private long sequence;
+
+    private long timestamp;
+
+    private Operation operation;
+
+    private Class<? extends Part> entityType;
+
+    private String reference;
+
+    private String version;
+
+    private int iteration;
+
+    private String userId;
+
+    private String lifeCycleState;
+
+    // Getters
+
+    /**
+     * Gets the position of the event in the ring, increasing by one per event.
+     *
+     * @return The sequence of the event.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the time the event was published.
+     *
+     * @return The time, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the operation.
+     *
+     * @return The operation.
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the type of the entity.
+     *
+     * @return Part or Document.
+     */
+    public Class<? extends Part> getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Gets the reference of the entity.
+     *
+     * @return The reference.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Gets the version of the entity resulting from the operation, e.g. the new version
+     * of a revision.
+     *
+     * @return The version.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the iteration of the entity resulting from the operation, e.g. the new
+     * iteration of a reservation.
+     *
+     * @return The iteration.
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Gets the user who ran the operation.
+     *
+     * @return The user.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the lifecycle state of the entity after the operation.
+     *
+     * @return The lifecycle state.
+     */
+    public String getLifeCycleState() {
+        return lifeCycleState;
+    }
+
+    /**
+     * Sets all the fields of the event.
+     */
+    void set(long sequence, long timestamp, Operation operation, Class<? extends Part> entityType,
+             String reference, String version, int iteration, String userId, String lifeCycleState) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.entityType = entityType;
+        this.reference = reference;
+        this.version = version;
+        this.iteration = iteration;
+        this.userId = userId;
+        this.lifeCycleState = lifeCycleState;
+    }
+
+    /**
+     * Copies all the fields of another event.
+     *
+     * @param other The event to copy.
+     */
+    void copyFrom(LifecycleEvent other) {
+        set(other.sequence, other.timestamp, other.operation, other.entityType, other.reference,
+                other.version, other.iteration, other.userId, other.lifeCycleState);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "LifecycleEvent#" + sequence + " " + operation + " " + entityType.getSimpleName() + " "
+                + reference + " " + version + "." + iteration + " by " + userId + " (" + lifeCycleState + ")";
+    }
+}
@@ -0,0 +1,18 @@
+package plm.events;
+
+/**
+ * Handler of the events read by a consumer of the {@link LifecycleEventRing}, called on
+ * the thread of the consumer.
+ */
+@FunctionalInterface
+public interface LifecycleEventHandler {
+
+    /**
+     * Handles an event.
+     *
+     * @param event      The event, reused for the next events.
+     * @param endOfBatch true for the last event available when the batch was read, e.g.
+     *                   to flush the work buffered for the previous events.
+     */
+    void onEvent(LifecycleEvent event, boolean endOfBatch);
+}
@@ -0,0 +1,221 @@
+package plm.events;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import plm.metrics.MetricsRegistry;
+import plm.model.Part;
+
+/**
+ * In-process ring buffer of the {@link LifecycleEvent} published by the services once
+ * their operations are committed, read by any number of consumers.
+ *
+ * The slots and their events are allocated once. Publishing claims the next sequence
+ * with one atomic increment, writes the fields of the event in its slot and releases
+ * the slot by storing its sequence: it never locks and never waits for the consumers.
+ * Every consumer has its own cursor and thread (see {@link #subscribe}) and copies the
+ * events out of the slots, checking afterwards that the slot still holds the same
+ * sequence. A consumer more than a lap behind has lost the overwritten events: it skips
+ * them, counts them and goes on with the oldest events still in the ring. A slow
+ * consumer therefore never slows down the operations, at worst it misses events.
+ *
+ * The events published, the events lost by every consumer and its lag are exported as
+ * the {@code plm_events_published_total}, {@code plm_events_lost_total} and
+ * {@code plm_events_lag} gauges.
+ */
+@Component
+public class LifecycleEventRing implements DisposableBean {
+
+    /**
+     * Number of slots of the ring created by Spring.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // Results of a read
+    static final int READ = 0;
+    static final int NOT_PUBLISHED = 1;
+    static final int OVERWRITTEN = 2;
+
+    // State of a slot being written
+    private static final long WRITING = Long.MIN_VALUE;
+
+    private final LifecycleEvent[] slots;
+
+    // Sequence of the event of each slot, WRITING while it is written
+    private final AtomicLongArray states;
+
+    private final int mask;
+
+    // Next sequence to claim
+    private final AtomicLong next = new AtomicLong();
+
+    // Events of publishers lapped while they were writing, given up
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final List<EventConsumer> consumers = new CopyOnWriteArrayList<>();
+
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    /**
+     * Creates a ring of {@link #DEFAULT_CAPACITY} slots.
+     */
+    public LifecycleEventRing() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a ring.
+     *
+     * @param capacity The number of slots, a power of two: the number of events a
+     *                 consumer can fall behind without losing any.
+     */
+    public LifecycleEventRing(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        slots = new LifecycleEvent[capacity];
+        states = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new LifecycleEvent();
+            // as if the previous lap had written it
+            states.set(i, i - (long) capacity);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Sets the registry of the metrics of the ring and of its consumers.
+     *
+     * @param metricsRegistry The MetricsRegistry to set.
+     */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        metricsRegistry.gauge("plm_events_published_total", this::getPublished);
+        metricsRegistry.gauge("plm_events_dropped_total", this::getDropped);
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Gets the number of events published, which is also the sequence of the next one.
+     *
+     * @return The number of events.
+     */
+    public long getPublished() {
+        return next.get();
+    }
+
+    /**
+     * Gets the number of events given up by publishers which were lapped while writing
+     * them, i.e. descheduled for a whole lap of the ring.
+     *
+     * @return The number of events.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Publishes an event.
+     *
+     * @param operation      The operation.
+     * @param entityType     The type of the entity, Part or Document.
+     * @param reference      The reference of the entity.
+     * @param version        The version resulting from the operation.
+     * @param iteration      The iteration resulting from the operation.
+     * @param userId         The user who ran the operation.
+     * @param lifeCycleState The lifecycle state after the operation.
+     */
+    public void publish(LifecycleEvent.Operation operation, Class<? extends Part> entityType, String reference,
+                        String version, int iteration, String userId, String lifeCycleState) {
+        long sequence = next.getAndIncrement();
+        int index = (int) sequence & mask;
+        while (true) {
+            long state = states.get(index);
+            if (state >= sequence) {
+                // a later lap already wrote the slot
+                dropped.incrementAndGet();
+                return;
+            }
+            if (state != WRITING && states.compareAndSet(index, state, WRITING)) {
+                break;
+            }
+            // only when lapped: the publisher of the previous lap is still writing
+            Thread.onSpinWait();
+        }
+        slots[index].set(sequence, System.currentTimeMillis(), operation, entityType, reference, version,
+                iteration, userId, lifeCycleState);
+        states.set(index, sequence);
+    }
+
+    /**
+     * Starts a consumer of the events published from now on, on a thread of its own.
+     *
+     * @param name    The name of the consumer, labelling its thread and metrics.
+     * @param handler The handler of the events.
+     * @param options The batching and waiting of the consumer.
+     * @return The consumer, to be closed once no longer used.
+     */
+    public EventConsumer subscribe(String name, LifecycleEventHandler handler, EventConsumerOptions options) {
+        EventConsumer consumer = new EventConsumer(name, this, handler, options, next.get());
+        consumers.add(consumer);
+        metricsRegistry.gauge("plm_events_lag", consumer::getLag, "consumer", name);
+        metricsRegistry.gauge("plm_events_lost_total", consumer::getLost, "consumer", name);
+        consumer.start();
+        return consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Stops the consumers.
+     */
+    @Override
+    public void destroy() {
+        for (EventConsumer consumer : consumers) {
+            consumer.close();
+        }
+    }
+
+    /**
+     * Stops tracking a closed consumer.
+     */
+    void remove(EventConsumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * Copies the event of a sequence.
+     *
+     * @param sequence The sequence of the event.
+     * @param into     The event receiving the copy.
+     * @return {@link #READ}, {@link #NOT_PUBLISHED} if the event is not written yet, or
+     * {@link #OVERWRITTEN} if it was overwritten by a later lap, before or during the copy.
+     */
+    int read(long sequence, LifecycleEvent into) {
+        int index = (int) sequence & mask;
+        long state = states.get(index);
+        if (state == sequence) {
+            into.copyFrom(slots[index]);
+            // the copy must not be reordered after the check below
+            VarHandle.acquireFence();
+            return states.get(index) == sequence ? READ : OVERWRITTEN;
+        }
+        return state > sequence ? OVERWRITTEN : NOT_PUBLISHED;
+    }
+}
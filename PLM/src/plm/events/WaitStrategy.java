@@ -0,0 +1,66 @@
+package plm.events;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a consumer of the {@link LifecycleEventRing} waits for the next events. The
+ * publishers never signal the consumers, so waiting costs nothing to the operations:
+ * the strategies only trade the latency of the consumer against the CPU it burns.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+    /**
+     * Waits once, after a poll which found no event.
+     *
+     * @param attempts The number of polls without event so far, from 0.
+     */
+    void idle(int attempts);
+
+    /**
+     * Spins on the CPU: lowest latency, for a consumer with a dedicated core.
+     *
+     * @return The strategy.
+     */
+    static WaitStrategy busySpin() {
+        return attempts -> Thread.onSpinWait();
+    }
+
+    /**
+     * Spins a little, then yields the CPU to the other threads between polls.
+     *
+     * @return The strategy.
+     */
+    static WaitStrategy yielding() {
+        return attempts -> {
+            if (attempts < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        };
+    }
+
+    /**
+     * Spins, yields, then parks for longer and longer periods, up to a maximum: a
+     * consumer idle for a while uses almost no CPU, and sees the next event within the
+     * maximum period.
+     *
+     * @param maxParkNanos The longest period parked, in nanoseconds.
+     * @return The strategy.
+     */
+    static WaitStrategy parking(long maxParkNanos) {
+        if (maxParkNanos < 1) {
+            throw new IllegalArgumentException("maxParkNanos must be a positive integer");
+        }
+        return attempts -> {
+            if (attempts < 100) {
+                Thread.onSpinWait();
+            } else if (attempts < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(Math.min(maxParkNanos, 1000L << Math.min(attempts - 200, 20)));
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package plm.i18n;
+
+import java.util.Locale;
+
+/**
+ * Thrown when an argument is rejected, with a message of the {@link MessageCatalog}.
+ *
+ * The message is formatted only when it is read, in the locale current at that time:
+ * the one of the request rendering the error, whichever thread raised the exception.
+ * The key and arguments of the message are kept, so the exception can be serialized.
+ */
+public class LocalizedArgumentException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Message message;
+
+    /**
+     * Constructor to initialize the message.
+     *
+     * @param message The message of the rejection.
+     */
+    public LocalizedArgumentException(Message message) {
+        this.message = message;
+    }
+
+    /**
+     * Gets the unformatted message.
+     *
+     * @return The message of the rejection.
+     */
+    public Message getMessageSource() {
+        return message;
+    }
+
+    /**
+     * Formats the message in a given locale, e.g. for the logs.
+     *
+     * @param locale The locale of the reader.
+     * @return The formatted message.
+     */
+    public String getMessage(Locale locale) {
+        return message.format(locale);
+    }
+
+    /**
+     * Gets the message, formatted in the locale of the current request.
+     *
+     * @return The formatted message.
+     */
+    @Override
+    public String getMessage() {
+        return message.format(MessageCatalog.currentLocale());
+    }
+}
@@ -0,0 +1,160 @@
+package plm.i18n;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * Message of the catalog which is not formatted yet: a key, its arguments and, for the
+ * rejections of a field, the key of the field which prefixes the message.
+ *
+ * A message is formatted only when it is needed, in the locale of the reader:
+ * {@link #toString()} formats it in the locale of the logs, so passing a message as an
+ * SLF4J argument formats it only if the log level is enabled.
+ *
+ * Messages are serializable: arguments which are not messages are serialized as the
+ * strings they are formatted to.
+ */
+public final class Message implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final String field;
+
+    private final String key;
+
+    private final transient Object[] arguments;
+
+    private Message(String field, String key, Object[] arguments) {
+        this.field = field;
+        this.key = key;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Creates a message without argument.
+     *
+     * @param key The key of the message.
+     * @return The message.
+     */
+    public static Message of(String key) {
+        return new Message(null, key, NO_ARGUMENTS);
+    }
+
+    /**
+     * Creates a message.
+     *
+     * @param key       The key of the message.
+     * @param arguments The arguments of the message, formatted only when it is.
+     * @return The message.
+     */
+    public static Message of(String key, Object... arguments) {
+        return new Message(null, key, arguments);
+    }
+
+    /**
+     * Creates the rejection of a field, e.g. "Reserved by cannot be blank".
+     *
+     * @param field The key of the name of the field.
+     * @param key   The key of the error.
+     * @return The message.
+     */
+    public static Message field(String field, String key) {
+        return new Message(field, key, NO_ARGUMENTS);
+    }
+
+    /**
+     * Gets the key of the message.
+     *
+     * @return The key of the error, without the field.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the key of the field the message is about.
+     *
+     * @return The key of the field, null if the message is not about a field.
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Formats the message.
+     *
+     * @param locale The locale of the reader.
+     * @return The formatted message.
+     */
+    public String format(Locale locale) {
+        MessageCatalog catalog = MessageCatalog.forLocale(locale);
+        if (field == null && arguments.length == 0) {
+            return catalog.getString(key);
+        }
+        StringBuilder builder = new StringBuilder(64);
+        appendTo(builder, catalog);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the formatted message to a builder.
+     *
+     * @param builder The builder of the message.
+     * @param catalog The catalog of the locale of the reader.
+     */
+    void appendTo(StringBuilder builder, MessageCatalog catalog) {
+        if (field != null) {
+            builder.append(catalog.getString(field)).append(' ');
+        }
+        catalog.appendTo(builder, key, arguments);
+    }
+
+    /**
+     * Formats the message in the locale of the logs.
+     *
+     * @return The formatted message.
+     */
+    @Override
+    public String toString() {
+        return format(MessageCatalog.LOG_LOCALE);
+    }
+
+    /**
+     * Replaces the message by its serialized form.
+     *
+     * @return The serialized form.
+     */
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    /**
+     * Serialized form of a message, whose arguments are messages or strings.
+     */
+    private static final class SerializedForm implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String field;
+
+        private final String key;
+
+        private final Serializable[] arguments;
+
+        SerializedForm(Message message) {
+            field = message.field;
+            key = message.key;
+            arguments = new Serializable[message.arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                Object argument = message.arguments[i];
+                arguments[i] = argument instanceof Message ? (Message) argument : String.valueOf(argument);
+            }
+        }
+
+        private Object readResolve() {
+            return new Message(field, key, arguments.length == 0 ? NO_ARGUMENTS : arguments);
+        }
+    }
+}
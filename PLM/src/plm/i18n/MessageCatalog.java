@@ -0,0 +1,181 @@
+package plm.i18n;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+/**
+ * Catalog of the messages of the PLM system, read from the {@code messages_*.properties}
+ * files.
+ *
+ * The file of a locale is read once, the first time the locale is used, and each of its
+ * messages compiled into a {@link MessageTemplate}; formatting a message then only looks
+ * up its template and appends the arguments. The catalogs are static because entities,
+ * which are not Spring beans, reject invalid values with its messages.
+ *
+ * Responses use the locale of the current request ({@link LocaleContextHolder}, set from
+ * the Accept-Language header), logs always use {@link #LOG_LOCALE}. Locales without
+ * properties file use the English messages.
+ */
+public final class MessageCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageCatalog.class);
+
+    private static final String BASE_NAME = "messages";
+
+    /**
+     * Locale of the logs, and of the messages outside of a request.
+     */
+    public static final Locale LOG_LOCALE = Locale.ENGLISH;
+
+    private static final MessageCatalog DEFAULT = load(LOG_LOCALE);
+
+    private static final ConcurrentMap<Locale, MessageCatalog> catalogs = new ConcurrentHashMap<>();
+
+    static {
+        catalogs.put(LOG_LOCALE, DEFAULT);
+    }
+
+    private final Locale locale;
+
+    private final Map<String, MessageTemplate> templates;
+
+    private MessageCatalog(Locale locale, Map<String, MessageTemplate> templates) {
+        this.locale = locale;
+        this.templates = templates;
+    }
+
+    /**
+     * Gets the catalog of a locale.
+     *
+     * @param locale The locale of the reader.
+     * @return The catalog, the English one if the locale has no messages.
+     */
+    public static MessageCatalog forLocale(Locale locale) {
+        if (locale == null) {
+            return DEFAULT;
+        }
+        MessageCatalog catalog = catalogs.get(locale);
+        if (catalog == null) {
+            catalog = catalogs.computeIfAbsent(locale, MessageCatalog::loadOrDefault);
+        }
+        return catalog;
+    }
+
+    /**
+     * Gets the locale of the current request.
+     *
+     * @return The locale of the request, {@link #LOG_LOCALE} outside of a request.
+     */
+    public static Locale currentLocale() {
+        LocaleContext context = LocaleContextHolder.getLocaleContext();
+        Locale locale = context != null ? context.getLocale() : null;
+        return locale != null ? locale : LOG_LOCALE;
+    }
+
+    /**
+     * Gets the locale of the catalog.
+     *
+     * @return The locale of the properties file of the catalog.
+     */
+    public Locale getLocale() {
+        return locale;
+    }
+
+    /**
+     * Gets a message without argument.
+     *
+     * @param key The key of the message.
+     * @return The message, the key itself if the catalog has no such message.
+     */
+    public String getString(String key) {
+        MessageTemplate template = templates.get(key);
+        if (template == null) {
+            return key;
+        }
+        if (template.isConstant()) {
+            return template.getConstant();
+        }
+        StringBuilder builder = new StringBuilder(64);
+        template.appendTo(builder, new Object[0], this);
+        return builder.toString();
+    }
+
+    /**
+     * Formats a message.
+     *
+     * @param key       The key of the message.
+     * @param arguments The arguments of the message.
+     * @return The formatted message, the key itself if the catalog has no such message.
+     */
+    public String format(String key, Object... arguments) {
+        MessageTemplate template = templates.get(key);
+        if (template == null) {
+            return key;
+        }
+        if (template.isConstant()) {
+            return template.getConstant();
+        }
+        StringBuilder builder = new StringBuilder(64);
+        template.appendTo(builder, arguments, this);
+        return builder.toString();
+    }
+
+    /**
+     * Appends a formatted message to a builder.
+     *
+     * @param builder   The builder of the message.
+     * @param key       The key of the message.
+     * @param arguments The arguments of the message.
+     */
+    void appendTo(StringBuilder builder, String key, Object[] arguments) {
+        MessageTemplate template = templates.get(key);
+        if (template == null) {
+            builder.append(key);
+        } else {
+            template.appendTo(builder, arguments, this);
+        }
+    }
+
+    /**
+     * Loads the catalog of a locale, falling back to the English one.
+     */
+    private static MessageCatalog loadOrDefault(Locale locale) {
+        try {
+            return load(locale);
+        } catch (MissingResourceException e) {
+            logger.debug("No messages for locale {}, using {}", locale, LOG_LOCALE);
+            return DEFAULT;
+        }
+    }
+
+    /**
+     * Reads the properties file of a locale and compiles its messages.
+     *
+     * @throws MissingResourceException If the locale has no properties file.
+     */
+    private static MessageCatalog load(Locale locale) {
+        // without fallback to the default locale of the JVM, which is not the one of the reader
+        ResourceBundle bundle = ResourceBundle.getBundle(BASE_NAME, locale,
+                ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES));
+        if (DEFAULT != null && bundle.getLocale().equals(DEFAULT.locale)) {
+            return DEFAULT;
+        }
+        Map<String, MessageTemplate> templates = new HashMap<>();
+        for (String key : bundle.keySet()) {
+            templates.put(key, MessageTemplate.compile(bundle.getString(key)));
+        }
+        logger.debug("Compiled {} messages for locale {}", templates.size(), bundle.getLocale());
+        return new MessageCatalog(bundle.getLocale(), Collections.unmodifiableMap(templates));
+    }
+}
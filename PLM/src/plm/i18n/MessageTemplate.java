@@ -0,0 +1,122 @@
+package plm.i18n;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message pattern of the catalog, split once into its literal parts and the indexes of
+ * its arguments, so that formatting only appends them.
+ *
+ * Only the {@code {0}}, {@code {1}}... placeholders are arguments. Every other character,
+ * including the apostrophes of the French messages, is literal: unlike
+ * {@link java.text.MessageFormat}, quotes do not need to be doubled.
+ */
+final class MessageTemplate {
+
+    private static final int[] NO_ARGUMENTS = new int[0];
+
+    // literals[i] precedes the argument arguments[i], the last literal ends the message
+    private final String[] literals;
+
+    private final int[] arguments;
+
+    // The pattern itself when it has no argument.
+    private final String constant;
+
+    private MessageTemplate(String[] literals, int[] arguments) {
+        this.literals = literals;
+        this.arguments = arguments;
+        this.constant = arguments.length == 0 ? literals[0] : null;
+    }
+
+    /**
+     * Compiles a message pattern.
+     *
+     * @param pattern The pattern, as read from the properties file.
+     * @return The compiled template.
+     */
+    static MessageTemplate compile(String pattern) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int end = c == '{' ? pattern.indexOf('}', i) : -1;
+            if (end > i + 1 && isIndex(pattern, i + 1, end)) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                arguments.add(Integer.parseInt(pattern.substring(i + 1, end)));
+                i = end + 1;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        literals.add(literal.toString());
+        int[] indexes = arguments.isEmpty() ? NO_ARGUMENTS : new int[arguments.size()];
+        for (int j = 0; j < indexes.length; j++) {
+            indexes[j] = arguments.get(j);
+        }
+        return new MessageTemplate(literals.toArray(new String[0]), indexes);
+    }
+
+    /**
+     * Checks if a part of a pattern is the index of an argument.
+     */
+    private static boolean isIndex(String pattern, int start, int end) {
+        if (end - start > 2) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(pattern.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the template has no argument, in which case {@link #getConstant()} is
+     * the whole message.
+     *
+     * @return true if the template has no argument.
+     */
+    boolean isConstant() {
+        return constant != null;
+    }
+
+    /**
+     * Gets the message of a template without argument.
+     *
+     * @return The message, null if the template has arguments.
+     */
+    String getConstant() {
+        return constant;
+    }
+
+    /**
+     * Appends the message to a builder.
+     *
+     * @param builder   The builder of the message.
+     * @param arguments The arguments, missing ones being left as their placeholder.
+     * @param catalog   The catalog formatting the arguments which are messages.
+     */
+    void appendTo(StringBuilder builder, Object[] arguments, MessageCatalog catalog) {
+        for (int i = 0; i < this.arguments.length; i++) {
+            builder.append(literals[i]);
+            int index = this.arguments[i];
+            if (index < arguments.length) {
+                Object argument = arguments[index];
+                if (argument instanceof Message) {
+                    ((Message) argument).appendTo(builder, catalog);
+                } else {
+                    builder.append(argument);
+                }
+            } else {
+                builder.append('{').append(index).append('}');
+            }
+        }
+        builder.append(literals[literals.length - 1]);
+    }
+}
@@ -0,0 +1,672 @@
+package plm.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import plm.dao.EntityHeadDao;
+import plm.dao.embedded.EmbeddedStore;
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+import plm.model.Document;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionLabelSequence;
+import plm.model.VersionSchema;
+
+/**
+ * Streaming importer of Part and Document rows from CSV or NDJSON files.
+ *
+ * The import runs as a pipeline of three stages connected by bounded queues:
+ * <ul>
+ * <li>the calling thread reads the file line by line and groups the lines in chunks,</li>
+ * <li>several parser threads parse and validate the rows of the chunks and build the
+ * entities, so the setters never reject (nor log) a row,</li>
+ * <li>one writer thread inserts the chunks in the order of the file through a
+ * stateless session with large JDBC batches, one transaction per chunk.</li>
+ * </ul>
+ * At most {@code 2 * parallelism + 2} chunks are in flight at any time, so the memory
+ * used does not depend on the size of the file.
+ *
+ * Invalid rows are logged and skipped. After each committed chunk, the number of its last
+ * line is written to the checkpoint file (if any): an interrupted import given the same
+ * checkpoint resumes after the last committed chunk, and the checkpoint is deleted once
+ * the import completes.
+ *
+ * Columns (CSV header or NDJSON keys): type (Part or Document, Part by default),
+ * reference, version, iteration, lifeCycleState, lifeCycleTemplate and versionSchema
+ * (identifiers), partAttribute1, partAttribute2, documentAttribute1, documentAttribute2.
+ */
+@Component
+@Profile("!" + EmbeddedStore.PROFILE)
+public class BulkImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+
+    /**
+     * Default number of rows per chunk, i.e. per transaction.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Default JDBC batch size of the inserts.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // Interval between two progress reports.
+    private static final long PROGRESS_INTERVAL_MILLIS = 5000;
+
+    // Interval at which blocked stages check whether another stage failed.
+    private static final long POLL_MILLIS = 100;
+
+    // Marks the end of the input in the queues.
+    private static final Chunk END = new Chunk(-1, 0);
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private EntityHeadDao entityHeadDao;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    // Getters
+
+    /**
+     * Gets the number of rows inserted in each transaction.
+     *
+     * @return The number of rows per chunk.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Gets the JDBC batch size of the inserts.
+     *
+     * @return The batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Gets the number of threads parsing and validating rows.
+     *
+     * @return The number of parser threads.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // Setters
+
+    /**
+     * Sets the number of rows inserted in each transaction.
+     *
+     * @param chunkSize The number of rows per chunk, at least 1.
+     * @return This importer.
+     */
+    public BulkImporter setChunkSize(int chunkSize) {
+        this.chunkSize = requirePositive(chunkSize);
+        return this;
+    }
+
+    /**
+     * Sets the JDBC batch size of the inserts.
+     *
+     * @param batchSize The batch size, at least 1.
+     * @return This importer.
+     */
+    public BulkImporter setBatchSize(int batchSize) {
+        this.batchSize = requirePositive(batchSize);
+        return this;
+    }
+
+    /**
+     * Sets the number of threads parsing and validating rows.
+     *
+     * @param parallelism The number of parser threads, at least 1.
+     * @return This importer.
+     */
+    public BulkImporter setParallelism(int parallelism) {
+        this.parallelism = requirePositive(parallelism);
+        return this;
+    }
+
+    /**
+     * Imports a file from its beginning, without checkpoint.
+     *
+     * @param input  The file to import.
+     * @param format The format of the file.
+     * @return The outcome of the import.
+     * @throws IOException If the file cannot be read.
+     */
+    public ImportReport importFile(Path input, ImportFormat format) throws IOException {
+        return importFile(input, format, null);
+    }
+
+    /**
+     * Imports a file, resuming after the line recorded in the checkpoint file if it exists.
+     *
+     * @param input      The file to import.
+     * @param format     The format of the file.
+     * @param checkpoint The checkpoint file, null to import without checkpoint.
+     * @return The outcome of the import.
+     * @throws IOException If the file or the checkpoint cannot be read or written.
+     */
+    public ImportReport importFile(Path input, ImportFormat format, Path checkpoint) throws IOException {
+        long resumedAfterLine = readCheckpoint(checkpoint);
+        if (resumedAfterLine > 0) {
+            logger.info("Resuming the import of {} after line {}", input, resumedAfterLine);
+        }
+        ImportRun run = new ImportRun(checkpoint, resumedAfterLine);
+
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService stages = Executors.newFixedThreadPool(parallelism + 1, task -> {
+            Thread thread = new Thread(task, "plm-import-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(stages.submit(() -> stage(run, () -> write(run))));
+            for (int i = 0; i < parallelism; i++) {
+                futures.add(stages.submit(() -> stage(run, () -> parse(run, format))));
+            }
+            stage(run, () -> read(input, format, run));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.fail(e);
+        } catch (Exception e) {
+            // already recorded by the failed stage
+            run.fail(e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            stages.shutdownNow();
+        }
+
+        Throwable failure = run.failure.get();
+        if (failure != null) {
+            logger.error("Import of {} aborted after {} rows: {}", input, run.imported, failure.toString());
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new IllegalStateException(failure);
+        }
+        if (checkpoint != null) {
+            Files.deleteIfExists(checkpoint);
+        }
+        ImportReport report = new ImportReport(run.imported, run.rejected, resumedAfterLine,
+                System.currentTimeMillis() - run.start);
+        logger.info("Import of {} completed: {}", input, report);
+        return report;
+    }
+
+    /**
+     * Reading stage: groups the lines of the file in chunks and hands them to the parsers.
+     *
+     * @param input  The file to import.
+     * @param format The format of the file.
+     * @param run    The state of the import.
+     */
+    private void read(Path input, ImportFormat format, ImportRun run) throws Exception {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            long lineNumber = 0;
+            String line;
+            if (format.hasHeader()) {
+                line = reader.readLine();
+                lineNumber++;
+                run.header = line == null ? new String[0] : format.parseHeader(line);
+            }
+            long sequence = 0;
+            Chunk chunk = new Chunk(sequence, chunkSize);
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber <= run.resumedAfterLine || line.trim().isEmpty()) {
+                    continue;
+                }
+                chunk.add(lineNumber, line);
+                if (chunk.size == chunkSize) {
+                    run.submit(chunk);
+                    chunk = new Chunk(++sequence, chunkSize);
+                }
+            }
+            if (chunk.size > 0) {
+                run.submit(chunk);
+            }
+        }
+        for (int i = 0; i < parallelism; i++) {
+            run.put(run.parseQueue, END);
+        }
+    }
+
+    /**
+     * Parsing stage: parses and validates the rows of the chunks and builds their entities.
+     *
+     * @param run    The state of the import.
+     * @param format The format of the file.
+     */
+    private void parse(ImportRun run, ImportFormat format) throws Exception {
+        for (Chunk chunk = run.take(run.parseQueue); chunk != END; chunk = run.take(run.parseQueue)) {
+            for (int i = 0; i < chunk.size; i++) {
+                try {
+                    chunk.entities.add(toEntity(format.parse(chunk.lines[i], run.header), run));
+                } catch (IllegalArgumentException e) {
+                    chunk.rejected++;
+                    // the message is only formatted if it is logged
+                    if (logger.isWarnEnabled()) {
+                        logger.warn("Rejected line {}: {}", chunk.lineNumbers[i], e.getMessage());
+                    }
+                }
+            }
+            chunk.lines = null;
+            run.put(run.writeQueue, chunk);
+        }
+        run.put(run.writeQueue, END);
+    }
+
+    /**
+     * Writing stage: inserts the chunks in the order of the file, one transaction per chunk.
+     *
+     * @param run The state of the import.
+     */
+    private void write(ImportRun run) throws Exception {
+        // chunks parsed ahead of the next one to write, bounded by the in-flight chunks
+        Map<Long, Chunk> pending = new HashMap<>();
+        long next = 0;
+        int ended = 0;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            session.setJdbcBatchSize(batchSize);
+            while (ended < parallelism) {
+                Chunk chunk = run.take(run.writeQueue);
+                if (chunk == END) {
+                    ended++;
+                    continue;
+                }
+                pending.put(chunk.sequence, chunk);
+                for (Chunk ready = pending.remove(next); ready != null; ready = pending.remove(++next)) {
+                    insert(session, ready);
+                    run.committed(ready);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the entities of a chunk and advances their heads in one transaction.
+     *
+     * @param session The stateless session of the writer.
+     * @param chunk   The parsed chunk.
+     */
+    private void insert(StatelessSession session, Chunk chunk) {
+        Transaction transaction = session.beginTransaction();
+        try {
+            for (Part entity : chunk.entities) {
+                session.insert(entity);
+            }
+            entityHeadDao.advance(session, chunk.entities);
+            transaction.commit();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the entity of a row, after validating all its values.
+     *
+     * @param row The values of the row, by column name.
+     * @param run The state of the import.
+     * @return The Part or Document entity.
+     * @throws IllegalArgumentException If the row is invalid.
+     */
+    private Part toEntity(Map<String, String> row, ImportRun run) {
+        String reference = require(row, "reference", "part.reference");
+        String version = require(row, "version", "part.version");
+        int iteration = parseIteration(row.get("iteration"));
+        String lifeCycleState = require(row, "lifeCycleState", "lifeCycleState");
+        LifeCycleTemplate lifeCycleTemplate = run.getReference(LifeCycleTemplate.class,
+                parseId(row.get("lifeCycleTemplate"), "lifeCycleTemplate"), "lifeCycleTemplate");
+        VersionSchema versionSchema = run.getReference(VersionSchema.class,
+                parseId(row.get("versionSchema"), "versionSchema"), "versionSchema");
+        if (!lifeCycleTemplate.isKnown(lifeCycleState)) {
+            throw new LocalizedArgumentException(
+                    Message.field("lifeCycleState", "error.unknownLifeCycleState"));
+        }
+        if (versionSchema.getOrdinal(version) == VersionLabelSequence.UNKNOWN) {
+            throw new LocalizedArgumentException(
+                    Message.field("part.version", "error.unknownVersionLabel"));
+        }
+
+        String type = valueOf(row, "type");
+        Part part;
+        if (type == null || type.equalsIgnoreCase(Part.class.getSimpleName())) {
+            part = new Part(reference, version, iteration);
+        } else if (type.equalsIgnoreCase(Document.class.getSimpleName())) {
+            Document document = new Document(reference, version, iteration);
+            if (valueOf(row, "documentAttribute1") != null) {
+                document.setDocumentAttribute1(valueOf(row, "documentAttribute1"));
+            }
+            if (valueOf(row, "documentAttribute2") != null) {
+                document.setDocumentAttribute2(valueOf(row, "documentAttribute2"));
+            }
+            part = document;
+        } else {
+            throw new LocalizedArgumentException(
+                    Message.field("entityType", "error.unknownEntityType"));
+        }
+        if (valueOf(row, "partAttribute1") != null) {
+            part.setPartAttribute1(valueOf(row, "partAttribute1"));
+        }
+        if (valueOf(row, "partAttribute2") != null) {
+            part.setPartAttribute2(valueOf(row, "partAttribute2"));
+        }
+        part.setLifeCycleTemplate(lifeCycleTemplate);
+        part.setLifeCycleState(lifeCycleState);
+        part.setVersionSchema(versionSchema);
+        return part;
+    }
+
+    /**
+     * Gets a value of a row, blank values being missing.
+     *
+     * @param row    The values of the row.
+     * @param column The name of the column.
+     * @return The trimmed value, null if it is missing.
+     */
+    private static String valueOf(Map<String, String> row, String column) {
+        String value = row.get(column);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Gets a mandatory value of a row.
+     *
+     * @param row    The values of the row.
+     * @param column The name of the column.
+     * @param field  The message key of the field.
+     * @return The trimmed value.
+     * @throws IllegalArgumentException If the value is missing.
+     */
+    private static String require(Map<String, String> row, String column, String field) {
+        String value = valueOf(row, column);
+        if (value == null) {
+            throw new LocalizedArgumentException(Message.field(field, "error.cannotBeBlank"));
+        }
+        return value;
+    }
+
+    /**
+     * Parses the iteration of a row.
+     *
+     * @param value The value of the iteration.
+     * @return The iteration.
+     * @throws IllegalArgumentException If the iteration is not a positive integer.
+     */
+    private static int parseIteration(String value) {
+        try {
+            int iteration = Integer.parseInt(value == null ? "" : value.trim());
+            if (iteration > 0) {
+                return iteration;
+            }
+        } catch (NumberFormatException e) {
+            // rejected below
+        }
+        throw new LocalizedArgumentException(
+                Message.field("part.iteration", "error.mustBePositiveInteger"));
+    }
+
+    /**
+     * Parses the identifier of a reference entity.
+     *
+     * @param value The value of the identifier.
+     * @param field The message key of the field.
+     * @return The identifier.
+     * @throws IllegalArgumentException If the identifier is missing or invalid.
+     */
+    private static long parseId(String value, String field) {
+        try {
+            return Long.parseLong(value == null ? "" : value.trim());
+        } catch (NumberFormatException e) {
+            throw new LocalizedArgumentException(Message.field(field, "error.cannotBeNull"));
+        }
+    }
+
+    /**
+     * Reads the line recorded in a checkpoint file.
+     *
+     * @param checkpoint The checkpoint file, may be null.
+     * @return The last committed line, 0 if there is no checkpoint.
+     */
+    private static long readCheckpoint(Path checkpoint) throws IOException {
+        if (checkpoint == null || !Files.exists(checkpoint)) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid import checkpoint " + checkpoint + ": " + content, e);
+        }
+    }
+
+    private static int requirePositive(int value) {
+        if (value < 1) {
+            throw new IllegalArgumentException("must be at least 1: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Runs a stage, recording its failure so that the other stages stop.
+     *
+     * @param run   The state of the import.
+     * @param stage The stage.
+     * @return null.
+     */
+    private static Void stage(ImportRun run, StageTask stage) throws Exception {
+        try {
+            stage.run();
+        } catch (AbortedException e) {
+            // another stage failed
+        } catch (Exception | Error e) {
+            run.fail(e);
+            throw e;
+        }
+        return null;
+    }
+
+    /**
+     * Body of a stage of the pipeline.
+     */
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+
+    /**
+     * Thrown in a stage to stop it when another stage failed.
+     */
+    private static class AbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        AbortedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Lines of the file read together, then their entities once parsed.
+     */
+    private static class Chunk {
+        final long sequence;
+        final long[] lineNumbers;
+        String[] lines;
+        int size;
+        final List<Part> entities;
+        int rejected;
+
+        Chunk(long sequence, int capacity) {
+            this.sequence = sequence;
+            this.lineNumbers = new long[capacity];
+            this.lines = new String[capacity];
+            this.entities = new ArrayList<>(capacity);
+        }
+
+        void add(long lineNumber, String line) {
+            lineNumbers[size] = lineNumber;
+            lines[size++] = line;
+        }
+
+        long getLastLine() {
+            return lineNumbers[size - 1];
+        }
+    }
+
+    /**
+     * State of one import: queues between the stages, progress and checkpoint.
+     */
+    private class ImportRun {
+        final Path checkpoint;
+        final long resumedAfterLine;
+        final long start = System.currentTimeMillis();
+        final BlockingQueue<Chunk> parseQueue = new ArrayBlockingQueue<>(parallelism);
+        final BlockingQueue<Chunk> writeQueue = new ArrayBlockingQueue<>(parallelism);
+        final Semaphore inFlight = new Semaphore(2 * parallelism + 2);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // reference entities by type and identifier, empty if they do not exist
+        final ConcurrentMap<String, Optional<Object>> references = new ConcurrentHashMap<>();
+        volatile String[] header;
+        // only updated by the writer
+        volatile long imported;
+        volatile long rejected;
+        long lastReport = start;
+
+        ImportRun(Path checkpoint, long resumedAfterLine) {
+            this.checkpoint = checkpoint;
+            this.resumedAfterLine = resumedAfterLine;
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+
+        void checkFailure() {
+            if (failure.get() != null) {
+                throw new AbortedException();
+            }
+        }
+
+        void submit(Chunk chunk) throws InterruptedException {
+            while (!inFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+            put(parseQueue, chunk);
+        }
+
+        void put(BlockingQueue<Chunk> queue, Chunk chunk) throws InterruptedException {
+            while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        }
+
+        Chunk take(BlockingQueue<Chunk> queue) throws InterruptedException {
+            Chunk chunk;
+            while ((chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                checkFailure();
+            }
+            return chunk;
+        }
+
+        /**
+         * Gets a lifecycle template or version schema, loaded once per import.
+         */
+        <T> T getReference(Class<T> type, long id, String field) {
+            Optional<Object> reference = references.computeIfAbsent(type.getSimpleName() + ":" + id, key -> {
+                try (Session session = sessionFactory.openSession()) {
+                    return Optional.ofNullable(session.get(type, id));
+                }
+            });
+            if (!reference.isPresent()) {
+                throw new LocalizedArgumentException(Message.field(field, "error.doesNotExist"));
+            }
+            return type.cast(reference.get());
+        }
+
+        /**
+         * Records a committed chunk: checkpoint, progress and release of its slot.
+         */
+        void committed(Chunk chunk) {
+            if (checkpoint != null) {
+                try {
+                    Path temporary = Paths.get(checkpoint + ".tmp");
+                    Files.write(temporary, Long.toString(chunk.getLastLine()).getBytes(StandardCharsets.UTF_8));
+                    Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            imported += chunk.entities.size();
+            rejected += chunk.rejected;
+            inFlight.release();
+
+            long now = System.currentTimeMillis();
+            if (now - lastReport >= PROGRESS_INTERVAL_MILLIS) {
+                lastReport = now;
+                logger.info("Imported {} rows ({} rejected) up to line {}, {} rows/s",
+                        imported, rejected, chunk.getLastLine(), imported * 1000 / Math.max(1, now - start));
+            }
+        }
+    }
+}
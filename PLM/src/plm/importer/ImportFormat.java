@@ -0,0 +1,235 @@
+package plm.importer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formats of the files read by the {@link BulkImporter}. Each line holds one row.
+ *
+ * CSV files start with a header line naming the columns, values may be quoted
+ * (a quote inside a quoted value is doubled) but cannot span several lines.
+ * NDJSON files hold one flat JSON object per line, whose values are strings,
+ * numbers, booleans or null.
+ */
+public enum ImportFormat {
+
+    CSV {
+        @Override
+        boolean hasHeader() {
+            return true;
+        }
+
+        @Override
+        public Map<String, String> parse(String line, String[] header) {
+            List<String> values = splitCsv(line);
+            if (values.size() != header.length) {
+                throw new IllegalArgumentException("expected " + header.length + " values, found " +
+                        values.size());
+            }
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                row.put(header[i], values.get(i).isEmpty() ? null : values.get(i));
+            }
+            return row;
+        }
+    },
+
+    NDJSON {
+        @Override
+        boolean hasHeader() {
+            return false;
+        }
+
+        @Override
+        public Map<String, String> parse(String line, String[] header) {
+            return new FlatJsonParser(line).parseObject();
+        }
+    };
+
+    /**
+     * Checks if the first line of a file names the columns.
+     *
+     * @return true if the format has a header line.
+     */
+    abstract boolean hasHeader();
+
+    /**
+     * Parses a line into the values of a row.
+     *
+     * @param line   The line.
+     * @param header The names of the columns, for formats with a header line.
+     * @return The values of the row, by column name (null for empty values).
+     * @throws IllegalArgumentException If the line is malformed.
+     */
+    public abstract Map<String, String> parse(String line, String[] header);
+
+    /**
+     * Parses the header line of a file.
+     *
+     * @param line The header line.
+     * @return The names of the columns.
+     */
+    String[] parseHeader(String line) {
+        List<String> names = splitCsv(line);
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Splits a CSV line into its values.
+     *
+     * @param line The line.
+     * @return The values, unquoted.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted value");
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+
+    /**
+     * Minimal parser of a flat JSON object.
+     */
+    private static class FlatJsonParser {
+        private final String json;
+        private int position;
+
+        FlatJsonParser(String json) {
+            this.json = json;
+        }
+
+        Map<String, String> parseObject() {
+            Map<String, String> row = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                position++;
+            } else {
+                do {
+                    String name = parseString();
+                    expect(':');
+                    row.put(name, parseValue());
+                } while (next() == ',');
+                position--;
+                expect('}');
+            }
+            if (skipWhitespace() < json.length()) {
+                throw new IllegalArgumentException("unexpected content after the object");
+            }
+            return row;
+        }
+
+        private String parseValue() {
+            char c = peek();
+            if (c == '"') {
+                return parseString();
+            }
+            int start = position;
+            while (position < json.length() && ",} \t".indexOf(json.charAt(position)) < 0) {
+                position++;
+            }
+            String literal = json.substring(start, position);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.isEmpty() || (c == '{' || c == '[')) {
+                throw new IllegalArgumentException("unsupported value at " + start);
+            }
+            return literal;
+        }
+
+        private String parseString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c == '\\') {
+                    char escaped = json.charAt(position++);
+                    switch (escaped) {
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'r':
+                            value.append('\r');
+                            break;
+                        case 'b':
+                            value.append('\b');
+                            break;
+                        case 'f':
+                            value.append('\f');
+                            break;
+                        case 'u':
+                            value.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                            position += 4;
+                            break;
+                        default:
+                            value.append(escaped);
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            throw new IllegalArgumentException("unterminated string");
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("expected '" + expected + "' at " + (position - 1));
+            }
+        }
+
+        private char next() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw new IllegalArgumentException("unexpected end of line");
+            }
+            return json.charAt(position++);
+        }
+
+        private char peek() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw new IllegalArgumentException("unexpected end of line");
+            }
+            return json.charAt(position);
+        }
+
+        private int skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+            return position;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package plm.importer;
+
+/**
+ * Outcome of a bulk import run by the {@link BulkImporter}.
+ */
+public class ImportReport {
+
+    private final long imported;
+    private final long rejected;
+    private final long resumedAfterLine;
+    private final long elapsedMillis;
+
+    /**
+     * Constructor to initialize the outcome of an import.
+     *
+     * @param imported         The number of imported rows.
+     * @param rejected         The number of rejected rows.
+     * @param resumedAfterLine The line after which the import resumed, 0 for a fresh import.
+     * @param elapsedMillis    The duration of the import in milliseconds.
+     */
+    public ImportReport(long imported, long rejected, long resumedAfterLine, long elapsedMillis) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.resumedAfterLine = resumedAfterLine;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the number of rows written to the database.
+     *
+     * @return The number of imported rows.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Gets the number of rows skipped because they were invalid.
+     *
+     * @return The number of rejected rows.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the line of the input file after which the import resumed from its checkpoint.
+     *
+     * @return The line number, 0 for a fresh import.
+     */
+    public long getResumedAfterLine() {
+        return resumedAfterLine;
+    }
+
+    /**
+     * Gets the duration of the import.
+     *
+     * @return The duration in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Gets the throughput of the import.
+     *
+     * @return The number of imported rows per second.
+     */
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? imported : imported * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows imported, %d rejected in %d ms (%.0f rows/s)",
+                imported, rejected, elapsedMillis, getRowsPerSecond());
+    }
+}
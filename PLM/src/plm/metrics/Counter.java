@@ -0,0 +1,39 @@
+package plm.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter of events.
+ *
+ * Increments are striped over cells (see {@link LongAdder}), so that threads counting
+ * the same events do not contend on one variable; only reads sum the cells.
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Counts one event.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Counts several events.
+     *
+     * @param events The number of events.
+     */
+    public void add(long events) {
+        count.add(events);
+    }
+
+    /**
+     * Gets the number of events counted.
+     *
+     * @return The count.
+     */
+    public long get() {
+        return count.sum();
+    }
+}
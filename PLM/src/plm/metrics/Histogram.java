@@ -0,0 +1,181 @@
+package plm.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values (latencies in nanoseconds, sizes), with a bounded
+ * relative error, in the manner of HdrHistogram.
+ *
+ * Buckets are log-linear: each power of two is split into {@value #SUB_BUCKETS} buckets
+ * of equal width, so a recorded value is known within 1/{@value #SUB_BUCKETS} (6.25%) of
+ * itself, whatever its magnitude, with a fixed number of buckets. Values up to 15 are
+ * exact.
+ *
+ * Recording is lock-free and wait-free: one increment of the bucket of the value, in a
+ * stripe of buckets chosen by the recording thread so that threads seldom share a cache
+ * line, and striped adders for the count, sum and maximum. Reads merge the stripes into
+ * a {@link Snapshot}, which is not atomic with respect to concurrent recordings.
+ */
+public final class Histogram {
+
+    /**
+     * Number of buckets per power of two.
+     */
+    public static final int SUB_BUCKETS = 16;
+
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    // Values of up to 2^40 (about 18 minutes in nanoseconds), larger values are clamped
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    private static final int STRIPES = Math.min(8,
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram.
+     */
+    public Histogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value The value, negative values being recorded as 0.
+     */
+    public void record(long value) {
+        long clamped = Math.min(Math.max(value, 0), MAX_VALUE);
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        stripes[stripe].incrementAndGet(indexOf(clamped));
+        sum.add(clamped);
+        max.accumulate(clamped);
+    }
+
+    /**
+     * Records the time elapsed since a start.
+     *
+     * @param startNanos The start, as returned by {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Merges the stripes into a snapshot of the recorded values.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long bucket = stripe.get(i);
+                counts[i] += bucket;
+                count += bucket;
+            }
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Gets the bucket of a value: values below 2 x {@value #SUB_BUCKETS} have their own
+     * bucket, the others share the bucket of their {@code SUB_BUCKET_BITS + 1} highest bits.
+     */
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the highest value of a bucket.
+     */
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Recorded values of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Gets the number of recorded values.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the sum of the recorded values.
+         *
+         * @return The sum.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Gets the largest recorded value.
+         *
+         * @return The maximum, 0 if no value was recorded.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Gets the value below which a given ratio of the recorded values fall.
+         *
+         * @param quantile The ratio, between 0 and 1 (e.g. 0.99).
+         * @return The highest value of the bucket holding the quantile, at most the
+         *         maximum; 0 if no value was recorded.
+         */
+        public long getQuantile(double quantile) {
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package plm.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the metrics of the application: counters, histograms and gauges, each
+ * identified by a name and labels.
+ *
+ * Metrics are looked up once by the code recording them, which then keeps them: the
+ * registry is only involved when a metric is created and when the metrics are exported.
+ * They are exported in the Prometheus text format, histograms as summaries (count, sum,
+ * maximum and quantiles). Histograms of names ending with {@code _seconds} record
+ * nanoseconds and are exported in seconds.
+ */
+@Component
+public class MetricsRegistry {
+
+    /**
+     * Quantiles exported for the histograms.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // Ordered by name and labels, so that the metrics of a name are exported together
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    /**
+     * Gets or creates a counter.
+     *
+     * @param name   The name of the counter, e.g. {@code plm_service_calls_total}.
+     * @param labels The labels of the counter, as name and value pairs.
+     * @return The counter.
+     */
+    public Counter counter(String name, String... labels) {
+        return (Counter) metrics.computeIfAbsent(idOf(name, labels), id -> new Counter());
+    }
+
+    /**
+     * Gets or creates a histogram.
+     *
+     * @param name   The name of the histogram, e.g. {@code plm_dao_seconds}.
+     * @param labels The labels of the histogram, as name and value pairs.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name, String... labels) {
+        return (Histogram) metrics.computeIfAbsent(idOf(name, labels), id -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge, a value read when the metrics are exported, e.g. a statistic
+     * kept by a component. A gauge registered again replaces the previous one.
+     *
+     * @param name   The name of the gauge.
+     * @param value  Reads the value.
+     * @param labels The labels of the gauge, as name and value pairs.
+     */
+    public void gauge(String name, DoubleSupplier value, String... labels) {
+        metrics.put(idOf(name, labels), value);
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format.
+     *
+     * @param output The output.
+     */
+    public void writeTo(StringBuilder output) {
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String id = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                line(output, id, "", null, ((Counter) metric).get());
+            } else if (metric instanceof Histogram) {
+                writeHistogram(output, id, ((Histogram) metric).snapshot());
+            } else {
+                line(output, id, "", null, ((DoubleSupplier) metric).getAsDouble());
+            }
+        }
+    }
+
+    /**
+     * Writes a histogram as a summary.
+     */
+    private static void writeHistogram(StringBuilder output, String id, Histogram.Snapshot snapshot) {
+        double unit = nameOf(id).endsWith("_seconds") ? 1e-9 : 1;
+        for (double quantile : QUANTILES) {
+            line(output, id, "", "quantile=\"" + quantile + "\"", snapshot.getQuantile(quantile) * unit);
+        }
+        line(output, id, "_max", null, snapshot.getMax() * unit);
+        line(output, id, "_sum", null, snapshot.getSum() * unit);
+        line(output, id, "_count", null, snapshot.getCount());
+    }
+
+    /**
+     * Writes one sample.
+     *
+     * @param output The output.
+     * @param id     The identifier of the metric.
+     * @param suffix The suffix of the name of the sample.
+     * @param label  An additional label, null if none.
+     * @param value  The value of the sample.
+     */
+    private static void line(StringBuilder output, String id, String suffix, String label, double value) {
+        int labels = id.indexOf('{');
+        output.append(nameOf(id)).append(suffix);
+        if (labels >= 0 || label != null) {
+            output.append('{');
+            if (labels >= 0) {
+                output.append(id, labels + 1, id.length() - 1);
+            }
+            if (label != null) {
+                output.append(labels >= 0 ? "," : "").append(label);
+            }
+            output.append('}');
+        }
+        output.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            output.append((long) value);
+        } else {
+            output.append(value);
+        }
+        output.append('\n');
+    }
+
+    private static String nameOf(String id) {
+        int labels = id.indexOf('{');
+        return labels < 0 ? id : id.substring(0, labels);
+    }
+
+    /**
+     * Builds the identifier of a metric: its name followed by its labels, e.g.
+     * {@code plm_dao_seconds{type="Part",call="get"}}.
+     *
+     * @param name   The name of the metric.
+     * @param labels The labels, as name and value pairs.
+     * @return The identifier.
+     */
+    private static String idOf(String name, String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name and value pairs");
+        }
+        if (labels.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\n') {
+                    id.append("\\n");
+                } else {
+                    if (c == '"' || c == '\\') {
+                        id.append('\\');
+                    }
+                    id.append(c);
+                }
+            }
+            id.append('"');
+        }
+        return id.append('}').toString();
+    }
+}
@@ -6,8 +6,8 @@ import javax.validation.constraints.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
-import java.util.ResourceBundle;
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
 
 
 /**
@@ -23,10 +23,6 @@ public abstract class AbstractEntity implements Entity {
      */
     private static final Logger logger = LoggerFactory.getLogger(AbstractEntity.class);
 
-    //  Initializes the resource bundle based on the default locale.
-    private static final ResourceBundle bundle = ResourceBundle.getBundle("messages",
-            Locale.ENGLISH);
-
     // Fields
 
     // @Column annotations specify that these fields should be mapped to columns in the database.
@@ -40,16 +36,31 @@ public abstract class AbstractEntity implements Entity {
     private String lifeCycleState;
 
     /* @ManyToOne indicate many-to-one relationships with
-     * LifeCycleTemplate and VersionSchema entities
+     * LifeCycleTemplate and VersionSchema entities.
+     * They are fetched lazily: only the foreign keys are loaded and the DAOs
+     * resolve the shared instances from the ReferenceCache.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private LifeCycleTemplate lifeCycleTemplate;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private VersionSchema versionSchema;
 
+    // Optimistic lock: incremented on every update, stale updates are rejected.
+    @Version
+    @Column
+    private long lockVersion;
+
     // Getters
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLockVersion() {
+        return lockVersion;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -94,10 +105,15 @@ public abstract class AbstractEntity implements Entity {
 
     /**
      * {@inheritDoc}
+     *
+     * Freeing the entity also clears the user who reserved it.
      */
     @Override
     public AbstractEntity setReserved(boolean reserved) {
         this.reserved = reserved;
+        if (!reserved) {
+            this.reservedBy = null;
+        }
         return this;
     }
 
@@ -107,9 +123,9 @@ public abstract class AbstractEntity implements Entity {
     @Override
     public AbstractEntity setReservedBy(String reservedBy) {
         if (reservedBy == null || reservedBy.trim().isEmpty()) {
-            logger.error(bundle.getString("error.invalidReservedBy"), reservedBy);
-            throw new IllegalArgumentException(bundle.getString("reservedBy") + " " +
-                    bundle.getString("error.cannotBeBlank"));
+            logger.error("{}", Message.of("error.invalidReservedBy", reservedBy));
+            throw new LocalizedArgumentException(
+                    Message.field("reservedBy", "error.cannotBeBlank"));
         }
         this.reservedBy = reservedBy;
         return this;
@@ -121,9 +137,9 @@ public abstract class AbstractEntity implements Entity {
     @Override
     public AbstractEntity setLifeCycleTemplate(LifeCycleTemplate lifeCycleTemplate) {
         if (lifeCycleTemplate == null) {
-            logger.error(bundle.getString("error.nullLifeCycleTemplate"));
-            throw new IllegalArgumentException(bundle.getString("lifeCycleTemplate") + " " +
-                    bundle.getString("error.cannotBeNull"));
+            logger.error("{}", Message.of("error.nullLifeCycleTemplate"));
+            throw new LocalizedArgumentException(
+                    Message.field("lifeCycleTemplate", "error.cannotBeNull"));
         }
         this.lifeCycleTemplate = lifeCycleTemplate;
         return this;
@@ -135,9 +151,9 @@ public abstract class AbstractEntity implements Entity {
     @Override
     public AbstractEntity setLifeCycleState(String lifeCycleState) {
         if (lifeCycleState == null || lifeCycleState.trim().isEmpty()) {
-            logger.error(bundle.getString("error.invalidLifeCycleState"), lifeCycleState);
-            throw new IllegalArgumentException(bundle.getString("lifeCycleState") + " " +
-                    bundle.getString("error.cannotBeBlank"));
+            logger.error("{}", Message.of("error.invalidLifeCycleState", lifeCycleState));
+            throw new LocalizedArgumentException(
+                    Message.field("lifeCycleState", "error.cannotBeBlank"));
         }
         this.lifeCycleState = lifeCycleState;
         return this;
@@ -149,11 +165,63 @@ public abstract class AbstractEntity implements Entity {
     @Override
     public AbstractEntity setVersionSchema(VersionSchema versionSchema) {
         if (versionSchema == null) {
-            logger.error(bundle.getString("error.nullVersionSchema"));
-            throw new IllegalArgumentException(bundle.getString("versionSchema") + " " +
-                    bundle.getString("error.cannotBeNull"));
+            logger.error("{}", Message.of("error.nullVersionSchema"));
+            throw new LocalizedArgumentException(
+                    Message.field("versionSchema", "error.cannotBeNull"));
         }
         this.versionSchema = versionSchema;
         return this;
     }
+
+    /**
+     * Replaces the lifecycle template and version schema of a loaded entity with shared
+     * instances of the same rows, e.g. the ones of the ReferenceCache. Unlike the setters,
+     * nothing is validated or derived from them again, so that resolving a managed entity
+     * never makes it dirty.
+     *
+     * @param lifeCycleTemplate The shared lifecycle template, null to keep the current one.
+     * @param versionSchema     The shared version schema, null to keep the current one.
+     */
+    public void shareReferences(LifeCycleTemplate lifeCycleTemplate, VersionSchema versionSchema) {
+        if (lifeCycleTemplate != null) {
+            this.lifeCycleTemplate = lifeCycleTemplate;
+        }
+        if (versionSchema != null) {
+            this.versionSchema = versionSchema;
+        }
+    }
+
+    /**
+     * Releases the reservation of a new copy of the entity.
+     */
+    void clearReservation() {
+        this.reserved = false;
+        this.reservedBy = null;
+    }
+
+    /**
+     * Sets the lock version of a copy of the entity, for stores which version the
+     * entities themselves instead of the persistence provider.
+     *
+     * @param lockVersion The lock version.
+     */
+    void setLockVersion(long lockVersion) {
+        this.lockVersion = lockVersion;
+    }
+
+    /**
+     * Copies the state of this entity to another one, without going through the setters
+     * (the state was already validated). The lock version is copied too, so the copy can
+     * be written in place of this entity.
+     *
+     * @param target The entity receiving the state.
+     */
+    protected void copyTo(AbstractEntity target) {
+        target.reserved = reserved;
+        target.reservedBy = reservedBy;
+        target.lifeCycleState = lifeCycleState;
+        target.lifeCycleTemplate = lifeCycleTemplate;
+        target.versionSchema = versionSchema;
+        target.lockVersion = lockVersion;
+    }
 }
\ No newline at end of file
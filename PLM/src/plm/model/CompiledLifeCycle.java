@@ -0,0 +1,248 @@
+package plm.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, compiled form of a {@link LifeCycleTemplate}.
+ *
+ * States are interned to small int identifiers (their position in the template), the
+ * known and final states are stored as bitsets and the allowed moves as a transition
+ * table of bitsets, so every lifecycle check is a single lookup followed by bit
+ * operations, without any allocation.
+ *
+ * Sets of states (e.g. the states of all the documents of a cascade) are represented
+ * as masks built with {@link #maskOf(Iterable)}, and checked in one call.
+ */
+public final class CompiledLifeCycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledLifeCycle.class);
+
+    /**
+     * Maximum number of states of a lifecycle template.
+     */
+    public static final int MAX_STATES = 63;
+
+    /**
+     * Identifier returned for a state which is not part of the template.
+     */
+    public static final int UNKNOWN_STATE = -1;
+
+    /**
+     * Bit set in a mask when one of its states is not part of the template.
+     */
+    public static final long UNKNOWN_MASK = 1L << MAX_STATES;
+
+    private final String[] states;
+
+    private final Map<String, Integer> ids;
+
+    private final int initialState;
+
+    private final long finalStates;
+
+    // allowedFrom[to] is the set of states from which a move to "to" is allowed
+    private final long[] allowedFrom;
+
+    private CompiledLifeCycle(String[] states, Map<String, Integer> ids, int initialState,
+                              long finalStates, long[] allowedFrom) {
+        this.states = states;
+        this.ids = ids;
+        this.initialState = initialState;
+        this.finalStates = finalStates;
+        this.allowedFrom = allowedFrom;
+    }
+
+    /**
+     * Compiles a lifecycle template.
+     *
+     * @param initialState The initial state, null if the template has no state.
+     * @param states       The ordered states of the template.
+     * @param finalStates  The final states of the template.
+     * @param transitions  The allowed moves, as pairs of {from, to} states. When empty,
+     *                     any move between two known states is allowed.
+     * @return The compiled lifecycle.
+     */
+    public static CompiledLifeCycle compile(String initialState, Collection<String> states,
+                                            Collection<String> finalStates,
+                                            Collection<String[]> transitions) {
+        if (states.size() > MAX_STATES) {
+            logger.error("{}", Message.of("error.tooManyLifeCycleStates", states.size()));
+            throw new LocalizedArgumentException(
+                    Message.field("lifeCycleTemplate", "error.tooManyStates"));
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (String state : states) {
+            ids.putIfAbsent(state, ids.size());
+        }
+        String[] names = new String[ids.size()];
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            names[entry.getValue()] = entry.getKey();
+        }
+
+        long finals = 0;
+        for (String state : finalStates) {
+            finals |= 1L << requireKnown(ids, state);
+        }
+
+        long[] allowedFrom = new long[ids.size()];
+        long everyState = ids.isEmpty() ? 0 : -1L >>> (64 - ids.size());
+        if (transitions.isEmpty()) {
+            for (int to = 0; to < allowedFrom.length; to++) {
+                allowedFrom[to] = everyState;
+            }
+        } else {
+            for (String[] transition : transitions) {
+                allowedFrom[requireKnown(ids, transition[1])] |= 1L << requireKnown(ids, transition[0]);
+            }
+        }
+
+        int initial = initialState == null ? UNKNOWN_STATE : requireKnown(ids, initialState);
+        return new CompiledLifeCycle(names, ids, initial, finals, allowedFrom);
+    }
+
+    /**
+     * Gets the identifier of a state.
+     *
+     * @param state The state.
+     * @return The identifier of the state, {@link #UNKNOWN_STATE} if it is not known.
+     */
+    public int idOf(String state) {
+        Integer id = state == null ? null : ids.get(state);
+        return id == null ? UNKNOWN_STATE : id;
+    }
+
+    /**
+     * Gets the name of a state.
+     *
+     * @param id The identifier of the state.
+     * @return The name of the state.
+     */
+    public String nameOf(int id) {
+        return states[id];
+    }
+
+    /**
+     * Gets the initial lifecycle state.
+     *
+     * @return The initial lifecycle state, null if the template has no state.
+     */
+    public String getInitialState() {
+        return initialState == UNKNOWN_STATE ? null : states[initialState];
+    }
+
+    /**
+     * Checks if the given lifecycle state is known.
+     *
+     * @param state The lifecycle state to check.
+     * @return true if the lifecycle state is known, false otherwise.
+     */
+    public boolean isKnown(String state) {
+        return idOf(state) != UNKNOWN_STATE;
+    }
+
+    /**
+     * Checks if the given lifecycle state is a final state.
+     *
+     * @param state The lifecycle state to check.
+     * @return true if the lifecycle state is a final state, false otherwise.
+     */
+    public boolean isFinal(String state) {
+        int id = idOf(state);
+        return id != UNKNOWN_STATE && (finalStates & (1L << id)) != 0;
+    }
+
+    /**
+     * Checks if a move from one state to another is allowed.
+     *
+     * @param from The current lifecycle state.
+     * @param to   The identifier of the target lifecycle state.
+     * @return true if the move is allowed, false otherwise.
+     */
+    public boolean canMove(String from, int to) {
+        int id = idOf(from);
+        return id != UNKNOWN_STATE && canMoveAll(1L << id, to);
+    }
+
+    /**
+     * Checks if a move to the given state is allowed from every state of a set.
+     *
+     * @param from The mask of the current lifecycle states, see {@link #maskOf(Iterable)}.
+     * @param to   The identifier of the target lifecycle state.
+     * @return true if the move is allowed from all the states, false otherwise.
+     */
+    public boolean canMoveAll(long from, int to) {
+        return to >= 0 && to < allowedFrom.length && (from & ~allowedFrom[to]) == 0;
+    }
+
+    /**
+     * Checks if any state of a set is a final state.
+     *
+     * @param states The mask of the lifecycle states, see {@link #maskOf(Iterable)}.
+     * @return true if at least one of the states is a final state, false otherwise.
+     */
+    public boolean anyFinal(long states) {
+        return (states & finalStates) != 0;
+    }
+
+    /**
+     * Checks if every state of a set is known.
+     *
+     * @param states The mask of the lifecycle states, see {@link #maskOf(Iterable)}.
+     * @return true if all the states are known, false otherwise.
+     */
+    public boolean allKnown(long states) {
+        return (states & UNKNOWN_MASK) == 0;
+    }
+
+    /**
+     * Builds the mask of a set of states.
+     *
+     * @param states The lifecycle states.
+     * @return The mask of the states, with {@link #UNKNOWN_MASK} set if any of them
+     * is not known.
+     */
+    public long maskOf(Iterable<String> states) {
+        long mask = 0;
+        for (String state : states) {
+            mask |= maskOf(state);
+        }
+        return mask;
+    }
+
+    /**
+     * Builds the mask of a single state, to be combined with other masks.
+     *
+     * @param state The lifecycle state.
+     * @return The mask of the state, {@link #UNKNOWN_MASK} if it is not known.
+     */
+    public long maskOf(String state) {
+        int id = idOf(state);
+        return id == UNKNOWN_STATE ? UNKNOWN_MASK : 1L << id;
+    }
+
+    /**
+     * Gets the identifier of a state which must be known.
+     *
+     * @param ids   The identifiers of the known states.
+     * @param state The state.
+     * @return The identifier of the state.
+     */
+    private static int requireKnown(Map<String, Integer> ids, String state) {
+        Integer id = ids.get(state);
+        if (id == null) {
+            logger.error("{}", Message.of("error.invalidLifeCycleState", state));
+            throw new LocalizedArgumentException(
+                    Message.field("lifeCycleState", "error.unknownLifeCycleState"));
+        }
+        return id;
+    }
+}
@@ -0,0 +1,160 @@
+package plm.model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Encodes iterations as deltas of a base iteration of the same version, and decodes them.
+ *
+ * The row of an iteration stored as a delta leaves empty every {@link DeltaEncoded}
+ * attribute which has the value of the base iteration, and records the base iteration;
+ * the other columns (key, reservation, references, lock version) are stored as usual.
+ * The base iteration is always stored as a full row. An iteration whose attribute was
+ * emptied since the base cannot be told apart from an unchanged one, so it is not
+ * encoded.
+ *
+ * The attributes of a class are found once, on first use, like the copy plans of the
+ * {@link EntityCloner}. Entities are never modified: encoding and decoding return copies.
+ */
+public final class DeltaCodec {
+
+    private static final ClassValue<MethodHandle[][]> attributes = new ClassValue<MethodHandle[][]>() {
+        @Override
+        protected MethodHandle[][] computeValue(Class<?> type) {
+            return attributesOf(type);
+        }
+    };
+
+    private DeltaCodec() {
+    }
+
+    /**
+     * Gets the iteration to use as base of an iteration, the snapshots being stored every
+     * {@code snapshotInterval} iterations of a version: 1, 1 + K, 1 + 2K...
+     *
+     * @param iteration        The iteration.
+     * @param snapshotInterval The number of iterations between two full rows, 1 to store
+     *                         every iteration as a full row.
+     * @return The base iteration, the iteration itself if it is stored as a full row.
+     */
+    public static int baseOf(int iteration, int snapshotInterval) {
+        return iteration - (iteration - 1) % snapshotInterval;
+    }
+
+    /**
+     * Encodes an iteration as a delta of its base. The entity is marked as stored as a
+     * delta of the base, so it can be written again as such.
+     *
+     * @param entity The iteration, with all its attributes.
+     * @param base   The base iteration, stored as a full row.
+     * @param <E>    The type of the entity.
+     * @return The row to store, null if the iteration must be stored as a full row.
+     */
+    public static <E extends Part> E encode(E entity, Part base) {
+        if (base.getClass() != entity.getClass() || base.getBaseIteration() != 0
+                || base.getIteration() >= entity.getIteration()) {
+            return null;
+        }
+        MethodHandle[][] handles = attributes.get(entity.getClass());
+        for (MethodHandle[] handle : handles) {
+            if (get(handle, entity) == null && get(handle, base) != null) {
+                return null;
+            }
+        }
+        E row = EntityCloner.copy(entity);
+        for (MethodHandle[] handle : handles) {
+            if (Objects.equals(get(handle, entity), get(handle, base))) {
+                set(handle, row, null);
+            }
+        }
+        row.setBaseIteration(base.getIteration());
+        entity.setBaseIteration(base.getIteration());
+        return row;
+    }
+
+    /**
+     * Gets the full row of an iteration stored as a delta which can no longer be encoded.
+     *
+     * @param entity The iteration, with all its attributes.
+     * @param <E>    The type of the entity.
+     * @return The row to store.
+     */
+    public static <E extends Part> E fullRow(E entity) {
+        E row = EntityCloner.copy(entity);
+        row.setBaseIteration(0);
+        return row;
+    }
+
+    /**
+     * Decodes a row stored as a delta, filling its empty attributes from its base.
+     *
+     * @param row  The row of the iteration, stored as a delta.
+     * @param base The base iteration of the row.
+     * @param <E>  The type of the entity.
+     * @return The iteration with all its attributes, still marked as stored as a delta.
+     */
+    public static <E extends Part> E decode(E row, Part base) {
+        E entity = EntityCloner.copy(row);
+        for (MethodHandle[] handle : attributes.get(row.getClass())) {
+            if (get(handle, entity) == null) {
+                set(handle, entity, get(handle, base));
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Finds the delta-encoded attributes of a class and of its superclasses.
+     *
+     * @param type The class of the entities.
+     * @return The getter and setter of each attribute.
+     */
+    private static MethodHandle[][] attributesOf(Class<?> type) {
+        List<MethodHandle[]> handles = new ArrayList<>();
+        try {
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+                for (Field field : c.getDeclaredFields()) {
+                    if (!field.isAnnotationPresent(DeltaEncoded.class)) {
+                        continue;
+                    }
+                    if (field.getType() != String.class) {
+                        throw new IllegalStateException("@DeltaEncoded field " + field + " is not a String");
+                    }
+                    handles.add(new MethodHandle[]{
+                            lookup.unreflectGetter(field).asType(MethodType.methodType(String.class, Object.class)),
+                            lookup.unreflectSetter(field)
+                                    .asType(MethodType.methodType(void.class, Object.class, String.class))});
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access the attributes of " + type.getName(), e);
+        }
+        return handles.toArray(new MethodHandle[0][]);
+    }
+
+    private static String get(MethodHandle[] handle, Object entity) {
+        try {
+            return (String) handle[0].invokeExact(entity);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(MethodHandle[] handle, Object entity, String value) {
+        try {
+            handle[1].invokeExact(entity, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package plm.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a String attribute of an entity which is left empty (null) in the row of an
+ * iteration stored as a delta when it has the value of the base iteration.
+ *
+ * Only attributes which cannot change once a newer iteration exists may be marked (e.g.
+ * attributes updated under reservation, which only the latest iteration can hold): the
+ * base of a delta must not change after it.
+ *
+ * @see DeltaCodec
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface DeltaEncoded {
+}
@@ -1,6 +1,5 @@
 package plm.model;
 
-import java.util.Objects;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -9,8 +8,9 @@ import javax.persistence.IdClass;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
-import java.util.ResourceBundle;
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
 
 /**
  * Entity class representing a Document in the Product Lifecycle Management (PLM) system.
@@ -20,13 +20,13 @@ import java.util.ResourceBundle;
 public class Document extends Part {
 
     private static final Logger logger = LoggerFactory.getLogger(Document.class);
-    private static final ResourceBundle bundle = ResourceBundle.getBundle("messages",
-            Locale.ENGLISH);
 
     @Column
+    @DeltaEncoded
     private String documentAttribute1;
 
     @Column
+    @DeltaEncoded
     private String documentAttribute2;
 
     // Constructors
@@ -79,9 +79,9 @@ public class Document extends Part {
      */
     public Document setDocumentAttribute1(String documentAttribute1) {
         if (documentAttribute1 == null || documentAttribute1.trim().isEmpty()) {
-            logger.error(bundle.getString("error.invalidDocumentAttribute1"), documentAttribute1);
-            throw new IllegalArgumentException(bundle.getString("document.attribute1") + " " +
-                    bundle.getString("error.cannotBeBlank"));
+            logger.error("{}", Message.of("error.invalidDocumentAttribute1", documentAttribute1));
+            throw new LocalizedArgumentException(
+                    Message.field("document.attribute1", "error.cannotBeBlank"));
         }
         this.documentAttribute1 = documentAttribute1;
         return this;
@@ -95,17 +95,42 @@ public class Document extends Part {
      */
     public Document setDocumentAttribute2(String documentAttribute2) {
         if (documentAttribute2 == null || documentAttribute2.trim().isEmpty()) {
-            logger.error(bundle.getString("error.invalidDocumentAttribute2"), documentAttribute2);
-            throw new IllegalArgumentException(bundle.getString("document.attribute2") + " " +
-                    bundle.getString("error.cannotBeBlank"));
+            logger.error("{}", Message.of("error.invalidDocumentAttribute2", documentAttribute2));
+            throw new LocalizedArgumentException(
+                    Message.field("document.attribute2", "error.cannotBeBlank"));
         }
         this.documentAttribute2 = documentAttribute2;
         return this;
     }
 
-    // Composite primary key class for the Document entity.
+    /**
+     * Creates a detached copy of the document, e.g. to hand out cached documents.
+     *
+     * @return The copy.
+     */
+    @Override
+    public Document copy() {
+        Document copy = new Document(getReference(), getVersion(), getIteration());
+        copyTo(copy);
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyTo(AbstractEntity target) {
+        super.copyTo(target);
+        Document document = (Document) target;
+        document.documentAttribute1 = documentAttribute1;
+        document.documentAttribute2 = documentAttribute2;
+    }
+
+    // Composite primary key class for the Document entity, hashed and compared like a PartPK.
     public static class DocumentPK extends Part.PartPK {
 
+        private static final long serialVersionUID = 1L;
+
         // Default constructor for Java Persistance API
         public DocumentPK() {
         }
@@ -120,38 +145,5 @@ public class Document extends Part {
         public DocumentPK(String reference, String version, int iteration) {
             super(reference, version, iteration);
         }
-
-        /**
-         * Generates a hash code for the DocumentPK instance.
-         *
-         * @return A hash code based on the reference, version, and iteration fields.
-         */
-        @Override
-        public int hashCode() {
-            return Objects.hash(getReference(), getVersion(), getIteration());
-        }
-
-        /**
-         * Checks if two DocumentPK instances are equal.
-         *
-         * @param obj The object to compare with.
-         * @return true if the objects are equal, false otherwise.
-         */
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            DocumentPK other = (DocumentPK) obj;
-            return Objects.equals(getReference(), other.getReference()) &&
-                    Objects.equals(getVersion(), other.getVersion()) &&
-                    getIteration() == other.getIteration();
-        }
     }
 }
\ No newline at end of file
@@ -8,6 +8,13 @@ public interface Entity {
 
     // Getters
 
+    /**
+     * Gets the optimistic lock version of the entity, incremented on every update.
+     *
+     * @return The optimistic lock version of the entity.
+     */
+    long getLockVersion();
+
     /**
      * Checks if the entity is reserved.
      *
@@ -46,7 +53,8 @@ public interface Entity {
     // Setters
 
     /**
-     * Sets the reserved status of the entity.
+     * Sets the reserved status of the entity. Freeing the entity also clears
+     * the user who reserved it.
      *
      * @param reserved The new reserved status.
      * @return The current instance of the entity for method chaining.
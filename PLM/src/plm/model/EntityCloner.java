@@ -0,0 +1,206 @@
+package plm.model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import javax.persistence.Id;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+
+/**
+ * Copies entities field by field, e.g. to create the next iteration or version of a Part
+ * or a Document.
+ *
+ * The copy plan of an entity class is built once, on first use, from the persistent
+ * fields of the class and of its superclasses: one {@link MethodHandle} chains the reads
+ * and writes of all the fields, so a new entity type needs no copy code. Values are
+ * copied verbatim, without the validation of the setters, since the source entity is
+ * already valid; only the values which change (the key, and the reservation or the
+ * lifecycle state set by the caller) go through the setters or are recomputed.
+ *
+ * Entities must be initialized instances, as returned by the DAOs, not lazy proxies.
+ */
+public final class EntityCloner {
+
+    private static final MethodType COPIER_TYPE =
+            MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<CopyPlan> plans = new ClassValue<CopyPlan>() {
+        @Override
+        protected CopyPlan computeValue(Class<?> type) {
+            return new CopyPlan(type);
+        }
+    };
+
+    private EntityCloner() {
+    }
+
+    /**
+     * Creates a detached copy of an entity, e.g. to hand out cached entities. The key and
+     * the lock version are copied too, so the copy can be written like the entity.
+     *
+     * @param entity The entity.
+     * @param <E>    The type of the entity.
+     * @return The copy.
+     */
+    public static <E extends AbstractEntity> E copy(E entity) {
+        CopyPlan plan = plans.get(entity.getClass());
+        E copy = plan.newInstance();
+        plan.copy(plan.copyAll, entity, copy);
+        return copy;
+    }
+
+    /**
+     * Creates a detached copy of an entity with another lock version, e.g. to keep the
+     * written state of an entity in a store which versions the entities itself.
+     *
+     * @param entity      The entity.
+     * @param lockVersion The lock version of the copy.
+     * @param <E>         The type of the entity.
+     * @return The copy.
+     */
+    public static <E extends AbstractEntity> E copy(E entity, long lockVersion) {
+        E copy = copy(entity);
+        copy.setLockVersion(lockVersion);
+        return copy;
+    }
+
+    /**
+     * Creates the next iteration of a part or a document: a new entity with the state of
+     * the given one, in the same version.
+     *
+     * @param entity    The current iteration.
+     * @param iteration The iteration to create.
+     * @param <E>       The type of the entity.
+     * @return The new iteration, not written yet.
+     */
+    public static <E extends Part> E nextIteration(E entity, int iteration) {
+        E next = newEntity(entity);
+        next.moveTo(entity.getVersion(), iteration);
+        return next;
+    }
+
+    /**
+     * Creates the first iteration of a new version of a part or a document: a new entity
+     * with the state of the given one, not reserved. The ordinal of the version is
+     * recomputed from the version schema.
+     *
+     * @param entity  The entity to revise.
+     * @param version The label of the new version.
+     * @param <E>     The type of the entity.
+     * @return The new version, not written yet.
+     */
+    public static <E extends Part> E nextVersion(E entity, String version) {
+        E next = newEntity(entity);
+        next.moveTo(version, 1);
+        next.clearReservation();
+        return next;
+    }
+
+    /**
+     * Creates a new entity with the key and the state of an entity, but not its lock
+     * version: the new entity is not written yet.
+     */
+    private static <E extends Part> E newEntity(E entity) {
+        CopyPlan plan = plans.get(entity.getClass());
+        E next = plan.newInstance();
+        plan.copy(plan.copyNew, entity, next);
+        return next;
+    }
+
+    /**
+     * Copy plan of an entity class: its constructor and the copies of its fields, by role.
+     */
+    private static final class CopyPlan {
+        final Class<?> type;
+        final MethodHandle constructor;
+        // (Object target, Object source)void, copying all the fields
+        final MethodHandle copyAll;
+        // Same, except the lock version
+        final MethodHandle copyNew;
+
+        CopyPlan(Class<?> type) {
+            this.type = type;
+            MethodHandle copyKey = MethodHandles.empty(COPIER_TYPE);
+            MethodHandle copyState = MethodHandles.empty(COPIER_TYPE);
+            MethodHandle copyLockVersion = MethodHandles.empty(COPIER_TYPE);
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+                this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+                for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                    MethodHandles.Lookup declaring = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+                    for (Field field : c.getDeclaredFields()) {
+                        if (!isPersistent(field)) {
+                            continue;
+                        }
+                        MethodHandle copier = copierOf(declaring, field);
+                        if (field.isAnnotationPresent(Id.class)) {
+                            copyKey = MethodHandles.foldArguments(copyKey, copier);
+                        } else if (field.isAnnotationPresent(Version.class)) {
+                            copyLockVersion = MethodHandles.foldArguments(copyLockVersion, copier);
+                        } else {
+                            copyState = MethodHandles.foldArguments(copyState, copier);
+                        }
+                    }
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot build the copy plan of " + type.getName(), e);
+            }
+            this.copyNew = MethodHandles.foldArguments(copyState, copyKey);
+            this.copyAll = MethodHandles.foldArguments(copyLockVersion, copyNew);
+        }
+
+        /**
+         * Checks if a field holds persistent state.
+         */
+        private static boolean isPersistent(Field field) {
+            int modifiers = field.getModifiers();
+            return !Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)
+                    && !field.isAnnotationPresent(Transient.class);
+        }
+
+        /**
+         * Builds the copy of a field, a (Object target, Object source)void handle.
+         */
+        private static MethodHandle copierOf(MethodHandles.Lookup lookup, Field field)
+                throws IllegalAccessException {
+            Class<?> fieldType = field.getType();
+            MethodHandle getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(fieldType, Object.class));
+            MethodHandle setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, fieldType));
+            return MethodHandles.filterArguments(setter, 1, getter);
+        }
+
+        /**
+         * Creates an entity of the class of the plan.
+         */
+        @SuppressWarnings("unchecked")
+        <E> E newInstance() {
+            try {
+                return (E) (Object) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot create a " + type.getName(), e);
+            }
+        }
+
+        /**
+         * Runs a copy of fields.
+         */
+        void copy(MethodHandle copier, Object source, Object target) {
+            try {
+                copier.invokeExact(target, source);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot copy a " + type.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package plm.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.persistence.Transient;
+
+/**
+ * Writes entities to binary streams and reads them back, e.g. for the log and the
+ * snapshots of a store keeping the entities outside of a database.
+ *
+ * The layout of an entity class is built once, on first use, from the persistent fields
+ * of the class and of its superclasses, like the copy plans of the {@link EntityCloner}:
+ * a new entity type needs no serialization code. Strings, integers, longs and booleans
+ * are written as such, every other field is a reference to a shared entity (lifecycle
+ * template, version schema) written as an identifier given by the caller. Values are
+ * read back verbatim, without the validation of the setters, lock version included.
+ *
+ * Streams can only be read with the classes which wrote them: writers should record
+ * {@link #layoutOf(Class)} so that readers can check it.
+ */
+public final class EntityCodec {
+
+    private static final ClassValue<Layout> layouts = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(type);
+        }
+    };
+
+    private EntityCodec() {
+    }
+
+    /**
+     * Identifiers of the shared entities referenced by the entities.
+     */
+    public interface References {
+
+        /**
+         * Gets the identifier of a shared entity.
+         *
+         * @param reference The shared entity, not null.
+         * @return The identifier, a positive integer.
+         */
+        int idOf(Object reference);
+
+        /**
+         * Gets a shared entity from its identifier.
+         *
+         * @param id The identifier.
+         * @return The shared entity.
+         */
+        Object get(int id);
+    }
+
+    /**
+     * Writes an entity.
+     *
+     * @param out        The output.
+     * @param entity     The entity.
+     * @param references The identifiers of the shared entities.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void write(DataOutput out, AbstractEntity entity, References references) throws IOException {
+        for (FieldCodec field : layouts.get(entity.getClass()).fields) {
+            field.write(out, entity, references);
+        }
+    }
+
+    /**
+     * Reads an entity written by {@link #write(DataOutput, AbstractEntity, References)}.
+     *
+     * @param in         The input.
+     * @param type       The class of the entity.
+     * @param references The shared entities, by identifier.
+     * @param <E>        The type of the entity.
+     * @return The entity.
+     * @throws IOException If the input cannot be read.
+     */
+    public static <E extends AbstractEntity> E read(DataInput in, Class<E> type, References references)
+            throws IOException {
+        Layout layout = layouts.get(type);
+        E entity = type.cast(layout.newInstance());
+        for (FieldCodec field : layout.fields) {
+            field.read(in, entity, references);
+        }
+        return entity;
+    }
+
+    /**
+     * Describes the layout of an entity class, e.g. {@code Part[baseIteration:I,iteration:I,...]}.
+     *
+     * @param type The class of the entities.
+     * @return The description, equal for two classes written alike.
+     */
+    public static String layoutOf(Class<?> type) {
+        return layouts.get(type).description;
+    }
+
+    /**
+     * Writes a string of any length, or null.
+     *
+     * @param out   The output.
+     * @param value The string, may be null.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in The input.
+     * @return The string, may be null.
+     * @throws IOException If the input cannot be read.
+     */
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Layout of an entity class: its constructor and its persistent fields, ordered by
+     * declaring class (subclass first) then by name.
+     */
+    private static final class Layout {
+        final Class<?> type;
+        final MethodHandle constructor;
+        final FieldCodec[] fields;
+        final String description;
+
+        Layout(Class<?> type) {
+            this.type = type;
+            List<FieldCodec> codecs = new ArrayList<>();
+            StringBuilder described = new StringBuilder(type.getSimpleName()).append('[');
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+                this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                        .asType(MethodType.methodType(Object.class));
+                for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                    MethodHandles.Lookup declaring = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+                    Field[] declared = c.getDeclaredFields();
+                    Arrays.sort(declared, Comparator.comparing(Field::getName));
+                    for (Field field : declared) {
+                        int modifiers = field.getModifiers();
+                        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                                || field.isAnnotationPresent(Transient.class)) {
+                            continue;
+                        }
+                        FieldCodec codec = new FieldCodec(declaring, field);
+                        described.append(codecs.isEmpty() ? "" : ",")
+                                .append(field.getName()).append(':').append(codec.kind);
+                        codecs.add(codec);
+                    }
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot build the layout of " + type.getName(), e);
+            }
+            this.fields = codecs.toArray(new FieldCodec[0]);
+            this.description = described.append(']').toString();
+        }
+
+        Object newInstance() {
+            try {
+                return constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot create a " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Reads and writes one persistent field.
+     */
+    private static final class FieldCodec {
+        // S: string, I: int, J: long, Z: boolean, R: reference to a shared entity
+        final char kind;
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        FieldCodec(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+            Class<?> fieldType = field.getType();
+            if (fieldType == String.class) {
+                kind = 'S';
+            } else if (fieldType == int.class) {
+                kind = 'I';
+            } else if (fieldType == long.class) {
+                kind = 'J';
+            } else if (fieldType == boolean.class) {
+                kind = 'Z';
+            } else if (!fieldType.isPrimitive()) {
+                kind = 'R';
+            } else {
+                throw new IllegalStateException("Unsupported field " + field);
+            }
+            getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+            setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+
+        void write(DataOutput out, Object entity, References references) throws IOException {
+            Object value = get(entity);
+            switch (kind) {
+                case 'S':
+                    writeString(out, (String) value);
+                    break;
+                case 'I':
+                    out.writeInt((Integer) value);
+                    break;
+                case 'J':
+                    out.writeLong((Long) value);
+                    break;
+                case 'Z':
+                    out.writeBoolean((Boolean) value);
+                    break;
+                default:
+                    out.writeInt(value == null ? 0 : references.idOf(value));
+            }
+        }
+
+        void read(DataInput in, Object entity, References references) throws IOException {
+            switch (kind) {
+                case 'S':
+                    set(entity, readString(in));
+                    break;
+                case 'I':
+                    set(entity, in.readInt());
+                    break;
+                case 'J':
+                    set(entity, in.readLong());
+                    break;
+                case 'Z':
+                    set(entity, in.readBoolean());
+                    break;
+                default:
+                    int id = in.readInt();
+                    set(entity, id == 0 ? null : references.get(id));
+            }
+        }
+
+        private Object get(Object entity) {
+            try {
+                return getter.invokeExact(entity);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
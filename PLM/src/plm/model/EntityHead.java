@@ -0,0 +1,215 @@
+package plm.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Version;
+
+/**
+ * Entity class representing the head of a reference in the Product Lifecycle Management
+ * (PLM) system: its latest version and iteration, and the reservation status of that
+ * latest iteration.
+ *
+ * Heads are denormalized records maintained in the same transaction as every write of
+ * the entities, so the latest iteration of a reference is found by primary key instead
+ * of scanning its iterations.
+ *
+ * @IdClass(EntityHead.EntityHeadPK.class) specifies a composite primary key: the type of
+ * the entity (Part or Document) and its reference.
+ */
+@Entity
+@IdClass(plm.model.EntityHead.EntityHeadPK.class)
+public class EntityHead {
+
+    @Id
+    private String entityType;
+
+    @Id
+    private String reference;
+
+    @Column
+    private String latestVersion;
+
+    // Position of the latest version in the version schema.
+    @Column
+    private int latestVersionOrdinal;
+
+    @Column
+    private int latestIteration;
+
+    @Column
+    private boolean reserved;
+
+    @Column
+    private String reservedBy;
+
+    // Optimistic lock: concurrent writes of the same reference conflict on the head.
+    @Version
+    @Column
+    private long lockVersion;
+
+    // Constructors
+
+    // Default constructor for Java Persistance API.
+    public EntityHead() {
+        // Default constructor
+    }
+
+    /**
+     * Constructor to initialize the head of a reference without any iteration yet.
+     *
+     * @param entityType The type of the entity (Part or Document).
+     * @param reference  The reference of the entity.
+     */
+    public EntityHead(String entityType, String reference) {
+        this.entityType = entityType;
+        this.reference = reference;
+    }
+
+    // Getters
+
+    /**
+     * Gets the type of the entity.
+     *
+     * @return The simple name of the class of the entity.
+     */
+    public String getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Gets the reference of the entity.
+     *
+     * @return The reference of the entity.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Gets the latest version of the reference.
+     *
+     * @return The label of the latest version.
+     */
+    public String getLatestVersion() {
+        return latestVersion;
+    }
+
+    /**
+     * Gets the latest iteration of the latest version of the reference.
+     *
+     * @return The latest iteration.
+     */
+    public int getLatestIteration() {
+        return latestIteration;
+    }
+
+    /**
+     * Checks if the latest iteration is reserved.
+     *
+     * @return true if the latest iteration is reserved.
+     */
+    public boolean isReserved() {
+        return reserved;
+    }
+
+    /**
+     * Gets the user who reserved the latest iteration.
+     *
+     * @return The user who reserved the latest iteration, null if it is not reserved.
+     */
+    public String getReservedBy() {
+        return reservedBy;
+    }
+
+    /**
+     * Moves the head to a written iteration of the reference if it is the latest one,
+     * and records the reservation status of the latest iteration.
+     *
+     * @param entity The written iteration.
+     * @return true if the head changed.
+     */
+    public boolean advance(Part entity) {
+        int order = entity.getVersionOrdinal() != latestVersionOrdinal
+                ? Integer.compare(entity.getVersionOrdinal(), latestVersionOrdinal)
+                : Integer.compare(entity.getIteration(), latestIteration);
+        // an empty head takes any iteration, a version without ordinal only replaces itself
+        if (order < 0 || (order == 0 && latestVersion != null
+                && !entity.getVersion().equals(latestVersion))) {
+            return false;
+        }
+        boolean changed = order > 0 || reserved != entity.isReserved()
+                || !Objects.equals(reservedBy, entity.getReservedBy());
+        latestVersion = entity.getVersion();
+        latestVersionOrdinal = entity.getVersionOrdinal();
+        latestIteration = entity.getIteration();
+        reserved = entity.isReserved();
+        reservedBy = entity.getReservedBy();
+        return changed;
+    }
+
+    // Composite primary key class for the EntityHead entity.
+    public static class EntityHeadPK implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String entityType;
+        private String reference;
+
+        // Default constructor for Java Persistance API.
+        public EntityHeadPK() {
+        }
+
+        /**
+         * Constructor to initialize the composite key fields.
+         *
+         * @param entityType The type of the entity.
+         * @param reference  The reference of the entity.
+         */
+        public EntityHeadPK(String entityType, String reference) {
+            this.entityType = entityType;
+            this.reference = reference;
+        }
+
+        // Getter methods for the fields
+        public String getEntityType() {
+            return entityType;
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        /**
+         * Generates a hash code for the EntityHeadPK instance.
+         *
+         * @return A hash code based on the type and reference.
+         */
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(entityType) + Objects.hashCode(reference);
+        }
+
+        /**
+         * Checks if two EntityHeadPK instances are equal.
+         *
+         * @param obj The object to compare with.
+         * @return true if the objects are equal, false otherwise.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            EntityHeadPK other = (EntityHeadPK) obj;
+            return Objects.equals(entityType, other.entityType)
+                    && Objects.equals(reference, other.reference);
+        }
+    }
+}
@@ -1,25 +1,149 @@
 package plm.model;
 
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Embeddable;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.OrderColumn;
+import javax.persistence.PostLoad;
+import javax.persistence.Transient;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Entity class representing the lifecycle template
  * in the Product Lifecycle Management (PLM) system.
  * This class is used to manage the lifecycle states of parts and documents.
  *
+ * The template is compiled into an immutable {@link CompiledLifeCycle} when it is
+ * loaded, and every lifecycle check is delegated to the compiled form.
+ *
  * @Entity specifies that the class is an entity and is mapped to a database table.
  */
 @Entity
 public class LifeCycleTemplate {
 
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @Column
+    private String initialState;
+
+    // @ElementCollection maps the states, final states and transitions to collection tables.
+    @ElementCollection
+    @OrderColumn
+    private List<String> states = new ArrayList<>();
+
+    @ElementCollection
+    private Set<String> finalStates = new LinkedHashSet<>();
+
+    @ElementCollection
+    private List<Transition> transitions = new ArrayList<>();
+
+    @Transient
+    private transient volatile CompiledLifeCycle compiledLifeCycle;
+
+    // Constructors
+
+    // Default constructor for Java Persistance API.
+    public LifeCycleTemplate() {
+        // Default constructor
+    }
+
+    /**
+     * Constructor to initialize the lifecycle states.
+     *
+     * @param initialState The initial lifecycle state.
+     * @param states       The ordered lifecycle states.
+     * @param finalStates  The final lifecycle states.
+     */
+    public LifeCycleTemplate(String initialState, Collection<String> states,
+                             Collection<String> finalStates) {
+        this.initialState = initialState;
+        this.states.addAll(states);
+        this.finalStates.addAll(finalStates);
+    }
+
+    /**
+     * Gets the identifier of the lifecycle template.
+     *
+     * @return The identifier of the lifecycle template.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the ordered lifecycle states.
+     *
+     * @return The states, not modifiable.
+     */
+    public List<String> getStates() {
+        return Collections.unmodifiableList(states);
+    }
+
+    /**
+     * Gets the final lifecycle states.
+     *
+     * @return The final states, not modifiable.
+     */
+    public Set<String> getFinalStates() {
+        return Collections.unmodifiableSet(finalStates);
+    }
+
+    /**
+     * Gets the moves allowed explicitly between two lifecycle states.
+     *
+     * @return The allowed moves, not modifiable; empty if any move is allowed.
+     */
+    public List<Transition> getTransitions() {
+        return Collections.unmodifiableList(transitions);
+    }
+
+    /**
+     * Allows a move between two lifecycle states. As long as no move is allowed
+     * explicitly, any move between two known states is allowed.
+     *
+     * @param fromState The current lifecycle state.
+     * @param toState   The target lifecycle state.
+     * @return The current LifeCycleTemplate instance (for chaining).
+     */
+    public LifeCycleTemplate addTransition(String fromState, String toState) {
+        transitions.add(new Transition(fromState, toState));
+        compiledLifeCycle = null;
+        return this;
+    }
+
+    /**
+     * Gets the compiled form of the template, compiling it on first use
+     * when it was not loaded from the database.
+     *
+     * @return The compiled lifecycle.
+     */
+    public CompiledLifeCycle getCompiledLifeCycle() {
+        CompiledLifeCycle compiled = compiledLifeCycle;
+        if (compiled == null) {
+            compiled = compile();
+            compiledLifeCycle = compiled;
+        }
+        return compiled;
+    }
+
     /**
      * Gets the initial lifecycle state.
      *
      * @return The initial lifecycle state.
      */
     public String getInitialState() {
-        // Implementation and returned value are not relevant for this exercise
-        return null;
+        return getCompiledLifeCycle().getInitialState();
     }
 
     /**
@@ -29,8 +153,7 @@ public class LifeCycleTemplate {
      * @return true if the lifecycle state is known, false otherwise.
      */
     public boolean isKnown(String lifeCycleState) {
-        // Implementation and returned value are not relevant for this exercise
-        return true;
+        return getCompiledLifeCycle().isKnown(lifeCycleState);
     }
 
     /**
@@ -40,7 +163,62 @@ public class LifeCycleTemplate {
      * @return true if the lifecycle state is a final state, false otherwise.
      */
     public boolean isFinal(String lifeCycleState) {
-        // Implementation and returned value are not relevant for this exercise
-        return true;
+        return getCompiledLifeCycle().isFinal(lifeCycleState);
+    }
+
+    /**
+     * Compiles the template once it is loaded, called by the Java Persistance API.
+     * Lifecycle callbacks must not return a value: the compiled form is kept here.
+     */
+    @PostLoad
+    protected void onLoad() {
+        compiledLifeCycle = compile();
+    }
+
+    /**
+     * Compiles the template.
+     *
+     * @return The compiled lifecycle.
+     */
+    protected CompiledLifeCycle compile() {
+        List<String[]> moves = new ArrayList<>(transitions.size());
+        for (Transition transition : transitions) {
+            moves.add(new String[]{transition.fromState, transition.toState});
+        }
+        return CompiledLifeCycle.compile(initialState, states, finalStates, moves);
+    }
+
+    // Allowed move between two lifecycle states.
+    @Embeddable
+    public static class Transition {
+        @Column
+        private String fromState;
+
+        @Column
+        private String toState;
+
+        // Default constructor for Java Persistance API.
+        public Transition() {
+        }
+
+        /**
+         * Constructor to initialize the move.
+         *
+         * @param fromState The current lifecycle state.
+         * @param toState   The target lifecycle state.
+         */
+        public Transition(String fromState, String toState) {
+            this.fromState = fromState;
+            this.toState = toState;
+        }
+
+        // Getter methods for the fields
+        public String getFromState() {
+            return fromState;
+        }
+
+        public String getToState() {
+            return toState;
+        }
     }
-}
\ No newline at end of file
+}
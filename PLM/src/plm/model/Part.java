@@ -1,12 +1,19 @@
 package plm.model;
 
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Objects;
+import java.util.WeakHashMap;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Min;
@@ -14,22 +21,23 @@ import javax.validation.constraints.Min;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Locale;
-import java.util.ResourceBundle;
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
 
 /**
  * Entity class representing a Part in the Product Lifecycle Management (PLM) system.
  *
  * @Entity specifies that the class is an entity and is mapped to a database table.
  * @IdClass(Part.PartPK.class) specifies a composite primary key class (PartPK) for the entity.
+ * @Table indexes the version ordinal so that versions of a reference are ordered numerically.
  */
 @Entity
 @IdClass(plm.model.Part.PartPK.class)
+@Table(indexes = @Index(columnList = "reference, versionOrdinal"))
 public class Part extends AbstractEntity {
 
     private static final Logger logger = LoggerFactory.getLogger(Part.class);
-    private static final ResourceBundle bundle = ResourceBundle.getBundle("messages",
-            Locale.ENGLISH);
 
     // Fields
 
@@ -50,12 +58,22 @@ public class Part extends AbstractEntity {
     @Min(value = 0, message = "Iteration must be a positive integer")
     private int iteration;
 
+    // Position of the version label in the version schema, used to order versions.
+    @Column
+    private int versionOrdinal;
+
     @Column
+    @DeltaEncoded
     private String partAttribute1;
 
     @Column
+    @DeltaEncoded
     private String partAttribute2;
 
+    // Iteration whose row holds the attributes left empty in this row, 0 for a full row.
+    @Column
+    private int baseIteration;
+
     // Constructors
 
     // Default constructor for Java Persistance API.
@@ -105,6 +123,24 @@ public class Part extends AbstractEntity {
         return iteration;
     }
 
+    /**
+     * Gets the ordinal of the version of the part in its version schema.
+     *
+     * @return The ordinal of the version, 0 if it is not part of the version schema.
+     */
+    public int getVersionOrdinal() {
+        return versionOrdinal;
+    }
+
+    /**
+     * Gets the iteration this iteration is stored as a delta of (see {@link DeltaCodec}).
+     *
+     * @return The base iteration, 0 if the iteration is stored as a full row.
+     */
+    public int getBaseIteration() {
+        return baseIteration;
+    }
+
     /**
      * Gets the first part attribute.
      *
@@ -125,6 +161,18 @@ public class Part extends AbstractEntity {
 
     // Setters
 
+    /**
+     * {@inheritDoc}
+     *
+     * Also computes the ordinal of the version of the part in the version schema.
+     */
+    @Override
+    public Part setVersionSchema(VersionSchema versionSchema) {
+        super.setVersionSchema(versionSchema);
+        this.versionOrdinal = versionSchema.getOrdinal(version);
+        return this;
+    }
+
     /**
      * Sets the first part attribute.
      *
@@ -132,9 +180,9 @@ public class Part extends AbstractEntity {
      */
     public Part setPartAttribute1(String partAttribute1) {
         if (partAttribute1 == null || partAttribute1.trim().isEmpty()) {
-            logger.error(bundle.getString("error.invalidPartAttribute1"), partAttribute1);
-            throw new IllegalArgumentException(bundle.getString("partAttribute1") + " " +
-                    bundle.getString("error.cannotBeEmpty"));
+            logger.error("{}", Message.of("error.invalidPartAttribute1", partAttribute1));
+            throw new LocalizedArgumentException(
+                    Message.field("partAttribute1", "error.cannotBeEmpty"));
         }
         this.partAttribute1 = partAttribute1;
         return this;
@@ -147,20 +195,86 @@ public class Part extends AbstractEntity {
      */
     public Part setPartAttribute2(String partAttribute2) {
         if (partAttribute2 == null || partAttribute2.trim().isEmpty()) {
-            logger.error(bundle.getString("error.invalidPartAttribute2"), partAttribute2);
-            throw new IllegalArgumentException(bundle.getString("partAttribute2") + " " +
-                    bundle.getString("error.cannotBeEmpty"));
+            logger.error("{}", Message.of("error.invalidPartAttribute2", partAttribute2));
+            throw new LocalizedArgumentException(
+                    Message.field("partAttribute2", "error.cannotBeEmpty"));
         }
         this.partAttribute2 = partAttribute2;
         return this;
     }
 
-    // Composite primary key class for the Part entity.
-    public static class PartPK {
+    /**
+     * Sets the iteration this iteration is stored as a delta of.
+     *
+     * @param baseIteration The base iteration, 0 for a full row.
+     */
+    void setBaseIteration(int baseIteration) {
+        this.baseIteration = baseIteration;
+    }
+
+    /**
+     * Moves a new copy of the part to another iteration or version, recomputing the
+     * ordinal of the version if it changes. The copy is not stored yet, so not as a delta.
+     *
+     * @param version   The version of the copy.
+     * @param iteration The iteration of the copy.
+     */
+    void moveTo(String version, int iteration) {
+        this.baseIteration = 0;
+        if (!version.equals(this.version)) {
+            this.version = version;
+            this.versionOrdinal = getVersionSchema() != null
+                    ? getVersionSchema().getOrdinal(version) : VersionLabelSequence.UNKNOWN;
+        }
+        this.iteration = iteration;
+    }
+
+    /**
+     * Creates a detached copy of the part, e.g. to hand out cached parts.
+     *
+     * @return The copy.
+     */
+    public Part copy() {
+        Part copy = new Part(reference, version, iteration);
+        copyTo(copy);
+        return copy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyTo(AbstractEntity target) {
+        super.copyTo(target);
+        Part part = (Part) target;
+        part.versionOrdinal = versionOrdinal;
+        part.baseIteration = baseIteration;
+        part.partAttribute1 = partAttribute1;
+        part.partAttribute2 = partAttribute2;
+    }
+
+    /*
+     * Composite primary key class for the Part entity.
+     *
+     * Keys are immutable (Hibernate only sets the fields of the keys it creates, before
+     * using them), so the hash and the fingerprint are computed once and cached.
+     */
+    public static class PartPK implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        // Canonical instances of the interned keys, weakly referenced.
+        private static final Map<PartPK, WeakReference<PartPK>> interned =
+                Collections.synchronizedMap(new WeakHashMap<>());
+
         private String reference;
         private String version;
         private int iteration;
 
+        // Cached hash code and fingerprint, 0 until computed.
+        private transient int hash;
+        private transient long fingerprint;
+
         // Default constructor for Java Persistance API.
         public PartPK() {
         }
@@ -192,17 +306,81 @@ public class Part extends AbstractEntity {
         }
 
         /**
-         * Generates a hash code for the PartPK instance.
+         * Gets the canonical instance of this key, so that long-lived structures (caches,
+         * indexes) share one instance per key. Canonical instances are only weakly
+         * referenced by the registry.
+         *
+         * @return The canonical key equal to this key.
+         */
+        public PartPK intern() {
+            synchronized (interned) {
+                WeakReference<PartPK> canonical = interned.get(this);
+                PartPK key = canonical == null ? null : canonical.get();
+                if (key == null) {
+                    interned.put(this, new WeakReference<>(this));
+                    key = this;
+                }
+                return key;
+            }
+        }
+
+        /**
+         * Gets a 64-bit fingerprint of the key, to be used as a primitive map key.
+         * Unlike the fields, the fingerprint is not unique: users must tolerate or check
+         * collisions, which are as unlikely as for a 64-bit hash.
+         *
+         * @return The fingerprint, never 0.
+         */
+        public long fingerprint() {
+            long result = fingerprint;
+            if (result == 0) {
+                // FNV-1a over the fields, then the MurmurHash3 finalizer
+                result = 0xcbf29ce484222325L;
+                result = fnv(result, reference);
+                result = (result ^ 0xff) * 0x100000001b3L;
+                result = fnv(result, version);
+                result = (result ^ iteration) * 0x100000001b3L;
+                result ^= result >>> 33;
+                result *= 0xff51afd7ed558ccdL;
+                result ^= result >>> 33;
+                result *= 0xc4ceb9fe1a85ec53L;
+                result ^= result >>> 33;
+                if (result == 0) {
+                    result = 1;
+                }
+                fingerprint = result;
+            }
+            return result;
+        }
+
+        private static long fnv(long hash, String value) {
+            if (value == null) {
+                return hash;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        /**
+         * Generates a hash code for the PartPK instance, computed once without boxing.
          *
          * @return A hash code based on the reference, version, and iteration fields.
          */
         @Override
         public int hashCode() {
-            return Objects.hash(iteration, reference, version);
+            int result = hash;
+            if (result == 0) {
+                result = 31 * (31 * Objects.hashCode(reference) + Objects.hashCode(version)) + iteration;
+                hash = result;
+            }
+            return result;
         }
 
         /**
-         * Checks if two PartPK instances are equal.
+         * Checks if two PartPK instances are equal. Keys of different classes
+         * (e.g. a PartPK and a DocumentPK) are never equal.
          *
          * @param obj The object to compare with.
          * @return true if the objects are equal, false otherwise.
@@ -216,8 +394,9 @@ public class Part extends AbstractEntity {
             if (getClass() != obj.getClass())
                 return false;
             PartPK other = (PartPK) obj;
-            return iteration == other.iteration && Objects.equals(reference, other.reference)
+            return iteration == other.iteration && hashCode() == other.hashCode()
+                    && Objects.equals(reference, other.reference)
                     && Objects.equals(version, other.version);
         }
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+package plm.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Entity class representing the link between a Part and a Document
+ * in the Product Lifecycle Management (PLM) system.
+ *
+ * Links are made between references: a linked document follows the lifecycle of the
+ * part, so the document linked to an iteration of a part is the document with the same
+ * version and iteration.
+ *
+ * @IdClass(PartDocumentLink.PartDocumentLinkPK.class) specifies a composite primary key.
+ * @Table indexes the part reference to resolve the documents of many parts at once.
+ */
+@Entity
+@IdClass(plm.model.PartDocumentLink.PartDocumentLinkPK.class)
+@Table(indexes = @Index(columnList = "partReference"))
+public class PartDocumentLink {
+
+    @Id
+    private String partReference;
+
+    @Id
+    private String documentReference;
+
+    // Constructors
+
+    // Default constructor for Java Persistance API.
+    public PartDocumentLink() {
+        // Default constructor
+    }
+
+    /**
+     * Constructor to initialize the linked references.
+     *
+     * @param partReference     The reference of the part.
+     * @param documentReference The reference of the document.
+     */
+    public PartDocumentLink(String partReference, String documentReference) {
+        this.partReference = partReference;
+        this.documentReference = documentReference;
+    }
+
+    // Getters
+
+    /**
+     * Gets the reference of the part.
+     *
+     * @return The reference of the part.
+     */
+    public String getPartReference() {
+        return partReference;
+    }
+
+    /**
+     * Gets the reference of the document.
+     *
+     * @return The reference of the document.
+     */
+    public String getDocumentReference() {
+        return documentReference;
+    }
+
+    // Composite primary key class for the PartDocumentLink entity.
+    public static class PartDocumentLinkPK implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String partReference;
+        private String documentReference;
+
+        // Default constructor for Java Persistance API.
+        public PartDocumentLinkPK() {
+        }
+
+        /**
+         * Constructor to initialize the composite key fields.
+         *
+         * @param partReference     The reference of the part.
+         * @param documentReference The reference of the document.
+         */
+        public PartDocumentLinkPK(String partReference, String documentReference) {
+            this.partReference = partReference;
+            this.documentReference = documentReference;
+        }
+
+        // Getter methods for the fields
+        public String getPartReference() {
+            return partReference;
+        }
+
+        public String getDocumentReference() {
+            return documentReference;
+        }
+
+        /**
+         * Generates a hash code for the PartDocumentLinkPK instance.
+         *
+         * @return A hash code based on the part and document references.
+         */
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(partReference) + Objects.hashCode(documentReference);
+        }
+
+        /**
+         * Checks if two PartDocumentLinkPK instances are equal.
+         *
+         * @param obj The object to compare with.
+         * @return true if the objects are equal, false otherwise.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            PartDocumentLinkPK other = (PartDocumentLinkPK) obj;
+            return Objects.equals(partReference, other.partReference)
+                    && Objects.equals(documentReference, other.documentReference);
+        }
+    }
+}
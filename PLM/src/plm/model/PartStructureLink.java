@@ -0,0 +1,132 @@
+package plm.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Entity class representing the link between a parent Part and a child Part
+ * (a line of the bill of materials) in the Product Lifecycle Management (PLM) system.
+ *
+ * Links are made between references: the child of an assembly is the latest iteration
+ * of the latest version of the child reference, so a structure does not have to be
+ * relinked when its components are revised.
+ *
+ * @IdClass(PartStructureLink.PartStructureLinkPK.class) specifies a composite primary key.
+ * @Table indexes the parent reference to resolve the children of many parts at once.
+ */
+@Entity
+@IdClass(plm.model.PartStructureLink.PartStructureLinkPK.class)
+@Table(indexes = @Index(columnList = "parentReference"))
+public class PartStructureLink {
+
+    @Id
+    private String parentReference;
+
+    @Id
+    private String childReference;
+
+    // Constructors
+
+    // Default constructor for Java Persistance API.
+    public PartStructureLink() {
+        // Default constructor
+    }
+
+    /**
+     * Constructor to initialize the linked references.
+     *
+     * @param parentReference The reference of the parent part.
+     * @param childReference  The reference of the child part.
+     */
+    public PartStructureLink(String parentReference, String childReference) {
+        this.parentReference = parentReference;
+        this.childReference = childReference;
+    }
+
+    // Getters
+
+    /**
+     * Gets the reference of the parent part.
+     *
+     * @return The reference of the parent part.
+     */
+    public String getParentReference() {
+        return parentReference;
+    }
+
+    /**
+     * Gets the reference of the child part.
+     *
+     * @return The reference of the child part.
+     */
+    public String getChildReference() {
+        return childReference;
+    }
+
+    // Composite primary key class for the PartStructureLink entity.
+    public static class PartStructureLinkPK implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String parentReference;
+        private String childReference;
+
+        // Default constructor for Java Persistance API.
+        public PartStructureLinkPK() {
+        }
+
+        /**
+         * Constructor to initialize the composite key fields.
+         *
+         * @param parentReference The reference of the parent part.
+         * @param childReference  The reference of the child part.
+         */
+        public PartStructureLinkPK(String parentReference, String childReference) {
+            this.parentReference = parentReference;
+            this.childReference = childReference;
+        }
+
+        // Getter methods for the fields
+        public String getParentReference() {
+            return parentReference;
+        }
+
+        public String getChildReference() {
+            return childReference;
+        }
+
+        /**
+         * Generates a hash code for the PartStructureLinkPK instance.
+         *
+         * @return A hash code based on the parent and child references.
+         */
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(parentReference) + Objects.hashCode(childReference);
+        }
+
+        /**
+         * Checks if two PartStructureLinkPK instances are equal.
+         *
+         * @param obj The object to compare with.
+         * @return true if the objects are equal, false otherwise.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            PartStructureLinkPK other = (PartStructureLinkPK) obj;
+            return Objects.equals(parentReference, other.parentReference)
+                    && Objects.equals(childReference, other.childReference);
+        }
+    }
+}
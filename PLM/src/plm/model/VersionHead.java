@@ -0,0 +1,183 @@
+package plm.model;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Version;
+
+/**
+ * Entity class representing the head of a version of a reference in the Product
+ * Lifecycle Management (PLM) system: the latest iteration of that version.
+ *
+ * Maintained together with the {@link EntityHead} of the reference.
+ *
+ * @IdClass(VersionHead.VersionHeadPK.class) specifies a composite primary key: the type of
+ * the entity (Part or Document), its reference and the version.
+ */
+@Entity
+@IdClass(plm.model.VersionHead.VersionHeadPK.class)
+public class VersionHead {
+
+    @Id
+    private String entityType;
+
+    @Id
+    private String reference;
+
+    @Id
+    private String version;
+
+    @Column
+    private int latestIteration;
+
+    // Optimistic lock: concurrent writes of the same version conflict on the head.
+    @Version
+    @Column
+    private long lockVersion;
+
+    // Constructors
+
+    // Default constructor for Java Persistance API.
+    public VersionHead() {
+        // Default constructor
+    }
+
+    /**
+     * Constructor to initialize the head of a version without any iteration yet.
+     *
+     * @param entityType The type of the entity (Part or Document).
+     * @param reference  The reference of the entity.
+     * @param version    The version of the entity.
+     */
+    public VersionHead(String entityType, String reference, String version) {
+        this.entityType = entityType;
+        this.reference = reference;
+        this.version = version;
+    }
+
+    // Getters
+
+    /**
+     * Gets the type of the entity.
+     *
+     * @return The simple name of the class of the entity.
+     */
+    public String getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Gets the reference of the entity.
+     *
+     * @return The reference of the entity.
+     */
+    public String getReference() {
+        return reference;
+    }
+
+    /**
+     * Gets the version of the entity.
+     *
+     * @return The label of the version.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the latest iteration of the version.
+     *
+     * @return The latest iteration.
+     */
+    public int getLatestIteration() {
+        return latestIteration;
+    }
+
+    /**
+     * Moves the head to a written iteration of the version if it is the latest one.
+     *
+     * @param entity The written iteration.
+     * @return true if the head changed.
+     */
+    public boolean advance(Part entity) {
+        if (entity.getIteration() <= latestIteration) {
+            return false;
+        }
+        latestIteration = entity.getIteration();
+        return true;
+    }
+
+    // Composite primary key class for the VersionHead entity.
+    public static class VersionHeadPK implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String entityType;
+        private String reference;
+        private String version;
+
+        // Default constructor for Java Persistance API.
+        public VersionHeadPK() {
+        }
+
+        /**
+         * Constructor to initialize the composite key fields.
+         *
+         * @param entityType The type of the entity.
+         * @param reference  The reference of the entity.
+         * @param version    The version of the entity.
+         */
+        public VersionHeadPK(String entityType, String reference, String version) {
+            this.entityType = entityType;
+            this.reference = reference;
+            this.version = version;
+        }
+
+        // Getter methods for the fields
+        public String getEntityType() {
+            return entityType;
+        }
+
+        public String getReference() {
+            return reference;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Generates a hash code for the VersionHeadPK instance.
+         *
+         * @return A hash code based on the type, reference and version.
+         */
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Objects.hashCode(entityType) + Objects.hashCode(reference))
+                    + Objects.hashCode(version);
+        }
+
+        /**
+         * Checks if two VersionHeadPK instances are equal.
+         *
+         * @param obj The object to compare with.
+         * @return true if the objects are equal, false otherwise.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            VersionHeadPK other = (VersionHeadPK) obj;
+            return Objects.equals(entityType, other.entityType)
+                    && Objects.equals(reference, other.reference)
+                    && Objects.equals(version, other.version);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package plm.model;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable, precomputed sequence of the version labels of a {@link VersionSchema.LabelStyle}.
+ *
+ * Label sequences are deterministic, so the first {@link #PRECOMPUTED} labels of each
+ * style are computed once per JVM and shared by every schema of that style: getting the
+ * ordinal of a label or the label of an ordinal is then a single lookup, and next,
+ * previous and comparison of labels are done on ordinals. Labels beyond the precomputed
+ * range are computed on the fly.
+ *
+ * Ordinals start at 1 for the first label, 0 means the label is not part of the sequence.
+ */
+public final class VersionLabelSequence {
+
+    /**
+     * Number of labels precomputed for each style (A to ZZ, 1.0 to 702.0).
+     */
+    public static final int PRECOMPUTED = 702;
+
+    /**
+     * Ordinal of a label which is not part of the sequence.
+     */
+    public static final int UNKNOWN = 0;
+
+    private static final Map<VersionSchema.LabelStyle, VersionLabelSequence> SEQUENCES =
+            new EnumMap<>(VersionSchema.LabelStyle.class);
+
+    static {
+        for (VersionSchema.LabelStyle style : VersionSchema.LabelStyle.values()) {
+            SEQUENCES.put(style, new VersionLabelSequence(style));
+        }
+    }
+
+    private final VersionSchema.LabelStyle style;
+
+    // labels[ordinal] is the label of the ordinal, labels[0] is unused
+    private final String[] labels;
+
+    private final Map<String, Integer> ordinals;
+
+    private VersionLabelSequence(VersionSchema.LabelStyle style) {
+        this.style = style;
+        this.labels = new String[PRECOMPUTED + 1];
+        this.ordinals = new HashMap<>(2 * PRECOMPUTED);
+        for (int ordinal = 1; ordinal <= PRECOMPUTED; ordinal++) {
+            labels[ordinal] = style.format(ordinal);
+            ordinals.put(labels[ordinal], ordinal);
+        }
+    }
+
+    /**
+     * Gets the sequence of a label style.
+     *
+     * @param style The label style.
+     * @return The shared sequence of the style.
+     */
+    public static VersionLabelSequence of(VersionSchema.LabelStyle style) {
+        return SEQUENCES.get(style);
+    }
+
+    /**
+     * Gets the ordinal of a label.
+     *
+     * @param label The version label.
+     * @return The ordinal of the label, {@link #UNKNOWN} if it is not part of the sequence.
+     */
+    public int ordinalOf(String label) {
+        if (label == null) {
+            return UNKNOWN;
+        }
+        Integer ordinal = ordinals.get(label);
+        return ordinal != null ? ordinal : style.parse(label);
+    }
+
+    /**
+     * Gets the label of an ordinal.
+     *
+     * @param ordinal The ordinal, starting at 1.
+     * @return The label, null if the ordinal is not positive.
+     */
+    public String labelOf(int ordinal) {
+        if (ordinal <= UNKNOWN) {
+            return null;
+        }
+        return ordinal <= PRECOMPUTED ? labels[ordinal] : style.format(ordinal);
+    }
+}
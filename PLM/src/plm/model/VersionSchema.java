@@ -1,16 +1,76 @@
 package plm.model;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
 
 /**
  * Entity class representing the version schema in the Product Lifecycle Management (PLM) system.
  * This class is used to determine the next version label based on the current version label.
  *
+ * Labels are resolved through the precomputed {@link VersionLabelSequence} of the schema
+ * style, and can be ordered by their ordinal instead of comparing strings.
+ *
  * @Entity specifies that the class is an entity and is mapped to a database table.
  */
 @Entity
 public class VersionSchema {
 
+    private static final Logger logger = LoggerFactory.getLogger(VersionSchema.class);
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    // @Enumerated stores the label style by name.
+    @Column
+    @Enumerated(EnumType.STRING)
+    private LabelStyle labelStyle = LabelStyle.LETTERS;
+
+    // Constructors
+
+    // Default constructor for Java Persistance API.
+    public VersionSchema() {
+        // Default constructor
+    }
+
+    /**
+     * Constructor to initialize the label style.
+     *
+     * @param labelStyle The style of the version labels.
+     */
+    public VersionSchema(LabelStyle labelStyle) {
+        this.labelStyle = labelStyle;
+    }
+
+    /**
+     * Gets the identifier of the version schema.
+     *
+     * @return The identifier of the version schema.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the style of the version labels.
+     *
+     * @return The style of the version labels.
+     */
+    public LabelStyle getLabelStyle() {
+        return labelStyle;
+    }
+
     /**
      * Gets the next version label based on the current version label.
      *
@@ -18,7 +78,138 @@ public class VersionSchema {
      * @return The next version label.
      */
     public String getNextVersionLabel(String currentVersionLabel) {
-        // Implementation and returned value are not relevant for this exercise
-        return null;
+        return getSequence().labelOf(requireOrdinal(currentVersionLabel) + 1);
+    }
+
+    /**
+     * Gets the previous version label based on the current version label.
+     *
+     * @param currentVersionLabel The current version label.
+     * @return The previous version label, null for the first version.
+     */
+    public String getPreviousVersionLabel(String currentVersionLabel) {
+        return getSequence().labelOf(requireOrdinal(currentVersionLabel) - 1);
+    }
+
+    /**
+     * Gets the ordinal of a version label, i.e. its position in the sequence of labels.
+     *
+     * @param versionLabel The version label.
+     * @return The ordinal of the label starting at 1,
+     * {@link VersionLabelSequence#UNKNOWN} if the label is not part of the schema.
+     */
+    public int getOrdinal(String versionLabel) {
+        return getSequence().ordinalOf(versionLabel);
+    }
+
+    /**
+     * Compares two version labels by their position in the sequence of labels.
+     *
+     * @param versionLabel1 The first version label.
+     * @param versionLabel2 The second version label.
+     * @return A negative integer, zero, or a positive integer as the first label comes
+     * before, is the same as, or comes after the second label.
+     */
+    public int compare(String versionLabel1, String versionLabel2) {
+        return Integer.compare(getOrdinal(versionLabel1), getOrdinal(versionLabel2));
+    }
+
+    /**
+     * Gets the precomputed sequence of labels of the schema.
+     *
+     * @return The sequence of labels.
+     */
+    private VersionLabelSequence getSequence() {
+        return VersionLabelSequence.of(labelStyle);
+    }
+
+    /**
+     * Gets the ordinal of a version label which must be part of the schema.
+     *
+     * @param versionLabel The version label.
+     * @return The ordinal of the label.
+     */
+    private int requireOrdinal(String versionLabel) {
+        int ordinal = getOrdinal(versionLabel);
+        if (ordinal == VersionLabelSequence.UNKNOWN) {
+            logger.error("{}", Message.of("error.invalidVersionLabel", versionLabel));
+            throw new LocalizedArgumentException(
+                    Message.field("part.version", "error.unknownVersionLabel"));
+        }
+        return ordinal;
+    }
+
+    /**
+     * Styles of version labels.
+     */
+    public enum LabelStyle {
+
+        // A, B, ..., Z, AA, AB, ..., ZZ, AAA, ...
+        LETTERS {
+            @Override
+            String format(int ordinal) {
+                StringBuilder label = new StringBuilder();
+                for (int remaining = ordinal; remaining > 0; remaining = (remaining - 1) / 26) {
+                    label.append((char) ('A' + (remaining - 1) % 26));
+                }
+                return label.reverse().toString();
+            }
+
+            @Override
+            int parse(String label) {
+                if (label.isEmpty() || label.length() > 6) {
+                    return VersionLabelSequence.UNKNOWN;
+                }
+                int ordinal = 0;
+                for (int i = 0; i < label.length(); i++) {
+                    char letter = label.charAt(i);
+                    if (letter < 'A' || letter > 'Z') {
+                        return VersionLabelSequence.UNKNOWN;
+                    }
+                    ordinal = ordinal * 26 + (letter - 'A' + 1);
+                }
+                return ordinal;
+            }
+        },
+
+        // 1.0, 2.0, 3.0, ...
+        NUMBERS {
+            @Override
+            String format(int ordinal) {
+                return ordinal + ".0";
+            }
+
+            @Override
+            int parse(String label) {
+                if (!label.endsWith(".0") || label.length() < 3 || label.length() > 11) {
+                    return VersionLabelSequence.UNKNOWN;
+                }
+                long ordinal = 0;
+                for (int i = 0; i < label.length() - 2; i++) {
+                    char digit = label.charAt(i);
+                    if (digit < '0' || digit > '9' || (i == 0 && digit == '0')) {
+                        return VersionLabelSequence.UNKNOWN;
+                    }
+                    ordinal = ordinal * 10 + (digit - '0');
+                }
+                return ordinal > Integer.MAX_VALUE ? VersionLabelSequence.UNKNOWN : (int) ordinal;
+            }
+        };
+
+        /**
+         * Formats the label of an ordinal.
+         *
+         * @param ordinal The ordinal, starting at 1.
+         * @return The label.
+         */
+        abstract String format(int ordinal);
+
+        /**
+         * Parses the ordinal of a label.
+         *
+         * @param label The label.
+         * @return The ordinal, {@link VersionLabelSequence#UNKNOWN} if the label is invalid.
+         */
+        abstract int parse(String label);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,223 @@
+package plm.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
+/**
+ * Runs batches of operations of a {@link Service} in chunks, one transaction per chunk.
+ *
+ * The operations of a chunk are pipelined in the same transaction: the entities they load
+ * are shared, and their writes are flushed together, in JDBC batches, at commit. A chunk
+ * whose commit conflicts with concurrent writes is run again according to the
+ * {@link RetryPolicy}, as a single operation would be.
+ *
+ * An operation fails when it is rejected by a business rule or has an invalid argument;
+ * its transaction is then rolled back, and the chunk is replayed without the failed
+ * operation as the {@link BatchFailureMode} says. Replays only happen on failures, but
+ * each one runs again the operations of the chunk before the failed one, so a chunk of n
+ * operations with k failures runs up to k * n operations: chunks are kept small
+ * ({@link #DEFAULT_CHUNK_SIZE} unless the caller asks otherwise). Other errors abort the
+ * batch, the chunks already committed staying committed.
+ *
+ * Reservations freed by a chunk are only released when it is committed (see
+ * {@link ReservationManager}): an entity freed in a chunk can be reserved again by a
+ * later chunk, not by the same one.
+ */
+@Component
+public class BatchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchExecutor.class);
+
+    /**
+     * Maximum number of operations of a batch.
+     */
+    public static final int MAX_OPERATIONS = 10_000;
+
+    /**
+     * Default number of operations committed together.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 100;
+
+    private TransactionTemplate transactionTemplate;
+
+    private RetryPolicy retryPolicy;
+
+    /**
+     * Sets the transaction manager running the chunks.
+     *
+     * @param transactionManager The PlatformTransactionManager to set.
+     */
+    @Autowired
+    public void setTransactionManager(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Sets the retry policy of the chunks conflicting with concurrent writes.
+     *
+     * @param retryPolicy The RetryPolicy to set.
+     */
+    @Autowired
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Runs a batch of operations.
+     *
+     * @param service    The transactional service of the entities, not decorated with
+     *                   retries: the chunks are retried as a whole.
+     * @param userId     The user running the batch.
+     * @param operations The operations, in the order in which they are run.
+     * @param mode       What to do when an operation fails.
+     * @param chunkSize  The number of operations committed together.
+     * @return The outcome of each operation, in the order of the operations.
+     * @throws IllegalArgumentException If the batch is too large or the chunk size is not
+     *                                  a positive integer.
+     */
+    public List<BatchResult> execute(Service service, String userId, List<BatchOperation> operations,
+                                     BatchFailureMode mode, int chunkSize) {
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new LocalizedArgumentException(Message.of("error.tooManyBatchOperations", MAX_OPERATIONS));
+        }
+        if (chunkSize < 1) {
+            throw new LocalizedArgumentException(
+                    Message.field("batch.chunkSize", "error.mustBePositiveInteger"));
+        }
+        BatchResult[] results = new BatchResult[operations.size()];
+        boolean stopped = false;
+        for (int from = 0; from < operations.size(); from += chunkSize) {
+            int to = Math.min(operations.size(), from + chunkSize);
+            if (stopped) {
+                mark(results, from, to, BatchResult.Status.NOT_RUN);
+            } else {
+                stopped = !runChunk(service, userId, operations, from, to, mode, results);
+            }
+        }
+        logger.debug("Ran a batch of {} operations in chunks of {} ({})", operations.size(), chunkSize, mode);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Runs a chunk of operations, replaying it after failures as the failure mode says.
+     *
+     * @param service    The service of the entities.
+     * @param userId     The user running the batch.
+     * @param operations The operations of the batch.
+     * @param from       The index of the first operation of the chunk.
+     * @param to         The index after the last operation of the chunk.
+     * @param mode       What to do when an operation fails.
+     * @param results    The outcomes of the operations, filled for the chunk.
+     * @return false if the batch must stop after this chunk.
+     */
+    private boolean runChunk(Service service, String userId, List<BatchOperation> operations,
+                             int from, int to, BatchFailureMode mode, BatchResult[] results) {
+        List<Integer> pending = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            pending.add(i);
+        }
+        boolean stop = false;
+        while (!pending.isEmpty()) {
+            Failure failure;
+            try {
+                failure = retryPolicy.execute(() -> runInTransaction(service, userId, operations, pending));
+            } catch (OptimisticLockingFailureException e) {
+                for (int index : pending) {
+                    results[index] = new BatchResult(index, BatchResult.Status.FAILED,
+                            RejectionCode.CONFLICT, e.getMessage());
+                }
+                return mode != BatchFailureMode.STOP;
+            }
+            if (failure == null) {
+                for (int index : pending) {
+                    results[index] = new BatchResult(index, BatchResult.Status.APPLIED, null, null);
+                }
+                break;
+            }
+
+            results[failure.index] = failure.toResult();
+            int position = pending.indexOf(failure.index);
+            if (mode == BatchFailureMode.SKIP) {
+                pending.remove(position);
+            } else {
+                for (int index : pending.subList(position + 1, pending.size())) {
+                    results[index] = new BatchResult(index, BatchResult.Status.NOT_RUN, null, null);
+                }
+                pending.subList(position, pending.size()).clear();
+                if (mode == BatchFailureMode.ROLLBACK_CHUNK) {
+                    for (int index : pending) {
+                        results[index] = new BatchResult(index, BatchResult.Status.ROLLED_BACK, null, null);
+                    }
+                    break;
+                }
+                stop = true;
+            }
+        }
+        return !stop;
+    }
+
+    /**
+     * Runs operations in one transaction, rolled back at the first failure.
+     *
+     * @param service    The service of the entities.
+     * @param userId     The user running the batch.
+     * @param operations The operations of the batch.
+     * @param indexes    The indexes of the operations to run.
+     * @return The first failure, null if every operation succeeded and was committed.
+     */
+    private Failure runInTransaction(Service service, String userId, List<BatchOperation> operations,
+                                     List<Integer> indexes) {
+        return transactionTemplate.execute(status -> {
+            for (int index : indexes) {
+                try {
+                    operations.get(index).applyTo(service, userId);
+                } catch (IllegalArgumentException e) {
+                    // the failed operation may have written before failing
+                    status.setRollbackOnly();
+                    return new Failure(index, e);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Marks operations with an outcome.
+     */
+    private static void mark(BatchResult[] results, int from, int to, BatchResult.Status status) {
+        for (int i = from; i < to; i++) {
+            results[i] = new BatchResult(i, status, null, null);
+        }
+    }
+
+    /**
+     * Failure of an operation of a chunk.
+     */
+    private static final class Failure {
+        final int index;
+        final IllegalArgumentException exception;
+
+        Failure(int index, IllegalArgumentException exception) {
+            this.index = index;
+            this.exception = exception;
+        }
+
+        BatchResult toResult() {
+            RejectionCode code = exception instanceof RejectedOperationException
+                    ? ((RejectedOperationException) exception).getCode() : null;
+            return new BatchResult(index, BatchResult.Status.FAILED, code, exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package plm.services;
+
+/**
+ * What a {@link BatchExecutor} does when an operation of a batch fails.
+ */
+public enum BatchFailureMode {
+
+    /**
+     * The operations before the failed one are applied, the following ones are not run.
+     */
+    STOP,
+
+    /**
+     * The failed operation is left out, every other operation is applied.
+     */
+    SKIP,
+
+    /**
+     * No operation of the chunk of the failed one is applied, the next chunks are run.
+     */
+    ROLLBACK_CHUNK
+}
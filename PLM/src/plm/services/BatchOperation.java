@@ -0,0 +1,160 @@
+package plm.services;
+
+import java.util.Map;
+
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
+/**
+ * Operation of a batch run by the {@link BatchExecutor}: one call of a {@link Service}
+ * on one entity, on behalf of the user of the batch.
+ */
+public class BatchOperation {
+
+    /**
+     * Operations of the services which can be batched.
+     */
+    public enum Type {
+        RESERVE, UPDATE, FREE, SET_STATE, REVISE
+    }
+
+    private final Type type;
+    private final String reference;
+    private final String version;
+    private final int iteration;
+    private final String attribute1;
+    private final String attribute2;
+    private final String state;
+
+    /**
+     * Constructor to initialize the operation.
+     *
+     * @param type       The operation.
+     * @param reference  The reference of the entity.
+     * @param version    The version of the entity.
+     * @param iteration  The iteration of the entity.
+     * @param attribute1 The first attribute, for an update.
+     * @param attribute2 The second attribute, for an update.
+     * @param state      The new state, to set the state.
+     */
+    public BatchOperation(Type type, String reference, String version, int iteration,
+                          String attribute1, String attribute2, String state) {
+        this.type = type;
+        this.reference = reference;
+        this.version = version;
+        this.iteration = iteration;
+        this.attribute1 = attribute1;
+        this.attribute2 = attribute2;
+        this.state = state;
+    }
+
+    /**
+     * Creates an operation from the values of a line of a batch, named like the request
+     * parameters of the single operations, the operation itself being named by
+     * {@code operation} (reserve, update, free, setState or revise).
+     *
+     * @param values The values, by name.
+     * @return The operation.
+     * @throws IllegalArgumentException If the operation is unknown or the key of the
+     *                                  entity is missing.
+     */
+    public static BatchOperation of(Map<String, String> values) {
+        return new BatchOperation(typeOf(values.get("operation")),
+                require(values, "reference", "part.reference"),
+                require(values, "version", "part.version"),
+                parseIteration(values.get("iteration")),
+                values.get("attribute1"), values.get("attribute2"), values.get("state"));
+    }
+
+    /**
+     * Runs the operation.
+     *
+     * @param service The service of the entities.
+     * @param userId  The user running the batch.
+     */
+    public void applyTo(Service service, String userId) {
+        switch (type) {
+            case RESERVE:
+                service.reserve(userId, reference, version, iteration);
+                break;
+            case UPDATE:
+                service.update(userId, reference, version, iteration, attribute1, attribute2);
+                break;
+            case FREE:
+                service.free(userId, reference, version, iteration);
+                break;
+            case SET_STATE:
+                service.setState(userId, reference, version, iteration, state);
+                break;
+            default:
+                service.revise(userId, reference, version, iteration);
+                break;
+        }
+    }
+
+    // Getters
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Parses the name of an operation, as in the paths of the single operations.
+     *
+     * @param name The name of the operation.
+     * @return The operation.
+     * @throws IllegalArgumentException If the operation is unknown.
+     */
+    private static Type typeOf(String name) {
+        if (name != null) {
+            switch (name.trim()) {
+                case "reserve":
+                    return Type.RESERVE;
+                case "update":
+                    return Type.UPDATE;
+                case "free":
+                    return Type.FREE;
+                case "setState":
+                    return Type.SET_STATE;
+                case "revise":
+                    return Type.REVISE;
+                default:
+                    break;
+            }
+        }
+        throw new LocalizedArgumentException(Message.field("batch.operation", "error.unknownBatchOperation"));
+    }
+
+    private static String require(Map<String, String> values, String name, String field) {
+        String value = values.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new LocalizedArgumentException(Message.field(field, "error.cannotBeBlank"));
+        }
+        return value.trim();
+    }
+
+    private static int parseIteration(String value) {
+        try {
+            int iteration = Integer.parseInt(value == null ? "" : value.trim());
+            if (iteration > 0) {
+                return iteration;
+            }
+        } catch (NumberFormatException e) {
+            // rejected below
+        }
+        throw new LocalizedArgumentException(
+                Message.field("part.iteration", "error.mustBePositiveInteger"));
+    }
+}
@@ -0,0 +1,97 @@
+package plm.services;
+
+/**
+ * Outcome of an operation of a batch run by the {@link BatchExecutor}.
+ */
+public class BatchResult {
+
+    /**
+     * Outcomes of an operation.
+     */
+    public enum Status {
+        /**
+         * The operation was applied and committed.
+         */
+        APPLIED,
+        /**
+         * The operation was rejected, see its code and message.
+         */
+        FAILED,
+        /**
+         * The operation succeeded but was rolled back with its chunk.
+         */
+        ROLLED_BACK,
+        /**
+         * The operation was not run, because of the failure of an operation before it.
+         */
+        NOT_RUN
+    }
+
+    private final int index;
+    private final Status status;
+    private final RejectionCode code;
+    private final String message;
+
+    /**
+     * Constructor to initialize the outcome.
+     *
+     * @param index   The position of the operation in the batch, from 0.
+     * @param status  The outcome.
+     * @param code    The code of the rejection, null if the operation was not rejected by a
+     *                business rule.
+     * @param message The message of the failure, null if the operation did not fail.
+     */
+    public BatchResult(int index, Status status, RejectionCode code, String message) {
+        this.index = index;
+        this.status = status;
+        this.code = code;
+        this.message = message;
+    }
+
+    // Getters
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public RejectionCode getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Formats the outcome as a flat JSON object, as read back by the clients of the batches.
+     *
+     * @return The JSON object, on one line.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(64)
+                .append("{\"index\":").append(index)
+                .append(",\"status\":\"").append(status.name()).append('"');
+        if (code != null) {
+            json.append(",\"code\":\"").append(code.name()).append('"');
+        }
+        if (message != null) {
+            json.append(",\"message\":\"");
+            for (int i = 0; i < message.length(); i++) {
+                char c = message.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+        return json.append('}').toString();
+    }
+}
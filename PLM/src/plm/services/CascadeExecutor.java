@@ -0,0 +1,253 @@
+package plm.services;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import plm.metrics.Histogram;
+import plm.metrics.MetricsRegistry;
+
+/**
+ * Fans the per-entity work of a cascading operation out over several threads.
+ *
+ * Tasks run on virtual threads when the JDK provides them, on a bounded pool of
+ * platform threads otherwise. Only the in-memory work (building and modifying entities)
+ * is fanned out: the work bound to the transaction of the calling thread (claims,
+ * persistence) must be done by the caller, which then writes all the results in one
+ * unit. Concurrency limit, fail-fast cancellation and ordering of the results are
+ * configured per operation with {@link CascadeOptions}.
+ *
+ * The number of linked entities and the duration of each cascade are recorded by
+ * operation in the {@code plm_cascade_size} and {@code plm_cascade_seconds} histograms.
+ */
+@Component
+public class CascadeExecutor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CascadeExecutor.class);
+
+    private final ExecutorService executor = newExecutor();
+
+    private final Map<String, CascadeOptions> options = new ConcurrentHashMap<>();
+
+    private final CascadeOptions defaultOptions = new CascadeOptions();
+
+    // Size and duration histograms of the operations, registered on first use
+    private final Map<String, Histogram[]> histograms = new ConcurrentHashMap<>();
+
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    /**
+     * Sets the registry of the metrics of the cascades.
+     *
+     * @param metricsRegistry The MetricsRegistry to set.
+     */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        histograms.clear();
+    }
+
+    /**
+     * Gets the options of an operation, the default ones if it was not configured.
+     *
+     * @param operation The name of the operation (e.g. "reserve").
+     * @return The options of the operation.
+     */
+    public CascadeOptions getOptions(String operation) {
+        return options.getOrDefault(operation, defaultOptions);
+    }
+
+    /**
+     * Configures an operation.
+     *
+     * @param operation The name of the operation (e.g. "reserve").
+     * @param options   The options of the operation.
+     */
+    public void setOptions(String operation, CascadeOptions options) {
+        this.options.put(operation, options);
+    }
+
+    /**
+     * Applies a function to every linked entity of a cascade.
+     *
+     * @param operation The name of the operation, selecting its options.
+     * @param entities  The linked entities.
+     * @param work      The work to apply to each entity, must not use the transaction.
+     * @param <T>       The type of the entities.
+     * @param <R>       The type of the results.
+     * @return The results, in the order of the entities if the operation is ordered.
+     */
+    public <T, R> List<R> map(String operation, Collection<T> entities, Function<T, R> work) {
+        Histogram[] operationHistograms = histograms.computeIfAbsent(operation, name -> new Histogram[]{
+                metricsRegistry.histogram("plm_cascade_size", "operation", name),
+                metricsRegistry.histogram("plm_cascade_seconds", "operation", name)});
+        operationHistograms[0].record(entities.size());
+        long start = System.nanoTime();
+        try {
+            CascadeOptions cascadeOptions = getOptions(operation);
+            if (entities.size() < Math.max(2, cascadeOptions.getParallelThreshold())
+                    || cascadeOptions.getConcurrency() == 1) {
+                List<R> results = new ArrayList<>(entities.size());
+                for (T entity : entities) {
+                    results.add(work.apply(entity));
+                }
+                return results;
+            }
+            return fanOut(entities, work, cascadeOptions);
+        } finally {
+            operationHistograms[1].recordSince(start);
+        }
+    }
+
+    /**
+     * Applies an action to every linked entity of a cascade.
+     *
+     * @param operation The name of the operation, selecting its options.
+     * @param entities  The linked entities.
+     * @param work      The action to apply to each entity, must not use the transaction.
+     * @param <T>       The type of the entities.
+     */
+    public <T> void forEach(String operation, Collection<T> entities, Consumer<T> work) {
+        map(operation, entities, entity -> {
+            work.accept(entity);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs the work of every entity as a separate task.
+     *
+     * @param entities       The linked entities.
+     * @param work           The work to apply to each entity.
+     * @param cascadeOptions The options of the operation.
+     * @param <T>            The type of the entities.
+     * @param <R>            The type of the results.
+     * @return The results.
+     */
+    private <T, R> List<R> fanOut(Collection<T> entities, Function<T, R> work,
+                                  CascadeOptions cascadeOptions) {
+        Semaphore permits = new Semaphore(cascadeOptions.getConcurrency());
+        CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+        List<Future<R>> futures = new ArrayList<>(entities.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        RuntimeException failure = null;
+        try {
+            for (T entity : entities) {
+                permits.acquire();
+                if (failed.get() && cascadeOptions.isFailFast()) {
+                    break;
+                }
+                futures.add(completion.submit(() -> {
+                    try {
+                        return work.apply(entity);
+                    } catch (RuntimeException | Error e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<R> results = new ArrayList<>(futures.size());
+            for (int i = 0; i < futures.size(); i++) {
+                Future<R> future = cascadeOptions.isOrdered() ? futures.get(i) : completion.take();
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException | CancellationException e) {
+                    RuntimeException cause = unwrap(e);
+                    if (failure == null) {
+                        failure = cause;
+                    } else if (failure != cause) {
+                        failure.addSuppressed(cause);
+                    }
+                    if (cascadeOptions.isFailFast()) {
+                        break;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("cascade interrupted", e);
+        } finally {
+            if (failure != null || Thread.currentThread().isInterrupted()) {
+                for (Future<R> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the exception thrown by a task.
+     *
+     * @param e The exception reported by the future.
+     * @return The exception thrown by the task.
+     */
+    private static RuntimeException unwrap(Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    /**
+     * Creates the executor of the tasks: one virtual thread per task if the JDK supports
+     * them, a pool of daemon platform threads sized on the processors otherwise.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Cascades run on virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            logger.info("Cascades run on a pool of {} threads", threads);
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, task -> {
+                Thread thread = new Thread(task, "plm-cascade-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package plm.services;
+
+/**
+ * Settings of the fan-out of a cascading operation over linked entities,
+ * see {@link CascadeExecutor}.
+ */
+public class CascadeOptions {
+
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+
+    private int parallelThreshold = 64;
+
+    private boolean failFast = true;
+
+    private boolean ordered = true;
+
+    // Getters
+
+    /**
+     * Gets the maximum number of linked entities processed at the same time.
+     *
+     * @return The concurrency limit.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Gets the number of linked entities below which the cascade runs sequentially
+     * on the calling thread, the fan-out costing more than it saves.
+     *
+     * @return The parallel threshold.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Checks if the cascade stops at the first failure, cancelling the pending work.
+     *
+     * @return true to fail fast, false to process every entity before reporting failures.
+     */
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Checks if the results keep the order of the linked entities.
+     *
+     * @return true to keep the order, false to return results in completion order.
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    // Setters
+
+    /**
+     * Sets the maximum number of linked entities processed at the same time.
+     *
+     * @param concurrency The concurrency limit, at least 1.
+     * @return The current CascadeOptions instance (for chaining).
+     */
+    public CascadeOptions setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be a positive integer");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Sets the number of linked entities below which the cascade runs sequentially.
+     *
+     * @param parallelThreshold The parallel threshold.
+     * @return The current CascadeOptions instance (for chaining).
+     */
+    public CascadeOptions setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+
+    /**
+     * Sets if the cascade stops at the first failure.
+     *
+     * @param failFast true to fail fast.
+     * @return The current CascadeOptions instance (for chaining).
+     */
+    public CascadeOptions setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /**
+     * Sets if the results keep the order of the linked entities.
+     *
+     * @param ordered true to keep the order.
+     * @return The current CascadeOptions instance (for chaining).
+     */
+    public CascadeOptions setOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+}
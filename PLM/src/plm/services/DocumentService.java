@@ -3,54 +3,99 @@ package plm.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import plm.dao.DocumentDao;
+import org.springframework.transaction.annotation.Transactional;
+import plm.dao.Dao;
+import plm.dao.TransactionCallbacks;
+import plm.events.LifecycleEvent;
+import plm.events.LifecycleEventRing;
+import plm.i18n.Message;
+import plm.model.CompiledLifeCycle;
 import plm.model.Document;
+import plm.model.EntityCloner;
 
-import java.util.Locale;
-import java.util.ResourceBundle;
 
 /**
  * Service class for managing Document entities in the Product Lifecycle Management (PLM) system.
  * Implements the Service interface to provide CRUD operations and lifecycle management
  * for documents.
+ *
+ * Every operation runs in a single transaction. The outcomes of the lifecycle operations
+ * are published to the {@link LifecycleEventRing} once committed.
  */
 @Service
+@Transactional
 public class DocumentService implements plm.services.Service {
 
-    @Autowired
-    private DocumentDao documentDao;
+    private Dao documentDao;
+
+    private ReservationManager reservationManager;
+
+    private LifecycleEventRing lifecycleEventRing;
 
     private static final Logger logger = LoggerFactory.getLogger(DocumentService.class);
-    private static final ResourceBundle bundle = ResourceBundle.getBundle("messages",
-            Locale.ENGLISH);
+
+    // Messages of the rejections, formatted only when read
+    private static final Message NOT_FOUND = Message.of("error.DocumentNotFound");
+    private static final Message CANNOT_RESERVE = Message.of("error.DocumentCannotReserve");
+    private static final Message CANNOT_UPDATE = Message.of("error.DocumentCannotUpdate");
+    private static final Message CANNOT_FREE = Message.of("error.DocumentCannotFree");
+    private static final Message CANNOT_SET_STATE = Message.of("error.DocumentCannotSetState");
+    private static final Message CANNOT_REVISE = Message.of("error.DocumentCannotRevise");
+
+    /**
+     * Sets the Dao of the documents used by this service.
+     *
+     * @param documentDao The Dao of the documents to set.
+     */
+    @Autowired
+    public void setDocumentDao(@Qualifier("documentDao") Dao documentDao) {
+        this.documentDao = documentDao;
+    }
+
+    /**
+     * Sets the ReservationManager deciding the ownership of reservations.
+     *
+     * @param reservationManager The ReservationManager to set.
+     */
+    @Autowired
+    public void setReservationManager(ReservationManager reservationManager) {
+        this.reservationManager = reservationManager;
+    }
+
+    /**
+     * Sets the LifecycleEventRing receiving the outcomes of the operations.
+     *
+     * @param lifecycleEventRing The LifecycleEventRing to set.
+     */
+    @Autowired
+    public void setLifecycleEventRing(LifecycleEventRing lifecycleEventRing) {
+        this.lifecycleEventRing = lifecycleEventRing;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public void reserve(String userId, String reference, String version, int iteration) {
-        Document document = documentDao.get(reference, version, iteration);
-
-        if (!document.isReserved() &&
-                !document.getLifeCycleTemplate().isFinal(document.getLifeCycleState())) {
-            Document nextDocumentIteration = new Document(document.getReference(),
-                    document.getVersion(), iteration + 1);
+        // Losing contenders are rejected before the document is even loaded
+        if (!reservationManager.tryReserve(Document.class, reference, userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_RESERVE);
+        }
+        Document document = get(reference, version, iteration);
 
+        if (document.isReserved()) {
+            throw reject(RejectionCode.RESERVED, CANNOT_RESERVE);
+        } else if (document.getLifeCycleTemplate().isFinal(document.getLifeCycleState())) {
+            throw reject(RejectionCode.INVALID_STATE, CANNOT_RESERVE);
+        } else {
+            Document nextDocumentIteration = EntityCloner.nextIteration(document, iteration + 1);
             nextDocumentIteration.setReserved(true)
-                    .setReservedBy(userId)
-                    .setLifeCycleTemplate(document.getLifeCycleTemplate())
-                    .setLifeCycleState(document.getLifeCycleState())
-                    .setVersionSchema(document.getVersionSchema());
-
-            nextDocumentIteration
-                    .setDocumentAttribute1(document.getDocumentAttribute1())
-                    .setDocumentAttribute2(document.getDocumentAttribute2());
+                    .setReservedBy(userId);
 
             documentDao.create(nextDocumentIteration);
-        } else {
-            logger.error(bundle.getString("error.DocumentCannotReserve"));
-            throw new IllegalArgumentException(bundle.getString("error.DocumentCannotReserve"));
+            publishAfterCommit(LifecycleEvent.Operation.RESERVE, nextDocumentIteration, userId);
         }
     }
 
@@ -60,16 +105,17 @@ public class DocumentService implements plm.services.Service {
     @Override
     public void update(String userId, String reference, String version, int iteration,
                        String documentAttribute1, String documentAttribute2) {
-        Document document = documentDao.get(reference, version, iteration);
+        Document document = get(reference, version, iteration);
 
-        if (document.isReserved() && document.getReservedBy().equals(userId)) {
+        if (!document.isReserved()) {
+            throw reject(RejectionCode.NOT_RESERVED, CANNOT_UPDATE);
+        } else if (!document.getReservedBy().equals(userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_UPDATE);
+        } else {
             document.setDocumentAttribute1(documentAttribute1)
                     .setDocumentAttribute2(documentAttribute2);
 
             documentDao.update(document);
-        } else {
-            logger.error(bundle.getString("error.DocumentCannotUpdate"));
-            throw new IllegalArgumentException(bundle.getString("error.DocumentCannotUpdate"));
         }
     }
 
@@ -78,14 +124,20 @@ public class DocumentService implements plm.services.Service {
      */
     @Override
     public void free(String userId, String reference, String version, int iteration) {
-        Document document = documentDao.get(reference, version, iteration);
+        if (!reservationManager.canFree(Document.class, reference, userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_FREE);
+        }
+        Document document = get(reference, version, iteration);
 
-        if (document.isReserved() && document.getReservedBy().equals(userId)) {
-            document.setReserved(false).setReservedBy(null);
-            documentDao.update(document);
+        if (!document.isReserved()) {
+            throw reject(RejectionCode.NOT_RESERVED, CANNOT_FREE);
+        } else if (!document.getReservedBy().equals(userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_FREE);
         } else {
-            logger.error(bundle.getString("error.DocumentCannotFree"));
-            throw new IllegalArgumentException(bundle.getString("error.DocumentCannotFree"));
+            document.setReserved(false);
+            documentDao.update(document);
+            reservationManager.free(Document.class, reference, userId);
+            publishAfterCommit(LifecycleEvent.Operation.FREE, document, userId);
         }
     }
 
@@ -95,14 +147,18 @@ public class DocumentService implements plm.services.Service {
     @Override
     public void setState(String userId, String reference, String version,
                          int iteration, String state) {
-        Document document = documentDao.get(reference, version, iteration);
-
-        if (!document.isReserved() && document.getLifeCycleTemplate().isKnown(state)) {
+        Document document = get(reference, version, iteration);
+        CompiledLifeCycle lifeCycle = document.getLifeCycleTemplate().getCompiledLifeCycle();
+        int targetState = lifeCycle.idOf(state);
+
+        if (document.isReserved()) {
+            throw reject(RejectionCode.RESERVED, CANNOT_SET_STATE);
+        } else if (!lifeCycle.canMove(document.getLifeCycleState(), targetState)) {
+            throw reject(RejectionCode.INVALID_STATE, CANNOT_SET_STATE);
+        } else {
             document.setLifeCycleState(state);
             documentDao.update(document);
-        } else {
-            logger.error(bundle.getString("error.DocumentCannotSetState"));
-            throw new IllegalArgumentException(bundle.getString("error.DocumentCannotSetState"));
+            publishAfterCommit(LifecycleEvent.Operation.SET_STATE, document, userId);
         }
     }
 
@@ -111,27 +167,66 @@ public class DocumentService implements plm.services.Service {
      */
     @Override
     public void revise(String userId, String reference, String version, int iteration) {
-        Document document = documentDao.get(reference, version, iteration);
-
-        if (!document.isReserved() &&
-                document.getLifeCycleTemplate().isFinal(document.getLifeCycleState())) {
-            Document nextDocumentVersion = new Document(document.getReference(),
-                    document.getVersionSchema().getNextVersionLabel(version), 1);
-
-            nextDocumentVersion.setReserved(false)
-                    .setReservedBy(null)
-                    .setLifeCycleTemplate(document.getLifeCycleTemplate())
-                    .setLifeCycleState(document.getLifeCycleTemplate().getInitialState())
-                    .setVersionSchema(document.getVersionSchema());
+        Document document = get(reference, version, iteration);
 
-            nextDocumentVersion
-                    .setDocumentAttribute1(document.getDocumentAttribute1())
-                    .setDocumentAttribute2(document.getDocumentAttribute2());
+        if (document.isReserved()) {
+            throw reject(RejectionCode.RESERVED, CANNOT_REVISE);
+        } else if (!document.getLifeCycleTemplate().isFinal(document.getLifeCycleState())) {
+            throw reject(RejectionCode.INVALID_STATE, CANNOT_REVISE);
+        } else {
+            Document nextDocumentVersion = EntityCloner.nextVersion(document,
+                    document.getVersionSchema().getNextVersionLabel(version));
+            nextDocumentVersion.setLifeCycleState(document.getLifeCycleTemplate().getInitialState());
 
             documentDao.create(nextDocumentVersion);
-        } else {
-            logger.error(bundle.getString("error.DocumentCannotRevise"));
-            throw new IllegalArgumentException(bundle.getString("error.DocumentCannotRevise"));
+            publishAfterCommit(LifecycleEvent.Operation.REVISE, nextDocumentVersion, userId);
+        }
+    }
+
+    /**
+     * Gets an iteration of a document.
+     *
+     * @param reference The reference of the document.
+     * @param version   The version of the document.
+     * @param iteration The iteration of the document.
+     * @return The document.
+     * @throws RejectedOperationException If the document does not exist.
+     */
+    private Document get(String reference, String version, int iteration) {
+        Document document = (Document) documentDao.get(reference, version, iteration);
+        if (document == null) {
+            throw reject(RejectionCode.NOT_FOUND, NOT_FOUND);
         }
+        return document;
+    }
+
+    /**
+     * Publishes the outcome of an operation to the {@link LifecycleEventRing} once the
+     * transaction is committed, so that the consumers never see rolled back operations.
+     *
+     * @param operation The operation.
+     * @param document  The document resulting from the operation.
+     * @param userId    The user who ran the operation.
+     */
+    private void publishAfterCommit(LifecycleEvent.Operation operation, Document document, String userId) {
+        String reference = document.getReference();
+        String version = document.getVersion();
+        int iteration = document.getIteration();
+        String state = document.getLifeCycleState();
+        TransactionCallbacks.afterCommit(() -> lifecycleEventRing.publish(operation, Document.class, reference,
+                version, iteration, userId, state));
+    }
+
+    /**
+     * Rejects an operation. Rejections are expected, e.g. under contention, so they are
+     * only logged at debug level.
+     *
+     * @param code    The reason of the rejection.
+     * @param message The message of the rejection.
+     * @return The exception to throw.
+     */
+    private static RejectedOperationException reject(RejectionCode code, Message message) {
+        logger.debug("Rejected ({}): {}", code, message);
+        return new RejectedOperationException(code, message);
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package plm.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Reservation store local to this node, deciding ownership with compare-and-set
+ * operations over a concurrent table.
+ */
+@Component
+public class InMemoryReservationStore implements ReservationStore {
+
+    private final ConcurrentMap<String, String> owners = new ConcurrentHashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean tryAcquire(String key, String owner) {
+        return owners.putIfAbsent(key, owner) == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean release(String key, String owner) {
+        return owners.remove(key, owner);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getOwner(String key) {
+        return owners.get(key);
+    }
+}
@@ -0,0 +1,181 @@
+package plm.services;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import plm.metrics.Histogram;
+import plm.metrics.MetricsRegistry;
+
+/**
+ * Service decorator measuring the latency of the operations of another service, by
+ * operation and outcome, in the {@code plm_service_seconds} histograms of a
+ * {@link MetricsRegistry} (whose counts are the numbers of calls).
+ *
+ * The outcome is {@code ok}, the {@link RejectionCode} of a rejection (lower case),
+ * {@code invalid} for another invalid argument, {@code conflict} for an operation which
+ * gave up on optimistic locking conflicts, or {@code error}. The histograms are created on
+ * first use and kept, so a call only costs two reads of the clock and one recording.
+ */
+public class MeteredService implements Service {
+
+    private enum Operation {
+        RESERVE, UPDATE, FREE, SET_STATE, REVISE
+    }
+
+    private static final String[] OUTCOMES;
+
+    static {
+        RejectionCode[] codes = RejectionCode.values();
+        OUTCOMES = new String[codes.length + 3];
+        OUTCOMES[0] = "ok";
+        for (RejectionCode code : codes) {
+            OUTCOMES[code.ordinal() + 1] = code.name().toLowerCase();
+        }
+        OUTCOMES[codes.length + 1] = "invalid";
+        OUTCOMES[codes.length + 2] = "error";
+    }
+
+    private static final String[] OPERATIONS = {"reserve", "update", "free", "setState", "revise"};
+
+    private final Service service;
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final String type;
+
+    // Histograms by operation and outcome, created on first use
+    private final AtomicReferenceArray<Histogram> histograms =
+            new AtomicReferenceArray<>(OPERATIONS.length * OUTCOMES.length);
+
+    /**
+     * Constructor to initialize the decorated service and the registry of its metrics.
+     *
+     * @param service         The service to measure.
+     * @param metricsRegistry The registry of the metrics.
+     * @param entityType      The type of the entities of the service, labelling its metrics.
+     */
+    public MeteredService(Service service, MetricsRegistry metricsRegistry, Class<?> entityType) {
+        this.service = service;
+        this.metricsRegistry = metricsRegistry;
+        this.type = entityType.getSimpleName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reserve(String userId, String reference, String version, int iteration) {
+        long start = System.nanoTime();
+        int outcome = 0;
+        try {
+            service.reserve(userId, reference, version, iteration);
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            histogram(Operation.RESERVE, outcome).recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(String userId, String reference, String version, int iteration,
+                       String attribute1, String attribute2) {
+        long start = System.nanoTime();
+        int outcome = 0;
+        try {
+            service.update(userId, reference, version, iteration, attribute1, attribute2);
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            histogram(Operation.UPDATE, outcome).recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void free(String userId, String reference, String version, int iteration) {
+        long start = System.nanoTime();
+        int outcome = 0;
+        try {
+            service.free(userId, reference, version, iteration);
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            histogram(Operation.FREE, outcome).recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setState(String userId, String reference, String version, int iteration,
+                         String state) {
+        long start = System.nanoTime();
+        int outcome = 0;
+        try {
+            service.setState(userId, reference, version, iteration, state);
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            histogram(Operation.SET_STATE, outcome).recordSince(start);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void revise(String userId, String reference, String version, int iteration) {
+        long start = System.nanoTime();
+        int outcome = 0;
+        try {
+            service.revise(userId, reference, version, iteration);
+        } catch (RuntimeException e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            histogram(Operation.REVISE, outcome).recordSince(start);
+        }
+    }
+
+    /**
+     * Gets the outcome of a failed operation.
+     *
+     * @param e The failure.
+     * @return The index of the outcome.
+     */
+    private static int outcomeOf(RuntimeException e) {
+        if (e instanceof RejectedOperationException) {
+            return ((RejectedOperationException) e).getCode().ordinal() + 1;
+        } else if (e instanceof OptimisticLockingFailureException) {
+            return RejectionCode.CONFLICT.ordinal() + 1;
+        } else if (e instanceof IllegalArgumentException) {
+            return OUTCOMES.length - 2;
+        }
+        return OUTCOMES.length - 1;
+    }
+
+    /**
+     * Gets the histogram of an operation and outcome, registering it on first use.
+     */
+    private Histogram histogram(Operation operation, int outcome) {
+        int index = operation.ordinal() * OUTCOMES.length + outcome;
+        Histogram histogram = histograms.get(index);
+        if (histogram == null) {
+            histogram = metricsRegistry.histogram("plm_service_seconds", "type", type,
+                    "operation", OPERATIONS[operation.ordinal()], "outcome", OUTCOMES[outcome]);
+            histograms.set(index, histogram);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,230 @@
+package plm.services;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the asynchronous calls of the services off the request threads, on one bounded
+ * pool of threads per entity type and operation.
+ *
+ * A long operation (e.g. the reservation of a part with many linked documents) then only
+ * holds the threads of its own pool, and cannot starve the cheap ones, nor the same
+ * operation on the other entities. Calls exceeding the threads and the queue of their
+ * pool are refused at once with an {@link OverloadedException}, instead of waiting behind
+ * the others, so that clients back off. Pools are configured per operation with
+ * {@link OperationPoolOptions}, and created on first use.
+ *
+ * Configuring an operation replaces its pools: the next calls go to new pools, while the
+ * former ones finish the calls they accepted before they stop. A call submitted to a
+ * pool just replaced goes to its successor instead of being refused.
+ *
+ * Calls run with the locale of the request which submitted them, so that their messages
+ * are in the language of the client.
+ */
+@Component
+public class OperationExecutor implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationExecutor.class);
+
+    private final Map<PoolKey, Pool> pools = new ConcurrentHashMap<>();
+
+    private final Map<String, OperationPoolOptions> options = new ConcurrentHashMap<>();
+
+    private final OperationPoolOptions defaultOptions = new OperationPoolOptions();
+
+    /**
+     * Gets the options of an operation, the default ones if it was not configured.
+     *
+     * @param operation The name of the operation (e.g. "reserve").
+     * @return The options of the operation.
+     */
+    public OperationPoolOptions getOptions(String operation) {
+        return options.getOrDefault(operation, defaultOptions);
+    }
+
+    /**
+     * Configures an operation. Its current pools, if any, are replaced by new ones on the
+     * next calls, and finish the calls they accepted in the background.
+     *
+     * @param operation The name of the operation (e.g. "reserve").
+     * @param options   The options of the operation.
+     */
+    public void setOptions(String operation, OperationPoolOptions options) {
+        this.options.put(operation, options);
+        for (PoolKey key : pools.keySet()) {
+            if (key.operation.equals(operation)) {
+                Pool pool = pools.remove(key);
+                if (pool != null) {
+                    pool.executor.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a call of an operation asynchronously.
+     *
+     * @param type      The type of the entity, selecting the pool with the operation.
+     * @param operation The name of the operation, selecting its options.
+     * @param work      The call.
+     * @return The future completed when the call returns, exceptionally if it fails.
+     * @throws OverloadedException If the pool of the operation is saturated.
+     */
+    public CompletableFuture<Void> run(Class<?> type, String operation, Runnable work) {
+        PoolKey key = new PoolKey(type, operation);
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Runnable call = () -> {
+            LocaleContextHolder.setLocaleContext(localeContext);
+            try {
+                work.run();
+                result.complete(null);
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+            }
+        };
+        while (true) {
+            Pool pool = pools.computeIfAbsent(key, this::newPool);
+            try {
+                pool.executor.execute(call);
+                return result;
+            } catch (RejectedExecutionException e) {
+                // a pool replaced meanwhile refuses new calls: they go to its successor
+                if (!pool.executor.isShutdown() || pools.get(key) == pool) {
+                    pool.refused.increment();
+                    throw new OverloadedException(operation, pool.options.getRetryAfter());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of calls of an operation waiting for a thread.
+     *
+     * @param type      The type of the entity.
+     * @param operation The name of the operation.
+     * @return The number of queued calls.
+     */
+    public int getQueued(Class<?> type, String operation) {
+        Pool pool = pools.get(new PoolKey(type, operation));
+        return pool == null ? 0 : pool.executor.getQueue().size();
+    }
+
+    /**
+     * Gets the number of calls of an operation running.
+     *
+     * @param type      The type of the entity.
+     * @param operation The name of the operation.
+     * @return The number of active calls.
+     */
+    public int getActive(Class<?> type, String operation) {
+        Pool pool = pools.get(new PoolKey(type, operation));
+        return pool == null ? 0 : pool.executor.getActiveCount();
+    }
+
+    /**
+     * Gets the number of calls of an operation refused since its pool was created.
+     *
+     * @param type      The type of the entity.
+     * @param operation The name of the operation.
+     * @return The number of refused calls.
+     */
+    public long getRefused(Class<?> type, String operation) {
+        Pool pool = pools.get(new PoolKey(type, operation));
+        return pool == null ? 0 : pool.refused.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        for (Pool pool : pools.values()) {
+            pool.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the pool of an operation on a type of entity: a fixed number of daemon
+     * threads and a bounded queue, refusing the calls exceeding both.
+     *
+     * @param key The type of the entity and the name of the operation.
+     * @return The pool.
+     */
+    private Pool newPool(PoolKey key) {
+        String name = key.type.getSimpleName() + "-" + key.operation;
+        OperationPoolOptions poolOptions = getOptions(key.operation);
+        BlockingQueue<Runnable> queue = poolOptions.getQueueCapacity() == 0
+                ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(poolOptions.getQueueCapacity());
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolOptions.getThreads(), poolOptions.getThreads(),
+                0, TimeUnit.MILLISECONDS, queue, task -> {
+                    Thread thread = new Thread(task, "plm-" + name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Asynchronous {} calls run on {} threads, {} more may wait", name,
+                poolOptions.getThreads(), poolOptions.getQueueCapacity());
+        return new Pool(executor, poolOptions);
+    }
+
+    /**
+     * Key of a pool: the type of the entity and the name of the operation.
+     */
+    private static final class PoolKey {
+        final Class<?> type;
+        final String operation;
+
+        PoolKey(Class<?> type, String operation) {
+            this.type = type;
+            this.operation = operation;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + operation.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof PoolKey))
+                return false;
+            PoolKey other = (PoolKey) obj;
+            return type == other.type && operation.equals(other.operation);
+        }
+    }
+
+    /**
+     * Pool of an operation, with its options and the number of refused calls.
+     */
+    private static final class Pool {
+        final ThreadPoolExecutor executor;
+        final OperationPoolOptions options;
+        final LongAdder refused = new LongAdder();
+
+        Pool(ThreadPoolExecutor executor, OperationPoolOptions options) {
+            this.executor = executor;
+            this.options = options;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package plm.services;
+
+/**
+ * Settings of the pool of threads running the asynchronous calls of an operation,
+ * see {@link OperationExecutor}.
+ */
+public class OperationPoolOptions {
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private int queueCapacity = 100;
+
+    private int retryAfter = 1;
+
+    // Getters
+
+    /**
+     * Gets the number of calls of the operation running at the same time.
+     *
+     * @return The number of threads of the pool.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of calls of the operation waiting for a thread, beyond which new
+     * calls are refused.
+     *
+     * @return The capacity of the queue of the pool.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the delay after which refused clients are told to try again.
+     *
+     * @return The delay, in seconds.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    // Setters
+
+    /**
+     * Sets the number of calls of the operation running at the same time.
+     *
+     * @param threads The number of threads, at least 1.
+     * @return The current OperationPoolOptions instance (for chaining).
+     */
+    public OperationPoolOptions setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be a positive integer");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the number of calls of the operation waiting for a thread.
+     *
+     * @param queueCapacity The capacity of the queue, 0 to refuse calls when every thread is busy.
+     * @return The current OperationPoolOptions instance (for chaining).
+     */
+    public OperationPoolOptions setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity cannot be negative");
+        }
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the delay after which refused clients are told to try again.
+     *
+     * @param retryAfter The delay, in seconds, at least 1.
+     * @return The current OperationPoolOptions instance (for chaining).
+     */
+    public OperationPoolOptions setRetryAfter(int retryAfter) {
+        if (retryAfter < 1) {
+            throw new IllegalArgumentException("retryAfter must be a positive integer");
+        }
+        this.retryAfter = retryAfter;
+        return this;
+    }
+}
@@ -0,0 +1,65 @@
+package plm.services;
+
+import java.util.Locale;
+
+import plm.i18n.Message;
+import plm.i18n.MessageCatalog;
+
+/**
+ * Thrown when an asynchronous call is refused because too many calls of the same
+ * operation are already waiting (see {@link OperationExecutor}).
+ *
+ * Like rejections, refusals are expected under load: the exception does not capture the
+ * stack trace and its message is formatted only if read, in the locale of the request.
+ */
+public class OverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Message message;
+
+    private final Locale locale;
+
+    private final int retryAfter;
+
+    /**
+     * Constructor to initialize the refused operation.
+     *
+     * @param operation  The name of the operation.
+     * @param retryAfter The delay after which the client may try again, in seconds.
+     */
+    public OverloadedException(String operation, int retryAfter) {
+        this.message = Message.of("error.overloaded", operation);
+        this.locale = MessageCatalog.currentLocale();
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Gets the delay after which the client may try again.
+     *
+     * @return The delay, in seconds.
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Gets the message, formatted in the locale of the request.
+     *
+     * @return The formatted message.
+     */
+    @Override
+    public String getMessage() {
+        return message.format(locale);
+    }
+
+    /**
+     * Does not capture the stack trace: the refusal is a result, not a bug.
+     *
+     * @return This exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
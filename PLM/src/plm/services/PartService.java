@@ -4,75 +4,175 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import plm.dao.DocumentDao;
-import plm.dao.PartDao;
+import org.springframework.transaction.annotation.Transactional;
+import plm.dao.Dao;
+import plm.dao.DocumentLinkDao;
+import plm.dao.TransactionCallbacks;
+import plm.events.LifecycleEvent;
+import plm.events.LifecycleEventRing;
+import plm.i18n.Message;
+import plm.model.CompiledLifeCycle;
 import plm.model.Document;
+import plm.model.EntityCloner;
 import plm.model.Part;
 
-import java.util.Locale;
-import java.util.ResourceBundle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Service class for managing Part entities in the Product Lifecycle Management (PLM) system.
  * Implements the Service interface to provide CRUD operations and lifecycle management for parts.
+ *
+ * Every operation runs in a single transaction: the work on the linked documents is fanned
+ * out by the {@link CascadeExecutor}, then the part and all its linked documents are
+ * written together in one batch, with a single flush.
+ *
+ * Setting the state of a part and revising it also cascade to the parts of its
+ * multi-level structure, walked by the {@link StructureTraversal}: every part below it
+ * and their linked documents are checked, then written in the same batch as the part.
+ *
+ * The outcomes of the lifecycle operations are published to the
+ * {@link LifecycleEventRing} once committed.
  */
 @Service
+@Transactional
 public class PartService implements plm.services.Service {
 
+    private Dao partDao;
+
+    private Dao documentDao;
+
+    private DocumentLinkDao documentLinkDao;
+
+    private ReservationManager reservationManager;
+
+    private CascadeExecutor cascadeExecutor;
+
+    private StructureTraversal structureTraversal;
+
+    private LifecycleEventRing lifecycleEventRing;
+
+    private static final Logger logger = LoggerFactory.getLogger(PartService.class);
+
+    // Messages of the rejections, formatted only when read
+    private static final Message NOT_FOUND = Message.of("error.PartNotFound");
+    private static final Message CANNOT_RESERVE = Message.of("error.PartCannotReserve");
+    private static final Message CANNOT_UPDATE = Message.of("error.PartCannotUpdate");
+    private static final Message CANNOT_FREE = Message.of("error.PartCannotFree");
+    private static final Message CANNOT_SET_STATE = Message.of("error.PartCannotSetState");
+    private static final Message CANNOT_REVISE = Message.of("error.PartCannotRevise");
+
+    /**
+     * Sets the Dao of the parts used by this service.
+     *
+     * @param partDao The Dao of the parts to set.
+     */
     @Autowired
-    private PartDao partDao;
+    public void setPartDao(@Qualifier("partDao") Dao partDao) {
+        this.partDao = partDao;
+    }
 
+    /**
+     * Sets the Dao of the documents used by this service.
+     *
+     * @param documentDao The Dao of the documents to set.
+     */
     @Autowired
-    private DocumentDao documentDao;
+    public void setDocumentDao(@Qualifier("documentDao") Dao documentDao) {
+        this.documentDao = documentDao;
+    }
 
-    private static final Logger logger = LoggerFactory.getLogger(PartService.class);
-    private static final ResourceBundle bundle = ResourceBundle.getBundle("messages",
-            Locale.ENGLISH);
+    /**
+     * Sets the DocumentLinkDao used by this service.
+     *
+     * @param documentLinkDao The DocumentLinkDao to set.
+     */
+    @Autowired
+    public void setDocumentLinkDao(DocumentLinkDao documentLinkDao) {
+        this.documentLinkDao = documentLinkDao;
+    }
+
+    /**
+     * Sets the ReservationManager deciding the ownership of reservations.
+     *
+     * @param reservationManager The ReservationManager to set.
+     */
+    @Autowired
+    public void setReservationManager(ReservationManager reservationManager) {
+        this.reservationManager = reservationManager;
+    }
+
+    /**
+     * Sets the CascadeExecutor fanning out the work on linked documents.
+     *
+     * @param cascadeExecutor The CascadeExecutor to set.
+     */
+    @Autowired
+    public void setCascadeExecutor(CascadeExecutor cascadeExecutor) {
+        this.cascadeExecutor = cascadeExecutor;
+    }
+
+    /**
+     * Sets the StructureTraversal walking the parts below a part.
+     *
+     * @param structureTraversal The StructureTraversal to set.
+     */
+    @Autowired
+    public void setStructureTraversal(StructureTraversal structureTraversal) {
+        this.structureTraversal = structureTraversal;
+    }
+
+    /**
+     * Sets the LifecycleEventRing receiving the outcomes of the operations.
+     *
+     * @param lifecycleEventRing The LifecycleEventRing to set.
+     */
+    @Autowired
+    public void setLifecycleEventRing(LifecycleEventRing lifecycleEventRing) {
+        this.lifecycleEventRing = lifecycleEventRing;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public void reserve(String userId, String reference, String version, int iteration) {
-        Part part = partDao.get(reference, version, iteration);
-
-        if (!part.isReserved() && !part.getLifeCycleTemplate().isFinal(part.getLifeCycleState())) {
-            Part nextPartIteration = new Part(part.getReference(), part.getVersion(),
-                    iteration + 1);
+        // Losing contenders are rejected before the part is even loaded
+        if (!reservationManager.tryReserve(Part.class, reference, userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_RESERVE);
+        }
+        Part part = get(reference, version, iteration);
 
+        if (part.isReserved()) {
+            throw reject(RejectionCode.RESERVED, CANNOT_RESERVE);
+        } else if (part.getLifeCycleTemplate().isFinal(part.getLifeCycleState())) {
+            throw reject(RejectionCode.INVALID_STATE, CANNOT_RESERVE);
+        } else {
+            Part nextPartIteration = EntityCloner.nextIteration(part, iteration + 1);
             nextPartIteration.setReserved(true)
-                    .setReservedBy(userId)
-                    .setLifeCycleTemplate(part.getLifeCycleTemplate())
-                    .setLifeCycleState(part.getLifeCycleState())
-                    .setVersionSchema(part.getVersionSchema());
-
-            nextPartIteration
-                    .setPartAttribute1(part.getPartAttribute1())
-                    .setPartAttribute2(part.getPartAttribute2());
+                    .setReservedBy(userId);
 
             partDao.create(nextPartIteration);
 
-            for (Document document : getLinkedDocuments(part)) {
-                Document nextIteration = new Document(document.getReference(),
-                        document.getVersion(), iteration + 1);
-
-                nextIteration.setReserved(true)
-                        .setReservedBy(userId)
-                        .setLifeCycleTemplate(document.getLifeCycleTemplate())
-                        .setLifeCycleState(document.getLifeCycleState())
-                        .setVersionSchema(document.getVersionSchema());
-
-                nextIteration
-                        .setDocumentAttribute1(document.getDocumentAttribute1())
-                        .setDocumentAttribute2(document.getDocumentAttribute2());
-
-                documentDao.create(nextIteration);
+            Set<Document> documents = getLinkedDocuments(part);
+            for (Document document : documents) {
+                if (!reservationManager.tryReserve(Document.class, document.getReference(), userId)) {
+                    throw reject(RejectionCode.RESERVED, CANNOT_RESERVE);
+                }
             }
-        } else {
-            logger.error(bundle.getString("error.PartCannotReserve"));
-            throw new IllegalArgumentException(bundle.getString("error.PartCannotReserve"));
+
+            List<Document> nextDocumentIterations = cascadeExecutor.map("reserve", documents,
+                    document -> nextDocumentIteration(document, iteration + 1, userId));
+            documentDao.createAll(nextDocumentIterations);
+            publishAfterCommit(LifecycleEvent.Operation.RESERVE, nextPartIteration, userId);
         }
     }
 
@@ -82,15 +182,16 @@ public class PartService implements plm.services.Service {
     @Override
     public void update(String userId, String reference, String version,
                        int iteration, String partAttribute1, String partAttribute2) {
-        Part part = partDao.get(reference, version, iteration);
+        Part part = get(reference, version, iteration);
 
-        if (part.isReserved() && part.getReservedBy().equals(userId)) {
+        if (!part.isReserved()) {
+            throw reject(RejectionCode.NOT_RESERVED, CANNOT_UPDATE);
+        } else if (!part.getReservedBy().equals(userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_UPDATE);
+        } else {
             part.setPartAttribute1(partAttribute1).setPartAttribute2(partAttribute2);
 
             partDao.update(part);
-        } else {
-            logger.error(bundle.getString("error.PartCannotUpdate"));
-            throw new IllegalArgumentException(bundle.getString("error.PartCannotUpdate"));
         }
     }
 
@@ -99,19 +200,27 @@ public class PartService implements plm.services.Service {
      */
     @Override
     public void free(String userId, String reference, String version, int iteration) {
-        Part part = partDao.get(reference, version, iteration);
+        if (!reservationManager.canFree(Part.class, reference, userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_FREE);
+        }
+        Part part = get(reference, version, iteration);
 
-        if (part.isReserved() && part.getReservedBy().equals(userId)) {
-            part.setReserved(false).setReservedBy(null);
+        if (!part.isReserved()) {
+            throw reject(RejectionCode.NOT_RESERVED, CANNOT_FREE);
+        } else if (!part.getReservedBy().equals(userId)) {
+            throw reject(RejectionCode.RESERVED, CANNOT_FREE);
+        } else {
+            part.setReserved(false);
             partDao.update(part);
+            reservationManager.free(Part.class, reference, userId);
 
-            for (Document document : getLinkedDocuments(part)) {
-                document.setReserved(false).setReservedBy(null);
-                documentDao.update(document);
+            Set<Document> documents = getLinkedDocuments(part);
+            cascadeExecutor.forEach("free", documents, document -> document.setReserved(false));
+            for (Document document : documents) {
+                reservationManager.free(Document.class, document.getReference(), userId);
             }
-        } else {
-            logger.error(bundle.getString("error.PartCannotFree"));
-            throw new IllegalArgumentException(bundle.getString("error.PartCannotFree"));
+            documentDao.updateAll(documents);
+            publishAfterCommit(LifecycleEvent.Operation.FREE, part, userId);
         }
     }
 
@@ -121,19 +230,40 @@ public class PartService implements plm.services.Service {
     @Override
     public void setState(String userId, String reference, String version,
                          int iteration, String state) {
-        Part part = partDao.get(reference, version, iteration);
+        Part part = get(reference, version, iteration);
+        CompiledLifeCycle lifeCycle = part.getLifeCycleTemplate().getCompiledLifeCycle();
+        int targetState = lifeCycle.idOf(state);
+
+        if (part.isReserved()) {
+            throw reject(RejectionCode.RESERVED, CANNOT_SET_STATE);
+        } else if (!lifeCycle.canMove(part.getLifeCycleState(), targetState)) {
+            throw reject(RejectionCode.INVALID_STATE, CANNOT_SET_STATE);
+        } else {
+            Set<Document> documents = getLinkedDocuments(part);
+            if (!canMoveAll(documents, state)) {
+                throw reject(RejectionCode.INVALID_STATE, CANNOT_SET_STATE);
+            }
 
-        if (!part.isReserved() && part.getLifeCycleTemplate().isKnown(state)) {
-            part.setLifeCycleState(state);
-            partDao.update(part);
+            // Every part below is checked before anything is changed
+            List<StructureChange> children = structureTraversal.traverse("setState", part,
+                    (child, childDocuments) -> checkChildState(child, childDocuments, state));
 
-            for (Document document : getLinkedDocuments(part)) {
-                document.setLifeCycleState(state);
-                documentDao.update(document);
+            List<Part> parts = new ArrayList<>(children.size() + 1);
+            List<Document> allDocuments = new ArrayList<>(documents);
+            part.setLifeCycleState(state);
+            parts.add(part);
+            for (StructureChange child : children) {
+                child.part.setLifeCycleState(state);
+                parts.add(child.part);
+                allDocuments.addAll(child.documents);
             }
-        } else {
-            logger.error(bundle.getString("error.PartCannotSetState"));
-            throw new IllegalArgumentException(bundle.getString("error.PartCannotSetState"));
+            partDao.updateAll(parts);
+
+            // a document linked to several parts of the structure is written once
+            allDocuments = distinct(allDocuments);
+            cascadeExecutor.forEach("setState", allDocuments, document -> document.setLifeCycleState(state));
+            documentDao.updateAll(allDocuments);
+            publishAfterCommit(LifecycleEvent.Operation.SET_STATE, part, userId);
         }
     }
 
@@ -142,44 +272,204 @@ public class PartService implements plm.services.Service {
      */
     @Override
     public void revise(String userId, String reference, String version, int iteration) {
-        Part part = partDao.get(reference, version, iteration);
+        Part part = get(reference, version, iteration);
 
-        if (!part.isReserved() && part.getLifeCycleTemplate().isFinal(part.getLifeCycleState())) {
-            Part nextPartVersion = new Part(part.getReference(),
-                    part.getVersionSchema().getNextVersionLabel(version), 1);
+        if (part.isReserved()) {
+            throw reject(RejectionCode.RESERVED, CANNOT_REVISE);
+        } else if (!part.getLifeCycleTemplate().isFinal(part.getLifeCycleState())) {
+            throw reject(RejectionCode.INVALID_STATE, CANNOT_REVISE);
+        } else {
+            Part nextPartVersion = EntityCloner.nextVersion(part,
+                    part.getVersionSchema().getNextVersionLabel(version));
+            nextPartVersion.setLifeCycleState(part.getLifeCycleTemplate().getInitialState());
+
+            List<StructureChange> children = structureTraversal.traverse("revise", part,
+                    PartService::reviseChild);
+
+            List<Part> nextPartVersions = new ArrayList<>(children.size() + 1);
+            nextPartVersions.add(nextPartVersion);
+            List<Document> nextDocumentVersions = new ArrayList<>(cascadeExecutor.map("revise",
+                    getLinkedDocuments(part), document -> nextDocumentVersion(document, version)));
+            for (StructureChange child : children) {
+                nextPartVersions.add(child.part);
+                nextDocumentVersions.addAll(child.documents);
+            }
+            partDao.createAll(nextPartVersions);
+            // a document linked to several parts of the structure is revised once
+            documentDao.createAll(distinct(nextDocumentVersions));
+            publishAfterCommit(LifecycleEvent.Operation.REVISE, nextPartVersion, userId);
+        }
+    }
 
-            nextPartVersion.setReserved(false)
-                    .setReservedBy(null)
-                    .setLifeCycleTemplate(part.getLifeCycleTemplate())
-                    .setLifeCycleState(part.getLifeCycleTemplate().getInitialState())
-                    .setVersionSchema(part.getVersionSchema());
+    /**
+     * Gets an iteration of a part.
+     *
+     * @param reference The reference of the part.
+     * @param version   The version of the part.
+     * @param iteration The iteration of the part.
+     * @return The part.
+     * @throws RejectedOperationException If the part does not exist.
+     */
+    private Part get(String reference, String version, int iteration) {
+        Part part = (Part) partDao.get(reference, version, iteration);
+        if (part == null) {
+            throw reject(RejectionCode.NOT_FOUND, NOT_FOUND);
+        }
+        return part;
+    }
 
-            nextPartVersion
-                    .setPartAttribute1(part.getPartAttribute1())
-                    .setPartAttribute2(part.getPartAttribute2());
+    /**
+     * Publishes the outcome of an operation to the {@link LifecycleEventRing} once the
+     * transaction is committed, so that the consumers never see rolled back operations.
+     *
+     * @param operation The operation.
+     * @param part      The part resulting from the operation.
+     * @param userId    The user who ran the operation.
+     */
+    private void publishAfterCommit(LifecycleEvent.Operation operation, Part part, String userId) {
+        String reference = part.getReference();
+        String version = part.getVersion();
+        int iteration = part.getIteration();
+        String state = part.getLifeCycleState();
+        TransactionCallbacks.afterCommit(() -> lifecycleEventRing.publish(operation, Part.class, reference,
+                version, iteration, userId, state));
+    }
 
-            partDao.create(nextPartVersion);
+    /**
+     * Rejects an operation. Rejections are expected, e.g. under contention, so they are
+     * only logged at debug level.
+     *
+     * @param code    The reason of the rejection.
+     * @param message The message of the rejection.
+     * @return The exception to throw.
+     */
+    private static RejectedOperationException reject(RejectionCode code, Message message) {
+        logger.debug("Rejected ({}): {}", code, message);
+        return new RejectedOperationException(code, message);
+    }
 
-            for (Document document : getLinkedDocuments(part)) {
-                Document nextDocumentVersion = new Document(document.getReference(),
-                        document.getVersionSchema().getNextVersionLabel(version), 1);
+    /**
+     * Checks that every linked document can move to the given state, on the compiled
+     * lifecycle of its own template. The states of the documents sharing a template are
+     * checked at once, as a mask.
+     *
+     * @param documents The linked documents.
+     * @param state     The target state.
+     * @return true if every document can move to the state, false otherwise.
+     */
+    private static boolean canMoveAll(Collection<Document> documents, String state) {
+        Map<CompiledLifeCycle, Long> documentStates = new IdentityHashMap<>();
+        for (Document document : documents) {
+            CompiledLifeCycle lifeCycle = document.getLifeCycleTemplate().getCompiledLifeCycle();
+            documentStates.merge(lifeCycle, lifeCycle.maskOf(document.getLifeCycleState()), (a, b) -> a | b);
+        }
+        for (Map.Entry<CompiledLifeCycle, Long> entry : documentStates.entrySet()) {
+            CompiledLifeCycle lifeCycle = entry.getKey();
+            if (!lifeCycle.canMoveAll(entry.getValue(), lifeCycle.idOf(state))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-                nextDocumentVersion.setReserved(false)
-                        .setReservedBy(null)
-                        .setLifeCycleTemplate(document.getLifeCycleTemplate())
-                        .setLifeCycleState(document.getLifeCycleTemplate().getInitialState())
-                        .setVersionSchema(document.getVersionSchema());
+    /**
+     * Checks that a part below the part whose state is set can move to the same state,
+     * with its linked documents. Runs on the threads of the {@link StructureTraversal}.
+     *
+     * @param child     The part below.
+     * @param documents The documents linked to the part below.
+     * @param state     The target state.
+     * @return The part and its documents to move, null if the part is already in the state.
+     * @throws RejectedOperationException If the part is reserved or cannot move to the state.
+     */
+    private static StructureChange checkChildState(Part child, Set<Document> documents, String state) {
+        if (state.equals(child.getLifeCycleState())) {
+            return null;
+        }
+        CompiledLifeCycle lifeCycle = child.getLifeCycleTemplate().getCompiledLifeCycle();
+        int targetState = lifeCycle.idOf(state);
+        Message message = Message.of("error.PartChildCannotSetState", child.getReference());
+        if (child.isReserved()) {
+            throw reject(RejectionCode.RESERVED, message);
+        }
+        if (!lifeCycle.canMove(child.getLifeCycleState(), targetState) || !canMoveAll(documents, state)) {
+            throw reject(RejectionCode.INVALID_STATE, message);
+        }
+        return new StructureChange(child, documents);
+    }
 
-                nextDocumentVersion
-                        .setDocumentAttribute1(document.getDocumentAttribute1())
-                        .setDocumentAttribute2(document.getDocumentAttribute2());
+    /**
+     * Builds the next version of a part below the revised part, and of its linked
+     * documents. Runs on the threads of the {@link StructureTraversal}.
+     *
+     * @param child     The part below.
+     * @param documents The documents linked to the part below.
+     * @return The next versions of the part and of its documents.
+     * @throws RejectedOperationException If the part is reserved or not in a final state.
+     */
+    private static StructureChange reviseChild(Part child, Set<Document> documents) {
+        Message message = Message.of("error.PartChildCannotRevise", child.getReference());
+        if (child.isReserved()) {
+            throw reject(RejectionCode.RESERVED, message);
+        } else if (!child.getLifeCycleTemplate().isFinal(child.getLifeCycleState())) {
+            throw reject(RejectionCode.INVALID_STATE, message);
+        }
+        Part nextVersion = EntityCloner.nextVersion(child,
+                child.getVersionSchema().getNextVersionLabel(child.getVersion()));
+        nextVersion.setLifeCycleState(child.getLifeCycleTemplate().getInitialState());
 
-                documentDao.create(nextDocumentVersion);
-            }
-        } else {
-            logger.error(bundle.getString("error.PartCannotRevise"));
-            throw new IllegalArgumentException(bundle.getString("error.PartCannotRevise"));
+        List<Document> nextDocumentVersions = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            nextDocumentVersions.add(nextDocumentVersion(document, child.getVersion()));
         }
+        return new StructureChange(nextVersion, nextDocumentVersions);
+    }
+
+    /**
+     * Keeps the first of the documents with the same key, e.g. the documents linked to
+     * several parts of a structure, or their next versions.
+     *
+     * @param documents The documents.
+     * @return The documents without the duplicates, in their order.
+     */
+    private static List<Document> distinct(List<Document> documents) {
+        Map<Part.PartPK, Document> distinct = new LinkedHashMap<>();
+        for (Document document : documents) {
+            distinct.putIfAbsent(new Part.PartPK(document.getReference(), document.getVersion(),
+                    document.getIteration()), document);
+        }
+        return distinct.size() == documents.size() ? documents : new ArrayList<>(distinct.values());
+    }
+
+    /**
+     * Builds the next iteration of a linked document, reserved by the given user.
+     *
+     * @param document  The linked document.
+     * @param iteration The iteration to create.
+     * @param userId    The user reserving the document.
+     * @return The next iteration of the document.
+     */
+    private static Document nextDocumentIteration(Document document, int iteration, String userId) {
+        Document nextIteration = EntityCloner.nextIteration(document, iteration);
+        nextIteration.setReserved(true)
+                .setReservedBy(userId);
+
+        return nextIteration;
+    }
+
+    /**
+     * Builds the next version of a linked document.
+     *
+     * @param document The linked document.
+     * @param version  The current version of the part.
+     * @return The next version of the document.
+     */
+    private static Document nextDocumentVersion(Document document, String version) {
+        Document nextDocumentVersion = EntityCloner.nextVersion(document,
+                document.getVersionSchema().getNextVersionLabel(version));
+        nextDocumentVersion.setLifeCycleState(document.getLifeCycleTemplate().getInitialState());
+
+        return nextDocumentVersion;
     }
 
     /**
@@ -188,8 +478,22 @@ public class PartService implements plm.services.Service {
      * @param part The part entity for which to retrieve linked documents.
      * @return A set of documents linked to the specified part.
      */
-    private Set<Document> getLinkedDocuments(Part part) {
-        // Implementation and returned value are not relevant for this exercise
-        return null;
+    protected Set<Document> getLinkedDocuments(Part part) {
+        Part.PartPK key = new Part.PartPK(part.getReference(), part.getVersion(), part.getIteration());
+        return documentLinkDao.getLinkedDocuments(Collections.singleton(key)).get(key);
+    }
+
+    /**
+     * Part below the part of an operation, with its linked documents, to be written in
+     * the batch of the operation.
+     */
+    private static final class StructureChange {
+        final Part part;
+        final Collection<Document> documents;
+
+        StructureChange(Part part, Collection<Document> documents) {
+            this.part = part;
+            this.documents = documents;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package plm.services;
+
+import plm.i18n.LocalizedArgumentException;
+import plm.i18n.Message;
+
+/**
+ * Thrown when a service rejects an operation because of a business rule, e.g. when an
+ * entity is already reserved.
+ *
+ * Such rejections are expected, under contention most reservations are rejected, so the
+ * exception does not capture the stack trace and its message is formatted only if read.
+ * The code tells the clients why the operation was rejected.
+ */
+public class RejectedOperationException extends LocalizedArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RejectionCode code;
+
+    /**
+     * Constructor to initialize the code and message of the rejection.
+     *
+     * @param code    The reason of the rejection.
+     * @param message The message of the rejection.
+     */
+    public RejectedOperationException(RejectionCode code, Message message) {
+        super(message);
+        this.code = code;
+    }
+
+    /**
+     * Gets the reason of the rejection.
+     *
+     * @return The code of the rejection.
+     */
+    public RejectionCode getCode() {
+        return code;
+    }
+
+    /**
+     * Does not capture the stack trace: the rejection is a result, not a bug.
+     *
+     * @return This exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,37 @@
+package plm.services;
+
+/**
+ * Reasons for which a service rejects an operation, as returned to the clients.
+ */
+public enum RejectionCode {
+
+    /**
+     * The entity does not exist.
+     */
+    NOT_FOUND,
+
+    /**
+     * The entity is reserved, by another user or, for a reservation, already.
+     */
+    RESERVED,
+
+    /**
+     * The entity must be reserved by the user for the operation, and is not reserved.
+     */
+    NOT_RESERVED,
+
+    /**
+     * The lifecycle state of the entity does not allow the operation.
+     */
+    INVALID_STATE,
+
+    /**
+     * The entity kept being modified concurrently, the operation gave up.
+     */
+    CONFLICT,
+
+    /**
+     * Too many calls of the operation are waiting, the client should try again later.
+     */
+    OVERLOADED
+}
@@ -0,0 +1,83 @@
+package plm.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import plm.dao.TransactionCallbacks;
+
+/**
+ * Decides the ownership of reservations in memory, before any entity is loaded or written.
+ *
+ * Reservations are claimed per entity type and reference. A claim is kept until the
+ * entity is freed, and given back if the transaction which claimed it is rolled back
+ * (e.g. because the database says the entity is already reserved). Contenders losing
+ * the race are rejected immediately, without touching the database.
+ */
+@Component
+public class ReservationManager {
+
+    private ReservationStore reservationStore;
+
+    /**
+     * Sets the ReservationStore holding the claims.
+     *
+     * @param reservationStore The ReservationStore to set.
+     */
+    @Autowired
+    public void setReservationStore(ReservationStore reservationStore) {
+        this.reservationStore = reservationStore;
+    }
+
+    /**
+     * Claims the reservation of an entity for a user, for the current transaction.
+     *
+     * @param entityType The type of the entity.
+     * @param reference  The reference of the entity.
+     * @param userId     The user reserving the entity.
+     * @return true if the user now holds the reservation, false if it is already held.
+     */
+    public boolean tryReserve(Class<?> entityType, String reference, String userId) {
+        String key = keyOf(entityType, reference);
+        if (!reservationStore.tryAcquire(key, userId)) {
+            return false;
+        }
+        TransactionCallbacks.afterRollback(() -> reservationStore.release(key, userId));
+        return true;
+    }
+
+    /**
+     * Checks if a user may free an entity, i.e. no other user holds its reservation.
+     *
+     * @param entityType The type of the entity.
+     * @param reference  The reference of the entity.
+     * @param userId     The user freeing the entity.
+     * @return true if the reservation is held by the user or by nobody, false otherwise.
+     */
+    public boolean canFree(Class<?> entityType, String reference, String userId) {
+        String owner = reservationStore.getOwner(keyOf(entityType, reference));
+        return owner == null || owner.equals(userId);
+    }
+
+    /**
+     * Releases the reservation of an entity once the current transaction is committed.
+     *
+     * @param entityType The type of the entity.
+     * @param reference  The reference of the entity.
+     * @param userId     The user freeing the entity.
+     */
+    public void free(Class<?> entityType, String reference, String userId) {
+        String key = keyOf(entityType, reference);
+        TransactionCallbacks.afterCommit(() -> reservationStore.release(key, userId));
+    }
+
+    /**
+     * Builds the key of the reservation of an entity.
+     *
+     * @param entityType The type of the entity.
+     * @param reference  The reference of the entity.
+     * @return The key.
+     */
+    private static String keyOf(Class<?> entityType, String reference) {
+        return entityType.getSimpleName() + ':' + reference;
+    }
+}
@@ -0,0 +1,38 @@
+package plm.services;
+
+/**
+ * Storage of the reservation claims handled by the {@link ReservationManager}.
+ *
+ * Implementations must decide ownership atomically. The default one is in-memory
+ * ({@link InMemoryReservationStore}); providing another bean of this type (e.g. backed
+ * by a distributed cache) shares the reservations between several nodes.
+ */
+public interface ReservationStore {
+
+    /**
+     * Claims a key for an owner.
+     *
+     * @param key   The key of the reserved entity.
+     * @param owner The user claiming the key.
+     * @return true if the key was free and is now claimed by the owner, false if it is
+     * already claimed (even by the same owner).
+     */
+    boolean tryAcquire(String key, String owner);
+
+    /**
+     * Releases a key claimed by an owner.
+     *
+     * @param key   The key of the reserved entity.
+     * @param owner The user who claimed the key.
+     * @return true if the key was claimed by the owner and is now free, false otherwise.
+     */
+    boolean release(String key, String owner);
+
+    /**
+     * Gets the owner of a key.
+     *
+     * @param key The key of the reserved entity.
+     * @return The user who claimed the key, null if it is free.
+     */
+    String getOwner(String key);
+}
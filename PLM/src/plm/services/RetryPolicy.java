@@ -0,0 +1,181 @@
+package plm.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded retry of operations failing on an optimistic locking conflict.
+ *
+ * Each attempt must run in its own transaction, so that a retried operation reads and
+ * validates the entities again (see {@link RetryingService}). Attempts are separated by
+ * an exponential backoff with full jitter, so that contenders do not collide again.
+ * Retry counts and conflict rates are exported as JMX attributes.
+ */
+@Component
+@ManagedResource(objectName = "plm:name=RetryPolicy")
+public class RetryPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryPolicy.class);
+
+    /**
+     * Default maximum number of attempts of an operation.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Default backoff before the first retry, in milliseconds.
+     */
+    public static final long DEFAULT_INITIAL_BACKOFF = 10;
+
+    /**
+     * Default maximum backoff between two attempts, in milliseconds.
+     */
+    public static final long DEFAULT_MAX_BACKOFF = 200;
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final long maxBackoff;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * Creates a retry policy with the default settings.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * Creates a retry policy.
+     *
+     * @param maxAttempts    The maximum number of attempts of an operation.
+     * @param initialBackoff The backoff before the first retry, in milliseconds.
+     * @param maxBackoff     The maximum backoff between two attempts, in milliseconds.
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff) {
+        if (maxAttempts <= 0 || initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("invalid retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Runs an operation, retrying it on optimistic locking conflicts.
+     *
+     * @param operation The operation, running in its own transaction.
+     */
+    public void run(Runnable operation) {
+        execute(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs an operation, retrying it on optimistic locking conflicts.
+     *
+     * @param operation The operation, running in its own transaction.
+     * @param <T>       The type of the result.
+     * @return The result of the operation.
+     */
+    public <T> T execute(Supplier<T> operation) {
+        operations.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (OptimisticLockingFailureException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    logger.warn("Giving up after {} conflicting attempts: {}", attempt, e.getMessage());
+                    throw e;
+                }
+                retries.increment();
+                logger.debug("Conflicting attempt {}, retrying: {}", attempt, e.getMessage());
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Waits before the next attempt, a random time up to an exponential bound.
+     *
+     * @param attempt  The number of the failed attempt.
+     * @param conflict The conflict, rethrown if the thread is interrupted.
+     */
+    private void backoff(int attempt, OptimisticLockingFailureException conflict) {
+        long bound = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 20));
+        long delay = bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+        try {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
+    }
+
+    /**
+     * Gets the number of operations run through this policy.
+     *
+     * @return The number of operations.
+     */
+    @ManagedAttribute
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    /**
+     * Gets the number of attempts which failed on a conflict.
+     *
+     * @return The number of conflicts.
+     */
+    @ManagedAttribute
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    /**
+     * Gets the number of retried attempts.
+     *
+     * @return The number of retries.
+     */
+    @ManagedAttribute
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Gets the number of operations which still conflicted after the last attempt.
+     *
+     * @return The number of exhausted operations.
+     */
+    @ManagedAttribute
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    /**
+     * Gets the ratio of conflicting attempts per operation.
+     *
+     * @return The conflict rate.
+     */
+    @ManagedAttribute
+    public double getConflictRate() {
+        long count = operations.sum();
+        return count == 0 ? 0 : (double) conflicts.sum() / count;
+    }
+}
@@ -0,0 +1,69 @@
+package plm.services;
+
+/**
+ * Service decorator retrying the operations of another service on optimistic
+ * locking conflicts, according to a {@link RetryPolicy}.
+ *
+ * The decorated service must be transactional, so that every attempt runs in its own
+ * transaction and reads and validates the state of the entities again.
+ */
+public class RetryingService implements Service {
+
+    private final Service service;
+
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * Constructor to initialize the decorated service and the retry policy.
+     *
+     * @param service     The transactional service to decorate.
+     * @param retryPolicy The retry policy.
+     */
+    public RetryingService(Service service, RetryPolicy retryPolicy) {
+        this.service = service;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reserve(String userId, String reference, String version, int iteration) {
+        retryPolicy.run(() -> service.reserve(userId, reference, version, iteration));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void update(String userId, String reference, String version, int iteration,
+                       String attribute1, String attribute2) {
+        retryPolicy.run(() -> service.update(userId, reference, version, iteration,
+                attribute1, attribute2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void free(String userId, String reference, String version, int iteration) {
+        retryPolicy.run(() -> service.free(userId, reference, version, iteration));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setState(String userId, String reference, String version, int iteration,
+                         String state) {
+        retryPolicy.run(() -> service.setState(userId, reference, version, iteration, state));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void revise(String userId, String reference, String version, int iteration) {
+        retryPolicy.run(() -> service.revise(userId, reference, version, iteration));
+    }
+}
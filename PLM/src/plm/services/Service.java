@@ -2,6 +2,9 @@ package plm.services;
 
 /**
  * Interface defining the operations for managing entities in the PLM system.
+ *
+ * Operations violating a business rule are rejected with a
+ * {@link RejectedOperationException}, whose {@link RejectionCode} tells why.
  */
 public interface Service {
 
@@ -12,6 +15,7 @@ public interface Service {
      * @param reference The reference of the entity.
      * @param version   The version of the entity.
      * @param iteration The iteration of the entity.
+     * @throws RejectedOperationException If the entity does not exist, is reserved or in a final state.
      */
     void reserve(String userId, String reference, String version, int iteration);
 
@@ -24,6 +28,7 @@ public interface Service {
      * @param iteration  The iteration of the entity.
      * @param attribute1 The first attribute of the entity.
      * @param attribute2 The second attribute of the entity.
+     * @throws RejectedOperationException If the entity does not exist or is not reserved by the user.
      */
     void update(String userId, String reference, String version, int iteration,
                 String attribute1, String attribute2);
@@ -35,6 +40,7 @@ public interface Service {
      * @param reference The reference of the entity.
      * @param version   The version of the entity.
      * @param iteration The iteration of the entity.
+     * @throws RejectedOperationException If the entity does not exist or is not reserved by the user.
      */
     void free(String userId, String reference, String version, int iteration);
 
@@ -46,6 +52,8 @@ public interface Service {
      * @param version   The version of the entity.
      * @param iteration The iteration of the entity.
      * @param state     The new state of the entity.
+     * @throws RejectedOperationException If the entity does not exist, is reserved or cannot move
+     *                                    to the state.
      */
     void setState(String userId, String reference, String version, int iteration, String state);
 
@@ -56,6 +64,8 @@ public interface Service {
      * @param reference The reference of the entity.
      * @param version   The version of the entity.
      * @param iteration The iteration of the entity.
+     * @throws RejectedOperationException If the entity does not exist, is reserved or not in a
+     *                                    final state.
      */
     void revise(String userId, String reference, String version, int iteration);
 }
\ No newline at end of file
@@ -0,0 +1,86 @@
+package plm.services;
+
+/**
+ * Settings of the traversal of the multi-level structure of a part,
+ * see {@link StructureTraversal}.
+ */
+public class StructureOptions {
+
+    private int maxDepth = 32;
+
+    private int maxNodes = 100_000;
+
+    private int parallelThreshold = 64;
+
+    // Getters
+
+    /**
+     * Gets the number of levels below which a structure is rejected, guarding against
+     * runaway structures.
+     *
+     * @return The maximum depth, the root being at depth 0.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of distinct parts above which a structure is rejected.
+     *
+     * @return The maximum number of parts, the root included.
+     */
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Gets the number of parts below which the work on a structure runs sequentially
+     * on the calling thread, the fork/join costing more than it saves.
+     *
+     * @return The parallel threshold.
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    // Setters
+
+    /**
+     * Sets the maximum depth of a structure.
+     *
+     * @param maxDepth The maximum depth, at least 1.
+     * @return The current StructureOptions instance (for chaining).
+     */
+    public StructureOptions setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be a positive integer");
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of parts of a structure.
+     *
+     * @param maxNodes The maximum number of parts, at least 1.
+     * @return The current StructureOptions instance (for chaining).
+     */
+    public StructureOptions setMaxNodes(int maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("maxNodes must be a positive integer");
+        }
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * Sets the number of parts below which the work runs sequentially.
+     *
+     * @param parallelThreshold The parallel threshold.
+     * @return The current StructureOptions instance (for chaining).
+     */
+    public StructureOptions setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+}
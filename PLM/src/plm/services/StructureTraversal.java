@@ -0,0 +1,400 @@
+package plm.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import plm.dao.DocumentLinkDao;
+import plm.dao.Dao;
+import plm.dao.PartStructureDao;
+import plm.i18n.Message;
+import plm.metrics.Histogram;
+import plm.metrics.MetricsRegistry;
+import plm.model.Document;
+import plm.model.Part;
+
+/**
+ * Walks the multi-level structure of a part (its children, their children...) and
+ * applies the work of a cascading operation to every part below it.
+ *
+ * A traversal runs in two phases:
+ * <ul>
+ * <li>the structure is loaded on the calling thread, within its transaction, one level
+ * at a time: the children of a whole level are resolved in one call of the
+ * {@link PartStructureDao}, the latest iterations of its new parts in one call of the
+ * {@link Dao} of the parts and their linked documents in one call of the {@link DocumentLinkDao}.
+ * A part shared by several subassemblies is loaded once, and the loaded graph is checked
+ * for cycles before any work is done;</li>
+ * <li>the work is applied to every part exactly once, subtrees being split across a
+ * ForkJoinPool. A shared subassembly is claimed by the first subtree reaching it. The
+ * work must only build or modify entities in memory: the caller writes all the results
+ * in one batch, in the order of the levels.</li>
+ * </ul>
+ *
+ * The number of parts and the duration of each traversal are recorded by operation in
+ * the {@code plm_structure_nodes} and {@code plm_structure_seconds} histograms.
+ */
+@Component
+public class StructureTraversal implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(StructureTraversal.class);
+
+    private final ForkJoinPool pool = newPool();
+
+    private final Map<String, StructureOptions> options = new ConcurrentHashMap<>();
+
+    private final StructureOptions defaultOptions = new StructureOptions();
+
+    // Node count and duration histograms of the operations, registered on first use
+    private final Map<String, Histogram[]> histograms = new ConcurrentHashMap<>();
+
+    private Dao partDao;
+
+    private DocumentLinkDao documentLinkDao;
+
+    private PartStructureDao partStructureDao;
+
+    private MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+    /**
+     * Sets the Dao of the parts loading the children.
+     *
+     * @param partDao The Dao of the parts to set.
+     */
+    @Autowired
+    public void setPartDao(@Qualifier("partDao") Dao partDao) {
+        this.partDao = partDao;
+    }
+
+    /**
+     * Sets the DocumentLinkDao loading the documents of the children.
+     *
+     * @param documentLinkDao The DocumentLinkDao to set.
+     */
+    @Autowired
+    public void setDocumentLinkDao(DocumentLinkDao documentLinkDao) {
+        this.documentLinkDao = documentLinkDao;
+    }
+
+    /**
+     * Sets the PartStructureDao resolving the structure links.
+     *
+     * @param partStructureDao The PartStructureDao to set.
+     */
+    @Autowired
+    public void setPartStructureDao(PartStructureDao partStructureDao) {
+        this.partStructureDao = partStructureDao;
+    }
+
+    /**
+     * Sets the registry of the metrics of the traversals.
+     *
+     * @param metricsRegistry The MetricsRegistry to set.
+     */
+    @Autowired
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        histograms.clear();
+    }
+
+    /**
+     * Gets the options of an operation, the default ones if it was not configured.
+     *
+     * @param operation The name of the operation (e.g. "setState").
+     * @return The options of the operation.
+     */
+    public StructureOptions getOptions(String operation) {
+        return options.getOrDefault(operation, defaultOptions);
+    }
+
+    /**
+     * Configures an operation.
+     *
+     * @param operation The name of the operation (e.g. "setState").
+     * @param options   The options of the operation.
+     */
+    public void setOptions(String operation, StructureOptions options) {
+        this.options.put(operation, options);
+    }
+
+    /**
+     * Applies a function to every part below a root part, with its linked documents.
+     *
+     * @param operation The name of the operation, selecting its options.
+     * @param root      The root part, which the work is not applied to.
+     * @param work      The work to apply to each part below the root, must not use the
+     *                  transaction. It may return null for the parts left unchanged.
+     * @param <R>       The type of the results.
+     * @return The non-null results, parents before children.
+     * @throws RejectedOperationException If the structure has a cycle or exceeds the
+     *                                    limits of the operation.
+     */
+    public <R> List<R> traverse(String operation, Part root, BiFunction<Part, Set<Document>, R> work) {
+        Histogram[] operationHistograms = histograms.computeIfAbsent(operation, name -> new Histogram[]{
+                metricsRegistry.histogram("plm_structure_nodes", "operation", name),
+                metricsRegistry.histogram("plm_structure_seconds", "operation", name)});
+        long start = System.nanoTime();
+        StructureOptions structureOptions = getOptions(operation);
+        List<Node> nodes = load(root, structureOptions);
+        try {
+            checkAcyclic(nodes);
+            Object[] results = new Object[nodes.size()];
+            if (nodes.size() - 1 < Math.max(2, structureOptions.getParallelThreshold())) {
+                for (Node node : nodes.subList(1, nodes.size())) {
+                    results[node.index] = work.apply(node.part, node.documents);
+                }
+            } else {
+                new Cascade<>(nodes, work, results).run();
+            }
+
+            List<R> collected = new ArrayList<>(nodes.size() - 1);
+            for (Object result : results) {
+                if (result != null) {
+                    @SuppressWarnings("unchecked")
+                    R typed = (R) result;
+                    collected.add(typed);
+                }
+            }
+            return collected;
+        } finally {
+            operationHistograms[0].record(nodes.size());
+            operationHistograms[1].recordSince(start);
+            logger.debug("{} traversed {} parts below {} in {} ms", operation, nodes.size() - 1,
+                    root.getReference(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Loads the structure below a part one level at a time, each part once.
+     *
+     * @param root    The root part.
+     * @param options The limits of the structure.
+     * @return The parts of the structure, the root first then level by level.
+     * @throws RejectedOperationException If the structure exceeds the limits.
+     */
+    private List<Node> load(Part root, StructureOptions options) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        Node rootNode = new Node(0, root, Collections.emptySet());
+        nodes.put(root.getReference(), rootNode);
+        List<Node> level = Collections.singletonList(rootNode);
+        for (int depth = 1; !level.isEmpty(); depth++) {
+            List<String> parentReferences = new ArrayList<>(level.size());
+            for (Node parent : level) {
+                parentReferences.add(parent.part.getReference());
+            }
+            Map<String, Set<String>> childReferences = partStructureDao.getChildReferences(parentReferences);
+
+            // References of the new parts of the next level
+            Set<String> children = new LinkedHashSet<>();
+            for (Node parent : level) {
+                for (String childReference : childReferences.get(parent.part.getReference())) {
+                    if (nodes.containsKey(childReference) || children.contains(childReference)) {
+                        continue;
+                    }
+                    if (depth > options.getMaxDepth() || nodes.size() + children.size() >= options.getMaxNodes()) {
+                        throw reject(Message.of("error.PartStructureTooLarge", root.getReference(),
+                                options.getMaxNodes(), options.getMaxDepth()));
+                    }
+                    children.add(childReference);
+                }
+            }
+
+            // Latest iterations of the new parts, loaded at once, skipping the dangling links
+            Map<Part.PartPK, Part> keys = new LinkedHashMap<>();
+            if (!children.isEmpty()) {
+                Map<String, ?> latest = partDao.getLatest(children);
+                for (String childReference : children) {
+                    Part child = (Part) latest.get(childReference);
+                    if (child != null) {
+                        keys.put(new Part.PartPK(child.getReference(), child.getVersion(), child.getIteration()),
+                                child);
+                    }
+                }
+            }
+            List<Node> next = new ArrayList<>(keys.size());
+            if (!keys.isEmpty()) {
+                Map<Part.PartPK, Set<Document>> documents = documentLinkDao.getLinkedDocuments(keys.keySet());
+                for (Map.Entry<Part.PartPK, Part> child : keys.entrySet()) {
+                    Node node = new Node(nodes.size(), child.getValue(), documents.get(child.getKey()));
+                    nodes.put(child.getValue().getReference(), node);
+                    next.add(node);
+                }
+            }
+            // Edges, including those to the parts loaded by previous levels
+            for (Node parent : level) {
+                for (String childReference : childReferences.get(parent.part.getReference())) {
+                    Node child = nodes.get(childReference);
+                    if (child != null) {
+                        parent.children.add(child);
+                    }
+                }
+            }
+            level = next;
+        }
+        return new ArrayList<>(nodes.values());
+    }
+
+    /**
+     * Checks that no part of a structure is its own descendant, with an iterative depth
+     * first search: a child which is on the current path closes a cycle.
+     *
+     * @param nodes The parts of the structure, the root first.
+     * @throws RejectedOperationException If the structure has a cycle.
+     */
+    private static void checkAcyclic(List<Node> nodes) {
+        // 0: not visited, 1: on the current path, 2: done
+        byte[] states = new byte[nodes.size()];
+        int[] cursors = new int[nodes.size()];
+        Deque<Node> path = new ArrayDeque<>();
+        Node root = nodes.get(0);
+        path.push(root);
+        states[root.index] = 1;
+        while (!path.isEmpty()) {
+            Node node = path.peek();
+            if (cursors[node.index] < node.children.size()) {
+                Node child = node.children.get(cursors[node.index]++);
+                if (states[child.index] == 1) {
+                    throw reject(Message.of("error.PartStructureCycle", root.part.getReference(),
+                            child.part.getReference()));
+                } else if (states[child.index] == 0) {
+                    states[child.index] = 1;
+                    path.push(child);
+                }
+            } else {
+                states[node.index] = 2;
+                path.pop();
+            }
+        }
+    }
+
+    private static RejectedOperationException reject(Message message) {
+        logger.debug("Rejected ({}): {}", RejectionCode.INVALID_STATE, message);
+        return new RejectedOperationException(RejectionCode.INVALID_STATE, message);
+    }
+
+    /**
+     * Creates the pool of the traversals, of daemon threads sized on the processors.
+     *
+     * @return The pool.
+     */
+    private static ForkJoinPool newPool() {
+        return new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("plm-structure-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Part of a loaded structure.
+     */
+    private static final class Node {
+        // Position in the load order, the root being 0
+        final int index;
+        final Part part;
+        final Set<Document> documents;
+        final List<Node> children = new ArrayList<>();
+
+        Node(int index, Part part, Set<Document> documents) {
+            this.index = index;
+            this.part = part;
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Work of one traversal split across the pool: a task per part, forking a task per
+     * child it claims, so that independent subtrees run in parallel. The first failure
+     * stops the tasks not started yet and is rethrown to the caller.
+     *
+     * @param <R> The type of the results.
+     */
+    private final class Cascade<R> {
+        final List<Node> nodes;
+        final BiFunction<Part, Set<Document>, R> work;
+        // Written by a single task each, read after the join
+        final Object[] results;
+        final AtomicIntegerArray claims;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Cascade(List<Node> nodes, BiFunction<Part, Set<Document>, R> work, Object[] results) {
+            this.nodes = nodes;
+            this.work = work;
+            this.results = results;
+            this.claims = new AtomicIntegerArray(nodes.size());
+        }
+
+        void run() {
+            claims.set(0, 1);
+            pool.invoke(new Task(nodes.get(0)));
+            Throwable thrown = failure.get();
+            if (thrown instanceof RuntimeException) {
+                throw (RuntimeException) thrown;
+            } else if (thrown instanceof Error) {
+                throw (Error) thrown;
+            }
+        }
+
+        final class Task extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            final Node node;
+
+            Task(Node node) {
+                this.node = node;
+            }
+
+            @Override
+            protected void compute() {
+                if (failure.get() != null) {
+                    return;
+                }
+                if (node.index != 0) {
+                    try {
+                        results[node.index] = work.apply(node.part, node.documents);
+                    } catch (RuntimeException | Error e) {
+                        failure.compareAndSet(null, e);
+                        return;
+                    }
+                }
+                List<Task> forks = new ArrayList<>(node.children.size());
+                for (Node child : node.children) {
+                    if (claims.compareAndSet(child.index, 0, 1)) {
+                        forks.add(new Task(child));
+                    }
+                }
+                invokeAll(forks);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package plm.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Measuring loop shared by the benchmarks.
+ *
+ * An operation is repeated in rounds, either a fixed number of operations or a fixed
+ * duration per round: the warm-up rounds let the JIT compile the measured code, then
+ * the measured rounds give the time of one operation each. The results of the operations
+ * are folded into a sink which the benchmarks print, so that the JIT cannot remove the
+ * measured code. The bytes allocated by the calling thread are measured too.
+ */
+public final class BenchmarkHarness {
+
+    /**
+     * Default number of warm-up rounds.
+     */
+    public static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * Default number of measured rounds.
+     */
+    public static final int ROUNDS = 10;
+
+    // Operations between two reads of the clock in timed rounds
+    private static final int OPERATIONS_PER_CHECK = 64;
+
+    // Quantiles of the Student distribution at 99.9% for 1 to 10 degrees of freedom
+    private static final double[] STUDENT_T = {636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041,
+            4.781, 4.587};
+
+    // Quantile of the normal distribution at 99.9%, used beyond the table
+    private static final double NORMAL_Z = 3.291;
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Prevents the JIT from removing the measured code.
+    private static long sink;
+
+    private BenchmarkHarness() {
+    }
+
+    /**
+     * Measures an operation over the default rounds, with a fixed number of operations
+     * per round.
+     *
+     * @param operations The number of operations of a round.
+     * @param operation  The operation, given the index of the operation in its round.
+     * @return The measurement.
+     */
+    public static Measurement measure(int operations, IntToLongFunction operation) {
+        return measure(WARMUP_ROUNDS, ROUNDS, operations, operation);
+    }
+
+    /**
+     * Measures an operation with a fixed number of operations per round.
+     *
+     * @param warmupRounds The number of warm-up rounds.
+     * @param rounds       The number of measured rounds.
+     * @param operations   The number of operations of a round.
+     * @param operation    The operation, given the index of the operation in its round.
+     * @return The measurement.
+     */
+    public static Measurement measure(int warmupRounds, int rounds, int operations,
+                                      IntToLongFunction operation) {
+        for (int round = 0; round < warmupRounds; round++) {
+            run(operation, operations, Long.MAX_VALUE);
+        }
+        double[] scores = new double[rounds];
+        long allocated = 0;
+        for (int round = 0; round < rounds; round++) {
+            long bytes = allocatedBytes();
+            scores[round] = run(operation, operations, Long.MAX_VALUE);
+            allocated = allocatedBytes() - bytes;
+        }
+        return new Measurement(scores, allocated / (double) operations);
+    }
+
+    /**
+     * Measures an operation with a fixed duration per round.
+     *
+     * @param warmupRounds The number of warm-up rounds.
+     * @param warmupNanos  The duration of a warm-up round.
+     * @param rounds       The number of measured rounds.
+     * @param roundNanos   The duration of a measured round.
+     * @param operation    The operation, given the index of the operation in its round.
+     * @return The measurement.
+     */
+    public static Measurement measureFor(int warmupRounds, long warmupNanos, int rounds, long roundNanos,
+                                         IntToLongFunction operation) {
+        for (int round = 0; round < warmupRounds; round++) {
+            run(operation, Integer.MAX_VALUE, warmupNanos);
+        }
+        double[] scores = new double[rounds];
+        for (int round = 0; round < rounds; round++) {
+            scores[round] = run(operation, Integer.MAX_VALUE, roundNanos);
+        }
+        return new Measurement(scores, Double.NaN);
+    }
+
+    /**
+     * Folds a value into the sink, e.g. the count of the writes of an in-memory DAO.
+     *
+     * @param value The value.
+     */
+    public static void consume(long value) {
+        sink += value;
+    }
+
+    /**
+     * Gets the sink, to be printed at the end of a benchmark.
+     *
+     * @return The sink.
+     */
+    public static long getSink() {
+        return sink;
+    }
+
+    /**
+     * Runs a round.
+     *
+     * @param operation     The operation.
+     * @param operations    The maximum number of operations.
+     * @param durationNanos The maximum duration of the round, checked every
+     *                      {@link #OPERATIONS_PER_CHECK} operations.
+     * @return The average time of one operation, in nanoseconds.
+     */
+    private static double run(IntToLongFunction operation, int operations, long durationNanos) {
+        long result = 0;
+        int index = 0;
+        long start = System.nanoTime();
+        long now;
+        if (durationNanos == Long.MAX_VALUE) {
+            for (; index < operations; index++) {
+                result += operation.applyAsLong(index);
+            }
+            now = System.nanoTime();
+        } else {
+            long deadline = start + durationNanos;
+            do {
+                for (int i = 0; i < OPERATIONS_PER_CHECK; i++) {
+                    result += operation.applyAsLong(index++);
+                }
+                now = System.nanoTime();
+            } while (now < deadline);
+        }
+        sink += result;
+        return (now - start) / (double) index;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Times of one operation over the measured rounds.
+     */
+    public static final class Measurement {
+        private final double[] scores;
+        private final double allocatedBytes;
+
+        Measurement(double[] scores, double allocatedBytes) {
+            this.scores = scores;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * Gets the time of one operation in each measured round.
+         *
+         * @return The times, in nanoseconds.
+         */
+        public double[] getScores() {
+            return scores.clone();
+        }
+
+        /**
+         * Gets the best time of one operation over the rounds.
+         *
+         * @return The time, in nanoseconds.
+         */
+        public double best() {
+            return Arrays.stream(scores).min().orElse(Double.NaN);
+        }
+
+        /**
+         * Gets the mean time of one operation over the rounds.
+         *
+         * @return The time, in nanoseconds.
+         */
+        public double mean() {
+            return Arrays.stream(scores).average().orElse(Double.NaN);
+        }
+
+        /**
+         * Gets the half-width of the confidence interval of the mean at 99.9%.
+         *
+         * @return The error, in nanoseconds; NaN with a single round.
+         */
+        public double error() {
+            int n = scores.length;
+            if (n < 2) {
+                return Double.NaN;
+            }
+            double mean = mean();
+            double squares = 0;
+            for (double score : scores) {
+                squares += (score - mean) * (score - mean);
+            }
+            double quantile = n - 1 <= STUDENT_T.length ? STUDENT_T[n - 2] : NORMAL_Z;
+            return quantile * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+        }
+
+        /**
+         * Gets the bytes allocated by one operation in the last measured round, for
+         * rounds of a fixed number of operations.
+         *
+         * @return The bytes, NaN for timed rounds.
+         */
+        public double allocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
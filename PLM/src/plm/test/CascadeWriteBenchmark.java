@@ -0,0 +1,313 @@
+package plm.test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+import plm.dao.AbstractDao;
+import plm.dao.DocumentDao;
+import plm.dao.EntityCache;
+import plm.dao.EntityHeadDao;
+import plm.dao.PartDao;
+import plm.dao.HibernatePartStructureDao;
+import plm.events.LifecycleEventRing;
+import plm.model.Document;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionSchema;
+import plm.services.CascadeExecutor;
+import plm.services.InMemoryReservationStore;
+import plm.services.PartService;
+import plm.services.ReservationManager;
+import plm.services.StructureTraversal;
+
+/**
+ * Benchmark of the cascading write path of {@link PartService}.
+ *
+ * Runs reserve and setState on a part linked to 10, 100 and 1000 documents,
+ * once with the former per-entity write path (one flush per entity) and once with the
+ * batched write path (one flush per service operation, JDBC batches of
+ * {@link AbstractDao#BATCH_SIZE}).
+ *
+ * No database is available to this benchmark: the Hibernate session is replaced by a
+ * recording stand-in which executes no SQL. It counts the SQL statements a flush would
+ * send (one per written row) and the round trips sending them (one per JDBC batch), and
+ * simulates the latency of the database by a fixed delay per round trip. The queries
+ * loading the heads of the written references ({@link EntityHeadDao}) are one statement
+ * and one round trip each and find no head. The latencies reported are therefore
+ * simulated: they compare the number of round trips of both write paths, not the cost of
+ * the SQL itself.
+ */
+public class CascadeWriteBenchmark {
+
+    // Simulated cost of a single JDBC statement execution
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private static final int[] FAN_OUTS = {10, 100, 1000};
+
+    private static final int RUNS = 5;
+
+    private static final CascadeExecutor CASCADE_EXECUTOR = new CascadeExecutor();
+
+    private static final StructureTraversal STRUCTURE_TRAVERSAL = newStructureTraversal();
+
+    // Outcomes published as by the application, without any consumer
+    private static final LifecycleEventRing EVENT_RING = new LifecycleEventRing();
+
+    private static final EntityCache ENTITY_CACHE = new EntityCache();
+
+    public static void main(String[] args) {
+        System.out.println("-----------------------Cascade write path benchmark-----------------------");
+        System.out.printf("Simulated database: no SQL executed, %d us per round trip%n",
+                TimeUnit.NANOSECONDS.toMicros(ROUND_TRIP_NANOS));
+        System.out.printf("%-10s %-12s %10s %12s %12s %24s%n", "documents", "write path", "flushes",
+                "statements", "round trips", "simulated latency (ms)");
+
+        for (int fanOut : FAN_OUTS) {
+            run(fanOut, false);
+            run(fanOut, true);
+        }
+    }
+
+    /**
+     * Runs reserve and setState on a part linked to the given number of documents.
+     *
+     * @param fanOut  The number of documents linked to the part.
+     * @param batched true to use the batched write path, false for one flush per entity.
+     */
+    private static void run(int fanOut, boolean batched) {
+        RecordingSession recorder = new RecordingSession();
+        PartService partService = newPartService(recorder, fanOut, batched);
+
+        long elapsed = 0;
+        for (int run = 0; run < RUNS; run++) {
+            recorder.reset();
+            // Reservations are claimed for good outside of a transaction
+            ReservationManager reservationManager = new ReservationManager();
+            reservationManager.setReservationStore(new InMemoryReservationStore());
+            partService.setReservationManager(reservationManager);
+
+            long start = System.nanoTime();
+            partService.reserve("user1", "REF001", "A", 1);
+            partService.setState("user1", "REF001", "A", 1, "Under validation");
+            elapsed += System.nanoTime() - start;
+        }
+
+        System.out.printf("%-10d %-12s %10d %12d %12d %24.2f%n", fanOut,
+                batched ? "batched" : "per-entity", recorder.flushes, recorder.statements,
+                recorder.roundTrips, elapsed / (double) RUNS / 1_000_000);
+    }
+
+    /**
+     * Builds a StructureTraversal over parts without any child.
+     *
+     * @return The StructureTraversal.
+     */
+    private static StructureTraversal newStructureTraversal() {
+        StructureTraversal structureTraversal = new StructureTraversal();
+        structureTraversal.setPartStructureDao(new HibernatePartStructureDao() {
+            @Override
+            public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+                Map<String, Set<String>> childReferences = new HashMap<>();
+                for (String parentReference : parentReferences) {
+                    childReferences.put(parentReference, Collections.emptySet());
+                }
+                return childReferences;
+            }
+        });
+        return structureTraversal;
+    }
+
+    /**
+     * Builds a PartService over DAOs bound to the recording session.
+     *
+     * @param recorder The recording session.
+     * @param fanOut   The number of documents linked to the part.
+     * @param batched  true to use the batched write path, false for one flush per entity.
+     * @return The PartService.
+     */
+    private static PartService newPartService(RecordingSession recorder, int fanOut,
+                                              boolean batched) {
+        LifeCycleTemplate lifeCycleTemplate = new LifeCycleTemplate("In progress",
+                Arrays.asList("In progress", "Under validation", "Released"),
+                Collections.singleton("Released"));
+        VersionSchema versionSchema = new VersionSchema();
+
+        Set<Document> documents = new LinkedHashSet<>();
+        for (int i = 0; i < fanOut; i++) {
+            Document document = new Document("DOC" + i, "A", 1);
+            document.setLifeCycleTemplate(lifeCycleTemplate)
+                    .setLifeCycleState("In progress")
+                    .setVersionSchema(versionSchema);
+            document.setDocumentAttribute1("Attribute1").setDocumentAttribute2("Attribute2");
+            documents.add(document);
+        }
+
+        PartService partService = new PartService() {
+            @Override
+            protected Set<Document> getLinkedDocuments(Part part) {
+                return documents;
+            }
+        };
+        partService.setCascadeExecutor(CASCADE_EXECUTOR);
+        partService.setStructureTraversal(STRUCTURE_TRAVERSAL);
+        partService.setLifecycleEventRing(EVENT_RING);
+        EntityHeadDao heads = new EntityHeadDao() {
+            {
+                sessionFactory = recorder.sessionFactory(batched);
+            }
+        };
+        partService.setPartDao(new PartDao() {
+            {
+                sessionFactory = recorder.sessionFactory(batched);
+                entityHeadDao = heads;
+                entityCache = ENTITY_CACHE;
+            }
+
+            @Override
+            public Part get(String reference, String version, int iteration) {
+                Part part = new Part(reference, version, iteration);
+                part.setLifeCycleTemplate(lifeCycleTemplate)
+                        .setLifeCycleState("In progress")
+                        .setVersionSchema(versionSchema);
+                part.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+                return part;
+            }
+        });
+        partService.setDocumentDao(new DocumentDao() {
+            {
+                sessionFactory = recorder.sessionFactory(batched);
+                entityHeadDao = heads;
+                entityCache = ENTITY_CACHE;
+            }
+        });
+        return partService;
+    }
+
+    /**
+     * Returns the neutral value of a method not recorded by the stand-ins: the proxy
+     * itself for the fluent methods, zero or false for the primitive types, else null.
+     *
+     * @param proxy  The proxy.
+     * @param method The method called.
+     * @return The neutral value.
+     */
+    private static Object neutral(Object proxy, Method method) {
+        Class<?> type = method.getReturnType();
+        if (type.isInstance(proxy)) {
+            return proxy;
+        }
+        if (type.isPrimitive() && type != void.class) {
+            return Array.get(Array.newInstance(type, 1), 0);
+        }
+        return null;
+    }
+
+    /**
+     * Stand-in for a Hibernate session which records the statements a database would
+     * receive, without executing any SQL.
+     */
+    private static class RecordingSession {
+        private int pending;
+        private int jdbcBatchSize = 1;
+        private long flushes;
+        private long statements;
+        private long roundTrips;
+
+        void reset() {
+            pending = 0;
+            flushes = 0;
+            statements = 0;
+            roundTrips = 0;
+        }
+
+        /**
+         * Creates a SessionFactory whose current session records into this instance.
+         *
+         * @param batched false to flush after every single save or update, emulating the
+         *                former per-entity write path.
+         * @return The SessionFactory.
+         */
+        SessionFactory sessionFactory(boolean batched) {
+            Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, arguments) -> {
+                        switch (method.getName()) {
+                            case "save":
+                            case "update":
+                                pending++;
+                                if (!batched) {
+                                    flush();
+                                }
+                                return null;
+                            case "setJdbcBatchSize":
+                                jdbcBatchSize = batched ? AbstractDao.BATCH_SIZE : 1;
+                                return null;
+                            case "flush":
+                                flush();
+                                return null;
+                            case "createQuery":
+                                return query();
+                            default:
+                                return neutral(proxy, method);
+                        }
+                    });
+            return (SessionFactory) Proxy.newProxyInstance(SessionFactory.class.getClassLoader(),
+                    new Class<?>[]{SessionFactory.class}, (proxy, method, arguments) -> {
+                        if ("getCurrentSession".equals(method.getName())) {
+                            return session;
+                        }
+                        return neutral(proxy, method);
+                    });
+        }
+
+        /**
+         * Creates a query which costs one round trip and finds nothing (e.g. no head yet).
+         *
+         * @return The query.
+         */
+        private Query<?> query() {
+            return (Query<?>) Proxy.newProxyInstance(Query.class.getClassLoader(),
+                    new Class<?>[]{Query.class}, (proxy, method, arguments) -> {
+                        switch (method.getName()) {
+                            case "getResultList":
+                                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                                statements++;
+                                roundTrips++;
+                                return Collections.emptyList();
+                            default:
+                                return neutral(proxy, method);
+                        }
+                    });
+        }
+
+        /**
+         * Simulates sending the pending statements, grouped in JDBC batches.
+         */
+        private void flush() {
+            if (pending == 0) {
+                return;
+            }
+            long batches = (pending + jdbcBatchSize - 1) / jdbcBatchSize;
+            for (long i = 0; i < batches; i++) {
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+            }
+            statements += pending;
+            roundTrips += batches;
+            flushes++;
+            pending = 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package plm.test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import plm.catalog.CatalogColumn;
+import plm.catalog.CatalogSnapshot;
+import plm.catalog.CatalogSnapshotWriter;
+import plm.model.EntityCloner;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionSchema;
+
+/**
+ * Measures the queries of a {@link CatalogSnapshot} against the same queries over
+ * entities loaded in the heap, as a report hydrating every row would run them.
+ *
+ * Builds the history of parts (several iterations each, with a lifecycle state, a
+ * reservation and attributes), writes their snapshot, then runs each query on both
+ * after a warm-up, checking that they agree, and reports the best time, the memory
+ * allocated per query and the size of the data read. Queries are measured by the
+ * {@link BenchmarkHarness}, one query per round.
+ */
+public class CatalogSnapshotBenchmark {
+
+    private static final int REFERENCES = 200_000;
+
+    private static final int ITERATIONS = 5;
+
+    private static final String[] STATES = {"In progress", "Under validation", "Released", "Obsolete"};
+
+    public static void main(String[] args) throws Exception {
+        LifeCycleTemplate lifeCycleTemplate = new LifeCycleTemplate(STATES[0], Arrays.asList(STATES),
+                Collections.singletonList(STATES[3]));
+        VersionSchema versionSchema = new VersionSchema();
+        List<Part> parts = new ArrayList<>(REFERENCES * ITERATIONS);
+        CatalogSnapshotWriter writer = new CatalogSnapshotWriter(Part.class);
+        for (int r = 0; r < REFERENCES; r++) {
+            Part part = new Part(String.format("REF%06d", r), "A", 1);
+            part.setLifeCycleTemplate(lifeCycleTemplate).setLifeCycleState(STATES[0]).setVersionSchema(versionSchema);
+            for (int i = 1; i <= ITERATIONS; i++) {
+                if (i > 1) {
+                    part = EntityCloner.nextIteration(part, i);
+                }
+                part.setLifeCycleState(STATES[(r + i) % STATES.length]);
+                if (i == ITERATIONS && r % 10 == 0) {
+                    part.setReserved(true).setReservedBy("user" + r % 7);
+                }
+                part.setPartAttribute1("Family " + r % 100).setPartAttribute2("Supplier " + r % 1000);
+                parts.add(part);
+                writer.add(part);
+            }
+        }
+        Path file = Files.createTempFile("catalog", ".cat");
+        long start = System.nanoTime();
+        writer.writeTo(file);
+        long writeMillis = (System.nanoTime() - start) / 1_000_000;
+        CatalogSnapshot snapshot = CatalogSnapshot.open(file);
+
+        System.out.println("--------------------------Catalog snapshot benchmark--------------------------");
+        System.out.printf("%d rows (%d references of %d iterations), snapshot of %d KiB written in %d ms%n",
+                snapshot.getRows(), REFERENCES, ITERATIONS, Files.size(file) / 1024, writeMillis);
+        System.out.printf("%-40s %14s %14s %16s %16s%n", "query", "heap (ms)", "snapshot (ms)",
+                "heap alloc (B)", "snapshot alloc (B)");
+
+        run("latest released", () -> {
+            long count = 0;
+            for (Part part : parts) {
+                if (isLatest(part) && STATES[2].equals(part.getLifeCycleState())) {
+                    count++;
+                }
+            }
+            return count;
+        }, () -> snapshot.query().latestOnly().where(CatalogColumn.LIFE_CYCLE_STATE, STATES[2]).count());
+
+        run("reserved by user3", () -> {
+            long count = 0;
+            for (Part part : parts) {
+                if (part.isReserved() && "user3".equals(part.getReservedBy())) {
+                    count++;
+                }
+            }
+            return count;
+        }, () -> snapshot.query().where(CatalogColumn.RESERVED, true)
+                .where(CatalogColumn.RESERVED_BY, "user3").count());
+
+        run("latest by state, references REF01*", () -> {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Part part : parts) {
+                if (part.getReference().startsWith("REF01") && isLatest(part)) {
+                    counts.merge(part.getLifeCycleState(), 1L, Long::sum);
+                }
+            }
+            return counts.hashCode();
+        }, () -> new TreeMap<>(snapshot.query().whereStartsWith(CatalogColumn.REFERENCE, "REF01").latestOnly()
+                .countBy(CatalogColumn.LIFE_CYCLE_STATE)).hashCode());
+
+        run("iterations 2-3 of family 42", () -> {
+            long count = 0;
+            for (Part part : parts) {
+                if (part.getIteration() >= 2 && part.getIteration() <= 3 && "Family 42".equals(part.getPartAttribute1())) {
+                    count++;
+                }
+            }
+            return count;
+        }, () -> snapshot.query().whereBetween(CatalogColumn.ITERATION, 2, 3)
+                .where(CatalogColumn.PART_ATTRIBUTE_1, "Family 42").count());
+
+        Files.delete(file);
+        System.out.println("(sink " + (BenchmarkHarness.getSink() & 1) + ")");
+    }
+
+    // The rows of a reference are consecutive, the latest one is the last of them
+    private static boolean isLatest(Part part) {
+        return part.getIteration() == ITERATIONS;
+    }
+
+    /**
+     * Runs a query on the heap and on the snapshot, checking their results.
+     */
+    private static void run(String name, LongSupplier heap, LongSupplier snapshot) {
+        long expected = heap.getAsLong();
+        long actual = snapshot.getAsLong();
+        if (expected != actual) {
+            throw new IllegalStateException(name + ": " + actual + " instead of " + expected);
+        }
+        BenchmarkHarness.Measurement heapMeasure = BenchmarkHarness.measure(1, i -> heap.getAsLong());
+        BenchmarkHarness.Measurement snapshotMeasure = BenchmarkHarness.measure(1, i -> snapshot.getAsLong());
+        System.out.printf("%-40s %14.3f %14.3f %16.0f %16.0f%n", name, heapMeasure.best() / 1e6,
+                snapshotMeasure.best() / 1e6, heapMeasure.allocatedBytes(), snapshotMeasure.allocatedBytes());
+    }
+}
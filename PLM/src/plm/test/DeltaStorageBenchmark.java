@@ -0,0 +1,157 @@
+package plm.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.IntFunction;
+
+import plm.model.DeltaCodec;
+import plm.model.Document;
+import plm.model.EntityCloner;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionSchema;
+
+/**
+ * Measures the delta storage of the iterations (see {@link DeltaCodec}).
+ *
+ * Builds the history of documents whose every new iteration changes one of their four
+ * attributes, encodes it as the DAOs do for several snapshot intervals, and reports the
+ * bytes of attributes stored. Then measures the rebuilding of an iteration stored as a
+ * delta, done by the DAOs on a miss of the entity cache, against the copy of a full row.
+ * Reads are measured by the {@link BenchmarkHarness}, keeping the best round.
+ */
+public class DeltaStorageBenchmark {
+
+    private static final int DOCUMENTS = 1_000;
+
+    private static final int ITERATIONS = 32;
+
+    private static final int ATTRIBUTE_LENGTH = 200;
+
+    private static final int[] SNAPSHOT_INTERVALS = {1, 4, 8, 16};
+
+    private static final int OPERATIONS = 1_000_000;
+
+    public static void main(String[] args) {
+        LifeCycleTemplate lifeCycleTemplate = new LifeCycleTemplate("In Progress",
+                Arrays.asList("In Progress", "Released"), Collections.singletonList("Released"));
+        VersionSchema versionSchema = new VersionSchema();
+        Document[][] histories = new Document[DOCUMENTS][];
+        for (int i = 0; i < DOCUMENTS; i++) {
+            histories[i] = history("REF" + i, lifeCycleTemplate, versionSchema);
+        }
+
+        System.out.println("--------------------------Delta storage benchmark--------------------------");
+        System.out.printf("%d documents of %d iterations, one of 4 attributes of %d characters changed"
+                + " per iteration%n", DOCUMENTS, ITERATIONS, ATTRIBUTE_LENGTH);
+        System.out.printf("%-20s %18s %12s%n", "snapshot interval", "attributes (KiB)", "saved");
+        long full = 0;
+        Document[][] rows = null;
+        for (int interval : SNAPSHOT_INTERVALS) {
+            Document[][] encoded = new Document[DOCUMENTS][];
+            long bytes = 0;
+            for (int i = 0; i < DOCUMENTS; i++) {
+                encoded[i] = encode(histories[i], interval);
+                for (Document row : encoded[i]) {
+                    bytes += attributeBytes(row);
+                }
+            }
+            if (interval == 1) {
+                full = bytes;
+            }
+            rows = encoded;
+            System.out.printf("%-20d %18d %11.1f%%%n", interval, bytes / 1024, 100.0 * (full - bytes) / full);
+        }
+
+        // Rows of the last interval: iterations 1 and 17 are full rows, the others deltas
+        Document[][] encoded = rows;
+        System.out.printf("%-22s %16s%n", "read", "time (ns)");
+        System.out.printf("%-22s %16.2f%n", "full row copy",
+                measure(i -> EntityCloner.copy(encoded[i % DOCUMENTS][0])));
+        System.out.printf("%-22s %16.2f%n", "delta rebuild",
+                measure(i -> DeltaCodec.decode(encoded[i % DOCUMENTS][ITERATIONS / 2 - 1],
+                        encoded[i % DOCUMENTS][0])));
+        System.out.printf("%-22s %16.2f%n", "delta rebuild + base",
+                measure(i -> DeltaCodec.decode(encoded[i % DOCUMENTS][ITERATIONS / 2 - 1],
+                        EntityCloner.copy(encoded[i % DOCUMENTS][0]))));
+        System.out.println("(sink " + (BenchmarkHarness.getSink() & 1) + ")");
+    }
+
+    /**
+     * Builds the iterations of a document, each changing one attribute of the previous one.
+     */
+    private static Document[] history(String reference, LifeCycleTemplate lifeCycleTemplate,
+                                      VersionSchema versionSchema) {
+        Document[] history = new Document[ITERATIONS];
+        Document document = new Document(reference, "A", 1);
+        document.setLifeCycleTemplate(lifeCycleTemplate)
+                .setLifeCycleState("In Progress")
+                .setVersionSchema(versionSchema);
+        document.setDocumentAttribute1(value(reference, 1, 0)).setDocumentAttribute2(value(reference, 2, 0));
+        document.setPartAttribute1(value(reference, 3, 0)).setPartAttribute2(value(reference, 4, 0));
+        history[0] = document;
+        for (int i = 1; i < ITERATIONS; i++) {
+            Document next = EntityCloner.nextIteration(history[i - 1], i + 1);
+            switch (i % 4) {
+                case 0:
+                    next.setDocumentAttribute1(value(reference, 1, i));
+                    break;
+                case 1:
+                    next.setDocumentAttribute2(value(reference, 2, i));
+                    break;
+                case 2:
+                    next.setPartAttribute1(value(reference, 3, i));
+                    break;
+                default:
+                    next.setPartAttribute2(value(reference, 4, i));
+                    break;
+            }
+            history[i] = next;
+        }
+        return history;
+    }
+
+    private static String value(String reference, int attribute, int iteration) {
+        StringBuilder value = new StringBuilder(ATTRIBUTE_LENGTH)
+                .append(reference).append('/').append(attribute).append('/').append(iteration).append(' ');
+        while (value.length() < ATTRIBUTE_LENGTH) {
+            value.append('x');
+        }
+        return value.toString();
+    }
+
+    /**
+     * Encodes the iterations of a document like the DAOs: the snapshots as full rows, the
+     * other iterations as deltas of the previous snapshot.
+     */
+    private static Document[] encode(Document[] history, int interval) {
+        Document[] rows = new Document[history.length];
+        for (int i = 0; i < history.length; i++) {
+            Document entity = EntityCloner.copy(history[i]);
+            int base = DeltaCodec.baseOf(entity.getIteration(), interval);
+            Document row = base == entity.getIteration() ? null : DeltaCodec.encode(entity, rows[base - 1]);
+            rows[i] = row != null ? row : entity;
+        }
+        return rows;
+    }
+
+    private static long attributeBytes(Document row) {
+        return bytes(row.getDocumentAttribute1()) + bytes(row.getDocumentAttribute2())
+                + bytes(row.getPartAttribute1()) + bytes(row.getPartAttribute2());
+    }
+
+    private static long bytes(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * Measures a read.
+     *
+     * @param operation The read, given the index of the operation.
+     * @return The best time of one read over the rounds, in nanoseconds.
+     */
+    private static double measure(IntFunction<? extends Part> operation) {
+        return BenchmarkHarness.measure(OPERATIONS, i -> operation.apply(i).getIteration()).best();
+    }
+}
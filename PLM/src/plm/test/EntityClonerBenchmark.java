@@ -0,0 +1,123 @@
+package plm.test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.IntFunction;
+
+import plm.model.Document;
+import plm.model.EntityCloner;
+import plm.model.LifeCycleTemplate;
+import plm.model.VersionSchema;
+
+/**
+ * Micro-benchmark of the creation of the next iteration and version of the entities.
+ *
+ * Compares the former code of the services (a new entity filled through the validating
+ * setters) with {@link EntityCloner} (fields copied verbatim through the copy plan of the
+ * class, only the changed values set through the setters), on Documents, which have the
+ * most fields. The detached copies handed out by the entity cache are measured too.
+ * Operations are measured by the {@link BenchmarkHarness}, keeping the best round.
+ */
+public class EntityClonerBenchmark {
+
+    private static final int ENTITIES = 1_000;
+
+    private static final int OPERATIONS = 1_000_000;
+
+    public static void main(String[] args) {
+        LifeCycleTemplate lifeCycleTemplate = new LifeCycleTemplate("In Progress",
+                Arrays.asList("In Progress", "Released"), Collections.singletonList("Released"));
+        VersionSchema versionSchema = new VersionSchema();
+        Document[] documents = new Document[ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            Document document = new Document("REF" + i, "A", 1);
+            document.setLifeCycleTemplate(lifeCycleTemplate)
+                    .setLifeCycleState("Released")
+                    .setVersionSchema(versionSchema);
+            document.setDocumentAttribute1("Attribute1").setDocumentAttribute2("Attribute2");
+            document.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+            documents[i] = document;
+        }
+
+        System.out.println("--------------------------Entity cloning benchmark--------------------------");
+        System.out.printf("%-22s %16s %16s%n", "operation", "setters (ns)", "cloner (ns)");
+        report("next iteration",
+                i -> nextIterationWithSetters(documents[i], "user1"),
+                i -> {
+                    Document next = EntityCloner.nextIteration(documents[i], 2);
+                    next.setReserved(true).setReservedBy("user1");
+                    return next;
+                });
+        report("next version",
+                i -> nextVersionWithSetters(documents[i]),
+                i -> {
+                    Document next = EntityCloner.nextVersion(documents[i], "B");
+                    next.setLifeCycleState(lifeCycleTemplate.getInitialState());
+                    return next;
+                });
+        report("detached copy",
+                i -> documents[i].copy(),
+                i -> EntityCloner.copy(documents[i]));
+        System.out.println("(sink " + (BenchmarkHarness.getSink() & 1) + ")");
+    }
+
+    /**
+     * Former next iteration of a document in the services.
+     */
+    private static Document nextIterationWithSetters(Document document, String userId) {
+        Document nextIteration = new Document(document.getReference(), document.getVersion(),
+                document.getIteration() + 1);
+        nextIteration.setReserved(true)
+                .setReservedBy(userId)
+                .setLifeCycleTemplate(document.getLifeCycleTemplate())
+                .setLifeCycleState(document.getLifeCycleState())
+                .setVersionSchema(document.getVersionSchema());
+        nextIteration
+                .setDocumentAttribute1(document.getDocumentAttribute1())
+                .setDocumentAttribute2(document.getDocumentAttribute2());
+        nextIteration
+                .setPartAttribute1(document.getPartAttribute1())
+                .setPartAttribute2(document.getPartAttribute2());
+        return nextIteration;
+    }
+
+    /**
+     * Former next version of a document in the services.
+     */
+    private static Document nextVersionWithSetters(Document document) {
+        Document nextVersion = new Document(document.getReference(),
+                document.getVersionSchema().getNextVersionLabel(document.getVersion()), 1);
+        nextVersion.setReserved(false)
+                .setLifeCycleTemplate(document.getLifeCycleTemplate())
+                .setLifeCycleState(document.getLifeCycleTemplate().getInitialState())
+                .setVersionSchema(document.getVersionSchema());
+        nextVersion
+                .setDocumentAttribute1(document.getDocumentAttribute1())
+                .setDocumentAttribute2(document.getDocumentAttribute2());
+        nextVersion
+                .setPartAttribute1(document.getPartAttribute1())
+                .setPartAttribute2(document.getPartAttribute2());
+        return nextVersion;
+    }
+
+    /**
+     * Measures an operation both ways and prints the time of one operation.
+     *
+     * @param operation The name of the operation.
+     * @param setters   The operation through the setters, given the index of an entity.
+     * @param cloner    The operation through the cloner, given the index of an entity.
+     */
+    private static void report(String operation, IntFunction<Document> setters, IntFunction<Document> cloner) {
+        System.out.printf("%-22s %16.2f %16.2f%n", operation, measure(setters), measure(cloner));
+    }
+
+    /**
+     * Measures an operation.
+     *
+     * @param operation The operation, given the index of an entity.
+     * @return The best time of one operation over the rounds, in nanoseconds.
+     */
+    private static double measure(IntFunction<Document> operation) {
+        return BenchmarkHarness.measure(OPERATIONS, i -> operation.apply(i % ENTITIES).getIteration()).best();
+    }
+}
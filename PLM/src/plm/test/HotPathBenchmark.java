@@ -0,0 +1,537 @@
+package plm.test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+import java.util.regex.Pattern;
+
+import plm.dao.DocumentDao;
+import plm.dao.PartDao;
+import plm.dao.HibernatePartStructureDao;
+import plm.events.LifecycleEventRing;
+import plm.model.Document;
+import plm.model.EntityCloner;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionSchema;
+import plm.services.CascadeExecutor;
+import plm.services.DocumentService;
+import plm.services.InMemoryReservationStore;
+import plm.services.PartService;
+import plm.services.ReservationManager;
+import plm.services.StructureTraversal;
+import plm.services.Service;
+
+/**
+ * Benchmark suite of the hot paths, whose results are written as JSON so that the
+ * results of two builds can be compared.
+ *
+ * Covers the operations of {@link PartService} (for 0, 10 and 100 linked documents) and
+ * of {@link DocumentService}, the validating setters of the entities, and the hashing and
+ * equality of {@link Part.PartPK}. The services run against in-memory stand-ins of the
+ * DAOs: an entity is read as a copy of a fixture, as handed out by the entity cache, and
+ * writes are counted then dropped, so that every invocation finds the same state.
+ *
+ * Operations are measured by the {@link BenchmarkHarness}, not by JMH: average time of
+ * one operation over timed rounds after timed warm-up rounds, in a single thread, with
+ * its error at 99.9% confidence. The JSON file has a layout of its own, named by its
+ * {@code format} field ({@value #FORMAT}): the JVM and the rounds, then the scores of each
+ * benchmark with its parameters.
+ *
+ * Usage: {@code plm.test.HotPathBenchmark [results file] [benchmark name pattern]}, the
+ * results being written to {@value #DEFAULT_RESULTS} by default.
+ */
+public class HotPathBenchmark {
+
+    private static final String DEFAULT_RESULTS = "hot-path-benchmark.json";
+
+    private static final String FORMAT = "plm-hot-path-benchmark/1";
+
+    private static final int[] FAN_OUTS = {0, 10, 100};
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final long WARMUP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final int ROUNDS = 5;
+
+    private static final long ROUND_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    // Keys of the PartPK benchmarks, a power of two
+    private static final int KEYS = 1 << 12;
+
+    private static final String USER = "user1";
+
+    private static final LifeCycleTemplate LIFE_CYCLE_TEMPLATE = new LifeCycleTemplate("In progress",
+            Arrays.asList("In progress", "Under validation", "Released"),
+            Collections.singleton("Released"));
+
+    private static final VersionSchema VERSION_SCHEMA = new VersionSchema();
+
+    private static final CascadeExecutor CASCADE_EXECUTOR = new CascadeExecutor();
+
+    private static final StructureTraversal STRUCTURE_TRAVERSAL = newStructureTraversal();
+
+    // Outcomes published as by the application, without any consumer
+    private static final LifecycleEventRing EVENT_RING = new LifecycleEventRing();
+
+    public static void main(String[] args) throws IOException {
+        Path results = Paths.get(args.length > 0 ? args[0] : DEFAULT_RESULTS);
+        Pattern include = Pattern.compile(args.length > 1 ? args[1] : ".*");
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for (int fanOut : FAN_OUTS) {
+            addServiceBenchmarks(benchmarks, "plm.services.PartService", newPartService(fanOut),
+                    Collections.singletonMap("fanOut", String.valueOf(fanOut)));
+        }
+        addServiceBenchmarks(benchmarks, "plm.services.DocumentService", newDocumentService(),
+                Collections.emptyMap());
+        addSetterBenchmarks(benchmarks);
+        addKeyBenchmarks(benchmarks);
+
+        System.out.println("----------------------------Hot path benchmark----------------------------");
+        System.out.printf("%-46s %-8s %14s %12s%n", "benchmark", "fanOut", "score (ns/op)", "error");
+        List<Result> measured = new ArrayList<>();
+        for (Benchmark benchmark : benchmarks) {
+            if (include.matcher(benchmark.name).find()) {
+                Result result = benchmark.run();
+                measured.add(result);
+                System.out.printf("%-46s %-8s %14.2f %12.2f%n", benchmark.name,
+                        benchmark.params.getOrDefault("fanOut", ""), result.measurement.mean(),
+                        result.measurement.error());
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            writer.write(toJson(measured));
+        }
+        System.out.println("Results written to " + results.toAbsolutePath());
+        System.out.println("(sink " + (BenchmarkHarness.getSink() & 1) + ")");
+    }
+
+    /**
+     * Adds the benchmarks of the five operations of a service. Every operation targets a
+     * fixture in the state it expects, so none is rejected.
+     *
+     * @param benchmarks The benchmarks.
+     * @param prefix     The prefix of the names of the benchmarks.
+     * @param service    The service.
+     * @param params     The parameters of the benchmarks.
+     */
+    private static void addServiceBenchmarks(List<Benchmark> benchmarks, String prefix,
+                                             Service service, Map<String, String> params) {
+        benchmarks.add(new Benchmark(prefix + ".reserve", params, i -> {
+            service.reserve(USER, "FREE", "A", 1);
+            return i;
+        }));
+        benchmarks.add(new Benchmark(prefix + ".update", params, i -> {
+            service.update(USER, "RESERVED", "A", 2, "Attribute1", "Attribute2");
+            return i;
+        }));
+        benchmarks.add(new Benchmark(prefix + ".free", params, i -> {
+            service.free(USER, "RESERVED", "A", 2);
+            return i;
+        }));
+        benchmarks.add(new Benchmark(prefix + ".setState", params, i -> {
+            service.setState(USER, "FREE", "A", 1, "Under validation");
+            return i;
+        }));
+        benchmarks.add(new Benchmark(prefix + ".revise", params, i -> {
+            service.revise(USER, "RELEASED", "A", 1);
+            return i;
+        }));
+    }
+
+    /**
+     * Adds the benchmarks of the validating setters of the entities.
+     *
+     * @param benchmarks The benchmarks.
+     */
+    private static void addSetterBenchmarks(List<Benchmark> benchmarks) {
+        Part part = newPart("REF", "A", 1);
+        Document document = newDocument("REF", "A", 1);
+        Map<String, String> none = Collections.emptyMap();
+        benchmarks.add(new Benchmark("plm.model.AbstractEntity.setReservedBy", none, i -> {
+            part.setReservedBy(USER);
+            return i;
+        }));
+        benchmarks.add(new Benchmark("plm.model.AbstractEntity.setLifeCycleState", none, i -> {
+            part.setLifeCycleState("In progress");
+            return i;
+        }));
+        benchmarks.add(new Benchmark("plm.model.Part.setVersionSchema", none,
+                i -> part.setVersionSchema(VERSION_SCHEMA).getVersionOrdinal()));
+        benchmarks.add(new Benchmark("plm.model.Part.setPartAttribute1", none, i -> {
+            part.setPartAttribute1("Attribute1");
+            return i;
+        }));
+        benchmarks.add(new Benchmark("plm.model.Document.setDocumentAttribute1", none, i -> {
+            document.setDocumentAttribute1("Attribute1");
+            return i;
+        }));
+    }
+
+    /**
+     * Adds the benchmarks of the hashing and equality of the keys.
+     *
+     * @param benchmarks The benchmarks.
+     */
+    private static void addKeyBenchmarks(List<Benchmark> benchmarks) {
+        String[] references = new String[KEYS];
+        Part.PartPK[] keys = new Part.PartPK[KEYS];
+        Part.PartPK[] equalKeys = new Part.PartPK[KEYS];
+        Map<Part.PartPK, Integer> map = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            references[i] = "REF" + i;
+            keys[i] = newKey(references, i);
+            equalKeys[i] = newKey(references, i);
+            map.put(newKey(references, i), i);
+        }
+        // Cached hashes are computed by the first round, as they would be in a cache
+        Map<String, String> none = Collections.emptyMap();
+        benchmarks.add(new Benchmark("plm.model.Part.PartPK.hashCodeNew", none,
+                i -> newKey(references, i & (KEYS - 1)).hashCode()));
+        benchmarks.add(new Benchmark("plm.model.Part.PartPK.hashCodeCached", none,
+                i -> keys[i & (KEYS - 1)].hashCode()));
+        benchmarks.add(new Benchmark("plm.model.Part.PartPK.fingerprint", none,
+                i -> keys[i & (KEYS - 1)].fingerprint()));
+        benchmarks.add(new Benchmark("plm.model.Part.PartPK.equalsEqual", none,
+                i -> keys[i & (KEYS - 1)].equals(equalKeys[i & (KEYS - 1)]) ? 1 : 0));
+        benchmarks.add(new Benchmark("plm.model.Part.PartPK.equalsDifferent", none,
+                i -> keys[i & (KEYS - 1)].equals(equalKeys[(i + 1) & (KEYS - 1)]) ? 1 : 0));
+        benchmarks.add(new Benchmark("plm.model.Part.PartPK.hashMapGet", none,
+                i -> map.get(newKey(references, i & (KEYS - 1)))));
+    }
+
+    private static Part.PartPK newKey(String[] references, int index) {
+        return new Part.PartPK(references[index], "A", index % 7 + 1);
+    }
+
+    /**
+     * Builds a StructureTraversal over parts without any child.
+     *
+     * @return The StructureTraversal.
+     */
+    private static StructureTraversal newStructureTraversal() {
+        StructureTraversal structureTraversal = new StructureTraversal();
+        structureTraversal.setPartStructureDao(new HibernatePartStructureDao() {
+            @Override
+            public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+                Map<String, Set<String>> childReferences = new HashMap<>();
+                for (String parentReference : parentReferences) {
+                    childReferences.put(parentReference, Collections.emptySet());
+                }
+                return childReferences;
+            }
+        });
+        return structureTraversal;
+    }
+
+    /**
+     * Builds a PartService over in-memory DAOs, whose parts are linked to the given
+     * number of documents.
+     *
+     * @param fanOut The number of documents linked to each part.
+     * @return The PartService.
+     */
+    private static PartService newPartService(int fanOut) {
+        List<Document> documents = new ArrayList<>(fanOut);
+        for (int i = 0; i < fanOut; i++) {
+            documents.add(newDocument("DOC" + i, "A", 1));
+        }
+
+        PartService partService = new PartService() {
+            @Override
+            protected Set<Document> getLinkedDocuments(Part part) {
+                // Loaded documents are copies, as handed out by the entity cache
+                Set<Document> linked = new LinkedHashSet<>();
+                for (Document document : documents) {
+                    linked.add(EntityCloner.copy(document));
+                }
+                return linked;
+            }
+        };
+        partService.setCascadeExecutor(CASCADE_EXECUTOR);
+        partService.setStructureTraversal(STRUCTURE_TRAVERSAL);
+        partService.setLifecycleEventRing(EVENT_RING);
+        partService.setReservationManager(newReservationManager());
+        partService.setPartDao(new InMemoryPartDao(fixtures(HotPathBenchmark::newPart)));
+        partService.setDocumentDao(new InMemoryDocumentDao(Collections.emptyMap()));
+        return partService;
+    }
+
+    /**
+     * Builds a DocumentService over an in-memory DAO.
+     *
+     * @return The DocumentService.
+     */
+    private static DocumentService newDocumentService() {
+        DocumentService documentService = new DocumentService();
+        documentService.setReservationManager(newReservationManager());
+        documentService.setLifecycleEventRing(EVENT_RING);
+        documentService.setDocumentDao(new InMemoryDocumentDao(fixtures(HotPathBenchmark::newDocument)));
+        return documentService;
+    }
+
+    /**
+     * Builds a ReservationManager whose claims are released straight away, so that the
+     * same entity can be reserved by every invocation.
+     *
+     * @return The ReservationManager.
+     */
+    private static ReservationManager newReservationManager() {
+        ReservationManager reservationManager = new ReservationManager();
+        reservationManager.setReservationStore(new InMemoryReservationStore() {
+            @Override
+            public boolean tryAcquire(String key, String owner) {
+                boolean acquired = super.tryAcquire(key, owner);
+                release(key, owner);
+                return acquired;
+            }
+        });
+        return reservationManager;
+    }
+
+    /**
+     * Builds the fixtures of the services: a free iteration in progress, a reserved
+     * iteration and a released iteration.
+     *
+     * @param factory Creates an entity in progress from its key.
+     * @param <E>     The type of the entities.
+     * @return The fixtures by key.
+     */
+    private static <E extends Part> Map<Part.PartPK, E> fixtures(EntityFactory<E> factory) {
+        Map<Part.PartPK, E> fixtures = new HashMap<>();
+        E free = factory.create("FREE", "A", 1);
+        E reserved = factory.create("RESERVED", "A", 2);
+        reserved.setReserved(true).setReservedBy(USER);
+        E released = factory.create("RELEASED", "A", 1);
+        released.setLifeCycleState("Released");
+        for (E fixture : Arrays.asList(free, reserved, released)) {
+            fixtures.put(new Part.PartPK(fixture.getReference(), fixture.getVersion(),
+                    fixture.getIteration()), fixture);
+        }
+        return fixtures;
+    }
+
+    private static Part newPart(String reference, String version, int iteration) {
+        Part part = new Part(reference, version, iteration);
+        part.setLifeCycleTemplate(LIFE_CYCLE_TEMPLATE)
+                .setLifeCycleState("In progress")
+                .setVersionSchema(VERSION_SCHEMA);
+        part.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+        return part;
+    }
+
+    private static Document newDocument(String reference, String version, int iteration) {
+        Document document = new Document(reference, version, iteration);
+        document.setLifeCycleTemplate(LIFE_CYCLE_TEMPLATE)
+                .setLifeCycleState("In progress")
+                .setVersionSchema(VERSION_SCHEMA);
+        document.setDocumentAttribute1("Attribute1").setDocumentAttribute2("Attribute2");
+        document.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+        return document;
+    }
+
+    /**
+     * Writes the results as JSON, in the layout named by {@link #FORMAT}.
+     *
+     * @param results The results.
+     * @return The JSON document.
+     */
+    private static String toJson(List<Result> results) {
+        StringBuilder json = new StringBuilder("{\n");
+        field(json, "format", FORMAT);
+        field(json, "jdkVersion", System.getProperty("java.version"));
+        field(json, "vmName", System.getProperty("java.vm.name"));
+        field(json, "vmVersion", System.getProperty("java.vm.version"));
+        json.append("    \"threads\" : 1,\n");
+        json.append("    \"warmupRounds\" : ").append(WARMUP_ROUNDS).append(",\n");
+        json.append("    \"warmupTimeMs\" : ").append(TimeUnit.NANOSECONDS.toMillis(WARMUP_NANOS)).append(",\n");
+        json.append("    \"rounds\" : ").append(ROUNDS).append(",\n");
+        json.append("    \"roundTimeMs\" : ").append(TimeUnit.NANOSECONDS.toMillis(ROUND_NANOS)).append(",\n");
+        field(json, "unit", "ns/op");
+        json.append("    \"results\" : [\n");
+        for (int r = 0; r < results.size(); r++) {
+            Result result = results.get(r);
+            json.append("        {\n");
+            json.append("            ");
+            string(json, "benchmark").append(" : ");
+            string(json, result.benchmark.name).append(",\n");
+            json.append("            \"params\" : {");
+            int p = 0;
+            for (Map.Entry<String, String> param : result.benchmark.params.entrySet()) {
+                json.append(p++ > 0 ? ", " : " ");
+                string(json, param.getKey()).append(" : ");
+                string(json, param.getValue());
+            }
+            json.append(p > 0 ? " },\n" : "},\n");
+            json.append("            \"mean\" : ").append(result.measurement.mean()).append(",\n");
+            json.append("            \"error\" : ").append(result.measurement.error()).append(",\n");
+            json.append("            \"scores\" : [ ");
+            double[] scores = result.measurement.getScores();
+            for (int i = 0; i < scores.length; i++) {
+                json.append(i > 0 ? ", " : "").append(scores[i]);
+            }
+            json.append(" ]\n");
+            json.append(r < results.size() - 1 ? "        },\n" : "        }\n");
+        }
+        return json.append("    ]\n}\n").toString();
+    }
+
+    private static void field(StringBuilder json, String name, String value) {
+        json.append("    ");
+        string(json, name).append(" : ");
+        string(json, value).append(",\n");
+    }
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Creates an entity in progress from its key.
+     */
+    private interface EntityFactory<E extends Part> {
+        E create(String reference, String version, int iteration);
+    }
+
+    /**
+     * A measured operation and its parameters.
+     */
+    private static class Benchmark {
+        private final String name;
+        private final Map<String, String> params;
+        private final IntToLongFunction operation;
+
+        Benchmark(String name, Map<String, String> params, IntToLongFunction operation) {
+            this.name = name;
+            this.params = new LinkedHashMap<>(params);
+            this.operation = operation;
+        }
+
+        /**
+         * Runs the warm-up rounds, then the measured ones.
+         *
+         * @return The result.
+         */
+        Result run() {
+            return new Result(this, BenchmarkHarness.measureFor(WARMUP_ROUNDS, WARMUP_NANOS, ROUNDS,
+                    ROUND_NANOS, operation));
+        }
+    }
+
+    /**
+     * Measurement of a benchmark.
+     */
+    private static class Result {
+        private final Benchmark benchmark;
+        private final BenchmarkHarness.Measurement measurement;
+
+        Result(Benchmark benchmark, BenchmarkHarness.Measurement measurement) {
+            this.benchmark = benchmark;
+            this.measurement = measurement;
+        }
+    }
+
+    /**
+     * In-memory stand-in of the PartDao: parts are read as copies of the fixtures and
+     * writes are counted then dropped.
+     */
+    private static class InMemoryPartDao extends PartDao {
+        private final Map<Part.PartPK, ? extends Part> fixtures;
+
+        InMemoryPartDao(Map<Part.PartPK, ? extends Part> fixtures) {
+            this.fixtures = fixtures;
+        }
+
+        @Override
+        public Part get(String reference, String version, int iteration) {
+            Part part = fixtures.get(new Part.PartPK(reference, version, iteration));
+            return part == null ? null : EntityCloner.copy(part);
+        }
+
+        @Override
+        public void create(Object entity) {
+            BenchmarkHarness.consume(1);
+        }
+
+        @Override
+        public void update(Object entity) {
+            BenchmarkHarness.consume(1);
+        }
+
+        @Override
+        public void createAll(Collection<?> entities) {
+            BenchmarkHarness.consume(entities.size());
+        }
+
+        @Override
+        public void updateAll(Collection<?> entities) {
+            BenchmarkHarness.consume(entities.size());
+        }
+    }
+
+    /**
+     * In-memory stand-in of the DocumentDao: documents are read as copies of the fixtures
+     * and writes are counted then dropped.
+     */
+    private static class InMemoryDocumentDao extends DocumentDao {
+        private final Map<Part.PartPK, Document> fixtures;
+
+        InMemoryDocumentDao(Map<Part.PartPK, Document> fixtures) {
+            this.fixtures = fixtures;
+        }
+
+        @Override
+        public Document get(String reference, String version, int iteration) {
+            Document document = fixtures.get(new Part.PartPK(reference, version, iteration));
+            return document == null ? null : EntityCloner.copy(document);
+        }
+
+        @Override
+        public void create(Object entity) {
+            BenchmarkHarness.consume(1);
+        }
+
+        @Override
+        public void update(Object entity) {
+            BenchmarkHarness.consume(1);
+        }
+
+        @Override
+        public void createAll(Collection<?> entities) {
+            BenchmarkHarness.consume(entities.size());
+        }
+
+        @Override
+        public void updateAll(Collection<?> entities) {
+            BenchmarkHarness.consume(entities.size());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package plm.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import plm.events.EventConsumer;
+import plm.events.EventConsumerOptions;
+import plm.events.LifecycleEvent;
+import plm.events.LifecycleEventHandler;
+import plm.events.LifecycleEventRing;
+import plm.events.WaitStrategy;
+import plm.model.Part;
+
+/**
+ * Measures the latency of publishing to the {@link LifecycleEventRing} from several
+ * request threads, without consumer, with a fast consumer, then with a fast consumer and
+ * a slow one, which must not change the latency of the publishers.
+ *
+ * After every run, the consumers must have received the events in order, and every
+ * event must have been either handled or counted as lost. Events are only dropped by
+ * publishers descheduled for a whole lap of the ring, e.g. with fewer processors than
+ * publishers.
+ */
+public class LifecycleEventRingBenchmark {
+
+    private static final int PUBLISHERS = 4;
+
+    private static final int EVENTS_PER_PUBLISHER = 500_000;
+
+    // Latency measured for one event out of SAMPLING
+    private static final int SAMPLING = 8;
+
+    private static final int CAPACITY = LifecycleEventRing.DEFAULT_CAPACITY;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("--------------------Lifecycle event ring benchmark--------------------");
+        System.out.printf("%d publishers x %d events, ring of %d slots, %d processors%n", PUBLISHERS,
+                EVENTS_PER_PUBLISHER, CAPACITY, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-16s %10s %10s %10s %10s %12s %8s   %s%n", "consumers", "p50 (ns)", "p99 (ns)",
+                "p99.9 (ns)", "max (ns)", "events/s", "dropped", "handled / lost");
+        for (int consumers = 0; consumers <= 2; consumers++) {
+            // warm-up then measure
+            run(consumers, false);
+            run(consumers, true);
+        }
+    }
+
+    /**
+     * Publishes from every publisher, with the given consumers, and reports.
+     */
+    private static void run(int consumers, boolean report) throws InterruptedException {
+        LifecycleEventRing ring = new LifecycleEventRing(CAPACITY);
+        List<CountingHandler> handlers = new ArrayList<>();
+        List<EventConsumer> started = new ArrayList<>();
+        if (consumers >= 1) {
+            CountingHandler fast = new CountingHandler(0);
+            handlers.add(fast);
+            started.add(ring.subscribe("fast", fast, new EventConsumerOptions()
+                    .setWaitStrategy(WaitStrategy.yielding())));
+        }
+        if (consumers >= 2) {
+            // 20 microseconds per event: far slower than the publishers
+            CountingHandler slow = new CountingHandler(TimeUnit.MICROSECONDS.toNanos(20));
+            handlers.add(slow);
+            started.add(ring.subscribe("slow", slow, new EventConsumerOptions().setBatchSize(16)));
+        }
+
+        long[][] latencies = new long[PUBLISHERS][EVENTS_PER_PUBLISHER / SAMPLING];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> publishers = new ArrayList<>();
+        for (int p = 0; p < PUBLISHERS; p++) {
+            long[] samples = latencies[p];
+            String user = "user" + p;
+            Thread publisher = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < EVENTS_PER_PUBLISHER; i++) {
+                    if (i % SAMPLING == 0) {
+                        long begin = System.nanoTime();
+                        ring.publish(LifecycleEvent.Operation.SET_STATE, Part.class, "REF", "A", i, user, "Released");
+                        samples[i / SAMPLING] = System.nanoTime() - begin;
+                    } else {
+                        ring.publish(LifecycleEvent.Operation.SET_STATE, Part.class, "REF", "A", i, user, "Released");
+                    }
+                }
+            });
+            publisher.start();
+            publishers.add(publisher);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long published = ring.getPublished();
+        StringBuilder outcome = new StringBuilder();
+        for (int c = 0; c < started.size(); c++) {
+            EventConsumer consumer = started.get(c);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (consumer.getCursor() < published && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            consumer.close();
+            CountingHandler handler = handlers.get(c);
+            if (handler.outOfOrder) {
+                throw new IllegalStateException(consumer.getName() + " received events out of order");
+            }
+            if (handler.handled + consumer.getLost() != published) {
+                throw new IllegalStateException(consumer.getName() + " handled " + handler.handled + " and lost "
+                        + consumer.getLost() + " of " + published + " events");
+            }
+            outcome.append(String.format("%s %d / %d  ", consumer.getName(), handler.handled, consumer.getLost()));
+        }
+
+        if (report) {
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("%-16s %10d %10d %10d %10d %12.0f %8d   %s%n",
+                    consumers == 0 ? "none" : consumers == 1 ? "fast" : "fast + slow",
+                    percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), all[all.length - 1],
+                    published / (elapsed / 1e9), ring.getDropped(), outcome);
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * Handler counting the events, checking their order and optionally slow.
+     */
+    private static final class CountingHandler implements LifecycleEventHandler {
+        final long delayNanos;
+        long handled;
+        long lastSequence = -1;
+        boolean outOfOrder;
+
+        CountingHandler(long delayNanos) {
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public void onEvent(LifecycleEvent event, boolean endOfBatch) {
+            if (event.getSequence() <= lastSequence) {
+                outOfOrder = true;
+            }
+            lastSequence = event.getSequence();
+            handled++;
+            if (delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+        }
+    }
+}
@@ -6,14 +6,11 @@ import plm.model.Document;
 import plm.model.VersionSchema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-
-import java.util.Locale;
-import java.util.ResourceBundle;
+import plm.i18n.MessageCatalog;
 
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
-    private static final ResourceBundle bundle = ResourceBundle.getBundle("messages",
-            Locale.ENGLISH);
+    private static final MessageCatalog catalog = MessageCatalog.forLocale(MessageCatalog.LOG_LOCALE);
 
     public static void main(String[] args) {
         // Create instances of dependent objects
@@ -33,11 +30,11 @@ public class Main {
 
             part.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
 
-            logger.info(bundle.getString("part.reference") + ": " + part.getReference());
-            logger.info(bundle.getString("part.version") + ": " + part.getVersion());
-            logger.info(bundle.getString("part.iteration") + ": " + part.getIteration());
-            logger.info(bundle.getString("partAttribute1") + ": " + part.getPartAttribute1());
-            logger.info(bundle.getString("partAttribute2") + ": " + part.getPartAttribute2());
+            logger.info(catalog.getString("part.reference") + ": " + part.getReference());
+            logger.info(catalog.getString("part.version") + ": " + part.getVersion());
+            logger.info(catalog.getString("part.iteration") + ": " + part.getIteration());
+            logger.info(catalog.getString("partAttribute1") + ": " + part.getPartAttribute1());
+            logger.info(catalog.getString("partAttribute2") + ": " + part.getPartAttribute2());
             logger.info("Valid setters executed successfully");
         } catch (IllegalArgumentException e) {
             logger.error("Validation failed for valid setters: {}", e.getMessage());
@@ -47,37 +44,37 @@ public class Main {
         try {
             part.setReservedBy("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidReservedBy"), e.getMessage());
+            logger.error(catalog.getString("error.invalidReservedBy"), e.getMessage());
         }
 
         try {
             part.setLifeCycleTemplate(null);
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.nullLifeCycleTemplate"), e.getMessage());
+            logger.error(catalog.getString("error.nullLifeCycleTemplate"), e.getMessage());
         }
 
         try {
             part.setLifeCycleState("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidLifeCycleState"), e.getMessage());
+            logger.error(catalog.getString("error.invalidLifeCycleState"), e.getMessage());
         }
 
         try {
             part.setVersionSchema(null);
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.nullVersionSchema"), e.getMessage());
+            logger.error(catalog.getString("error.nullVersionSchema"), e.getMessage());
         }
 
         try {
             part.setPartAttribute1("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidPartAttribute1"), e.getMessage());
+            logger.error(catalog.getString("error.invalidPartAttribute1"), e.getMessage());
         }
 
         try {
             part.setPartAttribute2("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidPartAttribute2"), e.getMessage());
+            logger.error(catalog.getString("error.invalidPartAttribute2"), e.getMessage());
         }
 
         System.out.println("-----------------------Testing the Document object methods-----------------------");
@@ -93,13 +90,13 @@ public class Main {
 
             document.setDocumentAttribute1("DocumentAttr1").setDocumentAttribute2("DocumentAttr2");
 
-            logger.info(bundle.getString("part.reference") + ": " + document.getReference());
-            logger.info(bundle.getString("part.version") + ": " + document.getVersion());
-            logger.info(bundle.getString("part.iteration") + ": " + document.getIteration());
-            logger.info(bundle.getString("partAttribute1") + ": " + document.getPartAttribute1());
-            logger.info(bundle.getString("partAttribute2") + ": " + document.getPartAttribute2());
-            logger.info(bundle.getString("document.attribute1") + ": " + document.getDocumentAttribute1());
-            logger.info(bundle.getString("document.attribute2") + ": " + document.getDocumentAttribute2());
+            logger.info(catalog.getString("part.reference") + ": " + document.getReference());
+            logger.info(catalog.getString("part.version") + ": " + document.getVersion());
+            logger.info(catalog.getString("part.iteration") + ": " + document.getIteration());
+            logger.info(catalog.getString("partAttribute1") + ": " + document.getPartAttribute1());
+            logger.info(catalog.getString("partAttribute2") + ": " + document.getPartAttribute2());
+            logger.info(catalog.getString("document.attribute1") + ": " + document.getDocumentAttribute1());
+            logger.info(catalog.getString("document.attribute2") + ": " + document.getDocumentAttribute2());
             logger.info("Valid setters executed successfully");
         } catch (IllegalArgumentException e) {
             logger.error("Validation failed for valid setters: {}", e.getMessage());
@@ -109,49 +106,49 @@ public class Main {
         try {
             document.setReservedBy("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidReservedBy"), e.getMessage());
+            logger.error(catalog.getString("error.invalidReservedBy"), e.getMessage());
         }
 
         try {
             document.setLifeCycleTemplate(null);
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.nullLifeCycleTemplate"), e.getMessage());
+            logger.error(catalog.getString("error.nullLifeCycleTemplate"), e.getMessage());
         }
 
         try {
             document.setLifeCycleState("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidLifeCycleState"), e.getMessage());
+            logger.error(catalog.getString("error.invalidLifeCycleState"), e.getMessage());
         }
 
         try {
             document.setVersionSchema(null);
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.nullVersionSchema"), e.getMessage());
+            logger.error(catalog.getString("error.nullVersionSchema"), e.getMessage());
         }
 
         try {
             document.setPartAttribute1("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidPartAttribute1"), e.getMessage());
+            logger.error(catalog.getString("error.invalidPartAttribute1"), e.getMessage());
         }
 
         try {
             document.setPartAttribute2("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidPartAttribute2"), e.getMessage());
+            logger.error(catalog.getString("error.invalidPartAttribute2"), e.getMessage());
         }
 
         try {
             document.setDocumentAttribute1("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidDocumentAttribute1"), e.getMessage());
+            logger.error(catalog.getString("error.invalidDocumentAttribute1"), e.getMessage());
         }
 
         try {
             document.setDocumentAttribute2("");
         } catch (IllegalArgumentException e) {
-            logger.error(bundle.getString("error.invalidDocumentAttribute2"), e.getMessage());
+            logger.error(catalog.getString("error.invalidDocumentAttribute2"), e.getMessage());
         }
     }
 }
\ No newline at end of file
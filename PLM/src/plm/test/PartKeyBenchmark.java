@@ -0,0 +1,112 @@
+package plm.test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntToLongFunction;
+
+import plm.model.Part;
+
+/**
+ * Micro-benchmark of the composite keys of the entities.
+ *
+ * Compares the former keys (hashed with {@code Objects.hash}, which boxes the iteration
+ * and allocates an array on every call) with {@link Part.PartPK} (hash computed once and
+ * cached, 64-bit fingerprint) on the operations of the caches and indexes: hashing a new
+ * key, hashing the same key again and looking a key up in a HashMap.
+ * Operations are measured by the {@link BenchmarkHarness}, keeping the best round.
+ */
+public class PartKeyBenchmark {
+
+    private static final int KEYS = 10_000;
+
+    private static final int OPERATIONS = 2_000_000;
+
+    public static void main(String[] args) {
+        String[] references = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            references[i] = "REF" + i;
+        }
+        LegacyKey[] legacyKeys = new LegacyKey[KEYS];
+        Part.PartPK[] keys = new Part.PartPK[KEYS];
+        Map<LegacyKey, Integer> legacyMap = new HashMap<>();
+        Map<Part.PartPK, Integer> map = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            legacyKeys[i] = new LegacyKey(references[i], "A", i % 7 + 1);
+            keys[i] = new Part.PartPK(references[i], "A", i % 7 + 1);
+            legacyMap.put(new LegacyKey(references[i], "A", i % 7 + 1), i);
+            map.put(new Part.PartPK(references[i], "A", i % 7 + 1), i);
+        }
+
+        System.out.println("-------------------------Composite key benchmark--------------------------");
+        System.out.printf("%-28s %14s %14s%n", "operation", "legacy (ns)", "PartPK (ns)");
+        report("hash of a new key",
+                i -> new LegacyKey(references[i], "A", i % 7 + 1).hashCode(),
+                i -> new Part.PartPK(references[i], "A", i % 7 + 1).hashCode());
+        report("hash of the same key",
+                i -> legacyKeys[i].hashCode(),
+                i -> keys[i].hashCode());
+        report("HashMap lookup",
+                i -> legacyMap.get(new LegacyKey(references[i], "A", i % 7 + 1)),
+                i -> map.get(new Part.PartPK(references[i], "A", i % 7 + 1)));
+        report("fingerprint (vs legacy hash)",
+                i -> legacyKeys[i].hashCode(),
+                i -> keys[i].fingerprint());
+        System.out.println("(sink " + (BenchmarkHarness.getSink() & 1) + ")");
+    }
+
+    /**
+     * Measures an operation on both keys and prints the time of one operation.
+     *
+     * @param operation The name of the operation.
+     * @param legacy    The operation on the legacy keys, given the index of a key.
+     * @param current   The operation on PartPK, given the index of a key.
+     */
+    private static void report(String operation, IntToLongFunction legacy,
+                               IntToLongFunction current) {
+        System.out.printf("%-28s %14.2f %14.2f%n", operation, measure(legacy), measure(current));
+    }
+
+    /**
+     * Measures an operation.
+     *
+     * @param operation The operation, given the index of a key.
+     * @return The best time of one operation over the rounds, in nanoseconds.
+     */
+    private static double measure(IntToLongFunction operation) {
+        return BenchmarkHarness.measure(OPERATIONS, i -> operation.applyAsLong(i % KEYS)).best();
+    }
+
+    /**
+     * Former composite key, hashed with Objects.hash.
+     */
+    private static class LegacyKey {
+        private final String reference;
+        private final String version;
+        private final int iteration;
+
+        LegacyKey(String reference, String version, int iteration) {
+            this.reference = reference;
+            this.version = version;
+            this.iteration = iteration;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(iteration, reference, version);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            LegacyKey other = (LegacyKey) obj;
+            return iteration == other.iteration && Objects.equals(reference, other.reference)
+                    && Objects.equals(version, other.version);
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package plm.test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.Query;
+
+import plm.dao.DocumentDao;
+import plm.dao.HibernateDocumentLinkDao;
+import plm.dao.DocumentLinkIndex;
+import plm.dao.EntityCache;
+import plm.dao.EntityHeadDao;
+import plm.dao.PartDao;
+import plm.dao.HibernatePartStructureDao;
+import plm.dao.ReferenceCache;
+import plm.events.LifecycleEventRing;
+import plm.model.AbstractEntity;
+import plm.model.DeltaCodec;
+import plm.model.Document;
+import plm.model.EntityCloner;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.PartDocumentLink;
+import plm.model.VersionSchema;
+import plm.services.CascadeExecutor;
+import plm.services.InMemoryReservationStore;
+import plm.services.PartService;
+import plm.services.RejectedOperationException;
+import plm.services.ReservationManager;
+import plm.services.StructureTraversal;
+
+/**
+ * Checks scenarios of the lifecycle operations of {@link PartService} against in-memory
+ * DAOs, printing every check and throwing an IllegalStateException on the first failure.
+ */
+public class PartServiceCheck {
+
+    private static final VersionSchema VERSION_SCHEMA = new VersionSchema();
+
+    private static final CascadeExecutor CASCADE_EXECUTOR = new CascadeExecutor();
+
+    public static void main(String[] args) {
+        System.out.println("-----------------------Part service checks-----------------------");
+        try {
+            checkDocumentsOnOtherTemplates();
+            checkDocumentsStoredAsDeltas();
+            checkDocumentsSharedInStructure();
+        } finally {
+            CASCADE_EXECUTOR.destroy();
+        }
+    }
+
+    /**
+     * Sets the state of parts whose documents follow other lifecycle templates: each
+     * document must be checked against its own template, not the template of the part.
+     */
+    private static void checkDocumentsOnOtherTemplates() {
+        LifeCycleTemplate partTemplate = new LifeCycleTemplate("In progress",
+                Arrays.asList("In progress", "Under validation", "Released"),
+                Collections.singleton("Released"));
+        // "Draft" is not a state of the part template
+        LifeCycleTemplate draftTemplate = new LifeCycleTemplate("Draft",
+                Arrays.asList("Draft", "Released"), Collections.singleton("Released"))
+                .addTransition("Draft", "Released");
+        // "In progress" is a state of both templates, but cannot be released directly here
+        LifeCycleTemplate reviewedTemplate = new LifeCycleTemplate("In progress",
+                Arrays.asList("In progress", "Reviewed", "Released"), Collections.singleton("Released"))
+                .addTransition("In progress", "Reviewed")
+                .addTransition("Reviewed", "Released");
+
+        InMemoryPlm plm = new InMemoryPlm();
+        plm.addPart("P1", partTemplate, "Under validation", document("D1", draftTemplate, "Draft"));
+        plm.addPart("P2", partTemplate, "Under validation", document("D2", reviewedTemplate, "In progress"));
+
+        plm.partService.setState("user1", "P1", "A", 1, "Released");
+        check("Released".equals(plm.documents.get("D1").getLifeCycleState()),
+                "document in a state unknown to the template of its part is released");
+
+        try {
+            plm.partService.setState("user1", "P2", "A", 1, "Released");
+            throw new IllegalStateException("Failed: a document not allowed to move was released");
+        } catch (RejectedOperationException e) {
+            check("In progress".equals(plm.documents.get("D2").getLifeCycleState())
+                            && "Under validation".equals(plm.parts.get("P2").getLifeCycleState()),
+                    "document not allowed to move by its own template is rejected");
+        }
+    }
+
+    /**
+     * Reserves and sets the state of parts whose documents are stored as deltas, through
+     * the DocumentDao and HibernateDocumentLinkDao: the linked documents must be rebuilt
+     * before they are copied or written back, else their unchanged attributes are lost.
+     */
+    private static void checkDocumentsStoredAsDeltas() {
+        LifeCycleTemplate lifeCycleTemplate = new LifeCycleTemplate("In progress",
+                Arrays.asList("In progress", "Under validation", "Released"),
+                Collections.singleton("Released"));
+
+        StoredPlm plm = new StoredPlm();
+        plm.addPart("P1", lifeCycleTemplate, "D1");
+        plm.addPart("P2", lifeCycleTemplate, "D2");
+
+        plm.partService.reserve("user1", "P1", "A", 2);
+        Document reserved = plm.documentDao.get("D1", "A", 3);
+        check("Attribute1".equals(reserved.getDocumentAttribute1())
+                        && "Changed".equals(reserved.getDocumentAttribute2()) && reserved.isReserved(),
+                "next iteration of a document stored as a delta keeps all its attributes");
+
+        plm.partService.setState("user1", "P2", "A", 2, "Under validation");
+        Document moved = plm.documentDao.get("D2", "A", 2);
+        check("Attribute1".equals(moved.getDocumentAttribute1())
+                        && "Changed".equals(moved.getDocumentAttribute2())
+                        && "Under validation".equals(moved.getLifeCycleState()),
+                "document stored as a delta keeps all its attributes when its state is set");
+    }
+
+    /**
+     * Sets the state of and revises parts whose document is also linked to the part below
+     * them: the document must be written once, its next version created once.
+     */
+    private static void checkDocumentsSharedInStructure() {
+        LifeCycleTemplate lifeCycleTemplate = new LifeCycleTemplate("In progress",
+                Arrays.asList("In progress", "Under validation", "Released"),
+                Collections.singleton("Released"));
+
+        InMemoryPlm plm = new InMemoryPlm();
+        Document shared = document("D1", lifeCycleTemplate, "In progress");
+        plm.addPart("P1", lifeCycleTemplate, "In progress", shared);
+        plm.addPart("C1", lifeCycleTemplate, "In progress", shared);
+        plm.structure.put("P1", Collections.singleton("C1"));
+        plm.partService.setState("user1", "P1", "A", 1, "Under validation");
+        check("Under validation".equals(plm.documents.get("D1").getLifeCycleState())
+                        && "Under validation".equals(plm.parts.get("C1").getLifeCycleState()),
+                "document linked to a part and to the part below is moved once");
+
+        Document released = document("D2", lifeCycleTemplate, "Released");
+        plm.addPart("P2", lifeCycleTemplate, "Released", released);
+        plm.addPart("C2", lifeCycleTemplate, "Released", released);
+        plm.structure.put("P2", Collections.singleton("C2"));
+        plm.partService.revise("user1", "P2", "A", 1);
+        check("B".equals(plm.documents.get("D2").getVersion())
+                        && "B".equals(plm.parts.get("C2").getVersion()),
+                "document linked to a part and to the part below is revised once");
+    }
+
+    private static Document document(String reference, LifeCycleTemplate lifeCycleTemplate, String state) {
+        Document document = new Document(reference, "A", 1);
+        document.setLifeCycleTemplate(lifeCycleTemplate).setLifeCycleState(state).setVersionSchema(VERSION_SCHEMA);
+        document.setDocumentAttribute1("Attribute1").setDocumentAttribute2("Attribute2");
+        return document;
+    }
+
+    private static void check(boolean condition, String description) {
+        if (!condition) {
+            throw new IllegalStateException("Failed: " + description);
+        }
+        System.out.println("OK      " + description);
+    }
+
+    /**
+     * PartService over in-memory DAOs holding the latest iteration of each reference. The
+     * DAOs reject the batches writing the same key twice, as the database would.
+     */
+    private static final class InMemoryPlm {
+        final Map<String, Part> parts = new HashMap<>();
+        final Map<String, Document> documents = new HashMap<>();
+        final Map<String, Set<String>> documentLinks = new HashMap<>();
+        final Map<String, Set<String>> structure = new HashMap<>();
+        final PartService partService;
+
+        InMemoryPlm() {
+            StructureTraversal structureTraversal = new StructureTraversal();
+            structureTraversal.setPartStructureDao(new HibernatePartStructureDao() {
+                @Override
+                public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+                    Map<String, Set<String>> childReferences = new HashMap<>();
+                    for (String parentReference : parentReferences) {
+                        childReferences.put(parentReference,
+                                structure.getOrDefault(parentReference, Collections.emptySet()));
+                    }
+                    return childReferences;
+                }
+            });
+            structureTraversal.setPartDao(new PartDao() {
+                @Override
+                public Map<String, Part> getLatest(Collection<String> references) {
+                    Map<String, Part> latest = new HashMap<>();
+                    for (String reference : references) {
+                        latest.put(reference, parts.get(reference));
+                    }
+                    return latest;
+                }
+            });
+            structureTraversal.setDocumentLinkDao(new HibernateDocumentLinkDao() {
+                @Override
+                public Map<Part.PartPK, Set<Document>> getLinkedDocuments(Collection<? extends Part.PartPK> keys) {
+                    Map<Part.PartPK, Set<Document>> linked = new HashMap<>();
+                    for (Part.PartPK key : keys) {
+                        linked.put(key, linkedDocuments(key.getReference()));
+                    }
+                    return linked;
+                }
+            });
+            ReservationManager reservationManager = new ReservationManager();
+            reservationManager.setReservationStore(new InMemoryReservationStore());
+
+            partService = new PartService() {
+                @Override
+                protected Set<Document> getLinkedDocuments(Part part) {
+                    return linkedDocuments(part.getReference());
+                }
+            };
+            partService.setPartDao(new PartDao() {
+                @Override
+                public Part get(String reference, String version, int iteration) {
+                    return parts.get(reference);
+                }
+
+                @Override
+                public void create(Object entity) {
+                    update(entity);
+                }
+
+                @Override
+                public void update(Object entity) {
+                    parts.put(((Part) entity).getReference(), (Part) entity);
+                }
+
+                @Override
+                public void createAll(Collection<?> entities) {
+                    updateAll(entities);
+                }
+
+                @Override
+                public void updateAll(Collection<?> entities) {
+                    entities.forEach(this::update);
+                }
+            });
+            partService.setDocumentDao(new DocumentDao() {
+                @Override
+                public void createAll(Collection<?> entities) {
+                    updateAll(entities);
+                }
+
+                @Override
+                public void updateAll(Collection<?> entities) {
+                    Set<Part.PartPK> keys = new HashSet<>();
+                    for (Object entity : entities) {
+                        Document document = (Document) entity;
+                        if (!keys.add(new Part.PartPK(document.getReference(), document.getVersion(),
+                                document.getIteration()))) {
+                            throw new IllegalStateException("Document " + document.getReference()
+                                    + " written twice in a batch");
+                        }
+                        documents.put(document.getReference(), document);
+                    }
+                }
+            });
+            partService.setReservationManager(reservationManager);
+            partService.setCascadeExecutor(CASCADE_EXECUTOR);
+            partService.setStructureTraversal(structureTraversal);
+            partService.setLifecycleEventRing(new LifecycleEventRing());
+        }
+
+        Set<Document> linkedDocuments(String partReference) {
+            Set<Document> linked = new LinkedHashSet<>();
+            for (String reference : documentLinks.getOrDefault(partReference, Collections.emptySet())) {
+                linked.add(documents.get(reference));
+            }
+            return linked;
+        }
+
+        void addPart(String reference, LifeCycleTemplate lifeCycleTemplate, String state, Document... linked) {
+            Part part = new Part(reference, "A", 1);
+            part.setLifeCycleTemplate(lifeCycleTemplate).setLifeCycleState(state).setVersionSchema(VERSION_SCHEMA);
+            part.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+            parts.put(reference, part);
+            List<String> references = new ArrayList<>();
+            for (Document document : linked) {
+                documents.put(document.getReference(), document);
+                references.add(document.getReference());
+            }
+            documentLinks.put(reference, new LinkedHashSet<>(references));
+        }
+    }
+
+    /**
+     * PartService over the DocumentDao and HibernateDocumentLinkDao, whose session stores
+     * copies of the rows in memory. Documents are stored as deltas between snapshots, the
+     * parts and the reservations in memory.
+     */
+    private static final class StoredPlm {
+        final Map<String, Part> parts = new HashMap<>();
+        final Map<Part.PartPK, Document> rows = new HashMap<>();
+        final List<PartDocumentLink> links = new ArrayList<>();
+        final DocumentDao documentDao;
+        final PartService partService;
+
+        StoredPlm() {
+            SessionFactory factory = sessionFactory();
+            ReferenceCache references = new ReferenceCache() {
+                @Override
+                public <E extends AbstractEntity> E resolve(E entity) {
+                    // the templates are not stored
+                    return entity;
+                }
+            };
+            EntityHeadDao heads = new EntityHeadDao() {
+                {
+                    sessionFactory = factory;
+                }
+            };
+            documentDao = new DocumentDao() {
+                {
+                    sessionFactory = factory;
+                    referenceCache = references;
+                    entityHeadDao = heads;
+                    entityCache = new EntityCache();
+                }
+            };
+            documentDao.setSnapshotInterval(4);
+            HibernateDocumentLinkDao documentLinkDao = new HibernateDocumentLinkDao() {
+                {
+                    sessionFactory = factory;
+                    referenceCache = references;
+                    documentLinkIndex = new DocumentLinkIndex();
+                    documentDao = StoredPlm.this.documentDao;
+                }
+            };
+
+            StructureTraversal structureTraversal = new StructureTraversal();
+            structureTraversal.setPartStructureDao(new HibernatePartStructureDao() {
+                @Override
+                public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+                    Map<String, Set<String>> childReferences = new HashMap<>();
+                    for (String parentReference : parentReferences) {
+                        childReferences.put(parentReference, Collections.emptySet());
+                    }
+                    return childReferences;
+                }
+            });
+            ReservationManager reservationManager = new ReservationManager();
+            reservationManager.setReservationStore(new InMemoryReservationStore());
+
+            partService = new PartService();
+            partService.setPartDao(new PartDao() {
+                @Override
+                public Part get(String reference, String version, int iteration) {
+                    return parts.get(reference);
+                }
+
+                @Override
+                public void create(Object entity) {
+                    update(entity);
+                }
+
+                @Override
+                public void update(Object entity) {
+                    parts.put(((Part) entity).getReference(), (Part) entity);
+                }
+
+                @Override
+                public void createAll(Collection<?> entities) {
+                    updateAll(entities);
+                }
+
+                @Override
+                public void updateAll(Collection<?> entities) {
+                    entities.forEach(this::update);
+                }
+            });
+            partService.setDocumentDao(documentDao);
+            partService.setDocumentLinkDao(documentLinkDao);
+            partService.setReservationManager(reservationManager);
+            partService.setCascadeExecutor(CASCADE_EXECUTOR);
+            partService.setStructureTraversal(structureTraversal);
+            partService.setLifecycleEventRing(new LifecycleEventRing());
+        }
+
+        /**
+         * Adds the second iteration of a part, linked to a document whose second iteration
+         * changes one attribute and is stored as a delta of the first.
+         */
+        void addPart(String reference, LifeCycleTemplate lifeCycleTemplate, String documentReference) {
+            Part part = new Part(reference, "A", 2);
+            part.setLifeCycleTemplate(lifeCycleTemplate).setLifeCycleState("In progress")
+                    .setVersionSchema(VERSION_SCHEMA);
+            part.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+            parts.put(reference, part);
+
+            Document base = document(documentReference, lifeCycleTemplate, "In progress");
+            Document next = EntityCloner.nextIteration(base, 2);
+            next.setDocumentAttribute2("Changed");
+            store(base);
+            store(DeltaCodec.encode(next, base));
+            links.add(new PartDocumentLink(reference, documentReference));
+        }
+
+        private void store(Object row) {
+            if (row instanceof Document) {
+                Document document = (Document) row;
+                rows.put(new Document.DocumentPK(document.getReference(), document.getVersion(),
+                        document.getIteration()), document.copy());
+            }
+        }
+
+        /**
+         * Creates a SessionFactory whose current session reads and writes copies of the
+         * rows of the documents and the links, and ignores the heads.
+         */
+        private SessionFactory sessionFactory() {
+            Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, arguments) -> {
+                        switch (method.getName()) {
+                            case "get":
+                                Document row = rows.get(arguments[1]);
+                                return arguments[0] == Document.class && row != null ? row.copy() : null;
+                            case "save":
+                            case "update":
+                            case "merge":
+                                store(arguments[0]);
+                                return null;
+                            case "createQuery":
+                                return query((String) arguments[0]);
+                            default:
+                                return neutral(proxy, method);
+                        }
+                    });
+            return (SessionFactory) Proxy.newProxyInstance(SessionFactory.class.getClassLoader(),
+                    new Class<?>[]{SessionFactory.class}, (proxy, method, arguments) ->
+                            "getCurrentSession".equals(method.getName()) ? session : neutral(proxy, method));
+        }
+
+        /**
+         * Creates a query over the documents or the links, finding nothing for the others.
+         */
+        private Query<?> query(String hql) {
+            Map<String, Object> parameters = new HashMap<>();
+            return (Query<?>) Proxy.newProxyInstance(Query.class.getClassLoader(),
+                    new Class<?>[]{Query.class}, (proxy, method, arguments) -> {
+                        switch (method.getName()) {
+                            case "setParameter":
+                            case "setParameterList":
+                                parameters.put((String) arguments[0], arguments[1]);
+                                return proxy;
+                            case "getResultList":
+                                return results(hql, parameters);
+                            default:
+                                return neutral(proxy, method);
+                        }
+                    });
+        }
+
+        private List<Object> results(String hql, Map<String, Object> parameters) {
+            List<Object> results = new ArrayList<>();
+            if (hql.startsWith("select d from Document d")) {
+                // groups of keys ORed together, see HibernateDocumentLinkDao
+                for (Document row : rows.values()) {
+                    for (int group = 0; parameters.containsKey("version" + group); group++) {
+                        if (row.getVersion().equals(parameters.get("version" + group))
+                                && parameters.get("iteration" + group).equals(row.getIteration())
+                                && ((Collection<?>) parameters.get("references" + group))
+                                .contains(row.getReference())) {
+                            results.add(row.copy());
+                            break;
+                        }
+                    }
+                }
+            } else if (hql.startsWith("select l from PartDocumentLink l")) {
+                Collection<?> references = (Collection<?>) parameters.get("references");
+                for (PartDocumentLink link : links) {
+                    if (references.contains(link.getPartReference())) {
+                        results.add(link);
+                    }
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Returns the neutral value of a method not implemented by the stand-ins: the proxy
+     * itself for the fluent methods, zero or false for the primitive types, else null.
+     */
+    private static Object neutral(Object proxy, Method method) {
+        Class<?> type = method.getReturnType();
+        if (type.isInstance(proxy)) {
+            return proxy;
+        }
+        if (type.isPrimitive() && type != void.class) {
+            return Array.get(Array.newInstance(type, 1), 0);
+        }
+        return null;
+    }
+}
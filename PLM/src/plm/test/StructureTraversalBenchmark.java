@@ -0,0 +1,209 @@
+package plm.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import plm.dao.HibernateDocumentLinkDao;
+import plm.dao.PartDao;
+import plm.dao.HibernatePartStructureDao;
+import plm.model.Document;
+import plm.model.EntityCloner;
+import plm.model.LifeCycleTemplate;
+import plm.model.Part;
+import plm.model.VersionSchema;
+import plm.services.RejectedOperationException;
+import plm.services.StructureOptions;
+import plm.services.StructureTraversal;
+
+/**
+ * Measures the traversal of a multi-level structure by the {@link StructureTraversal},
+ * running the work of a revision (next version of every part and of its documents) on
+ * the calling thread and split across the fork/join pool.
+ *
+ * The structure has several levels of subassemblies, each linked to parts of the next
+ * level which are shared with other subassemblies, so that every part must be revised
+ * exactly once. The DAOs are in memory: the loading phase only measures the traversal
+ * itself. A structure closing a cycle is then checked to be rejected.
+ */
+public class StructureTraversalBenchmark {
+
+    private static final int LEVELS = 7;
+
+    private static final int MAX_WIDTH = 20_000;
+
+    private static final int CHILDREN = 6;
+
+    private static final int DOCUMENTS = 4;
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int ROUNDS = 10;
+
+    private static final LifeCycleTemplate LIFE_CYCLE_TEMPLATE = new LifeCycleTemplate("In progress",
+            Arrays.asList("In progress", "Under validation", "Released"),
+            Collections.singleton("Released"));
+
+    private static final VersionSchema VERSION_SCHEMA = new VersionSchema();
+
+    public static void main(String[] args) {
+        Map<String, Part> parts = new HashMap<>();
+        Map<String, Set<String>> structure = new HashMap<>();
+        List<String> level = Collections.singletonList("P0-0");
+        parts.put("P0-0", newPart("P0-0"));
+        for (int depth = 1; depth < LEVELS; depth++) {
+            int width = Math.min(MAX_WIDTH, level.size() * CHILDREN / 2 + 1);
+            List<String> next = new ArrayList<>(width);
+            for (int i = 0; i < width; i++) {
+                String reference = "P" + depth + "-" + i;
+                parts.put(reference, newPart(reference));
+                next.add(reference);
+            }
+            // Children picked across the next level: most parts have several parents
+            for (int p = 0; p < level.size(); p++) {
+                Set<String> children = new LinkedHashSet<>();
+                for (int c = 0; c < CHILDREN; c++) {
+                    children.add(next.get((int) ((p * 7919L + c * 104729L) % width)));
+                }
+                structure.put(level.get(p), children);
+            }
+            level = next;
+        }
+        int reachable = countReachable(structure, "P0-0");
+
+        StructureTraversal traversal = newTraversal(parts, structure);
+        Part root = parts.get("P0-0");
+
+        System.out.println("-----------------------Structure traversal benchmark-----------------------");
+        System.out.printf("%d levels, %d parts below the root (%d links), %d documents each, %d processors%n",
+                LEVELS, reachable - 1, structure.values().stream().mapToInt(Set::size).sum(), DOCUMENTS,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %10s %14s%n", "mode", "parts", "latency (ms)");
+        for (boolean parallel : new boolean[] {false, true}) {
+            traversal.setOptions("revise", new StructureOptions()
+                    .setParallelThreshold(parallel ? 64 : Integer.MAX_VALUE));
+            long best = Long.MAX_VALUE;
+            int revised = 0;
+            for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+                long start = System.nanoTime();
+                revised = traversal.traverse("revise", root, StructureTraversalBenchmark::revise).size();
+                long elapsed = System.nanoTime() - start;
+                if (round >= WARMUP_ROUNDS) {
+                    best = Math.min(best, elapsed);
+                }
+            }
+            if (revised != reachable - 1) {
+                throw new IllegalStateException(revised + " parts revised instead of " + (reachable - 1));
+            }
+            System.out.printf("%-12s %10d %14.2f%n", parallel ? "fork/join" : "sequential", revised, best / 1e6);
+        }
+
+        // A leaf linked back to the root closes a cycle
+        String leaf = level.get(0);
+        structure.put(leaf, Collections.singleton("P0-0"));
+        try {
+            traversal.traverse("revise", root, StructureTraversalBenchmark::revise);
+            throw new IllegalStateException("The cycle through " + leaf + " was not detected");
+        } catch (RejectedOperationException e) {
+            System.out.println("Cycle rejected: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the next versions of a part and of its documents, as the revision does.
+     */
+    private static List<Part> revise(Part part, Set<Document> documents) {
+        List<Part> revised = new ArrayList<>(documents.size() + 1);
+        revised.add(EntityCloner.nextVersion(part, VERSION_SCHEMA.getNextVersionLabel(part.getVersion())));
+        for (Document document : documents) {
+            revised.add(EntityCloner.nextVersion(document, VERSION_SCHEMA.getNextVersionLabel(document.getVersion())));
+        }
+        return revised;
+    }
+
+    private static Part newPart(String reference) {
+        Part part = new Part(reference, "A", 1);
+        part.setLifeCycleTemplate(LIFE_CYCLE_TEMPLATE).setLifeCycleState("Released").setVersionSchema(VERSION_SCHEMA);
+        part.setPartAttribute1("Attribute1").setPartAttribute2("Attribute2");
+        return part;
+    }
+
+    private static Document newDocument(String reference) {
+        Document document = new Document(reference, "A", 1);
+        document.setLifeCycleTemplate(LIFE_CYCLE_TEMPLATE).setLifeCycleState("Released")
+                .setVersionSchema(VERSION_SCHEMA);
+        document.setDocumentAttribute1("Attribute1").setDocumentAttribute2("Attribute2");
+        return document;
+    }
+
+    private static int countReachable(Map<String, Set<String>> structure, String root) {
+        Set<String> seen = new LinkedHashSet<>(Collections.singleton(root));
+        List<String> pending = new ArrayList<>(seen);
+        while (!pending.isEmpty()) {
+            String reference = pending.remove(pending.size() - 1);
+            for (String child : structure.getOrDefault(reference, Collections.emptySet())) {
+                if (seen.add(child)) {
+                    pending.add(child);
+                }
+            }
+        }
+        return seen.size();
+    }
+
+    /**
+     * Builds a StructureTraversal over in-memory DAOs.
+     *
+     * @param parts     The parts by reference.
+     * @param structure The references of the children by parent reference.
+     * @return The StructureTraversal.
+     */
+    private static StructureTraversal newTraversal(Map<String, Part> parts, Map<String, Set<String>> structure) {
+        Map<String, Set<Document>> documents = new HashMap<>();
+        StructureTraversal traversal = new StructureTraversal();
+        traversal.setPartDao(new PartDao() {
+            @Override
+            public Map<String, Part> getLatest(Collection<String> references) {
+                Map<String, Part> latest = new HashMap<>();
+                for (String reference : references) {
+                    latest.put(reference, parts.get(reference));
+                }
+                return latest;
+            }
+        });
+        traversal.setDocumentLinkDao(new HibernateDocumentLinkDao() {
+            @Override
+            public Map<Part.PartPK, Set<Document>> getLinkedDocuments(Collection<? extends Part.PartPK> keys) {
+                Map<Part.PartPK, Set<Document>> linked = new LinkedHashMap<>();
+                for (Part.PartPK key : keys) {
+                    linked.put(key, documents.computeIfAbsent(key.getReference(), reference -> {
+                        Set<Document> created = new LinkedHashSet<>();
+                        for (int i = 0; i < DOCUMENTS; i++) {
+                            created.add(newDocument("D-" + reference + "-" + i));
+                        }
+                        return created;
+                    }));
+                }
+                return linked;
+            }
+        });
+        traversal.setPartStructureDao(new HibernatePartStructureDao() {
+            @Override
+            public Map<String, Set<String>> getChildReferences(Collection<String> parentReferences) {
+                Map<String, Set<String>> childReferences = new HashMap<>();
+                for (String parentReference : parentReferences) {
+                    childReferences.put(parentReference,
+                            structure.getOrDefault(parentReference, Collections.emptySet()));
+                }
+                return childReferences;
+            }
+        });
+        return traversal;
+    }
+}